@@ -0,0 +1,18 @@
+package inventory.stock;
+
+/**
+ * Thrown when an order cannot be reserved; nothing of the order stays reserved.
+ */
+public class InsufficientStockException extends RuntimeException {
+
+    private final String sku;
+
+    public InsufficientStockException(String sku, long requested, long available) {
+        super("SKU " + sku + ": requested " + requested + ", available " + available);
+        this.sku = sku;
+    }
+
+    public String getSku() {
+        return sku;
+    }
+}
@@ -0,0 +1,101 @@
+package inventory.stock;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Available quantity of one SKU, split across cache-line padded stripes.
+ * <p>
+ * A reservation first tries to take the whole quantity from a single stripe, starting at one
+ * picked by the calling thread, with one CAS. Only when no single stripe holds enough does it
+ * collect the quantity from several stripes, and it puts everything back if the total falls short.
+ * Concurrent buyers of a hot SKU therefore mostly CAS different cache lines. Near depletion a
+ * collection in progress briefly holds stock that another reservation may then find missing.
+ */
+final class SkuStock {
+
+    /** Longs per 64-byte cache line. */
+    private static final int PAD = 8;
+
+    private final AtomicLongArray cells;
+    private final int mask;
+    private final LongAdder casRetries;
+
+    SkuStock(long quantity, int stripes, LongAdder casRetries) {
+        this.cells = new AtomicLongArray(stripes * PAD);
+        this.mask = stripes - 1;
+        this.casRetries = casRetries;
+        for (int i = 0; i < stripes; i++) {
+            cells.set(i * PAD, quantity / stripes + (i == 0 ? quantity % stripes : 0));
+        }
+    }
+
+    boolean take(long quantity) {
+        int start = probe();
+        for (int i = 0; i <= mask; i++) {
+            if (takeAll((start + i) & mask, quantity)) {
+                return true;
+            }
+        }
+        return collect(start, quantity);
+    }
+
+    void put(long quantity) {
+        cells.getAndAdd(probe() * PAD, quantity);
+    }
+
+    long available() {
+        long sum = 0;
+        for (int i = 0; i <= mask; i++) {
+            sum += cells.get(i * PAD);
+        }
+        return sum;
+    }
+
+    private boolean takeAll(int stripe, long quantity) {
+        int slot = stripe * PAD;
+        for (long current = cells.get(slot); current >= quantity; current = cells.get(slot)) {
+            if (cells.compareAndSet(slot, current, current - quantity)) {
+                return true;
+            }
+            casRetries.increment();
+        }
+        return false;
+    }
+
+    private long takeUpTo(int stripe, long quantity) {
+        int slot = stripe * PAD;
+        for (long current = cells.get(slot); current > 0; current = cells.get(slot)) {
+            long taken = Math.min(current, quantity);
+            if (cells.compareAndSet(slot, current, current - taken)) {
+                return taken;
+            }
+            casRetries.increment();
+        }
+        return 0;
+    }
+
+    private boolean collect(int start, long quantity) {
+        long[] taken = new long[mask + 1];
+        long remaining = quantity;
+        for (int i = 0; i <= mask && remaining > 0; i++) {
+            int stripe = (start + i) & mask;
+            taken[stripe] = takeUpTo(stripe, remaining);
+            remaining -= taken[stripe];
+        }
+        if (remaining == 0) {
+            return true;
+        }
+        for (int stripe = 0; stripe <= mask; stripe++) {
+            if (taken[stripe] > 0) {
+                cells.getAndAdd(stripe * PAD, taken[stripe]);
+            }
+        }
+        return false;
+    }
+
+    private int probe() {
+        long id = Thread.currentThread().threadId() * 0x9E3779B97F4A7C15L;
+        return (int) (id >>> 32) & mask;
+    }
+}
@@ -0,0 +1,176 @@
+package inventory.stock;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * In-memory stock and per-order reservations.
+ * <p>
+ * Every SKU is a {@link SkuStock} updated with CAS only; there is no lock on the ledger or on a
+ * SKU. {@link #reserve} takes the lines of an order one after another and gives back what it took
+ * if a later line is short, so an order is reserved completely or not at all. A reservation then
+ * ends in {@link #commit} (the stock is sold) or {@link #release} (the stock is returned). All
+ * three are idempotent per orderId, so redelivered events are harmless: finished orders are
+ * remembered for {@code order.inventory.finished.ttl}, up to {@code finished.max-entries} of them,
+ * and {@link #reserve} does nothing for them.
+ * <p>
+ * Only the SKUs in {@code order.inventory.skus} exist, each starting with
+ * {@code order.inventory.default-stock}; orders for any other SKU are rejected.
+ */
+@Component
+public class StockLedger {
+
+    private final Map<String, SkuStock> stock = new ConcurrentHashMap<>();
+    private final Map<String, Reservation> reservations = new ConcurrentHashMap<>();
+    private final Map<String, Long> finished = new ConcurrentHashMap<>();
+    private final Queue<String> finishedOrder = new ConcurrentLinkedQueue<>();
+    private final int stripes;
+    private final int maxFinished;
+    private final long finishedTtlNanos;
+    private final LongSupplier clock;
+    private final LongAdder casRetries = new LongAdder();
+
+    public StockLedger(@Value("${order.inventory.skus:}") List<String> skus,
+                       @Value("${order.inventory.default-stock:1000}") long defaultStock,
+                       @Value("${order.inventory.stripes:8}") int stripes,
+                       @Value("${order.inventory.finished.max-entries:100000}") int maxFinished,
+                       @Value("${order.inventory.finished.ttl:1h}") Duration finishedTtl,
+                       MeterRegistry registry) {
+        this(skus, defaultStock, stripes, maxFinished, finishedTtl, registry, System::nanoTime);
+    }
+
+    StockLedger(List<String> skus, long defaultStock, int stripes, int maxFinished, Duration finishedTtl,
+                MeterRegistry registry, LongSupplier clock) {
+        this.stripes = Integer.highestOneBit(Math.max(1, stripes));
+        this.maxFinished = maxFinished;
+        this.finishedTtlNanos = finishedTtl.toNanos();
+        this.clock = clock;
+        for (String sku : skus) {
+            stock.put(sku, new SkuStock(defaultStock, this.stripes, casRetries));
+        }
+        Gauge.builder("inventory_reservations_active", reservations, Map::size).register(registry);
+        Gauge.builder("inventory_finished_orders", finished, Map::size).register(registry);
+        FunctionCounter.builder("inventory_cas_retries_total", casRetries, LongAdder::sum).register(registry);
+    }
+
+    public record Line(String sku, long quantity) {
+    }
+
+    private record Reservation(SkuStock[] skus, long[] quantities) {
+    }
+
+    /**
+     * Reserves every line of the order, or none of them. Does nothing if the order is already
+     * reserved, committed or released.
+     *
+     * @throws InsufficientStockException if a SKU does not have the requested quantity
+     * @throws IllegalArgumentException if a SKU is unknown or a line's quantity is not positive
+     */
+    public void reserve(String orderId, List<Line> lines) {
+        if (reservations.containsKey(orderId) || isFinished(orderId)) {
+            return;
+        }
+        SkuStock[] skus = new SkuStock[lines.size()];
+        long[] quantities = new long[lines.size()];
+        for (int i = 0; i < lines.size(); i++) {
+            Line line = lines.get(i);
+            if (line.quantity() <= 0) {
+                rollback(skus, quantities, i);
+                throw new IllegalArgumentException("Quantity must be positive for SKU " + line.sku());
+            }
+            SkuStock sku = stock.get(line.sku());
+            if (sku == null) {
+                rollback(skus, quantities, i);
+                throw new IllegalArgumentException("Unknown SKU " + line.sku());
+            }
+            if (!sku.take(line.quantity())) {
+                rollback(skus, quantities, i);
+                throw new InsufficientStockException(line.sku(), line.quantity(), sku.available());
+            }
+            skus[i] = sku;
+            quantities[i] = line.quantity();
+        }
+        Reservation reservation = new Reservation(skus, quantities);
+        if (reservations.putIfAbsent(orderId, reservation) != null) {
+            rollback(skus, quantities, skus.length);
+        } else if (isFinished(orderId) && reservations.remove(orderId, reservation)) {
+            // committed or released while this reservation was being taken
+            rollback(skus, quantities, skus.length);
+        }
+    }
+
+    /** Returns the order's reserved stock; does nothing if the order holds no reservation. */
+    public void release(String orderId) {
+        finish(orderId);
+        Reservation reservation = reservations.remove(orderId);
+        if (reservation != null) {
+            rollback(reservation.skus(), reservation.quantities(), reservation.skus().length);
+        }
+    }
+
+    /** Makes the order's reservation final; the stock stays taken. */
+    public void commit(String orderId) {
+        finish(orderId);
+        reservations.remove(orderId);
+    }
+
+    /** Adds stock to a SKU, adding the SKU if it does not exist yet. */
+    public void restock(String sku, long quantity) {
+        stock.computeIfAbsent(sku, s -> new SkuStock(0, stripes, casRetries)).put(quantity);
+    }
+
+    /** Available quantity of the SKU; {@code 0} if it does not exist. */
+    public long available(String sku) {
+        SkuStock existing = stock.get(sku);
+        return existing != null ? existing.available() : 0;
+    }
+
+    public boolean isReserved(String orderId) {
+        return reservations.containsKey(orderId);
+    }
+
+    /**
+     * Remembers the order as finished, before its reservation is removed, so a concurrent or later
+     * {@link #reserve} for it takes nothing. The oldest entries are dropped once there are more
+     * than {@code maxFinished} or they are older than the ttl.
+     */
+    private void finish(String orderId) {
+        long now = clock.getAsLong();
+        if (finished.putIfAbsent(orderId, now) == null) {
+            finishedOrder.add(orderId);
+        }
+        String oldest;
+        while ((oldest = finishedOrder.peek()) != null) {
+            Long at = finished.get(oldest);
+            if (at != null && finished.size() <= maxFinished && now - at < finishedTtlNanos) {
+                break;
+            }
+            if (finishedOrder.remove(oldest) && at != null) {
+                finished.remove(oldest, at);
+            }
+        }
+    }
+
+    private boolean isFinished(String orderId) {
+        Long at = finished.get(orderId);
+        return at != null && clock.getAsLong() - at < finishedTtlNanos;
+    }
+
+    private static void rollback(SkuStock[] skus, long[] quantities, int count) {
+        for (int i = 0; i < count; i++) {
+            skus[i].put(quantities[i]);
+        }
+    }
+}
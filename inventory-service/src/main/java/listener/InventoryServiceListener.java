@@ -1,18 +1,36 @@
 package listener;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import events.BatchPublisher;
 import events.OrderEventEnvelope;
+import events.codec.EnvelopeCodecs;
+import events.dedup.DedupCache;
+import events.metrics.StageMetrics;
+import events.parallel.KeyOrderedConsumerConfiguration;
+import events.parallel.KeyOrderedDispatcher;
+import events.retry.RetryConfiguration;
+import events.retry.RetryTopics;
+import events.transaction.TransactionBatcher;
+import events.transaction.TransactionConfiguration;
+import events.transport.EventTransport;
+import inventory.stock.InsufficientStockException;
+import inventory.stock.StockLedger;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class InventoryServiceListener {
@@ -20,31 +38,168 @@ public class InventoryServiceListener {
     private static final String TOPIC_INVENTORY_RESERVED = "order.inventory-reserved";
     private static final String TOPIC_ORDER_FAILED = "order.failed";
     private static final String EVENT_TYPE_FAILED = "OrderInventoryFailed";
+    private static final String STAGE = "inventory-service";
+    private static final Duration SEND_TIMEOUT = Duration.ofSeconds(30);
 
     private static final Logger log = LoggerFactory.getLogger(InventoryServiceListener.class);
 
-    private final KafkaTemplate<String, String> kafkaTemplate;
-    private final ObjectMapper objectMapper;
+    private final EventTransport transport;
+    private final EnvelopeCodecs codecs;
+    private final KeyOrderedDispatcher dispatcher;
+    private final RetryTopics retries;
+    private final TransactionBatcher transactions;
+    private final DedupCache dedup;
+    private final StageMetrics stageMetrics;
+    private final StockLedger ledger;
     private final Counter ordersReservedTotal;
     private final Counter ordersInventoryFailedTotal;
 
-    public InventoryServiceListener(KafkaTemplate<String, String> kafkaTemplate, ObjectMapper objectMapper, MeterRegistry registry) {
-        this.kafkaTemplate = kafkaTemplate;
-        this.objectMapper = objectMapper;
+    public InventoryServiceListener(EventTransport transport, EnvelopeCodecs codecs,
+            KeyOrderedDispatcher dispatcher, RetryTopics retries, TransactionBatcher transactions, DedupCache dedup,
+            StageMetrics stageMetrics, StockLedger ledger, MeterRegistry registry) {
+        this.transport = transport;
+        this.codecs = codecs;
+        this.dispatcher = dispatcher;
+        this.retries = retries;
+        this.transactions = transactions;
+        this.dedup = dedup;
+        this.stageMetrics = stageMetrics;
+        this.ledger = ledger;
         this.ordersReservedTotal = registry.counter("orders_reserved_total");
         this.ordersInventoryFailedTotal = registry.counter("orders_inventory_failed_total");
     }
 
-    @KafkaListener(topics = "order.validated", groupId = "inventory-reserved")
-    public void onOrderValidated(String payload) {
+    @KafkaListener(topics = "order.validated", groupId = "inventory-reserved",
+            autoStartup = "#{'${order.listener.mode:record}' == 'record'}")
+    public void onOrderValidated(ConsumerRecord<String, byte[]> record) {
+        Outcome outcome = reserve(record);
+        if (outcome != null) {
+            transport.send(outcome.record()).thenRun(() -> dedup.add(outcome.dedupKey()));
+        }
+    }
+
+    /** Batch mode, see {@link BatchPublisher}. */
+    @KafkaListener(topics = "order.validated", groupId = "inventory-reserved", batch = "true",
+            autoStartup = "#{'${order.listener.mode:record}' == 'batch'}")
+    public void onOrderValidatedBatch(List<ConsumerRecord<String, byte[]>> records) {
+        List<ProducerRecord<String, byte[]>> out = new ArrayList<>(records.size());
+        List<DedupCache.Key> published = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, byte[]> record : records) {
+            Outcome outcome = reserve(record);
+            if (outcome != null) {
+                out.add(outcome.record());
+                published.add(outcome.dedupKey());
+            }
+        }
+        BatchPublisher.sendAll(transport, out, SEND_TIMEOUT);
+        published.forEach(dedup::add);
+    }
+
+    /** Parallel mode, see {@link KeyOrderedDispatcher}. */
+    @KafkaListener(topics = "order.validated", groupId = "inventory-reserved",
+            containerFactory = KeyOrderedConsumerConfiguration.CONTAINER_FACTORY,
+            autoStartup = "#{'${order.listener.mode:record}' == 'parallel'}")
+    public void onOrderValidatedParallel(List<ConsumerRecord<String, byte[]>> records, Consumer<?, ?> consumer) {
+        dispatcher.dispatch(records, consumer, record -> {
+            Outcome outcome = reserve(record);
+            if (outcome != null) {
+                transport.send(outcome.record()).get(SEND_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+                dedup.add(outcome.dedupKey());
+            }
+        });
+    }
+
+    /** Exactly-once mode, see {@link TransactionBatcher}. */
+    @KafkaListener(topics = "order.validated", groupId = "inventory-reserved",
+            containerFactory = TransactionConfiguration.CONTAINER_FACTORY,
+            autoStartup = "#{'${order.listener.mode:record}' == 'exactly-once'}")
+    public void onOrderValidatedTransactional(List<ConsumerRecord<String, byte[]>> records, Consumer<?, ?> consumer) {
+        transactions.process(records, consumer, (record, transaction) -> {
+            Outcome outcome = reserve(record);
+            if (outcome != null) {
+                transaction.send(outcome.record());
+                transaction.afterCommit(() -> dedup.add(outcome.dedupKey()));
+            }
+        });
+    }
+
+    /** Records back from the retry topics, see {@link RetryTopics}. */
+    @KafkaListener(topics = "#{@retryTopics.topics('order.validated')}", groupId = "inventory-reserved-retry",
+            containerFactory = RetryConfiguration.CONTAINER_FACTORY,
+            autoStartup = "#{@retryTopics.enabled()}")
+    public void onOrderValidatedRetry(List<ConsumerRecord<String, byte[]>> records, Consumer<?, ?> consumer) {
+        retries.dispatch(records, consumer, record -> {
+            Outcome outcome = reserve(record);
+            if (outcome != null) {
+                if (outcome.deadLetter() != null) {
+                    transport.send(outcome.deadLetter()).get(SEND_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+                }
+                transport.send(outcome.record()).get(SEND_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+                dedup.add(outcome.dedupKey());
+            }
+        });
+    }
+
+    /**
+     * Paid orders keep their stock for good.
+     */
+    @KafkaListener(topics = "order.payment-completed", groupId = "inventory-commit",
+            autoStartup = "#{'${order.listener.mode:record}' != 'in-jvm'}")
+    public void onPaymentCompleted(ConsumerRecord<String, byte[]> record) {
+        if (record.key() != null) {
+            ledger.commit(record.key());
+        }
+    }
+
+    /**
+     * Orders that failed after their stock was reserved give it back.
+     */
+    @KafkaListener(topics = "order.failed", groupId = "inventory-release",
+            autoStartup = "#{'${order.listener.mode:record}' != 'in-jvm'}")
+    public void onOrderFailed(ConsumerRecord<String, byte[]> record) {
+        if (record.key() != null) {
+            ledger.release(record.key());
+        }
+    }
+
+    /** Output for one consumed record. */
+    private record Outcome(ProducerRecord<String, byte[]> record, DedupCache.Key dedupKey,
+            ProducerRecord<String, byte[]> deadLetter) {
+
+        Outcome(ProducerRecord<String, byte[]> record, DedupCache.Key dedupKey) {
+            this(record, dedupKey, null);
+        }
+
+        static Outcome of(ProducerRecord<String, byte[]> record, DedupCache.Key dedupKey) {
+            return record != null ? new Outcome(record, dedupKey) : null;
+        }
+    }
+
+    private Outcome reserve(ConsumerRecord<String, byte[]> record) {
+        long started = stageMetrics.consumed(STAGE, record);
+        Outcome outcome = reserveRecord(record);
+        if (outcome != null) {
+            stageMetrics.propagate(STAGE, record.headers(), outcome.record());
+        }
+        stageMetrics.processed(STAGE, started);
+        return outcome;
+    }
+
+    private Outcome reserveRecord(ConsumerRecord<String, byte[]> record) {
         OrderEventEnvelope envelope = null;
+        DedupCache.Key dedupKey = null;
         try {
-            envelope = objectMapper.readValue(payload, OrderEventEnvelope.class);
+            envelope = codecs.decode(record.headers(), record.value());
+            dedupKey = dedup.key(STAGE, envelope.getOrderId(), envelope.getEventType());
+            if (dedup.contains(dedupKey)) {
+                log.debug("Skipping duplicate {} for order {}", envelope.getEventType(), envelope.getOrderId());
+                return null;
+            }
             if (!isValid(envelope)) {
                 ordersInventoryFailedTotal.increment();
-                publishFailed(envelope, "INVENTORY_FAILED: orderId or payload missing");
-                return;
+                return Outcome.of(failed(envelope, "INVENTORY_FAILED: orderId or payload missing"), dedupKey);
             }
+            ledger.reserve(envelope.getOrderId(), lines(envelope));
             OrderEventEnvelope reserved = new OrderEventEnvelope();
             reserved.setEventType("InventoryReserved");
             reserved.setOrderId(envelope.getOrderId());
@@ -52,34 +207,83 @@ public class InventoryServiceListener {
             reserved.setTimestamp(Instant.now().toString());
             reserved.setPayload(envelope.getPayload());
 
-            String json = objectMapper.writeValueAsString(reserved);
-            kafkaTemplate.send(TOPIC_INVENTORY_RESERVED, envelope.getOrderId(), json);
+            ProducerRecord<String, byte[]> out = codecs.record(TOPIC_INVENTORY_RESERVED, envelope.getOrderId(), reserved);
             ordersReservedTotal.increment();
-        } catch (JsonProcessingException e) {
+            return new Outcome(out, dedupKey);
+        } catch (IOException e) {
             log.warn("Failed to parse order.validated message: {}", e.getMessage());
             ordersInventoryFailedTotal.increment();
-            publishFailed(envelope, "PARSE_ERROR: " + e.getMessage());
+            return Outcome.of(failed(envelope, "PARSE_ERROR: " + e.getMessage()), dedupKey);
+        } catch (InsufficientStockException e) {
+            log.info("Order {} not reserved: {}", envelope.getOrderId(), e.getMessage());
+            ordersInventoryFailedTotal.increment();
+            return Outcome.of(failed(envelope, "INSUFFICIENT_STOCK: " + e.getMessage()), dedupKey);
+        } catch (IllegalArgumentException e) {
+            log.info("Order {} not reserved: {}", envelope.getOrderId(), e.getMessage());
+            ordersInventoryFailedTotal.increment();
+            return Outcome.of(failed(envelope, "INVALID_ITEMS: " + e.getMessage()), dedupKey);
+        } catch (RuntimeException e) {
+            log.warn("Failed to process order.validated message: {}", e.getMessage());
+            return failedOrRetried(record, envelope, "PROCESSING_ERROR: " + e.getMessage(), dedupKey);
+        }
+    }
+
+    /** Outcome of a transient failure, see {@link RetryTopics#retry}. */
+    private Outcome failedOrRetried(ConsumerRecord<String, byte[]> record, OrderEventEnvelope envelope,
+            String failureReason, DedupCache.Key dedupKey) {
+        ProducerRecord<String, byte[]> retry = retries.retry(record, failureReason);
+        if (retry != null) {
+            return new Outcome(retry, null);
         }
+        ordersInventoryFailedTotal.increment();
+        ProducerRecord<String, byte[]> failed = failed(envelope, failureReason);
+        return failed != null ? new Outcome(failed, dedupKey, retries.deadLetter(record, failureReason)) : null;
     }
 
-    private void publishFailed(OrderEventEnvelope envelope, String failureReason) {
+    private ProducerRecord<String, byte[]> failed(OrderEventEnvelope envelope, String failureReason) {
         try {
             OrderEventEnvelope failed = new OrderEventEnvelope();
             failed.setEventType(EVENT_TYPE_FAILED);
-            String orderId = envelope != null ? envelope.getOrderId() : "unknown";
-            String correlationId = envelope != null ? envelope.getCorrelationId() : "unknown";
+            String orderId = envelope != null && envelope.getOrderId() != null ? envelope.getOrderId() : "unknown";
+            String correlationId = envelope != null && envelope.getCorrelationId() != null ? envelope.getCorrelationId() : "unknown";
+            Object originalPayload = envelope != null && envelope.getPayload() != null ? envelope.getPayload() : "n/a";
             failed.setOrderId(orderId);
             failed.setCorrelationId(correlationId);
             failed.setTimestamp(Instant.now().toString());
             failed.setPayload(Map.of(
-                    "originalPayload", envelope != null ? envelope.getPayload() : "n/a",
+                    "originalPayload", originalPayload,
                     "failureReason", failureReason
             ));
-            String json = objectMapper.writeValueAsString(failed);
-            kafkaTemplate.send(TOPIC_ORDER_FAILED, orderId, json);
-        } catch (JsonProcessingException e) {
+            return codecs.record(TOPIC_ORDER_FAILED, orderId, failed);
+        } catch (IOException | RuntimeException e) {
             log.error("Failed to publish failure event: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Order lines from {@code payload.items}: either plain SKU strings (quantity 1) or
+     * {@code {"sku": ..., "quantity": ...}} objects.
+     *
+     * @throws IllegalArgumentException if the order has no items or an item is malformed
+     */
+    private static List<StockLedger.Line> lines(OrderEventEnvelope envelope) throws IOException {
+        if (!(envelope.readPayload() instanceof Map<?, ?> payload) || !(payload.get("items") instanceof List<?> items)
+                || items.isEmpty()) {
+            throw new IllegalArgumentException("Order has no items");
+        }
+        List<StockLedger.Line> lines = new ArrayList<>(items.size());
+        for (Object item : items) {
+            if (item instanceof String sku) {
+                lines.add(new StockLedger.Line(sku, 1));
+            } else if (item instanceof Map<?, ?> map && map.get("sku") instanceof String sku) {
+                long quantity = map.get("quantity") instanceof Number n ? n.longValue() : 1;
+                lines.add(new StockLedger.Line(sku, quantity));
+            } else {
+                throw new IllegalArgumentException("Unsupported order item: " + item);
+            }
         }
+        return lines;
     }
 
     private boolean isValid(OrderEventEnvelope envelope) {
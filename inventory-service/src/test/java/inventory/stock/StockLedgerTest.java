@@ -0,0 +1,122 @@
+package inventory.stock;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StockLedgerTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final StockLedger ledger = new StockLedger(List.of("A", "B", "C"), 10, 8, 2, Duration.ofMinutes(10),
+            new SimpleMeterRegistry(), now::get);
+
+    @Test
+    void reserve_takesStockOncePerOrder() {
+        ledger.reserve("ord-1", List.of(new StockLedger.Line("A", 3), new StockLedger.Line("B", 10)));
+        ledger.reserve("ord-1", List.of(new StockLedger.Line("A", 3), new StockLedger.Line("B", 10)));
+
+        assertThat(ledger.available("A")).isEqualTo(7);
+        assertThat(ledger.available("B")).isZero();
+        assertThat(ledger.isReserved("ord-1")).isTrue();
+    }
+
+    @Test
+    void shortLine_rollsBackEarlierLines() {
+        assertThatThrownBy(() -> ledger.reserve("ord-1",
+                List.of(new StockLedger.Line("A", 4), new StockLedger.Line("B", 5), new StockLedger.Line("C", 11))))
+                .isInstanceOf(InsufficientStockException.class)
+                .hasMessageContaining("SKU C");
+
+        assertThat(ledger.available("A")).isEqualTo(10);
+        assertThat(ledger.available("B")).isEqualTo(10);
+        assertThat(ledger.available("C")).isEqualTo(10);
+        assertThat(ledger.isReserved("ord-1")).isFalse();
+    }
+
+    @Test
+    void release_returnsStockAndCommit_keepsIt() {
+        ledger.reserve("ord-1", List.of(new StockLedger.Line("A", 6)));
+        ledger.reserve("ord-2", List.of(new StockLedger.Line("A", 4)));
+
+        ledger.release("ord-1");
+        ledger.commit("ord-2");
+        ledger.release("ord-2");
+
+        assertThat(ledger.available("A")).isEqualTo(6);
+    }
+
+    @Test
+    void redeliveredReserve_afterCommitOrRelease_takesNothing() {
+        ledger.reserve("ord-1", List.of(new StockLedger.Line("A", 6)));
+        ledger.reserve("ord-2", List.of(new StockLedger.Line("A", 4)));
+        ledger.commit("ord-1");
+        ledger.release("ord-2");
+
+        ledger.reserve("ord-1", List.of(new StockLedger.Line("A", 6)));
+        ledger.reserve("ord-2", List.of(new StockLedger.Line("A", 4)));
+
+        assertThat(ledger.available("A")).isEqualTo(4);
+        assertThat(ledger.isReserved("ord-1")).isFalse();
+        assertThat(ledger.isReserved("ord-2")).isFalse();
+    }
+
+    @Test
+    void finishedOrders_areForgottenAfterTtlOrOnceOverCapacity() {
+        ledger.release("ord-1");
+        now.addAndGet(Duration.ofMinutes(10).toNanos());
+        ledger.reserve("ord-1", List.of(new StockLedger.Line("A", 1)));
+        assertThat(ledger.isReserved("ord-1")).isTrue();
+
+        ledger.release("ord-2");
+        ledger.release("ord-3");
+        ledger.release("ord-4");
+        ledger.reserve("ord-2", List.of(new StockLedger.Line("B", 1)));
+        ledger.reserve("ord-4", List.of(new StockLedger.Line("B", 1)));
+        assertThat(ledger.isReserved("ord-2")).isTrue();
+        assertThat(ledger.isReserved("ord-4")).isFalse();
+    }
+
+    @Test
+    void unknownSku_isRejectedWithoutTakingStock() {
+        assertThatThrownBy(() -> ledger.reserve("ord-1",
+                List.of(new StockLedger.Line("A", 2), new StockLedger.Line("NOPE", 1))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("NOPE");
+
+        assertThat(ledger.available("A")).isEqualTo(10);
+        assertThat(ledger.available("NOPE")).isZero();
+        assertThat(ledger.isReserved("ord-1")).isFalse();
+    }
+
+    @Test
+    void hotSku_isNeverOversold() throws Exception {
+        StockLedger hot = new StockLedger(List.of("HOT"), 1_000, 8, 0, Duration.ofHours(1), new SimpleMeterRegistry());
+        AtomicInteger reserved = new AtomicInteger();
+        try (ExecutorService executor = Executors.newFixedThreadPool(16)) {
+            for (int i = 0; i < 5_000; i++) {
+                String orderId = "ord-" + i;
+                long quantity = 1 + i % 3;
+                executor.execute(() -> {
+                    try {
+                        hot.reserve(orderId, List.of(new StockLedger.Line("HOT", quantity)));
+                        reserved.addAndGet((int) quantity);
+                    } catch (InsufficientStockException e) {
+                        // sold out
+                    }
+                });
+            }
+        }
+
+        assertThat(reserved.get() + hot.available("HOT")).isEqualTo(1_000);
+        assertThat(hot.available("HOT")).isLessThan(3);
+    }
+}
@@ -1,18 +1,38 @@
 package listener;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import events.codec.BinaryEnvelopeCodec;
+import events.codec.EnvelopeCodecs;
+import events.codec.JsonEnvelopeCodec;
+import events.dedup.DedupCache;
+import events.metrics.StageMetrics;
+import events.parallel.KeyOrderedDispatcher;
+import events.retry.RetryTopics;
+import events.transaction.TransactionBatcher;
+import events.transport.EventTransport;
+import inventory.stock.StockLedger;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.kafka.core.KafkaTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -20,55 +40,170 @@ import static org.mockito.Mockito.when;
 class InventoryServiceListenerTest {
 
     private static final String VALID_ORDER_VALIDATED = """
-            {"eventType":"OrderValidated","orderId":"ord-123","correlationId":"corr-456","timestamp":"2026-02-06T12:00:00Z","payload":{"customerId":"cust-1","items":[],"totalAmount":9999}}
+            {"eventType":"OrderValidated","orderId":"ord-123","correlationId":"corr-456","timestamp":"2026-02-06T12:00:00Z","payload":{"customerId":"cust-1","items":["ITEM-A"],"totalAmount":9999}}
             """;
 
     @Mock
-    private KafkaTemplate<String, String> kafkaTemplate;
+    private EventTransport transport;
+
+    @Mock
+    private KeyOrderedDispatcher dispatcher;
+
+    @Mock
+    private TransactionBatcher transactions;
 
     @Mock
     private io.micrometer.core.instrument.MeterRegistry meterRegistry;
 
+    @Captor
+    private ArgumentCaptor<ProducerRecord<String, byte[]>> recordCaptor;
+
     private ObjectMapper objectMapper;
+    private StockLedger ledger;
     private InventoryServiceListener listener;
 
     @BeforeEach
     void setUp() {
         objectMapper = new ObjectMapper();
         when(meterRegistry.counter(anyString())).thenReturn(mock(io.micrometer.core.instrument.Counter.class));
-        listener = new InventoryServiceListener(kafkaTemplate, objectMapper, meterRegistry);
+        lenient().when(transport.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+        ledger = new StockLedger(List.of("ITEM-A", "ITEM-B"), 10, 4, 1024, Duration.ofHours(1), new SimpleMeterRegistry());
+        listener = new InventoryServiceListener(transport, new EnvelopeCodecs(JsonEnvelopeCodec.NAME, true,
+                new JsonEnvelopeCodec(objectMapper), new BinaryEnvelopeCodec(objectMapper)), dispatcher,
+                new RetryTopics(List.of(Duration.ofSeconds(1)), true, Duration.ofSeconds(1), new SimpleMeterRegistry()),
+                transactions,
+                new DedupCache(1024, Duration.ofHours(1), new SimpleMeterRegistry()),
+                new StageMetrics(new SimpleMeterRegistry()), ledger, meterRegistry);
     }
 
     @Test
     void validOrder_publishesToOrderInventoryReserved() {
-        listener.onOrderValidated(VALID_ORDER_VALIDATED);
+        listener.onOrderValidated(record(VALID_ORDER_VALIDATED));
 
-        ArgumentCaptor<String> valueCaptor = ArgumentCaptor.forClass(String.class);
-        verify(kafkaTemplate).send(eq("order.inventory-reserved"), eq("ord-123"), valueCaptor.capture());
+        verify(transport).send(recordCaptor.capture());
+        ProducerRecord<String, byte[]> sent = recordCaptor.getValue();
+        String value = new String(sent.value(), StandardCharsets.UTF_8);
 
-        assertThat(valueCaptor.getValue()).contains("\"eventType\":\"InventoryReserved\"");
-        assertThat(valueCaptor.getValue()).contains("\"orderId\":\"ord-123\"");
+        assertThat(sent.topic()).isEqualTo("order.inventory-reserved");
+        assertThat(sent.key()).isEqualTo("ord-123");
+        assertThat(value).contains("\"eventType\":\"InventoryReserved\"");
+        assertThat(value).contains("\"orderId\":\"ord-123\"");
     }
 
     @Test
     void invalidEnvelope_publishesToOrderFailed() {
-        listener.onOrderValidated("{\"eventType\":\"OrderValidated\",\"payload\":null}");
+        listener.onOrderValidated(record("{\"eventType\":\"OrderValidated\",\"payload\":null}"));
 
-        ArgumentCaptor<String> valueCaptor = ArgumentCaptor.forClass(String.class);
-        verify(kafkaTemplate).send(eq("order.failed"), eq("unknown"), valueCaptor.capture());
+        verify(transport).send(recordCaptor.capture());
+        ProducerRecord<String, byte[]> sent = recordCaptor.getValue();
+        String value = new String(sent.value(), StandardCharsets.UTF_8);
 
-        assertThat(valueCaptor.getValue()).contains("\"eventType\":\"OrderInventoryFailed\"");
-        assertThat(valueCaptor.getValue()).contains("INVENTORY_FAILED");
+        assertThat(sent.topic()).isEqualTo("order.failed");
+        assertThat(sent.key()).isEqualTo("unknown");
+        assertThat(value).contains("\"eventType\":\"OrderInventoryFailed\"");
+        assertThat(value).contains("INVENTORY_FAILED");
     }
 
     @Test
     void parseError_publishesToOrderFailed() {
-        listener.onOrderValidated("not json");
+        listener.onOrderValidated(record("not json"));
+
+        verify(transport).send(recordCaptor.capture());
+        ProducerRecord<String, byte[]> sent = recordCaptor.getValue();
+        String value = new String(sent.value(), StandardCharsets.UTF_8);
+
+        assertThat(sent.topic()).isEqualTo("order.failed");
+        assertThat(sent.key()).isEqualTo("unknown");
+        assertThat(value).contains("\"eventType\":\"OrderInventoryFailed\"");
+        assertThat(value).contains("PARSE_ERROR");
+    }
+
+    @Test
+    void batch_publishesEachOutcomeAndFlushesOnce() {
+        when(transport.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+
+        listener.onOrderValidatedBatch(List.of(record(VALID_ORDER_VALIDATED), record("not json")));
+
+        verify(transport, times(2)).send(recordCaptor.capture());
+        verify(transport).flush();
+
+        List<ProducerRecord<String, byte[]>> sent = recordCaptor.getAllValues();
+        assertThat(sent.get(0).topic()).isEqualTo("order.inventory-reserved");
+        assertThat(sent.get(0).key()).isEqualTo("ord-123");
+        assertThat(new String(sent.get(0).value(), StandardCharsets.UTF_8)).contains("\"eventType\":\"InventoryReserved\"");
+        assertThat(sent.get(1).topic()).isEqualTo("order.failed");
+        assertThat(new String(sent.get(1).value(), StandardCharsets.UTF_8)).contains("\"eventType\":\"OrderInventoryFailed\"");
+    }
+
+    @Test
+    void orderItems_areReservedAndCommittedOnPayment() {
+        listener.onOrderValidated(record(order("ord-1", "{\"sku\":\"ITEM-A\",\"quantity\":3}", "\"ITEM-B\"")));
+
+        verify(transport).send(recordCaptor.capture());
+        assertThat(recordCaptor.getValue().topic()).isEqualTo("order.inventory-reserved");
+        assertThat(ledger.available("ITEM-A")).isEqualTo(7);
+        assertThat(ledger.available("ITEM-B")).isEqualTo(9);
 
-        ArgumentCaptor<String> valueCaptor = ArgumentCaptor.forClass(String.class);
-        verify(kafkaTemplate).send(eq("order.failed"), eq("unknown"), valueCaptor.capture());
+        listener.onPaymentCompleted(new ConsumerRecord<>("order.payment-completed", 0, 0L, "ord-1", new byte[0]));
+        assertThat(ledger.isReserved("ord-1")).isFalse();
+        assertThat(ledger.available("ITEM-A")).isEqualTo(7);
+    }
+
+    @Test
+    void insufficientStock_publishesOrderInventoryFailedAndReservesNothing() {
+        listener.onOrderValidated(record(order("ord-1", "{\"sku\":\"ITEM-A\",\"quantity\":2}", "{\"sku\":\"ITEM-B\",\"quantity\":11}")));
+
+        verify(transport).send(recordCaptor.capture());
+        ProducerRecord<String, byte[]> sent = recordCaptor.getValue();
+        String value = new String(sent.value(), StandardCharsets.UTF_8);
+        assertThat(sent.topic()).isEqualTo("order.failed");
+        assertThat(value).contains("\"eventType\":\"OrderInventoryFailed\"");
+        assertThat(value).contains("INSUFFICIENT_STOCK");
+        assertThat(ledger.available("ITEM-A")).isEqualTo(10);
+    }
+
+    @Test
+    void invalidItems_publishOrderInventoryFailedWithoutRetry() {
+        listener.onOrderValidated(record(order("ord-1", "{\"sku\":\"ITEM-A\",\"quantity\":2}", "{\"sku\":\"ITEM-B\",\"quantity\":0}")));
+        listener.onOrderValidated(record(order("ord-2", "42")));
+        listener.onOrderValidated(record(order("ord-3")));
+
+        verify(transport, times(3)).send(recordCaptor.capture());
+        for (ProducerRecord<String, byte[]> sent : recordCaptor.getAllValues()) {
+            String value = new String(sent.value(), StandardCharsets.UTF_8);
+            assertThat(sent.topic()).isEqualTo("order.failed");
+            assertThat(value).contains("\"eventType\":\"OrderInventoryFailed\"");
+            assertThat(value).contains("INVALID_ITEMS");
+        }
+        assertThat(ledger.available("ITEM-A")).isEqualTo(10);
+        assertThat(ledger.isReserved("ord-1")).isFalse();
+    }
+
+    @Test
+    void failedOrder_releasesItsReservation() {
+        listener.onOrderValidated(record(order("ord-1", "{\"sku\":\"ITEM-A\",\"quantity\":4}")));
+
+        listener.onOrderFailed(new ConsumerRecord<>("order.failed", 0, 0L, "ord-1", new byte[0]));
+
+        assertThat(ledger.isReserved("ord-1")).isFalse();
+        assertThat(ledger.available("ITEM-A")).isEqualTo(10);
+    }
+
+    @Test
+    void redeliveredRecord_isPublishedOnlyOnce() {
+        listener.onOrderValidated(record(VALID_ORDER_VALIDATED));
+        listener.onOrderValidated(record(VALID_ORDER_VALIDATED));
+
+        verify(transport, times(1)).send(recordCaptor.capture());
+        assertThat(recordCaptor.getValue().topic()).isEqualTo("order.inventory-reserved");
+    }
+
+    private static String order(String orderId, String... items) {
+        return "{\"eventType\":\"OrderValidated\",\"orderId\":\"" + orderId + "\",\"correlationId\":\"corr-1\","
+                + "\"payload\":{\"customerId\":\"cust-1\",\"items\":[" + String.join(",", items) + "]}}";
+    }
 
-        assertThat(valueCaptor.getValue()).contains("\"eventType\":\"OrderInventoryFailed\"");
-        assertThat(valueCaptor.getValue()).contains("PARSE_ERROR");
+    private static ConsumerRecord<String, byte[]> record(String value) {
+        return new ConsumerRecord<>("order.validated", 0, 0L, null, value.getBytes(StandardCharsets.UTF_8));
     }
 }
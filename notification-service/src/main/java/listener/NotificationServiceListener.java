@@ -1,18 +1,36 @@
 package listener;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import events.BatchPublisher;
 import events.OrderEventEnvelope;
+import events.codec.EnvelopeCodecs;
+import events.dedup.DedupCache;
+import events.metrics.StageMetrics;
+import events.parallel.KeyOrderedConsumerConfiguration;
+import events.parallel.KeyOrderedDispatcher;
+import events.retry.RetryConfiguration;
+import events.retry.RetryTopics;
+import events.transaction.TransactionBatcher;
+import events.transaction.TransactionConfiguration;
+import events.transport.EventTransport;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
+import notification.dispatch.Notification;
+import notification.dispatch.NotificationDispatcher;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class NotificationServiceListener {
@@ -20,30 +38,158 @@ public class NotificationServiceListener {
     private static final String TOPIC_ORDER_COMPLETED = "order.completed";
     private static final String TOPIC_ORDER_FAILED = "order.failed";
     private static final String EVENT_TYPE_FAILED = "OrderNotificationFailed";
+    private static final String STAGE = "notification-service";
+    private static final Duration SEND_TIMEOUT = Duration.ofSeconds(30);
 
     private static final Logger log = LoggerFactory.getLogger(NotificationServiceListener.class);
 
-    private final KafkaTemplate<String, String> kafkaTemplate;
-    private final ObjectMapper objectMapper;
+    private final EventTransport transport;
+    private final EnvelopeCodecs codecs;
+    private final KeyOrderedDispatcher dispatcher;
+    private final RetryTopics retries;
+    private final TransactionBatcher transactions;
+    private final DedupCache dedup;
+    private final StageMetrics stageMetrics;
+    private final NotificationDispatcher notifications;
     private final Counter ordersCompletedTotal;
     private final Counter ordersNotificationFailedTotal;
 
-    public NotificationServiceListener(KafkaTemplate<String, String> kafkaTemplate, ObjectMapper objectMapper, MeterRegistry registry) {
-        this.kafkaTemplate = kafkaTemplate;
-        this.objectMapper = objectMapper;
+    public NotificationServiceListener(EventTransport transport, EnvelopeCodecs codecs,
+            KeyOrderedDispatcher dispatcher, RetryTopics retries, TransactionBatcher transactions, DedupCache dedup,
+            StageMetrics stageMetrics, NotificationDispatcher notifications, MeterRegistry registry) {
+        this.transport = transport;
+        this.codecs = codecs;
+        this.dispatcher = dispatcher;
+        this.retries = retries;
+        this.transactions = transactions;
+        this.dedup = dedup;
+        this.stageMetrics = stageMetrics;
+        this.notifications = notifications;
         this.ordersCompletedTotal = registry.counter("orders_completed_total");
         this.ordersNotificationFailedTotal = registry.counter("orders_notification_failed_total");
     }
 
-    @KafkaListener(topics = "order.payment-completed", groupId = "notification-service")
-    public void onOrderCompleted(String payload) {
+    @KafkaListener(topics = "order.payment-completed", groupId = "notification-service",
+            autoStartup = "#{'${order.listener.mode:record}' == 'record'}")
+    public void onOrderCompleted(ConsumerRecord<String, byte[]> record) {
+        Outcome outcome = complete(record);
+        if (outcome != null) {
+            transport.send(outcome.record()).thenRun(() -> published(outcome));
+        }
+    }
+
+    /** Batch mode, see {@link BatchPublisher}. */
+    @KafkaListener(topics = "order.payment-completed", groupId = "notification-service", batch = "true",
+            autoStartup = "#{'${order.listener.mode:record}' == 'batch'}")
+    public void onOrderCompletedBatch(List<ConsumerRecord<String, byte[]>> records) {
+        List<ProducerRecord<String, byte[]>> out = new ArrayList<>(records.size());
+        List<Outcome> outcomes = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, byte[]> record : records) {
+            Outcome outcome = complete(record);
+            if (outcome != null) {
+                out.add(outcome.record());
+                outcomes.add(outcome);
+            }
+        }
+        BatchPublisher.sendAll(transport, out, SEND_TIMEOUT);
+        outcomes.forEach(this::published);
+    }
+
+    /** Parallel mode, see {@link KeyOrderedDispatcher}. */
+    @KafkaListener(topics = "order.payment-completed", groupId = "notification-service",
+            containerFactory = KeyOrderedConsumerConfiguration.CONTAINER_FACTORY,
+            autoStartup = "#{'${order.listener.mode:record}' == 'parallel'}")
+    public void onOrderCompletedParallel(List<ConsumerRecord<String, byte[]>> records, Consumer<?, ?> consumer) {
+        dispatcher.dispatch(records, consumer, record -> {
+            Outcome outcome = complete(record);
+            if (outcome != null) {
+                transport.send(outcome.record()).get(SEND_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+                published(outcome);
+            }
+        });
+    }
+
+    /** Exactly-once mode, see {@link TransactionBatcher}. */
+    @KafkaListener(topics = "order.payment-completed", groupId = "notification-service",
+            containerFactory = TransactionConfiguration.CONTAINER_FACTORY,
+            autoStartup = "#{'${order.listener.mode:record}' == 'exactly-once'}")
+    public void onOrderCompletedTransactional(List<ConsumerRecord<String, byte[]>> records, Consumer<?, ?> consumer) {
+        transactions.process(records, consumer, (record, transaction) -> {
+            Outcome outcome = complete(record);
+            if (outcome != null) {
+                transaction.send(outcome.record());
+                transaction.afterCommit(() -> published(outcome));
+            }
+        });
+    }
+
+    /** Records back from the retry topics, see {@link RetryTopics}. */
+    @KafkaListener(topics = "#{@retryTopics.topics('order.payment-completed')}", groupId = "notification-service-retry",
+            containerFactory = RetryConfiguration.CONTAINER_FACTORY,
+            autoStartup = "#{@retryTopics.enabled()}")
+    public void onOrderCompletedRetry(List<ConsumerRecord<String, byte[]>> records, Consumer<?, ?> consumer) {
+        retries.dispatch(records, consumer, record -> {
+            Outcome outcome = complete(record);
+            if (outcome != null) {
+                if (outcome.deadLetter() != null) {
+                    transport.send(outcome.deadLetter()).get(SEND_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+                }
+                transport.send(outcome.record()).get(SEND_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+                published(outcome);
+            }
+        });
+    }
+
+    /** Output for one consumed record; {@code notification} is set for completed orders only. */
+    private record Outcome(ProducerRecord<String, byte[]> record, DedupCache.Key dedupKey, Notification notification,
+            ProducerRecord<String, byte[]> deadLetter) {
+
+        Outcome(ProducerRecord<String, byte[]> record, DedupCache.Key dedupKey, Notification notification) {
+            this(record, dedupKey, notification, null);
+        }
+
+        static Outcome of(ProducerRecord<String, byte[]> record, DedupCache.Key dedupKey) {
+            return record != null ? new Outcome(record, dedupKey, null) : null;
+        }
+    }
+
+    /**
+     * The customer is notified only once {@code OrderCompleted} is acknowledged, so a redelivered
+     * record does not notify twice.
+     */
+    private void published(Outcome outcome) {
+        dedup.add(outcome.dedupKey());
+        if (outcome.notification() != null) {
+            notifications.enqueue(outcome.notification());
+        }
+    }
+
+    private Outcome complete(ConsumerRecord<String, byte[]> record) {
+        long started = stageMetrics.consumed(STAGE, record);
+        Outcome outcome = completeRecord(record);
+        if (outcome != null) {
+            stageMetrics.propagate(STAGE, record.headers(), outcome.record());
+            if (outcome.notification() != null) {
+                stageMetrics.completed(record.headers());
+            }
+        }
+        stageMetrics.processed(STAGE, started);
+        return outcome;
+    }
+
+    private Outcome completeRecord(ConsumerRecord<String, byte[]> record) {
         OrderEventEnvelope envelope = null;
+        DedupCache.Key dedupKey = null;
         try {
-            envelope = objectMapper.readValue(payload, OrderEventEnvelope.class);
+            envelope = codecs.decode(record.headers(), record.value());
+            dedupKey = dedup.key(STAGE, envelope.getOrderId(), envelope.getEventType());
+            if (dedup.contains(dedupKey)) {
+                log.debug("Skipping duplicate {} for order {}", envelope.getEventType(), envelope.getOrderId());
+                return null;
+            }
             if (!isValid(envelope)) {
                 ordersNotificationFailedTotal.increment();
-                publishFailed(envelope, "NOTIFICATION_FAILED: orderId or payload missing");
-                return;
+                return Outcome.of(failed(envelope, "NOTIFICATION_FAILED: orderId or payload missing"), dedupKey);
             }
             OrderEventEnvelope completed = new OrderEventEnvelope();
             completed.setEventType("OrderCompleted");
@@ -52,33 +198,56 @@ public class NotificationServiceListener {
             completed.setTimestamp(Instant.now().toString());
             completed.setPayload(envelope.getPayload());
 
-            String json = objectMapper.writeValueAsString(completed);
-            kafkaTemplate.send(TOPIC_ORDER_COMPLETED, completed.getOrderId(), json);
+            ProducerRecord<String, byte[]> out = codecs.record(TOPIC_ORDER_COMPLETED, envelope.getOrderId(), completed);
             ordersCompletedTotal.increment();
-        } catch (JsonProcessingException e) {
+            return new Outcome(out, dedupKey, notification(envelope));
+        } catch (IOException e) {
             log.warn("Failed to parse order.payment-completed message: {}", e.getMessage());
             ordersNotificationFailedTotal.increment();
-            publishFailed(envelope, "PARSE_ERROR: " + e.getMessage());
+            return Outcome.of(failed(envelope, "PARSE_ERROR: " + e.getMessage()), dedupKey);
+        } catch (RuntimeException e) {
+            log.warn("Failed to process order.payment-completed message: {}", e.getMessage());
+            return failedOrRetried(record, envelope, "PROCESSING_ERROR: " + e.getMessage(), dedupKey);
+        }
+    }
+
+    /** Outcome of a transient failure, see {@link RetryTopics#retry}. */
+    private Outcome failedOrRetried(ConsumerRecord<String, byte[]> record, OrderEventEnvelope envelope,
+            String failureReason, DedupCache.Key dedupKey) {
+        ProducerRecord<String, byte[]> retry = retries.retry(record, failureReason);
+        if (retry != null) {
+            return new Outcome(retry, null, null, null);
         }
+        ordersNotificationFailedTotal.increment();
+        ProducerRecord<String, byte[]> failed = failed(envelope, failureReason);
+        return failed != null ? new Outcome(failed, dedupKey, null, retries.deadLetter(record, failureReason)) : null;
+    }
+
+    private static Notification notification(OrderEventEnvelope envelope) throws IOException {
+        Map<?, ?> payload = envelope.readPayload() instanceof Map<?, ?> map ? map : Map.of();
+        Object customerId = payload.get("customerId");
+        return new Notification(customerId != null ? customerId.toString() : null, envelope.getOrderId(),
+                envelope.getCorrelationId(), payload.get("totalAmount") instanceof Number n ? n : null);
     }
 
-    private void publishFailed(OrderEventEnvelope envelope, String failureReason) {
+    private ProducerRecord<String, byte[]> failed(OrderEventEnvelope envelope, String failureReason) {
         try {
             OrderEventEnvelope failed = new OrderEventEnvelope();
             failed.setEventType(EVENT_TYPE_FAILED);
-            String orderId = envelope != null ? envelope.getOrderId() : "unknown";
-            String correlationId = envelope != null ? envelope.getCorrelationId() : "unknown";
+            String orderId = envelope != null && envelope.getOrderId() != null ? envelope.getOrderId() : "unknown";
+            String correlationId = envelope != null && envelope.getCorrelationId() != null ? envelope.getCorrelationId() : "unknown";
+            Object originalPayload = envelope != null && envelope.getPayload() != null ? envelope.getPayload() : "n/a";
             failed.setOrderId(orderId);
             failed.setCorrelationId(correlationId);
             failed.setTimestamp(Instant.now().toString());
             failed.setPayload(Map.of(
-                    "originalPayload", envelope != null ? envelope.getPayload() : "n/a",
+                    "originalPayload", originalPayload,
                     "failureReason", failureReason
             ));
-            String json = objectMapper.writeValueAsString(failed);
-            kafkaTemplate.send(TOPIC_ORDER_FAILED, orderId, json);
-        } catch (JsonProcessingException e) {
+            return codecs.record(TOPIC_ORDER_FAILED, orderId, failed);
+        } catch (IOException | RuntimeException e) {
             log.error("Failed to publish failure event: {}", e.getMessage());
+            return null;
         }
     }
 
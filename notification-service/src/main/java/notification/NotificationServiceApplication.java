@@ -1,11 +1,23 @@
 package notification;
 
+import events.OrderEventsConfiguration;
+import events.dedup.DedupConfiguration;
+import events.parallel.KeyOrderedConsumerConfiguration;
+import events.producer.AdaptiveProducerConfiguration;
+import events.retry.RetryConfiguration;
+import events.scaling.AutoscalingConfiguration;
+import events.transaction.TransactionConfiguration;
+import events.transport.TransportConfiguration;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Import;
 
 @SpringBootApplication
 @ComponentScan(basePackages = {"notification", "listener"})
+@Import({OrderEventsConfiguration.class, AdaptiveProducerConfiguration.class, KeyOrderedConsumerConfiguration.class,
+        DedupConfiguration.class, TransportConfiguration.class, RetryConfiguration.class,
+        TransactionConfiguration.class, AutoscalingConfiguration.class})
 public class NotificationServiceApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,9 @@
+package notification.dispatch;
+
+import java.util.List;
+
+/**
+ * Notifications of one customer coalesced into a single message, oldest first.
+ */
+public record Digest(String customerId, List<Notification> orders) {
+}
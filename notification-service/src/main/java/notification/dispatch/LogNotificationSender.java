@@ -0,0 +1,43 @@
+package notification.dispatch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Local sender for development and tests: logs every digest and, if {@code order.notification.file}
+ * is set, appends it to that file as one JSON line.
+ */
+@Component
+public class LogNotificationSender implements NotificationSender {
+
+    private static final Logger log = LoggerFactory.getLogger(LogNotificationSender.class);
+
+    private final ObjectMapper objectMapper;
+    private final Path file;
+
+    public LogNotificationSender(ObjectMapper objectMapper, @Value("${order.notification.file:}") String file) {
+        this.objectMapper = objectMapper;
+        this.file = file.isBlank() ? null : Path.of(file);
+    }
+
+    @Override
+    public void send(Digest digest) throws IOException {
+        log.info("Notifying customer {} about {} order(s)", digest.customerId(), digest.orders().size());
+        if (file == null) {
+            return;
+        }
+        byte[] line = (objectMapper.writeValueAsString(digest) + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+        synchronized (this) {
+            Files.write(file, line, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package notification.dispatch;
+
+/**
+ * One completed order to tell the customer about. {@code totalAmount} is {@code null} if the order
+ * payload did not carry one.
+ */
+public record Notification(String customerId, String orderId, String correlationId, Number totalAmount) {
+}
@@ -0,0 +1,149 @@
+package notification.dispatch;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Coalesces notifications per customer and hands them to a {@link NotificationSender}.
+ * <p>
+ * The first notification of a customer opens a window of {@code order.notification.window}; every
+ * notification of that customer arriving before it closes goes into the same {@link Digest}. A
+ * window holding {@code order.notification.max-digest-size} notifications is sent at once. Digests
+ * are delivered on virtual threads, at most {@code order.notification.max-concurrent-sends} at a
+ * time, so a slow provider never blocks the consumer. A window of zero sends every notification
+ * on its own. Pending windows are flushed on {@link #close()}.
+ */
+@Component
+public class NotificationDispatcher implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationDispatcher.class);
+
+    private final NotificationSender sender;
+    private final long windowNanos;
+    private final int maxDigestSize;
+    private final Semaphore sends;
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "notification-window");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Counter sentTotal;
+    private final Counter failedTotal;
+    private final DistributionSummary digestSizes;
+
+    public NotificationDispatcher(NotificationSender sender, MeterRegistry registry,
+            @Value("${order.notification.window:2s}") Duration window,
+            @Value("${order.notification.max-digest-size:50}") int maxDigestSize,
+            @Value("${order.notification.max-concurrent-sends:16}") int maxConcurrentSends) {
+        this.sender = sender;
+        this.windowNanos = window.toNanos();
+        this.maxDigestSize = maxDigestSize;
+        this.sends = new Semaphore(maxConcurrentSends);
+        this.sentTotal = registry.counter("notifications_sent_total");
+        this.failedTotal = registry.counter("notifications_failed_total");
+        this.digestSizes = DistributionSummary.builder("notification_digest_size").register(registry);
+        Gauge.builder("notifications_pending", pending, AtomicInteger::get).register(registry);
+    }
+
+    /** Notifications of one customer collected while its window is open; guarded by the map entry. */
+    private static final class Window {
+        final List<Notification> orders = new ArrayList<>();
+    }
+
+    public void enqueue(Notification notification) {
+        String key = customerKey(notification);
+        if (windowNanos <= 0) {
+            pending.incrementAndGet();
+            dispatch(notification.customerId(), List.of(notification));
+            return;
+        }
+        Window[] opened = new Window[1];
+        Window[] full = new Window[1];
+        windows.compute(key, (k, window) -> {
+            if (window == null) {
+                window = new Window();
+                opened[0] = window;
+            }
+            window.orders.add(notification);
+            if (window.orders.size() >= maxDigestSize) {
+                full[0] = window;
+                return null;
+            }
+            return window;
+        });
+        pending.incrementAndGet();
+        if (full[0] != null) {
+            dispatch(notification.customerId(), full[0].orders);
+        } else if (opened[0] != null) {
+            Window window = opened[0];
+            timer.schedule(() -> close(key, window), windowNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /** Sends every open window and waits for all deliveries in progress. */
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        windows.forEach(this::close);
+        senders.close();
+    }
+
+    /** Notifications without a customer are never coalesced with others. */
+    private static String customerKey(Notification notification) {
+        return notification.customerId() != null ? notification.customerId() : "order:" + notification.orderId();
+    }
+
+    private void close(String key, Window window) {
+        if (windows.remove(key, window)) {
+            dispatch(window.orders.get(0).customerId(), window.orders);
+        }
+    }
+
+    private void dispatch(String customerId, List<Notification> orders) {
+        Digest digest = new Digest(customerId, List.copyOf(orders));
+        senders.execute(() -> deliver(digest));
+    }
+
+    private void deliver(Digest digest) {
+        try {
+            sends.acquire();
+            try {
+                sender.send(digest);
+                sentTotal.increment();
+                digestSizes.record(digest.orders().size());
+            } finally {
+                sends.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failedTotal.increment();
+        } catch (Exception e) {
+            log.warn("Failed to notify customer {} about {} order(s): {}", digest.customerId(), digest.orders().size(),
+                    e.getMessage());
+            failedTotal.increment();
+        } finally {
+            pending.addAndGet(-digest.orders().size());
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package notification.dispatch;
+
+/**
+ * Delivers digests to customers (email, SMS, ...). Called on a virtual thread, so implementations
+ * may block on I/O. A thrown exception counts the digest as failed; it is not retried.
+ */
+@FunctionalInterface
+public interface NotificationSender {
+
+    void send(Digest digest) throws Exception;
+}
@@ -1,18 +1,42 @@
 package listener;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import events.codec.BinaryEnvelopeCodec;
+import events.codec.EnvelopeCodecs;
+import events.codec.JsonEnvelopeCodec;
+import events.dedup.DedupCache;
+import events.metrics.StageMetrics;
+import events.parallel.KeyOrderedDispatcher;
+import events.retry.RetryTopics;
+import events.transaction.TransactionBatcher;
+import events.transport.EventTransport;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import notification.dispatch.Digest;
+import notification.dispatch.Notification;
+import notification.dispatch.NotificationDispatcher;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.kafka.core.KafkaTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -22,53 +46,131 @@ class NotificationServiceListenerTest {
     private static final String VALID_ORDER_PAYMENT_COMPLETED = """
             {"eventType":"PaymentCompleted","orderId":"ord-123","correlationId":"corr-456","timestamp":"2026-02-06T12:00:00Z","payload":{"customerId":"cust-1","items":[],"totalAmount":9999}}
             """;
+    private static final String SECOND_ORDER_PAYMENT_COMPLETED = """
+            {"eventType":"PaymentCompleted","orderId":"ord-124","correlationId":"corr-457","timestamp":"2026-02-06T12:00:01Z","payload":{"customerId":"cust-1","items":[],"totalAmount":500}}
+            """;
+
+    @Mock
+    private EventTransport transport;
 
     @Mock
-    private KafkaTemplate<String, String> kafkaTemplate;
+    private KeyOrderedDispatcher dispatcher;
+
+    @Mock
+    private TransactionBatcher transactions;
 
     @Mock
     private io.micrometer.core.instrument.MeterRegistry meterRegistry;
 
+    @Captor
+    private ArgumentCaptor<ProducerRecord<String, byte[]>> recordCaptor;
+
     private ObjectMapper objectMapper;
+    private final List<Digest> digests = new CopyOnWriteArrayList<>();
+    private NotificationDispatcher notifications;
     private NotificationServiceListener listener;
 
     @BeforeEach
     void setUp() {
         objectMapper = new ObjectMapper();
         when(meterRegistry.counter(anyString())).thenReturn(mock(io.micrometer.core.instrument.Counter.class));
-        listener = new NotificationServiceListener(kafkaTemplate, objectMapper, meterRegistry);
+        lenient().when(transport.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+        notifications = new NotificationDispatcher(digests::add, new SimpleMeterRegistry(), Duration.ofMinutes(1), 50, 4);
+        listener = new NotificationServiceListener(transport, new EnvelopeCodecs(JsonEnvelopeCodec.NAME, true,
+                new JsonEnvelopeCodec(objectMapper), new BinaryEnvelopeCodec(objectMapper)), dispatcher,
+                new RetryTopics(List.of(Duration.ofSeconds(1)), true, Duration.ofSeconds(1), new SimpleMeterRegistry()),
+                transactions,
+                new DedupCache(1024, Duration.ofHours(1), new SimpleMeterRegistry()),
+                new StageMetrics(new SimpleMeterRegistry()), notifications, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        notifications.close();
     }
 
     @Test
     void validOrder_publishesToOrderCompleted() {
-        listener.onOrderCompleted(VALID_ORDER_PAYMENT_COMPLETED);
+        listener.onOrderCompleted(record(VALID_ORDER_PAYMENT_COMPLETED));
 
-        ArgumentCaptor<String> valueCaptor = ArgumentCaptor.forClass(String.class);
-        verify(kafkaTemplate).send(eq("order.completed"), eq("ord-123"), valueCaptor.capture());
+        verify(transport).send(recordCaptor.capture());
+        ProducerRecord<String, byte[]> sent = recordCaptor.getValue();
+        String value = new String(sent.value(), StandardCharsets.UTF_8);
 
-        assertThat(valueCaptor.getValue()).contains("\"eventType\":\"OrderCompleted\"");
-        assertThat(valueCaptor.getValue()).contains("\"orderId\":\"ord-123\"");
+        assertThat(sent.topic()).isEqualTo("order.completed");
+        assertThat(sent.key()).isEqualTo("ord-123");
+        assertThat(value).contains("\"eventType\":\"OrderCompleted\"");
+        assertThat(value).contains("\"orderId\":\"ord-123\"");
     }
 
     @Test
     void invalidEnvelope_publishesToOrderFailed() {
-        listener.onOrderCompleted("{\"eventType\":\"PaymentCompleted\",\"orderId\":\"ord-1\",\"payload\":null}");
+        listener.onOrderCompleted(record("{\"eventType\":\"PaymentCompleted\",\"orderId\":\"ord-1\",\"payload\":null}"));
 
-        ArgumentCaptor<String> valueCaptor = ArgumentCaptor.forClass(String.class);
-        verify(kafkaTemplate).send(eq("order.failed"), eq("ord-1"), valueCaptor.capture());
+        verify(transport).send(recordCaptor.capture());
+        ProducerRecord<String, byte[]> sent = recordCaptor.getValue();
+        String value = new String(sent.value(), StandardCharsets.UTF_8);
 
-        assertThat(valueCaptor.getValue()).contains("\"eventType\":\"OrderNotificationFailed\"");
-        assertThat(valueCaptor.getValue()).contains("NOTIFICATION_FAILED");
+        assertThat(sent.topic()).isEqualTo("order.failed");
+        assertThat(sent.key()).isEqualTo("ord-1");
+        assertThat(value).contains("\"eventType\":\"OrderNotificationFailed\"");
+        assertThat(value).contains("NOTIFICATION_FAILED");
     }
 
     @Test
     void parseError_publishesToOrderFailed() {
-        listener.onOrderCompleted("not json");
+        listener.onOrderCompleted(record("not json"));
+
+        verify(transport).send(recordCaptor.capture());
+        ProducerRecord<String, byte[]> sent = recordCaptor.getValue();
+        String value = new String(sent.value(), StandardCharsets.UTF_8);
+
+        assertThat(sent.topic()).isEqualTo("order.failed");
+        assertThat(sent.key()).isEqualTo("unknown");
+        assertThat(value).contains("\"eventType\":\"OrderNotificationFailed\"");
+        assertThat(value).contains("PARSE_ERROR");
+    }
+
+    @Test
+    void batch_publishesEachOutcomeAndFlushesOnce() {
+        when(transport.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+
+        listener.onOrderCompletedBatch(List.of(record(VALID_ORDER_PAYMENT_COMPLETED), record("not json")));
+
+        verify(transport, times(2)).send(recordCaptor.capture());
+        verify(transport).flush();
+
+        List<ProducerRecord<String, byte[]>> sent = recordCaptor.getAllValues();
+        assertThat(sent.get(0).topic()).isEqualTo("order.completed");
+        assertThat(sent.get(0).key()).isEqualTo("ord-123");
+        assertThat(new String(sent.get(0).value(), StandardCharsets.UTF_8)).contains("\"eventType\":\"OrderCompleted\"");
+        assertThat(sent.get(1).topic()).isEqualTo("order.failed");
+        assertThat(new String(sent.get(1).value(), StandardCharsets.UTF_8)).contains("\"eventType\":\"OrderNotificationFailed\"");
+    }
+
+    @Test
+    void redeliveredRecord_isPublishedOnlyOnce() {
+        listener.onOrderCompleted(record(VALID_ORDER_PAYMENT_COMPLETED));
+        listener.onOrderCompleted(record(VALID_ORDER_PAYMENT_COMPLETED));
 
-        ArgumentCaptor<String> valueCaptor = ArgumentCaptor.forClass(String.class);
-        verify(kafkaTemplate).send(eq("order.failed"), eq("unknown"), valueCaptor.capture());
+        verify(transport, times(1)).send(recordCaptor.capture());
+        assertThat(recordCaptor.getValue().topic()).isEqualTo("order.completed");
+    }
+
+    @Test
+    void ordersOfOneCustomer_areNotifiedInOneDigest() {
+        listener.onOrderCompleted(record(VALID_ORDER_PAYMENT_COMPLETED));
+        listener.onOrderCompleted(record(SECOND_ORDER_PAYMENT_COMPLETED));
+        listener.onOrderCompleted(record("not json"));
+
+        notifications.close();
+
+        assertThat(digests).hasSize(1);
+        assertThat(digests.get(0).customerId()).isEqualTo("cust-1");
+        assertThat(digests.get(0).orders()).extracting(Notification::orderId).containsExactly("ord-123", "ord-124");
+    }
 
-        assertThat(valueCaptor.getValue()).contains("\"eventType\":\"OrderNotificationFailed\"");
-        assertThat(valueCaptor.getValue()).contains("PARSE_ERROR");
+    private static ConsumerRecord<String, byte[]> record(String value) {
+        return new ConsumerRecord<>("order.payment-completed", 0, 0L, null, value.getBytes(StandardCharsets.UTF_8));
     }
 }
@@ -0,0 +1,78 @@
+package notification.dispatch;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NotificationDispatcherTest {
+
+    private final List<Digest> digests = new CopyOnWriteArrayList<>();
+
+    @Test
+    void notificationsWithinWindow_areCoalescedPerCustomer() throws Exception {
+        CountDownLatch sent = new CountDownLatch(2);
+        NotificationDispatcher dispatcher = new NotificationDispatcher(digest -> {
+            digests.add(digest);
+            sent.countDown();
+        }, new SimpleMeterRegistry(), Duration.ofMillis(50), 50, 4);
+        try (dispatcher) {
+            dispatcher.enqueue(notification("cust-1", "ord-1"));
+            dispatcher.enqueue(notification("cust-2", "ord-2"));
+            dispatcher.enqueue(notification("cust-1", "ord-3"));
+
+            assertThat(sent.await(5, TimeUnit.SECONDS)).isTrue();
+        }
+
+        assertThat(digests).hasSize(2);
+        Digest first = digests.stream().filter(d -> "cust-1".equals(d.customerId())).findFirst().orElseThrow();
+        assertThat(first.orders()).extracting(Notification::orderId).containsExactly("ord-1", "ord-3");
+    }
+
+    @Test
+    void fullWindow_isSentBeforeItCloses() throws Exception {
+        CountDownLatch sent = new CountDownLatch(1);
+        try (NotificationDispatcher dispatcher = new NotificationDispatcher(digest -> {
+            digests.add(digest);
+            sent.countDown();
+        }, new SimpleMeterRegistry(), Duration.ofHours(1), 2, 4)) {
+            dispatcher.enqueue(notification("cust-1", "ord-1"));
+            dispatcher.enqueue(notification("cust-1", "ord-2"));
+            dispatcher.enqueue(notification("cust-1", "ord-3"));
+
+            assertThat(sent.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(digests.get(0).orders()).extracting(Notification::orderId).containsExactly("ord-1", "ord-2");
+        }
+
+        assertThat(digests).hasSize(2);
+        assertThat(digests.get(1).orders()).extracting(Notification::orderId).containsExactly("ord-3");
+    }
+
+    @Test
+    void failingSender_doesNotStopLaterDigests() {
+        AtomicInteger calls = new AtomicInteger();
+        try (NotificationDispatcher dispatcher = new NotificationDispatcher(digest -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new IllegalStateException("provider down");
+            }
+            digests.add(digest);
+        }, new SimpleMeterRegistry(), Duration.ZERO, 50, 1)) {
+            dispatcher.enqueue(notification("cust-1", "ord-1"));
+            dispatcher.enqueue(notification("cust-1", "ord-2"));
+        }
+
+        assertThat(calls).hasValue(2);
+        assertThat(digests).hasSize(1);
+    }
+
+    private static Notification notification(String customerId, String orderId) {
+        return new Notification(customerId, orderId, "corr-" + orderId, 100);
+    }
+}
@@ -1,51 +1,178 @@
 package controller;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import dto.CreateOrderRequestDTO;
-import events.OrderEventEnvelope;
+import dto.CreateOrderResponseDTO;
+import dto.OrderStatusResponseDTO;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletResponse;
+import orderapi.OrderCreatedEvents;
+import orderapi.admission.AdmissionLimiter;
+import orderapi.bulk.BulkOrderIngestor;
+import orderapi.durable.GroupCommitSender;
+import orderapi.status.OrderStatusView;
+import orderapi.stream.OrderStatusStream;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.time.Instant;
-import java.util.UUID;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @RestController
 @RequestMapping("/api/v1/orderApi")
 public class OrderApiController {
 
-    private static final String TOPIC_ORDER_CREATED = "order.created";
+    private static final String NDJSON = "application/x-ndjson";
 
-    private final KafkaTemplate<String, String> kafkaTemplate;
-    private final ObjectMapper objectMapper;
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final AdmissionLimiter admission;
+    private final OrderStatusView statusView;
+    private final OrderCreatedEvents orderCreated;
+    private final BulkOrderIngestor bulk;
+    private final OrderStatusStream statusStream;
+    private final GroupCommitSender groupCommit;
+    private final boolean durable;
+    private final long ackTimeoutMillis;
     private final Counter ordersCreatedTotal;
 
-    public OrderApiController(KafkaTemplate<String, String> kafkaTemplate, ObjectMapper objectMapper, MeterRegistry registry) {
+    public OrderApiController(KafkaTemplate<String, byte[]> kafkaTemplate, AdmissionLimiter admission,
+            OrderStatusView statusView, OrderCreatedEvents orderCreated, BulkOrderIngestor bulk,
+            OrderStatusStream statusStream, GroupCommitSender groupCommit, MeterRegistry registry,
+            @Value("${order.create.durable:false}") boolean durable,
+            @Value("${order.create.ack-timeout:10s}") Duration ackTimeout) {
         this.kafkaTemplate = kafkaTemplate;
-        this.objectMapper = objectMapper;
+        this.admission = admission;
+        this.statusView = statusView;
+        this.orderCreated = orderCreated;
+        this.bulk = bulk;
+        this.statusStream = statusStream;
+        this.groupCommit = groupCommit;
+        this.durable = durable;
+        this.ackTimeoutMillis = ackTimeout.toMillis();
         this.ordersCreatedTotal = registry.counter("orders_created_total");
     }
 
+    /**
+     * Publishes {@code OrderCreated} and answers {@code 200} right away. With
+     * {@code order.create.durable=true} the answer waits, without holding the request thread, for
+     * the broker's ack: {@code 202} with the orderId once acked, {@code 503} if the send failed, and
+     * {@code 504} with the orderId if no ack came within {@code order.create.ack-timeout}, in which
+     * case the order may still have been stored. Returns a {@link ResponseEntity}, or a
+     * {@link CompletableFuture} of one in durable mode.
+     */
     @PostMapping("/orders")
-    public void createOrder(@RequestBody CreateOrderRequestDTO request) throws JsonProcessingException {
-        String orderId = UUID.randomUUID().toString();
-        String correlationId = UUID.randomUUID().toString();
-        String timestamp = Instant.now().toString();
-
-        OrderEventEnvelope envelope = new OrderEventEnvelope();
-        envelope.setEventType("OrderCreated");
-        envelope.setOrderId(orderId);
-        envelope.setCorrelationId(correlationId);
-        envelope.setTimestamp(timestamp);
-        envelope.setPayload(request);
-
-        String json = objectMapper.writeValueAsString(envelope);
-        kafkaTemplate.send(TOPIC_ORDER_CREATED, orderId, json);
-        ordersCreatedTotal.increment();
+    public Object createOrder(@RequestBody CreateOrderRequestDTO request) throws IOException {
+        if (!admission.tryAcquire()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, Long.toString(admission.retryAfterSeconds()))
+                    .build();
+        }
+        long admittedAt = System.nanoTime();
+        String orderId;
+        CompletableFuture<?> ack;
+        try {
+            ProducerRecord<String, byte[]> record = orderCreated.newOrder(request);
+            orderId = record.key();
+            ack = (durable ? groupCommit.send(record) : kafkaTemplate.send(record)).whenComplete((result, e) -> {
+                admission.release(admittedAt, e == null);
+                if (e == null) {
+                    statusView.created(orderId);
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            admission.cancel();
+            throw e;
+        }
+        URI location = URI.create("/api/v1/orderApi/orders/" + orderId);
+        if (!durable) {
+            ordersCreatedTotal.increment();
+            return ResponseEntity.ok().location(location).build();
+        }
+        // time out a copy: orTimeout completes the future it is called on, which would keep the
+        // whenComplete above from ever seeing the real ack and so leak the admission slot
+        return ack.copy().orTimeout(ackTimeoutMillis, TimeUnit.MILLISECONDS).<ResponseEntity<?>>handle((result, e) -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause == null) {
+                ordersCreatedTotal.increment();
+                return ResponseEntity.accepted().location(location).body(new CreateOrderResponseDTO(orderId));
+            }
+            if (cause instanceof TimeoutException) {
+                return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(new CreateOrderResponseDTO(orderId));
+            }
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, Long.toString(admission.retryAfterSeconds()))
+                    .build();
+        });
+    }
+
+    /**
+     * Creates every order of an NDJSON stream or JSON array and streams one NDJSON result line per
+     * order back (see {@link BulkOrderIngestor}), which takes an admission slot per order. An upload
+     * that arrives while no slot is free is refused up front.
+     */
+    @PostMapping(path = "/orders/bulk", consumes = {NDJSON, MediaType.APPLICATION_JSON_VALUE})
+    public void createOrders(InputStream body, HttpServletResponse response) throws IOException {
+        if (!admission.tryAcquire()) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(admission.retryAfterSeconds()));
+            return;
+        }
+        // only a check: once the response has started, the ingestor admits each order itself
+        admission.cancel();
+        response.setContentType(NDJSON);
+        bulk.ingest(body, response.getOutputStream());
+    }
+
+    @GetMapping("/orders/{orderId}")
+    public ResponseEntity<OrderStatusResponseDTO> getOrder(@PathVariable String orderId) {
+        return statusView.find(orderId)
+                .map(entry -> {
+                    OrderStatusResponseDTO response = new OrderStatusResponseDTO();
+                    response.setOrderId(entry.orderId());
+                    response.setStatus(entry.status().name());
+                    response.setFailedEvent(entry.failedEvent());
+                    response.setUpdatedAt(entry.updatedAt().toString());
+                    return ResponseEntity.ok(response);
+                })
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Streams the order's status as Server-Sent Events until it completes or fails (see
+     * {@link OrderStatusStream}). Each event's data is the JSON of {@link #getOrder}.
+     */
+    @GetMapping(path = "/orders/{orderId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamOrder(@PathVariable String orderId) {
+        if (statusStream.full()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "5")
+                    .build();
+        }
+        return statusStream.subscribe(orderId)
+                .map(emitter -> ResponseEntity.ok()
+                        .cacheControl(CacheControl.noStore())
+                        // keep nginx-style proxies from buffering the stream
+                        .header("X-Accel-Buffering", "no")
+                        .body(emitter))
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
 }
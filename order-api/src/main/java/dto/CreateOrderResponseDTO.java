@@ -0,0 +1,20 @@
+package dto;
+
+public class CreateOrderResponseDTO {
+    private String orderId;
+
+    public CreateOrderResponseDTO() {
+    }
+
+    public CreateOrderResponseDTO(String orderId) {
+        this.orderId = orderId;
+    }
+
+    public String getOrderId() {
+        return orderId;
+    }
+
+    public void setOrderId(String orderId) {
+        this.orderId = orderId;
+    }
+}
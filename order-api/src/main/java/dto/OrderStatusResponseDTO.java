@@ -0,0 +1,43 @@
+package dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class OrderStatusResponseDTO {
+    private String orderId;
+    private String status;
+    private String failedEvent;
+    private String updatedAt;
+
+    public String getOrderId() {
+        return orderId;
+    }
+
+    public void setOrderId(String orderId) {
+        this.orderId = orderId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getFailedEvent() {
+        return failedEvent;
+    }
+
+    public void setFailedEvent(String failedEvent) {
+        this.failedEvent = failedEvent;
+    }
+
+    public String getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(String updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -1,11 +1,15 @@
 package orderapi;
 
+import events.OrderEventsConfiguration;
+import events.producer.AdaptiveProducerConfiguration;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Import;
 
 @SpringBootApplication
 @ComponentScan(basePackages = {"orderapi", "controller"})
+@Import({OrderEventsConfiguration.class, AdaptiveProducerConfiguration.class})
 public class OrderApiApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,48 @@
+package orderapi;
+
+import dto.CreateOrderRequestDTO;
+import events.OrderEventEnvelope;
+import events.codec.EnvelopeCodecs;
+import events.id.OrderIdGenerator;
+import events.metrics.StageMetrics;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Instant;
+
+/**
+ * Builds the {@code OrderCreated} record of a new order: fresh order and correlation ids, the
+ * request as payload, encoded with the producer codec and stamped with the trace headers. The
+ * record key is the new {@code orderId}.
+ */
+@Component
+public class OrderCreatedEvents {
+
+    public static final String TOPIC_ORDER_CREATED = "order.created";
+    public static final String STAGE = "order-api";
+
+    private final EnvelopeCodecs codecs;
+    private final StageMetrics stageMetrics;
+    private final OrderIdGenerator ids;
+
+    public OrderCreatedEvents(EnvelopeCodecs codecs, StageMetrics stageMetrics, OrderIdGenerator ids) {
+        this.codecs = codecs;
+        this.stageMetrics = stageMetrics;
+        this.ids = ids;
+    }
+
+    public ProducerRecord<String, byte[]> newOrder(CreateOrderRequestDTO request) throws IOException {
+        String orderId = ids.nextString();
+        OrderEventEnvelope envelope = new OrderEventEnvelope();
+        envelope.setEventType("OrderCreated");
+        envelope.setOrderId(orderId);
+        envelope.setCorrelationId(ids.nextString());
+        envelope.setTimestamp(Instant.now().toString());
+        envelope.setPayload(request);
+
+        ProducerRecord<String, byte[]> record = codecs.record(TOPIC_ORDER_CREATED, orderId, envelope);
+        stageMetrics.created(STAGE, record);
+        return record;
+    }
+}
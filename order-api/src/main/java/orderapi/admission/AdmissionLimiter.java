@@ -0,0 +1,172 @@
+package orderapi.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admission control for order creation.
+ * <p>
+ * Caps the number of orders waiting for a produce ack at an adaptive limit ({@link GradientLimit}),
+ * recomputed once per window from the ack latencies seen in that window. Independently, requests
+ * are refused while the producer's record buffer is nearly full, because {@code send} would block
+ * the request thread there. Refused requests should be answered right away with 503 and
+ * {@link #retryAfterSeconds()}.
+ */
+@Component
+public class AdmissionLimiter {
+
+    private static final long BUFFER_SAMPLE_INTERVAL_NANOS = Duration.ofMillis(50).toNanos();
+
+    private final KafkaTemplate<?, ?> kafkaTemplate;
+    private final GradientLimit gradientLimit;
+    private final boolean enabled;
+    private final double maxBufferUsage;
+    private final long windowNanos;
+    private final long retryAfterSeconds;
+    private final Counter rejectedTotal;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+    private volatile double bufferUsage;
+    private final AtomicLong nextBufferSample = new AtomicLong(System.nanoTime());
+
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+    private final LongAdder windowRttSum = new LongAdder();
+    private final LongAdder windowSamples = new LongAdder();
+    private final AtomicInteger windowMaxInFlight = new AtomicInteger();
+    private final AtomicBoolean windowDropped = new AtomicBoolean();
+
+    public AdmissionLimiter(KafkaTemplate<?, ?> kafkaTemplate, MeterRegistry registry,
+            @Value("${order.admission.enabled:true}") boolean enabled,
+            @Value("${order.admission.initial-limit:50}") int initialLimit,
+            @Value("${order.admission.min-limit:8}") int minLimit,
+            @Value("${order.admission.max-limit:2000}") int maxLimit,
+            @Value("${order.admission.window:100ms}") Duration window,
+            @Value("${order.admission.max-buffer-usage:0.9}") double maxBufferUsage,
+            @Value("${order.admission.retry-after:1s}") Duration retryAfter) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.gradientLimit = new GradientLimit(initialLimit, minLimit, maxLimit);
+        this.enabled = enabled;
+        this.limit = initialLimit;
+        this.windowNanos = window.toNanos();
+        this.maxBufferUsage = maxBufferUsage;
+        this.retryAfterSeconds = Math.max(1, retryAfter.toSeconds());
+        this.rejectedTotal = registry.counter("orders_admission_rejected_total");
+        Gauge.builder("orders_admission_limit", this, l -> l.limit).register(registry);
+        Gauge.builder("orders_admission_in_flight", inFlight, AtomicInteger::get).register(registry);
+        Gauge.builder("orders_producer_buffer_usage", this, l -> l.bufferUsage).register(registry);
+    }
+
+    /**
+     * Takes a slot if the current limit and the producer buffer allow it. Every {@code true} must
+     * be followed by exactly one {@link #release}.
+     */
+    public boolean tryAcquire() {
+        if (!enabled) {
+            return true;
+        }
+        sampleBufferUsage();
+        if (bufferUsage >= maxBufferUsage) {
+            rejectedTotal.increment();
+            return false;
+        }
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= limit) {
+                rejectedTotal.increment();
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        windowMaxInFlight.accumulateAndGet(current + 1, Math::max);
+        return true;
+    }
+
+    /**
+     * Returns a slot once the send has been acknowledged or has failed.
+     *
+     * @param startNanos {@link System#nanoTime()} taken right after {@link #tryAcquire()}
+     */
+    public void release(long startNanos, boolean acked) {
+        if (!enabled) {
+            return;
+        }
+        inFlight.decrementAndGet();
+        long now = System.nanoTime();
+        if (acked) {
+            windowRttSum.add(now - startNanos);
+            windowSamples.increment();
+        } else {
+            windowDropped.set(true);
+        }
+        long start = windowStart.get();
+        if (now - start >= windowNanos && windowStart.compareAndSet(start, now)) {
+            closeWindow();
+        }
+    }
+
+    /**
+     * Returns a slot without a latency sample, for requests that failed before reaching the producer.
+     */
+    public void cancel() {
+        if (enabled) {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    public long retryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    private void closeWindow() {
+        long samples = windowSamples.sumThenReset();
+        long rttSum = windowRttSum.sumThenReset();
+        int maxInFlight = windowMaxInFlight.getAndSet(inFlight.get());
+        boolean dropped = windowDropped.getAndSet(false);
+        if (dropped || samples > 0) {
+            limit = gradientLimit.update(samples > 0 ? (double) rttSum / samples : 0, maxInFlight, dropped);
+        }
+    }
+
+    private void sampleBufferUsage() {
+        long next = nextBufferSample.get();
+        long now = System.nanoTime();
+        if (now - next < 0 || !nextBufferSample.compareAndSet(next, now + BUFFER_SAMPLE_INTERVAL_NANOS)) {
+            return;
+        }
+        double total = 0;
+        double available = 0;
+        for (Metric metric : kafkaTemplate.metrics().values()) {
+            MetricName name = metric.metricName();
+            if (!"producer-metrics".equals(name.group())) {
+                continue;
+            }
+            if ("buffer-total-bytes".equals(name.name())) {
+                total += value(metric);
+            } else if ("buffer-available-bytes".equals(name.name())) {
+                available += value(metric);
+            }
+        }
+        bufferUsage = total > 0 ? 1 - available / total : 0;
+    }
+
+    private static double value(Metric metric) {
+        return metric.metricValue() instanceof Number n ? n.doubleValue() : 0;
+    }
+}
@@ -0,0 +1,59 @@
+package orderapi.admission;
+
+/**
+ * Gradient concurrency limit: the limit follows the ratio between the long-term and the current
+ * produce-ack latency. While latency stays within {@code tolerance} of its long-term average the
+ * limit grows by about {@code sqrt(limit)} per window; once acks slow down the gradient drops
+ * below one and the limit shrinks proportionally. A window with a failed send backs off by 10%.
+ */
+final class GradientLimit {
+
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final double LONG_RTT_ALPHA = 2.0 / (600 + 1);
+    private static final double BACKOFF = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private double limit;
+    private double longRtt;
+
+    GradientLimit(int initialLimit, int minLimit, int maxLimit) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * @param rttNanos    average ack latency observed in the window
+     * @param maxInFlight highest concurrency reached in the window
+     * @param dropped     whether any send in the window failed
+     * @return the new limit
+     */
+    synchronized int update(double rttNanos, int maxInFlight, boolean dropped) {
+        if (dropped) {
+            limit = Math.max(minLimit, limit * BACKOFF);
+            return (int) limit;
+        }
+        if (rttNanos <= 0) {
+            return (int) limit;
+        }
+        if (longRtt == 0) {
+            longRtt = rttNanos;
+        } else {
+            longRtt = longRtt * (1 - LONG_RTT_ALPHA) + rttNanos * LONG_RTT_ALPHA;
+        }
+        // Let the baseline come down quickly once a slow period is over.
+        if (longRtt / rttNanos > 2) {
+            longRtt *= 0.95;
+        }
+        // Not using half the limit: the latency says nothing about a higher one.
+        if (maxInFlight < limit / 2) {
+            return (int) limit;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / rttNanos));
+        double newLimit = limit * gradient + Math.sqrt(limit);
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + newLimit * SMOOTHING));
+        return (int) limit;
+    }
+}
@@ -0,0 +1,247 @@
+package orderapi.bulk;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import dto.CreateOrderRequestDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import orderapi.OrderCreatedEvents;
+import orderapi.admission.AdmissionLimiter;
+import orderapi.status.OrderStatusView;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Creates the orders of a bulk upload while it is still arriving.
+ * <p>
+ * The body is NDJSON (one order object per line) or a JSON array of order objects, read token by
+ * token with the streaming parser. Each order is copied into a token buffer, bound to
+ * {@link CreateOrderRequestDTO} and handed to the producer right away, so the producer batches
+ * them as usual. Every {@code order.bulk.batch-size} orders the previous batch's acks are awaited
+ * and its results written, one NDJSON line per order in upload order:
+ * {@code {"line":1,"orderId":"..."}} or {@code {"line":2,"error":"..."}}. At most two batches are
+ * held at a time, whatever the size of the upload.
+ * <p>
+ * Each order takes its own {@link AdmissionLimiter} slot, returned with its ack latency, so bulk
+ * load counts against the limit like single orders do. When no slot is free the upload waits for
+ * its own oldest outstanding ack, or for other requests to finish, for up to
+ * {@code order.bulk.send-timeout}; if still refused it ends with an {@code OVERLOADED} line after
+ * the results of the orders before it.
+ * <p>
+ * An order that is valid JSON but cannot be bound, or whose send fails, is reported and skipped.
+ * Malformed JSON ends the upload: the orders before it are still created and reported, followed by
+ * a {@code PARSE_ERROR} line.
+ */
+@Component
+public class BulkOrderIngestor {
+
+    private static final long ADMISSION_RETRY_MILLIS = 10;
+
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final AdmissionLimiter admission;
+    private final OrderCreatedEvents orderCreated;
+    private final OrderStatusView statusView;
+    private final JsonFactory factory;
+    private final ObjectReader reader;
+    private final int batchSize;
+    private final Duration sendTimeout;
+    private final Counter ordersCreatedTotal;
+    private final Counter invalidTotal;
+
+    public BulkOrderIngestor(KafkaTemplate<String, byte[]> kafkaTemplate, AdmissionLimiter admission,
+            OrderCreatedEvents orderCreated, OrderStatusView statusView, ObjectMapper objectMapper,
+            MeterRegistry registry,
+            @Value("${order.bulk.batch-size:500}") int batchSize,
+            @Value("${order.bulk.send-timeout:30s}") Duration sendTimeout) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.admission = admission;
+        this.orderCreated = orderCreated;
+        this.statusView = statusView;
+        this.factory = objectMapper.getFactory();
+        this.reader = objectMapper.readerFor(CreateOrderRequestDTO.class);
+        this.batchSize = batchSize;
+        this.sendTimeout = sendTimeout;
+        this.ordersCreatedTotal = registry.counter("orders_created_total");
+        this.invalidTotal = registry.counter("orders_bulk_invalid_total");
+    }
+
+    /** Result of one uploaded order: its publish ack, or the reason it was not published. */
+    private record Line(long line, String orderId, CompletableFuture<?> ack, String error) {
+    }
+
+    public void ingest(InputStream body, OutputStream out) throws IOException {
+        try (JsonParser parser = factory.createParser(body);
+             JsonGenerator generator = factory.createGenerator(out)) {
+            generator.setRootValueSeparator(null);
+            List<Line> previous = List.of();
+            List<Line> current = new ArrayList<>(batchSize);
+            long line = 0;
+            String error = null;
+            try {
+                JsonToken token = parser.nextToken();
+                boolean array = token == JsonToken.START_ARRAY;
+                if (array) {
+                    token = parser.nextToken();
+                }
+                while (token != null && !(array && token == JsonToken.END_ARRAY)) {
+                    TokenBuffer order = new TokenBuffer(parser);
+                    order.copyCurrentStructure(parser);
+                    if (!admit(previous, current)) {
+                        error = "OVERLOADED";
+                        break;
+                    }
+                    current.add(create(++line, order));
+                    if (current.size() >= batchSize) {
+                        write(previous, generator);
+                        previous = current;
+                        current = new ArrayList<>(batchSize);
+                    }
+                    token = parser.nextToken();
+                }
+            } catch (JsonParseException e) {
+                error = "PARSE_ERROR: " + e.getOriginalMessage();
+            }
+            write(previous, generator);
+            write(current, generator);
+            if (error != null) {
+                writeLine(generator, line + 1, null, error);
+                generator.flush();
+            }
+        }
+    }
+
+    /**
+     * Takes an admission slot for the next order, waiting up to the send timeout for one to be
+     * returned. Returns {@code false} if none was.
+     */
+    private boolean admit(List<Line> previous, List<Line> current) throws IOException {
+        long deadline = System.nanoTime() + sendTimeout.toNanos();
+        while (!admission.tryAcquire()) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            CompletableFuture<?> oldest = oldestPending(previous);
+            if (oldest == null) {
+                oldest = oldestPending(current);
+            }
+            try {
+                if (oldest != null) {
+                    oldest.get(remaining, TimeUnit.NANOSECONDS);
+                } else {
+                    Thread.sleep(Math.min(ADMISSION_RETRY_MILLIS, TimeUnit.NANOSECONDS.toMillis(remaining) + 1));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for admission", e);
+            } catch (ExecutionException | TimeoutException e) {
+                // the ack's outcome is reported by write
+            }
+        }
+        return true;
+    }
+
+    private static CompletableFuture<?> oldestPending(List<Line> batch) {
+        for (Line line : batch) {
+            if (line.ack() != null && !line.ack().isDone()) {
+                return line.ack();
+            }
+        }
+        return null;
+    }
+
+    /** Binds and publishes one order; the caller has taken an admission slot for it. */
+    private Line create(long line, TokenBuffer order) throws IOException {
+        long admittedAt = System.nanoTime();
+        CreateOrderRequestDTO request;
+        try (JsonParser orderParser = order.asParser()) {
+            request = reader.readValue(orderParser);
+        } catch (JsonProcessingException e) {
+            admission.cancel();
+            invalidTotal.increment();
+            return new Line(line, null, null, "INVALID_ORDER: " + e.getOriginalMessage());
+        }
+        if (request == null) {
+            admission.cancel();
+            invalidTotal.increment();
+            return new Line(line, null, null, "INVALID_ORDER: null");
+        }
+        String orderId;
+        CompletableFuture<?> ack;
+        try {
+            ProducerRecord<String, byte[]> record = orderCreated.newOrder(request);
+            orderId = record.key();
+            ack = kafkaTemplate.send(record)
+                    .whenComplete((result, e) -> admission.release(admittedAt, e == null))
+                    .thenRun(() -> statusView.created(orderId));
+        } catch (IOException e) {
+            admission.cancel();
+            throw e;
+        } catch (RuntimeException e) {
+            // e.g. the producer is closed or its buffer stayed full for max.block.ms
+            admission.cancel();
+            return new Line(line, null, null, "PUBLISH_FAILED: " + e.getMessage());
+        }
+        ordersCreatedTotal.increment();
+        return new Line(line, orderId, ack, null);
+    }
+
+    /** Waits for the batch's acks and writes one result line per order. */
+    private void write(List<Line> batch, JsonGenerator generator) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long deadline = System.nanoTime() + sendTimeout.toNanos();
+        for (Line line : batch) {
+            if (line.ack() == null) {
+                writeLine(generator, line.line(), null, line.error());
+                continue;
+            }
+            String error = null;
+            try {
+                line.ack().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for order acks", e);
+            } catch (ExecutionException e) {
+                error = "PUBLISH_FAILED: " + e.getCause().getMessage();
+            } catch (TimeoutException e) {
+                error = "PUBLISH_TIMEOUT";
+            }
+            writeLine(generator, line.line(), error == null ? line.orderId() : null, error);
+        }
+        generator.flush();
+    }
+
+    private static void writeLine(JsonGenerator generator, long line, String orderId, String error) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("line", line);
+        if (orderId != null) {
+            generator.writeStringField("orderId", orderId);
+        } else {
+            generator.writeStringField("error", error);
+        }
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+}
@@ -0,0 +1,113 @@
+package orderapi.durable;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends records whose callers wait for the broker's ack, committing concurrent sends as a group.
+ * <p>
+ * {@link #send} hands the record to the producer and returns at once; the future completes when
+ * the broker acknowledges it. A single flusher thread flushes the producer whenever records are
+ * waiting, so they leave without sitting out {@code linger.ms}, and the records sent while one
+ * flush is in progress go out together in the next one: under load a flush covers many requests,
+ * and a lone request still goes out immediately. No caller thread ever blocks on the flush.
+ */
+@Component
+public class GroupCommitSender implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(GroupCommitSender.class);
+
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final Timer ackWait;
+    private final DistributionSummary groupSize;
+    private final Timer flushTime;
+    private final Object lock = new Object();
+    /** Records sent since the last flush began; guarded by {@link #lock}. */
+    private int pending;
+    private boolean closed;
+    private final ExecutorService flusher = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "order-group-commit");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public GroupCommitSender(KafkaTemplate<String, byte[]> kafkaTemplate, MeterRegistry registry) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.ackWait = Timer.builder("orders_ack_wait")
+                .description("Time from handing a durable order to the producer to its ack")
+                .publishPercentileHistogram()
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(registry);
+        this.groupSize = DistributionSummary.builder("orders_group_commit_size")
+                .description("Durable orders sent per producer flush")
+                .register(registry);
+        this.flushTime = Timer.builder("orders_group_commit_flush_time")
+                .description("Time a producer flush of durable orders takes")
+                .register(registry);
+        flusher.execute(this::flushLoop);
+    }
+
+    /** Sends the record; the future completes with the broker's ack or the send's failure. */
+    public CompletableFuture<SendResult<String, byte[]>> send(ProducerRecord<String, byte[]> record) {
+        long start = System.nanoTime();
+        CompletableFuture<SendResult<String, byte[]>> ack = kafkaTemplate.send(record);
+        synchronized (lock) {
+            if (pending++ == 0) {
+                lock.notify();
+            }
+        }
+        return ack.whenComplete((result, e) -> ackWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+    }
+
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            lock.notify();
+        }
+        flusher.shutdown();
+    }
+
+    private void flushLoop() {
+        while (true) {
+            int group;
+            synchronized (lock) {
+                while (pending == 0 && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                if (closed) {
+                    return;
+                }
+                group = pending;
+                pending = 0;
+            }
+            long start = System.nanoTime();
+            try {
+                kafkaTemplate.flush();
+            } catch (RuntimeException e) {
+                // the failed sends complete their futures exceptionally themselves
+                log.warn("Group commit flush failed: {}", e.getMessage());
+            }
+            flushTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            groupSize.record(group);
+        }
+    }
+}
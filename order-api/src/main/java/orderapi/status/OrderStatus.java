@@ -0,0 +1,24 @@
+package orderapi.status;
+
+/**
+ * Pipeline position of an order, in pipeline order. {@link #COMPLETED} and {@link #FAILED} are
+ * terminal.
+ */
+public enum OrderStatus {
+    CREATED,
+    VALIDATED,
+    INVENTORY_RESERVED,
+    PAYMENT_COMPLETED,
+    COMPLETED,
+    FAILED;
+
+    private static final OrderStatus[] VALUES = values();
+
+    public boolean isTerminal() {
+        return this == COMPLETED || this == FAILED;
+    }
+
+    static OrderStatus of(int ordinal) {
+        return VALUES[ordinal];
+    }
+}
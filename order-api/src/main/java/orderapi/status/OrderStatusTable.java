@@ -0,0 +1,121 @@
+package orderapi.status;
+
+import java.util.function.LongPredicate;
+
+/**
+ * Open-addressing hash table from a 128-bit key (the two halves of an order UUID) to a non-zero
+ * {@code long}. Keys and values live in flat {@code long} arrays, about 24 bytes per slot and no
+ * object per entry. Capacity is fixed: the table holds at most {@code maxSize} entries at a load
+ * factor of 0.75 or less. Deletion shifts the following entries back instead of leaving
+ * tombstones, so lookups stay short after many evictions.
+ * <p>
+ * Not thread-safe. {@link #get} never fails or loops on a table modified concurrently, it may only
+ * return a wrong value, so callers can read optimistically and validate afterwards.
+ */
+final class OrderStatusTable {
+
+    private final long[] keys;
+    private final long[] values;
+    private final int mask;
+    private final int maxSize;
+    private int size;
+
+    OrderStatusTable(int maxSize) {
+        int slots = Integer.highestOneBit(Math.max(2, (int) Math.min(1 << 29, maxSize * 4L / 3 + 1)) - 1) << 1;
+        this.keys = new long[slots * 2];
+        this.values = new long[slots];
+        this.mask = slots - 1;
+        this.maxSize = Math.min(maxSize, slots * 3 / 4);
+    }
+
+    /** Value stored for the key, or 0 if absent. */
+    long get(long hi, long lo) {
+        int slot = home(hi, lo);
+        for (int probes = 0; probes <= mask; probes++) {
+            long value = values[slot];
+            if (value == 0) {
+                return 0;
+            }
+            if (keys[2 * slot] == hi && keys[2 * slot + 1] == lo) {
+                return value;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    /**
+     * Stores a non-zero value. Returns {@code false} without storing if the key is new and the
+     * table already holds {@code maxSize} entries.
+     */
+    boolean put(long hi, long lo, long value) {
+        int slot = home(hi, lo);
+        while (values[slot] != 0) {
+            if (keys[2 * slot] == hi && keys[2 * slot + 1] == lo) {
+                values[slot] = value;
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size >= maxSize) {
+            return false;
+        }
+        keys[2 * slot] = hi;
+        keys[2 * slot + 1] = lo;
+        values[slot] = value;
+        size++;
+        return true;
+    }
+
+    /** Removes every entry whose value matches and returns how many were removed. */
+    int removeIf(LongPredicate predicate) {
+        int removed = 0;
+        for (int slot = 0; slot <= mask; slot++) {
+            // removing shifts a later entry into this slot, which has to be checked as well
+            while (values[slot] != 0 && predicate.test(values[slot])) {
+                removeAt(slot);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int maxSize() {
+        return maxSize;
+    }
+
+    private void removeAt(int hole) {
+        int slot = hole;
+        while (true) {
+            slot = (slot + 1) & mask;
+            if (values[slot] == 0) {
+                break;
+            }
+            int home = home(keys[2 * slot], keys[2 * slot + 1]);
+            // the entry may move into the hole unless its home lies cyclically in (hole, slot]
+            boolean stays = hole <= slot ? hole < home && home <= slot : hole < home || home <= slot;
+            if (!stays) {
+                keys[2 * hole] = keys[2 * slot];
+                keys[2 * hole + 1] = keys[2 * slot + 1];
+                values[hole] = values[slot];
+                hole = slot;
+            }
+        }
+        keys[2 * hole] = 0;
+        keys[2 * hole + 1] = 0;
+        values[hole] = 0;
+        size--;
+    }
+
+    private int home(long hi, long lo) {
+        long h = hi * 0x9E3779B97F4A7C15L ^ lo;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+}
@@ -0,0 +1,281 @@
+package orderapi.status;
+
+import events.OrderEventEnvelope;
+import events.codec.EnvelopeCodecs;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.record.RecordBatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * Where every recent order is in the pipeline, built from the stage topics.
+ * <p>
+ * Each order is one slot of an {@link OrderStatusTable} keyed by its UUID; the status, the failure
+ * event and the time of the last change are packed into the slot's {@code long}. A status only
+ * moves forward and terminal statuses never change, so events consumed out of order across topics
+ * do not regress an order. Lookups read without locking and retry under the read lock only if a
+ * poll was applied meanwhile.
+ * <p>
+ * Memory is bounded by {@code order.status.max-orders}. Terminal orders are evicted
+ * {@code order.status.terminal-ttl} after their last change, all others after
+ * {@code order.status.ttl}, by a sweep every {@code order.status.sweep-interval}. A new order that
+ * finds the table full triggers an extra sweep, at most one per interval; until the next sweep,
+ * updates for new orders are dropped and counted. Each instance consumes with its own consumer
+ * group, so every instance sees every order.
+ * <p>
+ * Every change of an order's entry is handed to the {@link #onChange} listener after the poll has
+ * been applied, outside the lock.
+ */
+@Component
+public class OrderStatusView implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderStatusView.class);
+
+    private static final String TOPIC_ORDER_FAILED = "order.failed";
+    private static final List<String> FAILURE_EVENTS = List.of("OrderValidationFailed", "OrderInventoryFailed",
+            "OrderPaymentFailed", "OrderNotificationFailed", "OrderTimedOut");
+
+    private final EnvelopeCodecs codecs;
+    private final OrderStatusTable table;
+    private final StampedLock lock = new StampedLock();
+    private final long terminalTtlMillis;
+    private final long ttlMillis;
+    private final long sweepIntervalMillis;
+    /** Time of the last sweep; guarded by the write lock. */
+    private long lastSweep;
+    private final Counter evictedTotal;
+    private final Counter droppedTotal;
+    private volatile Consumer<Entry> changeListener;
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "order-status-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public OrderStatusView(EnvelopeCodecs codecs, MeterRegistry registry,
+            @Value("${order.status.max-orders:500000}") int maxOrders,
+            @Value("${order.status.terminal-ttl:1h}") Duration terminalTtl,
+            @Value("${order.status.ttl:24h}") Duration ttl,
+            @Value("${order.status.sweep-interval:30s}") Duration sweepInterval) {
+        this.codecs = codecs;
+        this.table = new OrderStatusTable(maxOrders);
+        this.terminalTtlMillis = terminalTtl.toMillis();
+        this.ttlMillis = ttl.toMillis();
+        this.sweepIntervalMillis = sweepInterval.toMillis();
+        this.evictedTotal = registry.counter("order_status_evicted_total");
+        this.droppedTotal = registry.counter("order_status_dropped_total");
+        Gauge.builder("order_status_entries", table, OrderStatusTable::size).register(registry);
+        sweeper.scheduleWithFixedDelay(this::sweep, sweepInterval.toMillis(), sweepInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public record Entry(String orderId, OrderStatus status, String failedEvent, Instant updatedAt) {
+    }
+
+    @KafkaListener(topics = {"order.validated", "order.inventory-reserved", "order.payment-completed",
+            "order.completed", TOPIC_ORDER_FAILED},
+            groupId = "${order.status.group-id:order-api-status-${random.uuid}}", batch = "true",
+            autoStartup = "${order.status.enabled:true}",
+            properties = "auto.offset.reset=${order.status.offset-reset:earliest}")
+    public void onEvents(List<ConsumerRecord<String, byte[]>> records) {
+        List<Update> updates = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, byte[]> record : records) {
+            Update update = update(record);
+            if (update != null) {
+                updates.add(update);
+            }
+        }
+        Consumer<Entry> listener = changeListener;
+        List<Update> changed = listener != null ? new ArrayList<>() : null;
+        long stamp = lock.writeLock();
+        try {
+            for (Update update : updates) {
+                if (apply(update) && changed != null) {
+                    changed.add(update);
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        if (changed != null) {
+            changed.forEach(update -> listener.accept(entry(update)));
+        }
+    }
+
+    /** Records an order accepted by this instance, before any stage has seen it. */
+    public void created(String orderId) {
+        UUID id = parse(orderId);
+        if (id == null) {
+            return;
+        }
+        Update update = new Update(id, OrderStatus.CREATED, 0, System.currentTimeMillis());
+        boolean changed;
+        long stamp = lock.writeLock();
+        try {
+            changed = apply(update);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        Consumer<Entry> listener = changeListener;
+        if (changed && listener != null) {
+            listener.accept(entry(update));
+        }
+    }
+
+    /** Sets the listener told about every change of an order's entry; called on the changing thread. */
+    public void onChange(Consumer<Entry> listener) {
+        this.changeListener = listener;
+    }
+
+    public Optional<Entry> find(String orderId) {
+        UUID id = parse(orderId);
+        if (id == null) {
+            return Optional.empty();
+        }
+        long stamp = lock.tryOptimisticRead();
+        long value = table.get(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                value = table.get(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        if (value == 0) {
+            return Optional.empty();
+        }
+        int failure = failure(value);
+        return Optional.of(new Entry(orderId, status(value), failure > 0 ? FAILURE_EVENTS.get(failure - 1) : null,
+                Instant.ofEpochMilli(updatedAt(value))));
+    }
+
+    @Override
+    public void close() {
+        sweeper.shutdownNow();
+    }
+
+    /** Evicts expired orders; returns how many were evicted. */
+    int sweep() {
+        long stamp = lock.writeLock();
+        try {
+            return evictExpired(System.currentTimeMillis());
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /** Caller holds the write lock. */
+    private int evictExpired(long now) {
+        lastSweep = now;
+        int evicted = table.removeIf(value -> now - updatedAt(value) > (status(value).isTerminal() ? terminalTtlMillis : ttlMillis));
+        evictedTotal.increment(evicted);
+        return evicted;
+    }
+
+    /** One consumed event, reduced to what the table stores. {@code failure} is 1-based, 0 if none. */
+    private record Update(UUID orderId, OrderStatus status, int failure, long timestamp) {
+    }
+
+    private Update update(ConsumerRecord<String, byte[]> record) {
+        String orderId = record.key();
+        int failure = 0;
+        if (TOPIC_ORDER_FAILED.equals(record.topic()) || orderId == null) {
+            try {
+                OrderEventEnvelope envelope = codecs.decode(record.headers(), record.value());
+                orderId = envelope.getOrderId();
+                failure = FAILURE_EVENTS.indexOf(envelope.getEventType()) + 1;
+            } catch (IOException | RuntimeException e) {
+                log.debug("Skipping undecodable {} record: {}", record.topic(), e.getMessage());
+                return null;
+            }
+        }
+        UUID id = parse(orderId);
+        if (id == null) {
+            return null;
+        }
+        long timestamp = record.timestamp() != RecordBatch.NO_TIMESTAMP ? record.timestamp() : System.currentTimeMillis();
+        return new Update(id, status(record.topic()), failure, timestamp);
+    }
+
+    private static Entry entry(Update update) {
+        return new Entry(update.orderId().toString(), update.status(),
+                update.failure() > 0 ? FAILURE_EVENTS.get(update.failure() - 1) : null,
+                Instant.ofEpochMilli(update.timestamp()));
+    }
+
+    /** Caller holds the write lock. Returns whether the entry changed. */
+    private boolean apply(Update update) {
+        long hi = update.orderId().getMostSignificantBits();
+        long lo = update.orderId().getLeastSignificantBits();
+        long current = table.get(hi, lo);
+        if (current != 0) {
+            OrderStatus status = status(current);
+            if (status.isTerminal() || (update.status() != OrderStatus.FAILED && update.status().compareTo(status) <= 0)) {
+                return false;
+            }
+        }
+        long value = update.timestamp() << 8 | (long) update.failure() << 4 | update.status().ordinal();
+        if (table.put(hi, lo, value)) {
+            return true;
+        }
+        // a sweep scans the whole table, so a full table of live orders must not trigger one per update
+        long now = System.currentTimeMillis();
+        if (now - lastSweep < sweepIntervalMillis || evictExpired(now) == 0 || !table.put(hi, lo, value)) {
+            droppedTotal.increment();
+            return false;
+        }
+        return true;
+    }
+
+    private static OrderStatus status(String topic) {
+        return switch (topic) {
+            case "order.validated" -> OrderStatus.VALIDATED;
+            case "order.inventory-reserved" -> OrderStatus.INVENTORY_RESERVED;
+            case "order.payment-completed" -> OrderStatus.PAYMENT_COMPLETED;
+            case "order.completed" -> OrderStatus.COMPLETED;
+            default -> OrderStatus.FAILED;
+        };
+    }
+
+    private static OrderStatus status(long value) {
+        return OrderStatus.of((int) (value & 0xF));
+    }
+
+    private static int failure(long value) {
+        return (int) (value >>> 4) & 0xF;
+    }
+
+    private static long updatedAt(long value) {
+        return value >>> 8;
+    }
+
+    private static UUID parse(String orderId) {
+        if (orderId == null) {
+            return null;
+        }
+        try {
+            return UUID.fromString(orderId);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
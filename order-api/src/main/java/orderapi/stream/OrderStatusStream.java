@@ -0,0 +1,262 @@
+package orderapi.stream;
+
+import dto.OrderStatusResponseDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import orderapi.status.OrderStatus;
+import orderapi.status.OrderStatusView;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongFunction;
+
+/**
+ * Pushes status changes of orders to Server-Sent Events subscribers.
+ * <p>
+ * Changes come from the {@link OrderStatusView}, so all connections share its one consumer.
+ * Subscribers are indexed by orderId and a change costs one map lookup, whatever the number of
+ * connections. A new subscriber gets the order's current status first, then every later change
+ * that moves it forward; after {@link OrderStatus#COMPLETED} or {@link OrderStatus#FAILED} the
+ * stream ends.
+ * <p>
+ * An idle connection is an async servlet request and holds no thread. Each subscriber has its own
+ * queue of at most {@code order.stream.max-queued} events, written by a virtual thread only while
+ * the queue is non-empty, so a slow client never holds up the consumer or other clients; a
+ * subscriber whose queue overflows is disconnected. Every {@code order.stream.heartbeat} a comment
+ * is sent on each connection to keep proxies from closing it and to find dead clients. Connections
+ * end after {@code order.stream.timeout} (clients reconnect and get the current status again), and
+ * at most {@code order.stream.max-subscribers} are open at a time.
+ */
+@Component
+public class OrderStatusStream implements AutoCloseable {
+
+    /** Queued in place of an event to send a heartbeat comment. */
+    private static final Object HEARTBEAT = new Object();
+
+    private final OrderStatusView statusView;
+    private final int maxSubscribers;
+    private final int maxQueued;
+    private final long timeoutMillis;
+    private final LongFunction<SseEmitter> emitters;
+    private final Executor writers;
+    private final Map<String, CopyOnWriteArrayList<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger count = new AtomicInteger();
+    private final Counter eventsTotal;
+    private final Counter slowDroppedTotal;
+    private final ScheduledExecutorService heartbeats = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "order-stream-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public OrderStatusStream(OrderStatusView statusView, MeterRegistry registry,
+            @Value("${order.stream.max-subscribers:50000}") int maxSubscribers,
+            @Value("${order.stream.max-queued:8}") int maxQueued,
+            @Value("${order.stream.heartbeat:30s}") Duration heartbeat,
+            @Value("${order.stream.timeout:30m}") Duration timeout) {
+        this(statusView, registry, maxSubscribers, maxQueued, heartbeat, timeout, SseEmitter::new,
+                Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    OrderStatusStream(OrderStatusView statusView, MeterRegistry registry, int maxSubscribers, int maxQueued,
+            Duration heartbeat, Duration timeout, LongFunction<SseEmitter> emitters, Executor writers) {
+        this.statusView = statusView;
+        this.maxSubscribers = maxSubscribers;
+        this.maxQueued = maxQueued;
+        this.timeoutMillis = timeout.toMillis();
+        this.emitters = emitters;
+        this.writers = writers;
+        this.eventsTotal = registry.counter("order_stream_events_total");
+        this.slowDroppedTotal = registry.counter("order_stream_slow_dropped_total");
+        Gauge.builder("order_stream_subscribers", count, AtomicInteger::get).register(registry);
+        statusView.onChange(this::publish);
+        heartbeats.scheduleWithFixedDelay(this::heartbeat, heartbeat.toMillis(), heartbeat.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /** Whether {@code order.stream.max-subscribers} connections are open. */
+    public boolean full() {
+        return count.get() >= maxSubscribers;
+    }
+
+    /**
+     * Opens a stream of the order's status, starting with its current one if the order is known
+     * yet. Empty if {@code orderId} is not a UUID.
+     */
+    public Optional<SseEmitter> subscribe(String orderId) {
+        String key = canonical(orderId);
+        if (key == null) {
+            return Optional.empty();
+        }
+        SseEmitter emitter = emitters.apply(timeoutMillis);
+        Subscriber subscriber = new Subscriber(key, emitter);
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(e -> remove(subscriber));
+        count.incrementAndGet();
+        subscribers.compute(key, (k, list) -> {
+            CopyOnWriteArrayList<Subscriber> added = list != null ? list : new CopyOnWriteArrayList<>();
+            added.add(subscriber);
+            return added;
+        });
+        // subscribe before reading, so no change falls between the two; the subscriber drops
+        // whichever of the current status and a concurrent change comes second and is not newer
+        statusView.find(key).ifPresent(subscriber::offer);
+        return Optional.of(emitter);
+    }
+
+    @Override
+    public void close() {
+        heartbeats.shutdownNow();
+        subscribers.values().forEach(list -> list.forEach(subscriber -> subscriber.emitter.complete()));
+    }
+
+    void publish(OrderStatusView.Entry entry) {
+        CopyOnWriteArrayList<Subscriber> list = subscribers.get(entry.orderId());
+        if (list != null) {
+            list.forEach(subscriber -> subscriber.offer(entry));
+        }
+    }
+
+    void heartbeat() {
+        subscribers.values().forEach(list -> list.forEach(subscriber -> subscriber.offer(HEARTBEAT)));
+    }
+
+    private void remove(Subscriber subscriber) {
+        if (!subscriber.close()) {
+            return;
+        }
+        count.decrementAndGet();
+        subscribers.computeIfPresent(subscriber.orderId, (key, list) -> {
+            list.remove(subscriber);
+            return list.isEmpty() ? null : list;
+        });
+    }
+
+    private static String canonical(String orderId) {
+        try {
+            return UUID.fromString(orderId).toString();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /** One connection: its queue of events and whether a writer is draining it; guarded by itself. */
+    private final class Subscriber {
+
+        final String orderId;
+        final SseEmitter emitter;
+        private final ArrayDeque<Object> queue = new ArrayDeque<>();
+        /** Status of the last event queued, {@code null} before the first. */
+        private OrderStatus lastStatus;
+        private boolean writing;
+        /** No more events are queued or written. */
+        private boolean closed;
+        /** Removed from the index and the subscriber count. */
+        private boolean removed;
+
+        Subscriber(String orderId, SseEmitter emitter) {
+            this.orderId = orderId;
+            this.emitter = emitter;
+        }
+
+        void offer(Object event) {
+            boolean overflow = false;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                if (event instanceof OrderStatusView.Entry entry) {
+                    OrderStatus status = entry.status();
+                    boolean newer = lastStatus == null || (!lastStatus.isTerminal()
+                            && (status == OrderStatus.FAILED || status.compareTo(lastStatus) > 0));
+                    if (!newer) {
+                        return;
+                    }
+                    lastStatus = status;
+                }
+                if (queue.size() >= maxQueued) {
+                    closed = true;
+                    overflow = true;
+                } else {
+                    queue.add(event);
+                    if (writing) {
+                        return;
+                    }
+                    writing = true;
+                }
+            }
+            if (overflow) {
+                slowDroppedTotal.increment();
+                remove(this);
+                emitter.complete();
+            } else {
+                writers.execute(this::write);
+            }
+        }
+
+        /** Closes the subscriber; returns {@code false} if it was already removed. */
+        synchronized boolean close() {
+            closed = true;
+            if (removed) {
+                return false;
+            }
+            removed = true;
+            return true;
+        }
+
+        private void write() {
+            while (true) {
+                Object event;
+                synchronized (this) {
+                    event = closed ? null : queue.poll();
+                    if (event == null) {
+                        writing = false;
+                        return;
+                    }
+                }
+                try {
+                    if (event == HEARTBEAT) {
+                        emitter.send(SseEmitter.event().comment(""));
+                        continue;
+                    }
+                    OrderStatusView.Entry entry = (OrderStatusView.Entry) event;
+                    emitter.send(SseEmitter.event().data(response(entry), MediaType.APPLICATION_JSON));
+                    eventsTotal.increment();
+                    if (entry.status().isTerminal()) {
+                        remove(this);
+                        emitter.complete();
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    // the client is gone; the container also reports it through onError
+                    remove(this);
+                }
+            }
+        }
+    }
+
+    private static OrderStatusResponseDTO response(OrderStatusView.Entry entry) {
+        OrderStatusResponseDTO response = new OrderStatusResponseDTO();
+        response.setOrderId(entry.orderId());
+        response.setStatus(entry.status().name());
+        response.setFailedEvent(entry.failedEvent());
+        response.setUpdatedAt(entry.updatedAt().toString());
+        return response;
+    }
+}
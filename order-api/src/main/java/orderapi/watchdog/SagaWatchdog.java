@@ -0,0 +1,223 @@
+package orderapi.watchdog;
+
+import events.OrderEventEnvelope;
+import events.codec.EnvelopeCodecs;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.record.RecordBatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Notices orders that stop moving through the pipeline.
+ * <p>
+ * Every order seen on a stage topic is kept in a {@link TimingWheel} with a deadline for the next
+ * topic: the record's timestamp plus {@code order.watchdog.timeout.<stage>}, but never less than
+ * {@code order.watchdog.grace} after the record is consumed, so the events that follow a late
+ * record have time to arrive. An order reaching the next topic gets that topic's deadline instead;
+ * {@code order.completed} or {@code order.failed} ends the watch. The end is remembered for
+ * {@code order.watchdog.completed-retention}, so an earlier event consumed late does not start
+ * watching the order again. When a deadline passes, an {@code OrderTimedOut} event naming the topic
+ * that never came is published to {@code order.failed}.
+ * <p>
+ * Replicas share one consumer group. The stage topics are keyed by orderId with the same partition
+ * count, and the range assignor hands partition {@code n} of every topic to the same consumer, so
+ * each order is watched by one instance. Assigned partitions are rewound by the longest timeout,
+ * which rebuilds the deadlines of the orders in flight; orders of revoked partitions are dropped.
+ * An order whose deadline passed while its partition moved may be reported twice.
+ */
+@Component
+public class SagaWatchdog implements ConsumerSeekAware, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(SagaWatchdog.class);
+
+    /** Stage topics in pipeline order: an order seen on {@code TOPICS[i]} is awaited on {@code TOPICS[i + 1]}. */
+    private static final List<String> TOPICS = List.of("order.created", "order.validated", "order.inventory-reserved",
+            "order.payment-completed", "order.completed");
+    private static final String TOPIC_ORDER_FAILED = "order.failed";
+    private static final String EVENT_TYPE_TIMED_OUT = "OrderTimedOut";
+    /** Stage of an order that completed or failed. */
+    private static final int DONE = TOPICS.size() - 1;
+    /** Low tag bits hold the stage, the rest the partition. */
+    private static final int STAGE_BITS = 3;
+    private static final int STAGE_MASK = (1 << STAGE_BITS) - 1;
+
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final EnvelopeCodecs codecs;
+    private final TimingWheel wheel;
+    private final Duration[] timeouts;
+    private final long retentionMillis;
+    private final long graceMillis;
+    private final long rewindMillis;
+    private final Counter[] timedOutTotal;
+    private final Counter droppedTotal;
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "order-watchdog-ticker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SagaWatchdog(KafkaTemplate<String, byte[]> kafkaTemplate, EnvelopeCodecs codecs, MeterRegistry registry,
+            @Value("${order.watchdog.max-orders:2000000}") int maxOrders,
+            @Value("${order.watchdog.tick:100ms}") Duration tick,
+            @Value("${order.watchdog.timeout.validation:2m}") Duration validationTimeout,
+            @Value("${order.watchdog.timeout.inventory:2m}") Duration inventoryTimeout,
+            @Value("${order.watchdog.timeout.payment:5m}") Duration paymentTimeout,
+            @Value("${order.watchdog.timeout.notification:2m}") Duration notificationTimeout,
+            @Value("${order.watchdog.completed-retention:1m}") Duration completedRetention,
+            @Value("${order.watchdog.grace:30s}") Duration grace) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.codecs = codecs;
+        this.wheel = new TimingWheel(tick.toMillis(), maxOrders, System.currentTimeMillis());
+        this.timeouts = new Duration[] {validationTimeout, inventoryTimeout, paymentTimeout, notificationTimeout};
+        this.retentionMillis = completedRetention.toMillis();
+        this.graceMillis = grace.toMillis();
+        long longest = 0;
+        this.timedOutTotal = new Counter[timeouts.length];
+        for (int stage = 0; stage < timeouts.length; stage++) {
+            longest = Math.max(longest, timeouts[stage].toMillis());
+            timedOutTotal[stage] = registry.counter("order_watchdog_timed_out_total", "awaiting", TOPICS.get(stage + 1));
+        }
+        this.rewindMillis = longest;
+        this.droppedTotal = registry.counter("order_watchdog_dropped_total");
+        Gauge.builder("order_watchdog_orders", wheel, TimingWheel::size).register(registry);
+        ticker.scheduleWithFixedDelay(() -> tick(System.currentTimeMillis()), tick.toMillis(), tick.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    @KafkaListener(topics = {"order.created", "order.validated", "order.inventory-reserved", "order.payment-completed",
+            "order.completed", TOPIC_ORDER_FAILED},
+            groupId = "${order.watchdog.group-id:order-api-watchdog}", batch = "true",
+            autoStartup = "${order.watchdog.enabled:true}",
+            properties = "partition.assignment.strategy=org.apache.kafka.clients.consumer.RangeAssignor")
+    public void onEvents(List<ConsumerRecord<String, byte[]>> records) {
+        long now = System.currentTimeMillis();
+        synchronized (wheel) {
+            for (ConsumerRecord<String, byte[]> record : records) {
+                track(record, now);
+            }
+        }
+    }
+
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        callback.seekToTimestamp(assignments.keySet(), System.currentTimeMillis() - rewindMillis);
+    }
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        Set<Integer> revoked = partitions.stream().map(TopicPartition::partition).collect(Collectors.toSet());
+        synchronized (wheel) {
+            wheel.cancelIf(tag -> revoked.contains(tag >>> STAGE_BITS));
+        }
+    }
+
+    @Override
+    public void close() {
+        ticker.shutdownNow();
+    }
+
+    /** Publishes {@code OrderTimedOut} for every deadline passed by {@code nowMillis}; returns how many. */
+    int tick(long nowMillis) {
+        List<UUID> orders = new ArrayList<>();
+        List<Integer> stages = new ArrayList<>();
+        try {
+            synchronized (wheel) {
+                wheel.advance(nowMillis, (hi, lo, tag) -> {
+                    if ((tag & STAGE_MASK) != DONE) {
+                        orders.add(new UUID(hi, lo));
+                        stages.add(tag & STAGE_MASK);
+                    }
+                });
+            }
+            for (int i = 0; i < orders.size(); i++) {
+                timedOut(orders.get(i), stages.get(i));
+            }
+        } catch (RuntimeException e) {
+            log.error("Watchdog tick failed: {}", e.getMessage());
+        }
+        return orders.size();
+    }
+
+    /** Caller holds the wheel's monitor. */
+    private void track(ConsumerRecord<String, byte[]> record, long now) {
+        UUID id = parse(record.key());
+        int stage = TOPIC_ORDER_FAILED.equals(record.topic()) ? DONE : TOPICS.indexOf(record.topic());
+        if (id == null || stage < 0) {
+            return;
+        }
+        long hi = id.getMostSignificantBits();
+        long lo = id.getLeastSignificantBits();
+        int tag = wheel.tag(hi, lo);
+        if (tag >= 0 && stage <= (tag & STAGE_MASK)) {
+            return;
+        }
+        long deadline;
+        if (stage == DONE) {
+            deadline = now + retentionMillis;
+        } else {
+            long timestamp = record.timestamp() != RecordBatch.NO_TIMESTAMP ? record.timestamp() : now;
+            deadline = Math.max(timestamp + timeouts[stage].toMillis(), now + graceMillis);
+        }
+        if (!wheel.schedule(hi, lo, record.partition() << STAGE_BITS | stage, deadline)) {
+            droppedTotal.increment();
+        }
+    }
+
+    private void timedOut(UUID orderId, int stage) {
+        String awaiting = TOPICS.get(stage + 1);
+        try {
+            OrderEventEnvelope envelope = new OrderEventEnvelope();
+            envelope.setEventType(EVENT_TYPE_TIMED_OUT);
+            envelope.setOrderId(orderId.toString());
+            envelope.setCorrelationId("unknown");
+            envelope.setTimestamp(Instant.now().toString());
+            envelope.setPayload(Map.of(
+                    "awaiting", awaiting,
+                    "failureReason", "TIMEOUT: no " + awaiting + " within " + timeouts[stage].toSeconds() + "s"
+            ));
+            kafkaTemplate.send(codecs.record(TOPIC_ORDER_FAILED, orderId.toString(), envelope))
+                    .whenComplete((result, e) -> {
+                        if (e != null) {
+                            log.error("Failed to publish {} for {}: {}", EVENT_TYPE_TIMED_OUT, orderId, e.getMessage());
+                        }
+                    });
+            timedOutTotal[stage].increment();
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to publish {} for {}: {}", EVENT_TYPE_TIMED_OUT, orderId, e.getMessage());
+        }
+    }
+
+    private static UUID parse(String orderId) {
+        if (orderId == null) {
+            return null;
+        }
+        try {
+            return UUID.fromString(orderId);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
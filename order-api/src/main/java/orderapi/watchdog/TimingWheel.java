@@ -0,0 +1,297 @@
+package orderapi.watchdog;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Hierarchical timing wheel of deadlines keyed by a 128-bit key (the two halves of an order UUID),
+ * each carrying a non-negative {@code int} tag.
+ * <p>
+ * Four levels of 64 slots; a slot of level {@code n} spans {@code 64^n} ticks, so the wheel covers
+ * {@code 64^4} ticks (19 days at 100 ms) and deadlines beyond that are parked in the top level and
+ * placed again when it comes round. A deadline goes into the level of the highest 6-bit digit of its
+ * distance from the current tick; whenever the lower digits of the current tick roll over, the
+ * matching slot of each higher level is cascaded down. Scheduling, moving and cancelling a deadline
+ * is O(1): entries sit in intrusive doubly linked lists. Advancing costs O(1) per tick plus the
+ * entries it touches.
+ * <p>
+ * Entries live in flat arrays: key, list links, deadline and tag, 32 bytes, plus an open-addressing
+ * index of {@code int}s at a load factor of 0.5 or less, about 40 bytes per entry and no object per
+ * entry. The arrays grow by doubling up to {@code maxSize} entries. Not thread-safe.
+ */
+final class TimingWheel {
+
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final int NIL = -1;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    @FunctionalInterface
+    interface Expiry {
+        void expired(long hi, long lo, int tag);
+    }
+
+    private final long tickMillis;
+    private final long originTick;
+    private final int maxSize;
+    private final int[] heads = new int[LEVELS * SLOTS];
+
+    private long[] his;
+    private long[] los;
+    private int[] next;
+    /** Previous entry of the list, or {@code ~slot} for the head of a slot's list. */
+    private int[] prev;
+    /** Deadline in ticks since {@code originTick}. */
+    private int[] deadlines;
+    /** Tag of a live entry, -1 for a free one. */
+    private int[] tags;
+    /** Entry + 1 per index slot, 0 when empty. */
+    private int[] index;
+    private int indexMask;
+    private int used;
+    private int free = NIL;
+    private int size;
+    /** Last tick processed, in ticks since {@code originTick}. */
+    private long current;
+
+    TimingWheel(long tickMillis, int maxSize, long nowMillis) {
+        this.tickMillis = tickMillis;
+        this.originTick = nowMillis / tickMillis;
+        this.maxSize = maxSize;
+        Arrays.fill(heads, NIL);
+        allocate(Math.max(1, Math.min(maxSize, INITIAL_CAPACITY)));
+    }
+
+    /** Tag of the key's entry, or -1 if it has none. */
+    int tag(long hi, long lo) {
+        int entry = find(hi, lo);
+        return entry != NIL ? tags[entry] : NIL;
+    }
+
+    /**
+     * Sets the key's deadline and tag, replacing any it had. A deadline that has already passed
+     * expires on the next tick. Returns {@code false} without scheduling if the key is new and the
+     * wheel already holds {@code maxSize} entries.
+     */
+    boolean schedule(long hi, long lo, int tag, long deadlineMillis) {
+        int entry = find(hi, lo);
+        if (entry == NIL) {
+            entry = allocateEntry();
+            if (entry == NIL) {
+                return false;
+            }
+            his[entry] = hi;
+            los[entry] = lo;
+            addToIndex(entry);
+            size++;
+        } else {
+            unlink(entry);
+        }
+        tags[entry] = tag;
+        deadlines[entry] = ticks(deadlineMillis);
+        place(entry, current + 1);
+        return true;
+    }
+
+    /** Drops the key's entry; returns whether it had one. */
+    boolean cancel(long hi, long lo) {
+        int entry = find(hi, lo);
+        if (entry == NIL) {
+            return false;
+        }
+        unlink(entry);
+        release(entry);
+        return true;
+    }
+
+    /** Drops every entry whose tag matches and returns how many were dropped. */
+    int cancelIf(IntPredicate tagMatches) {
+        int cancelled = 0;
+        for (int entry = 0; entry < used; entry++) {
+            if (tags[entry] >= 0 && tagMatches.test(tags[entry])) {
+                unlink(entry);
+                release(entry);
+                cancelled++;
+            }
+        }
+        return cancelled;
+    }
+
+    /**
+     * Processes every tick up to {@code nowMillis}, removing the entries whose deadline has passed
+     * and handing each to {@code expiry}. Returns how many expired.
+     */
+    int advance(long nowMillis, Expiry expiry) {
+        long target = nowMillis / tickMillis - originTick;
+        int expired = 0;
+        while (current < target) {
+            current++;
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((current & ((1L << (BITS * level)) - 1)) == 0) {
+                    cascade(level * SLOTS + (int) ((current >>> (BITS * level)) & SLOT_MASK));
+                }
+            }
+            int slot = (int) (current & SLOT_MASK);
+            int entry = heads[slot];
+            heads[slot] = NIL;
+            while (entry != NIL) {
+                int following = next[entry];
+                long hi = his[entry];
+                long lo = los[entry];
+                int tag = tags[entry];
+                release(entry);
+                expiry.expired(hi, lo, tag);
+                expired++;
+                entry = following;
+            }
+        }
+        return expired;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int ticks(long deadlineMillis) {
+        long ticks = Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis) - originTick;
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, ticks));
+    }
+
+    /** Re-places every entry of a higher-level slot relative to the tick being processed. */
+    private void cascade(int slot) {
+        int entry = heads[slot];
+        heads[slot] = NIL;
+        while (entry != NIL) {
+            int following = next[entry];
+            place(entry, current);
+            entry = following;
+        }
+    }
+
+    /** Links the entry into the slot of its deadline, treating deadlines before {@code earliest} as {@code earliest}. */
+    private void place(int entry, long earliest) {
+        // beyond the wheel, the entry is parked in the farthest top-level slot and placed again from there
+        long distance = Math.min(Math.max(deadlines[entry], earliest) - current, (1L << (BITS * LEVELS)) - 1);
+        int level = distance == 0 ? 0 : (63 - Long.numberOfLeadingZeros(distance)) / BITS;
+        int slot = (int) (((current + distance) >>> (BITS * level)) & SLOT_MASK);
+        link(level * SLOTS + slot, entry);
+    }
+
+    private void link(int slot, int entry) {
+        int head = heads[slot];
+        next[entry] = head;
+        prev[entry] = ~slot;
+        if (head != NIL) {
+            prev[head] = entry;
+        }
+        heads[slot] = entry;
+    }
+
+    private void unlink(int entry) {
+        int before = prev[entry];
+        int after = next[entry];
+        if (before < 0) {
+            heads[~before] = after;
+        } else {
+            next[before] = after;
+        }
+        if (after != NIL) {
+            prev[after] = before;
+        }
+    }
+
+    private int allocateEntry() {
+        if (free != NIL) {
+            int entry = free;
+            free = next[entry];
+            return entry;
+        }
+        if (used == tags.length) {
+            if (used >= maxSize) {
+                return NIL;
+            }
+            allocate((int) Math.min(maxSize, used * 2L));
+        }
+        return used++;
+    }
+
+    /** Removes an entry that is no longer linked into the wheel from the index and frees it. */
+    private void release(int entry) {
+        removeFromIndex(entry);
+        tags[entry] = NIL;
+        next[entry] = free;
+        free = entry;
+        size--;
+    }
+
+    private void allocate(int capacity) {
+        int from = tags == null ? 0 : tags.length;
+        his = his == null ? new long[capacity] : Arrays.copyOf(his, capacity);
+        los = los == null ? new long[capacity] : Arrays.copyOf(los, capacity);
+        next = next == null ? new int[capacity] : Arrays.copyOf(next, capacity);
+        prev = prev == null ? new int[capacity] : Arrays.copyOf(prev, capacity);
+        deadlines = deadlines == null ? new int[capacity] : Arrays.copyOf(deadlines, capacity);
+        tags = tags == null ? new int[capacity] : Arrays.copyOf(tags, capacity);
+        Arrays.fill(tags, from, capacity, NIL);
+        index = new int[Integer.highestOneBit(Math.max(1, capacity) * 2 - 1) << 1];
+        indexMask = index.length - 1;
+        for (int entry = 0; entry < from; entry++) {
+            if (tags[entry] >= 0) {
+                addToIndex(entry);
+            }
+        }
+    }
+
+    private int find(long hi, long lo) {
+        int slot = home(hi, lo);
+        while (index[slot] != 0) {
+            int entry = index[slot] - 1;
+            if (his[entry] == hi && los[entry] == lo) {
+                return entry;
+            }
+            slot = (slot + 1) & indexMask;
+        }
+        return NIL;
+    }
+
+    private void addToIndex(int entry) {
+        int slot = home(his[entry], los[entry]);
+        while (index[slot] != 0) {
+            slot = (slot + 1) & indexMask;
+        }
+        index[slot] = entry + 1;
+    }
+
+    private void removeFromIndex(int entry) {
+        int hole = home(his[entry], los[entry]);
+        while (index[hole] != entry + 1) {
+            hole = (hole + 1) & indexMask;
+        }
+        int slot = hole;
+        while (true) {
+            slot = (slot + 1) & indexMask;
+            if (index[slot] == 0) {
+                break;
+            }
+            int moved = index[slot] - 1;
+            int home = home(his[moved], los[moved]);
+            // the entry may move into the hole unless its home lies cyclically in (hole, slot]
+            boolean stays = hole <= slot ? hole < home && home <= slot : hole < home || home <= slot;
+            if (!stays) {
+                index[hole] = index[slot];
+                hole = slot;
+            }
+        }
+        index[hole] = 0;
+    }
+
+    private int home(long hi, long lo) {
+        long h = hi * 0x9E3779B97F4A7C15L ^ lo;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h & indexMask;
+    }
+}
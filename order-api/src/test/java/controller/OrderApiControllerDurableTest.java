@@ -0,0 +1,148 @@
+package controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dto.CreateOrderRequestDTO;
+import events.OrderEventsConfiguration;
+import orderapi.OrderCreatedEvents;
+import orderapi.admission.AdmissionLimiter;
+import orderapi.bulk.BulkOrderIngestor;
+import orderapi.durable.GroupCommitSender;
+import orderapi.status.OrderStatusView;
+import orderapi.stream.OrderStatusStream;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.kafka.KafkaAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(controllers = OrderApiController.class)
+@EnableAutoConfiguration(exclude = KafkaAutoConfiguration.class)
+@Import({OrderEventsConfiguration.class, OrderCreatedEvents.class})
+@TestPropertySource(properties = {"order.create.durable=true", "order.create.ack-timeout=1s"})
+class OrderApiControllerDurableTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @MockBean
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
+
+    @MockBean
+    private io.micrometer.core.instrument.MeterRegistry meterRegistry;
+
+    @MockBean
+    private AdmissionLimiter admission;
+
+    @MockBean
+    private OrderStatusView statusView;
+
+    @MockBean
+    private BulkOrderIngestor bulk;
+
+    @MockBean
+    private OrderStatusStream statusStream;
+
+    @MockBean
+    private GroupCommitSender groupCommit;
+
+    @Test
+    void createOrder_answers202WithOrderIdOnceAcked() throws Exception {
+        when(admission.tryAcquire()).thenReturn(true);
+        CompletableFuture<SendResult<String, byte[]>> ack = new CompletableFuture<>();
+        when(groupCommit.send(any())).thenReturn(ack);
+
+        MvcResult result = mockMvc.perform(post("/api/v1/orderApi/orders")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(order())))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        verify(statusView, never()).created(any());
+
+        ack.complete(null);
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isAccepted())
+                .andExpect(header().exists("Location"))
+                .andExpect(jsonPath("$.orderId").isNotEmpty());
+        verify(admission).release(anyLong(), eq(true));
+        verify(statusView).created(any());
+        verify(kafkaTemplate, never()).send(any(ProducerRecord.class));
+    }
+
+    @Test
+    void createOrder_whenSendFails_answers503() throws Exception {
+        when(admission.tryAcquire()).thenReturn(true);
+        when(admission.retryAfterSeconds()).thenReturn(1L);
+        when(groupCommit.send(any())).thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker down")));
+
+        MvcResult result = mockMvc.perform(post("/api/v1/orderApi/orders")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(order())))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+        verify(admission).release(anyLong(), anyBoolean());
+        verify(statusView, never()).created(any());
+    }
+
+    @Test
+    void createOrder_whenNotAckedInTime_answers504AndReleasesTheSlotOnTheLateAck() throws Exception {
+        when(admission.tryAcquire()).thenReturn(true);
+        CompletableFuture<SendResult<String, byte[]>> ack = new CompletableFuture<>();
+        when(groupCommit.send(any())).thenReturn(ack);
+
+        MvcResult result = mockMvc.perform(post("/api/v1/orderApi/orders")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(order())))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isGatewayTimeout())
+                .andExpect(jsonPath("$.orderId").isNotEmpty());
+        verify(admission, never()).release(anyLong(), anyBoolean());
+
+        ack.complete(null);
+
+        verify(admission).release(anyLong(), eq(true));
+        verify(statusView).created(any());
+    }
+
+    private static CreateOrderRequestDTO order() {
+        CreateOrderRequestDTO request = new CreateOrderRequestDTO();
+        request.setCustomerId("cust-1");
+        request.setTotalAmount(9999L);
+        return request;
+    }
+}
@@ -2,25 +2,46 @@ package controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import dto.CreateOrderRequestDTO;
+import events.OrderEventsConfiguration;
+import orderapi.OrderCreatedEvents;
+import orderapi.admission.AdmissionLimiter;
+import orderapi.bulk.BulkOrderIngestor;
+import orderapi.durable.GroupCommitSender;
+import orderapi.status.OrderStatus;
+import orderapi.status.OrderStatusView;
+import orderapi.stream.OrderStatusStream;
+import org.apache.kafka.clients.producer.ProducerRecord;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.autoconfigure.kafka.KafkaAutoConfiguration;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.test.web.servlet.MockMvc;
 
-import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.ArgumentMatchers.eq;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(controllers = OrderApiController.class)
 @EnableAutoConfiguration(exclude = KafkaAutoConfiguration.class)
+@Import({OrderEventsConfiguration.class, OrderCreatedEvents.class})
 class OrderApiControllerTest {
 
     @Autowired
@@ -30,13 +51,30 @@ class OrderApiControllerTest {
     private ObjectMapper objectMapper;
 
     @MockBean
-    private KafkaTemplate<String, String> kafkaTemplate;
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
 
     @MockBean
     private io.micrometer.core.instrument.MeterRegistry meterRegistry;
 
+    @MockBean
+    private AdmissionLimiter admission;
+
+    @MockBean
+    private OrderStatusView statusView;
+
+    @MockBean
+    private BulkOrderIngestor bulk;
+
+    @MockBean
+    private OrderStatusStream statusStream;
+
+    @MockBean
+    private GroupCommitSender groupCommit;
+
     @Test
     void createOrder_sendsOrderCreatedToKafka() throws Exception {
+        when(admission.tryAcquire()).thenReturn(true);
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
         CreateOrderRequestDTO request = new CreateOrderRequestDTO();
         request.setCustomerId("cust-1");
         request.setTotalAmount(9999L);
@@ -46,6 +84,96 @@ class OrderApiControllerTest {
                         .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isOk());
 
-        verify(kafkaTemplate, times(1)).send(eq("order.created"), anyString(), anyString());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<ProducerRecord<String, byte[]>> recordCaptor = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate, times(1)).send(recordCaptor.capture());
+        assertThat(recordCaptor.getValue().topic()).isEqualTo("order.created");
+        assertThat(recordCaptor.getValue().key()).isNotBlank();
+        verify(statusView).created(recordCaptor.getValue().key());
+    }
+
+    @Test
+    void createOrder_whenAdmissionRejects_returns503WithRetryAfter() throws Exception {
+        when(admission.tryAcquire()).thenReturn(false);
+        when(admission.retryAfterSeconds()).thenReturn(1L);
+        CreateOrderRequestDTO request = new CreateOrderRequestDTO();
+        request.setCustomerId("cust-1");
+        request.setTotalAmount(9999L);
+
+        mockMvc.perform(post("/api/v1/orderApi/orders")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+
+        verify(kafkaTemplate, never()).send(any(ProducerRecord.class));
+    }
+
+    @Test
+    void createOrders_streamsBodyToIngestor() throws Exception {
+        when(admission.tryAcquire()).thenReturn(true);
+
+        mockMvc.perform(post("/api/v1/orderApi/orders/bulk")
+                        .contentType("application/x-ndjson")
+                        .content("{\"customerId\":\"cust-1\",\"totalAmount\":100}\n"))
+                .andExpect(status().isOk());
+
+        verify(bulk).ingest(any(), any());
+        verify(admission).cancel();
+    }
+
+    @Test
+    void createOrders_whenAdmissionRejects_returns503WithRetryAfter() throws Exception {
+        when(admission.tryAcquire()).thenReturn(false);
+        when(admission.retryAfterSeconds()).thenReturn(1L);
+
+        mockMvc.perform(post("/api/v1/orderApi/orders/bulk")
+                        .contentType("application/x-ndjson")
+                        .content("{\"customerId\":\"cust-1\",\"totalAmount\":100}\n"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+
+        verify(bulk, never()).ingest(any(), any());
+    }
+
+    @Test
+    void getOrder_returnsStatusFromView() throws Exception {
+        String orderId = "0b5f8e4e-8d4f-4a8c-9d55-3b0f6a1c2e7d";
+        when(statusView.find(orderId)).thenReturn(Optional.of(new OrderStatusView.Entry(orderId, OrderStatus.FAILED,
+                "OrderPaymentFailed", Instant.parse("2026-02-06T12:00:00Z"))));
+
+        mockMvc.perform(get("/api/v1/orderApi/orders/{orderId}", orderId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.orderId").value(orderId))
+                .andExpect(jsonPath("$.status").value("FAILED"))
+                .andExpect(jsonPath("$.failedEvent").value("OrderPaymentFailed"))
+                .andExpect(jsonPath("$.updatedAt").value("2026-02-06T12:00:00Z"));
+    }
+
+    @Test
+    void getOrder_whenUnknown_returns404() throws Exception {
+        when(statusView.find(any())).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/v1/orderApi/orders/{orderId}", "ord-unknown"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void streamOrder_whenSubscribersAreFull_returns503WithRetryAfter() throws Exception {
+        when(statusStream.full()).thenReturn(true);
+
+        mockMvc.perform(get("/api/v1/orderApi/orders/{orderId}/events", "0b5f8e4e-8d4f-4a8c-9d55-3b0f6a1c2e7d"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().exists("Retry-After"));
+
+        verify(statusStream, never()).subscribe(any());
+    }
+
+    @Test
+    void streamOrder_whenNotAUuid_returns404() throws Exception {
+        when(statusStream.subscribe(any())).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/v1/orderApi/orders/{orderId}/events", "ord-unknown"))
+                .andExpect(status().isNotFound());
     }
 }
@@ -0,0 +1,53 @@
+package orderapi.admission;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GradientLimitTest {
+
+    private static final double RTT = 5_000_000;
+
+    @Test
+    void steadyLatency_atFullConcurrency_growsLimit() {
+        GradientLimit gradientLimit = new GradientLimit(50, 8, 2000);
+
+        int limit = 50;
+        for (int i = 0; i < 20; i++) {
+            limit = gradientLimit.update(RTT, limit, false);
+        }
+
+        assertThat(limit).isGreaterThan(50);
+    }
+
+    @Test
+    void inflatedLatency_shrinksLimit() {
+        GradientLimit gradientLimit = new GradientLimit(200, 8, 2000);
+        for (int i = 0; i < 10; i++) {
+            gradientLimit.update(RTT, 200, false);
+        }
+
+        int limit = 200;
+        for (int i = 0; i < 10; i++) {
+            limit = gradientLimit.update(RTT * 10, limit, false);
+        }
+
+        assertThat(limit).isLessThan(200);
+    }
+
+    @Test
+    void lowConcurrency_keepsLimit() {
+        GradientLimit gradientLimit = new GradientLimit(100, 8, 2000);
+
+        assertThat(gradientLimit.update(RTT, 10, false)).isEqualTo(100);
+    }
+
+    @Test
+    void droppedSend_backsOffButNotBelowMinimum() {
+        GradientLimit gradientLimit = new GradientLimit(10, 8, 2000);
+
+        assertThat(gradientLimit.update(RTT, 10, true)).isEqualTo(9);
+        assertThat(gradientLimit.update(RTT, 10, true)).isEqualTo(8);
+        assertThat(gradientLimit.update(RTT, 10, true)).isEqualTo(8);
+    }
+}
@@ -0,0 +1,206 @@
+package orderapi.bulk;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import events.codec.BinaryEnvelopeCodec;
+import events.codec.EnvelopeCodecs;
+import events.codec.JsonEnvelopeCodec;
+import events.id.OrderIdGenerator;
+import events.metrics.StageMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import orderapi.OrderCreatedEvents;
+import orderapi.admission.AdmissionLimiter;
+import orderapi.status.OrderStatusView;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BulkOrderIngestorTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @SuppressWarnings("unchecked")
+    private final KafkaTemplate<String, byte[]> kafkaTemplate = mock(KafkaTemplate.class);
+    private final OrderStatusView statusView = mock(OrderStatusView.class);
+
+    private SimpleMeterRegistry admissionRegistry;
+    private OrderCreatedEvents orderCreated;
+    private BulkOrderIngestor ingestor;
+
+    @BeforeEach
+    void setUp() {
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+        EnvelopeCodecs codecs = new EnvelopeCodecs(JsonEnvelopeCodec.NAME, true,
+                new JsonEnvelopeCodec(objectMapper), new BinaryEnvelopeCodec(objectMapper));
+        orderCreated = new OrderCreatedEvents(codecs, new StageMetrics(registry), new OrderIdGenerator());
+        ingestor = ingestor(admission(2000), Duration.ofSeconds(5));
+    }
+
+    @Test
+    void ndjson_publishesEveryOrderAndReportsItsId() throws Exception {
+        List<JsonNode> results = ingest("""
+                {"customerId":"cust-1","totalAmount":100}
+                {"customerId":"cust-2","totalAmount":200}
+                {"customerId":"cust-3","totalAmount":300}
+                """);
+
+        assertThat(results).extracting(r -> r.get("line").asLong()).containsExactly(1L, 2L, 3L);
+        assertThat(results).allSatisfy(r -> assertThat(r.get("orderId").asText()).isNotBlank());
+        verify(kafkaTemplate, times(3)).send(any(ProducerRecord.class));
+        verify(statusView).created(results.get(2).get("orderId").asText());
+        assertThat(registry.counter("orders_created_total").count()).isEqualTo(3);
+    }
+
+    @Test
+    void jsonArray_isAcceptedToo() throws Exception {
+        List<JsonNode> results = ingest("""
+                [{"customerId":"cust-1","totalAmount":100}, {"customerId":"cust-2","totalAmount":200}]
+                """);
+
+        assertThat(results).hasSize(2);
+        verify(kafkaTemplate, times(2)).send(any(ProducerRecord.class));
+    }
+
+    @Test
+    void invalidOrder_isReportedAndSkipped() throws Exception {
+        List<JsonNode> results = ingest("""
+                {"customerId":"cust-1","totalAmount":100}
+                {"customerId":"cust-2","totalAmount":"abc"}
+                {"customerId":"cust-3","totalAmount":300}
+                """);
+
+        assertThat(results).hasSize(3);
+        assertThat(results.get(1).get("error").asText()).startsWith("INVALID_ORDER");
+        assertThat(results.get(2).has("orderId")).isTrue();
+        verify(kafkaTemplate, times(2)).send(any(ProducerRecord.class));
+        assertThat(registry.counter("orders_bulk_invalid_total").count()).isEqualTo(1);
+    }
+
+    @Test
+    void failedSend_isReportedPerOrder() throws Exception {
+        when(kafkaTemplate.send(any(ProducerRecord.class)))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker down")));
+
+        List<JsonNode> results = ingest("{\"customerId\":\"cust-1\",\"totalAmount\":100}\n");
+
+        assertThat(results.get(0).get("error").asText()).isEqualTo("PUBLISH_FAILED: broker down");
+    }
+
+    @Test
+    void sendThatThrows_isReportedAndTheUploadContinues() throws Exception {
+        when(kafkaTemplate.send(any(ProducerRecord.class)))
+                .thenReturn(CompletableFuture.completedFuture(null))
+                .thenThrow(new IllegalStateException("producer closed"))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        List<JsonNode> results = ingest("""
+                {"customerId":"cust-1","totalAmount":100}
+                {"customerId":"cust-2","totalAmount":200}
+                {"customerId":"cust-3","totalAmount":300}
+                """);
+
+        assertThat(results).hasSize(3);
+        assertThat(results.get(0).has("orderId")).isTrue();
+        assertThat(results.get(1).get("error").asText()).isEqualTo("PUBLISH_FAILED: producer closed");
+        assertThat(results.get(2).has("orderId")).isTrue();
+        assertThat(registry.counter("orders_created_total").count()).isEqualTo(2);
+    }
+
+    @Test
+    void malformedJson_reportsEarlierOrdersThenStops() throws Exception {
+        List<JsonNode> results = ingest("""
+                {"customerId":"cust-1","totalAmount":100}
+                {"customerId":
+                {"customerId":"cust-3","totalAmount":300}
+                """);
+
+        assertThat(results).hasSize(2);
+        assertThat(results.get(0).has("orderId")).isTrue();
+        assertThat(results.get(1).get("error").asText()).startsWith("PARSE_ERROR");
+        verify(kafkaTemplate, times(1)).send(any(ProducerRecord.class));
+    }
+
+    @Test
+    void eachOrderTakesAnAdmissionSlot_waitingForEarlierAcks() throws Exception {
+        ScheduledExecutorService broker = Executors.newSingleThreadScheduledExecutor();
+        try {
+            when(kafkaTemplate.send(any(ProducerRecord.class))).thenAnswer(invocation -> {
+                CompletableFuture<Object> ack = new CompletableFuture<>();
+                broker.schedule(() -> ack.complete(null), 20, TimeUnit.MILLISECONDS);
+                return ack;
+            });
+            ingestor = ingestor(admission(1), Duration.ofSeconds(5));
+
+            List<JsonNode> results = ingest("""
+                    {"customerId":"cust-1","totalAmount":100}
+                    {"customerId":"cust-2","totalAmount":200}
+                    {"customerId":"cust-3","totalAmount":300}
+                    """);
+
+            assertThat(results).allSatisfy(r -> assertThat(r.has("orderId")).isTrue());
+            assertThat(admissionRegistry.get("orders_admission_in_flight").gauge().value()).isZero();
+        } finally {
+            broker.shutdownNow();
+        }
+    }
+
+    @Test
+    void noAdmissionSlotWithinTheSendTimeout_endsTheUpload() throws Exception {
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(new CompletableFuture<>());
+        ingestor = ingestor(admission(1), Duration.ofMillis(50));
+
+        List<JsonNode> results = ingest("""
+                {"customerId":"cust-1","totalAmount":100}
+                {"customerId":"cust-2","totalAmount":200}
+                {"customerId":"cust-3","totalAmount":300}
+                """);
+
+        assertThat(results).hasSize(2);
+        assertThat(results.get(0).get("error").asText()).isEqualTo("PUBLISH_TIMEOUT");
+        assertThat(results.get(1).get("line").asLong()).isEqualTo(2);
+        assertThat(results.get(1).get("error").asText()).isEqualTo("OVERLOADED");
+        verify(kafkaTemplate, times(1)).send(any(ProducerRecord.class));
+    }
+
+    private AdmissionLimiter admission(int limit) {
+        admissionRegistry = new SimpleMeterRegistry();
+        return new AdmissionLimiter(kafkaTemplate, admissionRegistry, true, limit, 1, limit, Duration.ofMinutes(1), 0.9,
+                Duration.ofSeconds(1));
+    }
+
+    private BulkOrderIngestor ingestor(AdmissionLimiter admission, Duration sendTimeout) {
+        return new BulkOrderIngestor(kafkaTemplate, admission, orderCreated, statusView, objectMapper, registry,
+                2, sendTimeout);
+    }
+
+    private List<JsonNode> ingest(String body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ingestor.ingest(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), out);
+        List<JsonNode> results = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            results.add(objectMapper.readTree(line));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,94 @@
+package orderapi.durable;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class GroupCommitSenderTest {
+
+    @Mock
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private GroupCommitSender sender;
+
+    @BeforeEach
+    void setUp() {
+        sender = new GroupCommitSender(kafkaTemplate, registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        sender.close();
+    }
+
+    @Test
+    void sendsDuringAFlush_areFlushedTogetherInTheNext() throws Exception {
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenAnswer(invocation -> new CompletableFuture<>());
+        CountDownLatch flushing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            flushing.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).doNothing().when(kafkaTemplate).flush();
+
+        sender.send(record("a"));
+        assertThat(flushing.await(5, TimeUnit.SECONDS)).isTrue();
+        sender.send(record("b"));
+        sender.send(record("c"));
+        sender.send(record("d"));
+        release.countDown();
+
+        verify(kafkaTemplate, timeout(5000).times(2)).flush();
+        DistributionSummary groupSize = registry.get("orders_group_commit_size").summary();
+        // the summary is recorded right after the flush returns
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (groupSize.count() < 2 && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertThat(groupSize.count()).isEqualTo(2);
+        assertThat(groupSize.max()).isEqualTo(3);
+        assertThat(groupSize.totalAmount()).isEqualTo(4);
+    }
+
+    @Test
+    void ack_completesTheFutureAndRecordsTheWait() {
+        CompletableFuture<SendResult<String, byte[]>> ack = new CompletableFuture<>();
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(ack);
+
+        CompletableFuture<SendResult<String, byte[]>> result = sender.send(record("a"));
+        assertThat(result).isNotDone();
+        ack.complete(null);
+
+        assertThat(result).isCompleted();
+        assertThat(registry.get("orders_ack_wait").timer().count()).isEqualTo(1);
+        verify(kafkaTemplate, timeout(5000).times(1)).flush();
+        verify(kafkaTemplate, times(1)).send(any(ProducerRecord.class));
+    }
+
+    private static ProducerRecord<String, byte[]> record(String key) {
+        return new ProducerRecord<>("order.created", key, new byte[0]);
+    }
+}
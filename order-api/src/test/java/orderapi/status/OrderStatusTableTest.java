@@ -0,0 +1,60 @@
+package orderapi.status;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrderStatusTableTest {
+
+    @Test
+    void putAndGet_roundTripAndOverwrite() {
+        OrderStatusTable table = new OrderStatusTable(16);
+
+        assertThat(table.put(1, 2, 10)).isTrue();
+        assertThat(table.put(1, 3, 20)).isTrue();
+        assertThat(table.put(1, 2, 11)).isTrue();
+
+        assertThat(table.get(1, 2)).isEqualTo(11);
+        assertThat(table.get(1, 3)).isEqualTo(20);
+        assertThat(table.get(2, 2)).isZero();
+        assertThat(table.size()).isEqualTo(2);
+    }
+
+    @Test
+    void put_whenFull_rejectsNewKeysOnly() {
+        OrderStatusTable table = new OrderStatusTable(4);
+        for (int i = 0; i < table.maxSize(); i++) {
+            assertThat(table.put(i, i, i + 1)).isTrue();
+        }
+
+        assertThat(table.put(100, 100, 1)).isFalse();
+        assertThat(table.put(0, 0, 42)).isTrue();
+        assertThat(table.get(0, 0)).isEqualTo(42);
+    }
+
+    @Test
+    void removeIf_keepsRemainingEntriesReachable() {
+        OrderStatusTable table = new OrderStatusTable(10_000);
+        Map<UUID, Long> expected = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 10_000; i++) {
+            UUID id = new UUID(random.nextLong(), random.nextLong());
+            long value = random.nextInt(1000) + 1;
+            table.put(id.getMostSignificantBits(), id.getLeastSignificantBits(), value);
+            expected.put(id, value);
+        }
+
+        int removed = table.removeIf(value -> value % 3 == 0);
+
+        expected.values().removeIf(value -> value % 3 == 0);
+        assertThat(removed).isEqualTo(10_000 - expected.size());
+        assertThat(table.size()).isEqualTo(expected.size());
+        expected.forEach((id, value) ->
+                assertThat(table.get(id.getMostSignificantBits(), id.getLeastSignificantBits())).isEqualTo(value));
+    }
+}
@@ -0,0 +1,137 @@
+package orderapi.status;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import events.codec.BinaryEnvelopeCodec;
+import events.codec.EnvelopeCodecs;
+import events.codec.JsonEnvelopeCodec;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrderStatusViewTest {
+
+    private static final String ORDER_ID = "0b5f8e4e-8d4f-4a8c-9d55-3b0f6a1c2e7d";
+
+    private OrderStatusView view;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        view = new OrderStatusView(new EnvelopeCodecs(JsonEnvelopeCodec.NAME, true,
+                new JsonEnvelopeCodec(objectMapper), new BinaryEnvelopeCodec(objectMapper)),
+                new SimpleMeterRegistry(), 16, Duration.ofMinutes(1), Duration.ofHours(1), Duration.ofHours(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        view.close();
+    }
+
+    @Test
+    void stageEvents_advanceStatus() {
+        long now = System.currentTimeMillis();
+        view.onEvents(List.of(record("order.validated", ORDER_ID, now), record("order.inventory-reserved", ORDER_ID, now + 1)));
+
+        OrderStatusView.Entry entry = view.find(ORDER_ID).orElseThrow();
+        assertThat(entry.status()).isEqualTo(OrderStatus.INVENTORY_RESERVED);
+        assertThat(entry.failedEvent()).isNull();
+        assertThat(entry.updatedAt()).isEqualTo(Instant.ofEpochMilli(now + 1));
+    }
+
+    @Test
+    void lateEarlierStage_doesNotRegressStatus() {
+        long now = System.currentTimeMillis();
+        view.onEvents(List.of(record("order.payment-completed", ORDER_ID, now), record("order.validated", ORDER_ID, now)));
+
+        assertThat(view.find(ORDER_ID).orElseThrow().status()).isEqualTo(OrderStatus.PAYMENT_COMPLETED);
+    }
+
+    @Test
+    void failureEvent_isTerminalAndNamesTheFailedStage() {
+        long now = System.currentTimeMillis();
+        view.created(ORDER_ID);
+        view.onEvents(List.of(
+                record("order.failed", null, now,
+                        "{\"eventType\":\"OrderPaymentFailed\",\"orderId\":\"" + ORDER_ID + "\",\"payload\":{}}"),
+                record("order.completed", ORDER_ID, now + 1)));
+
+        OrderStatusView.Entry entry = view.find(ORDER_ID).orElseThrow();
+        assertThat(entry.status()).isEqualTo(OrderStatus.FAILED);
+        assertThat(entry.failedEvent()).isEqualTo("OrderPaymentFailed");
+    }
+
+    @Test
+    void sweep_evictsOnlyExpiredTerminalOrders() {
+        String activeId = "7c9e6679-7425-40de-944b-e07fc1f90ae7";
+        long old = System.currentTimeMillis() - Duration.ofMinutes(5).toMillis();
+        view.onEvents(List.of(record("order.completed", ORDER_ID, old), record("order.validated", activeId, old)));
+
+        assertThat(view.sweep()).isEqualTo(1);
+        assertThat(view.find(ORDER_ID)).isEmpty();
+        assertThat(view.find(activeId)).isPresent();
+    }
+
+    @Test
+    void fullTable_sweepsAtMostOncePerIntervalAndDropsNewOrdersMeanwhile() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ObjectMapper objectMapper = new ObjectMapper();
+        OrderStatusView full = new OrderStatusView(new EnvelopeCodecs(JsonEnvelopeCodec.NAME, true,
+                new JsonEnvelopeCodec(objectMapper), new BinaryEnvelopeCodec(objectMapper)),
+                registry, 16, Duration.ofMinutes(1), Duration.ofHours(1), Duration.ofHours(1));
+        try {
+            long old = System.currentTimeMillis() - Duration.ofMinutes(5).toMillis();
+            full.onEvents(completedOrders(16, old));
+            String first = UUID.randomUUID().toString();
+            full.created(first);
+            assertThat(full.find(first)).isPresent();
+            assertThat(registry.get("order_status_evicted_total").counter().count()).isEqualTo(16);
+
+            full.onEvents(completedOrders(15, old));
+            String second = UUID.randomUUID().toString();
+            full.created(second);
+
+            assertThat(full.find(second)).isEmpty();
+            assertThat(registry.get("order_status_evicted_total").counter().count()).isEqualTo(16);
+            assertThat(registry.get("order_status_dropped_total").counter().count()).isEqualTo(1);
+        } finally {
+            full.close();
+        }
+    }
+
+    @Test
+    void unknownOrNonUuidOrder_isNotFound() {
+        assertThat(view.find(ORDER_ID)).isEmpty();
+        assertThat(view.find("ord-123")).isEmpty();
+    }
+
+    private static List<ConsumerRecord<String, byte[]>> completedOrders(int count, long timestamp) {
+        List<ConsumerRecord<String, byte[]>> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            records.add(record("order.completed", UUID.randomUUID().toString(), timestamp));
+        }
+        return records;
+    }
+
+    private static ConsumerRecord<String, byte[]> record(String topic, String key, long timestamp) {
+        return record(topic, key, timestamp, "{\"eventType\":\"Any\",\"orderId\":\"" + key + "\",\"payload\":{}}");
+    }
+
+    private static ConsumerRecord<String, byte[]> record(String topic, String key, long timestamp, String value) {
+        return new ConsumerRecord<>(topic, 0, 0L, timestamp, TimestampType.CREATE_TIME, 0, 0, key,
+                value.getBytes(StandardCharsets.UTF_8), new RecordHeaders(), Optional.empty());
+    }
+}
@@ -0,0 +1,168 @@
+package orderapi.stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dto.OrderStatusResponseDTO;
+import events.codec.BinaryEnvelopeCodec;
+import events.codec.EnvelopeCodecs;
+import events.codec.JsonEnvelopeCodec;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import orderapi.status.OrderStatus;
+import orderapi.status.OrderStatusView;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrderStatusStreamTest {
+
+    private static final String ORDER_ID = "0b5f8e4e-8d4f-4a8c-9d55-3b0f6a1c2e7d";
+    private static final String OTHER_ID = "7c9e6679-7425-40de-944b-e07fc1f90ae7";
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final List<Runnable> pendingWrites = new ArrayList<>();
+    private OrderStatusView view;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        view = new OrderStatusView(new EnvelopeCodecs(JsonEnvelopeCodec.NAME, true,
+                new JsonEnvelopeCodec(objectMapper), new BinaryEnvelopeCodec(objectMapper)),
+                registry, 16, Duration.ofMinutes(1), Duration.ofHours(1), Duration.ofHours(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        view.close();
+    }
+
+    @Test
+    void subscriber_getsCurrentStatusThenEveryTransitionUntilCompleted() {
+        OrderStatusStream stream = stream(8, Runnable::run);
+        view.created(ORDER_ID);
+
+        RecordingEmitter emitter = (RecordingEmitter) stream.subscribe(ORDER_ID).orElseThrow();
+        long now = System.currentTimeMillis();
+        view.onEvents(List.of(record("order.validated", now), record("order.inventory-reserved", now),
+                record("order.completed", now)));
+
+        assertThat(emitter.statuses()).containsExactly("CREATED", "VALIDATED", "INVENTORY_RESERVED", "COMPLETED");
+        assertThat(emitter.completed).isTrue();
+        assertThat(registry.get("order_stream_subscribers").gauge().value()).isZero();
+        assertThat(registry.get("order_stream_events_total").counter().count()).isEqualTo(4);
+        stream.close();
+    }
+
+    @Test
+    void staleStatus_isNotSentAfterANewerOne() {
+        OrderStatusStream stream = stream(8, Runnable::run);
+        RecordingEmitter emitter = (RecordingEmitter) stream.subscribe(ORDER_ID).orElseThrow();
+
+        stream.publish(entry(ORDER_ID, OrderStatus.PAYMENT_COMPLETED));
+        stream.publish(entry(ORDER_ID, OrderStatus.VALIDATED));
+        stream.publish(entry(ORDER_ID, OrderStatus.FAILED));
+        stream.publish(entry(ORDER_ID, OrderStatus.COMPLETED));
+
+        assertThat(emitter.statuses()).containsExactly("PAYMENT_COMPLETED", "FAILED");
+        assertThat(emitter.completed).isTrue();
+        stream.close();
+    }
+
+    @Test
+    void changes_reachOnlyTheSubscribersOfTheirOrder() {
+        OrderStatusStream stream = stream(8, Runnable::run);
+        RecordingEmitter first = (RecordingEmitter) stream.subscribe(ORDER_ID).orElseThrow();
+        RecordingEmitter second = (RecordingEmitter) stream.subscribe(ORDER_ID.toUpperCase()).orElseThrow();
+        RecordingEmitter other = (RecordingEmitter) stream.subscribe(OTHER_ID).orElseThrow();
+
+        stream.publish(entry(ORDER_ID, OrderStatus.VALIDATED));
+
+        assertThat(first.statuses()).containsExactly("VALIDATED");
+        assertThat(second.statuses()).containsExactly("VALIDATED");
+        assertThat(other.statuses()).isEmpty();
+        assertThat(registry.get("order_stream_subscribers").gauge().value()).isEqualTo(3);
+        stream.close();
+    }
+
+    @Test
+    void slowSubscriber_isDroppedWhenItsQueueOverflows() {
+        OrderStatusStream stream = stream(2, pendingWrites::add);
+        RecordingEmitter emitter = (RecordingEmitter) stream.subscribe(ORDER_ID).orElseThrow();
+
+        stream.publish(entry(ORDER_ID, OrderStatus.VALIDATED));
+        stream.publish(entry(ORDER_ID, OrderStatus.INVENTORY_RESERVED));
+        stream.heartbeat();
+
+        assertThat(emitter.completed).isTrue();
+        assertThat(registry.get("order_stream_slow_dropped_total").counter().count()).isEqualTo(1);
+        assertThat(registry.get("order_stream_subscribers").gauge().value()).isZero();
+        pendingWrites.forEach(Runnable::run);
+        assertThat(emitter.statuses()).isEmpty();
+        stream.close();
+    }
+
+    @Test
+    void nonUuidOrder_cannotBeSubscribed() {
+        OrderStatusStream stream = stream(8, Runnable::run);
+
+        assertThat(stream.subscribe("ord-123")).isEmpty();
+        stream.close();
+    }
+
+    private OrderStatusStream stream(int maxQueued, Executor writers) {
+        return new OrderStatusStream(view, registry, 100, maxQueued, Duration.ofHours(1), Duration.ofHours(1),
+                RecordingEmitter::new, writers);
+    }
+
+    private static OrderStatusView.Entry entry(String orderId, OrderStatus status) {
+        return new OrderStatusView.Entry(orderId, status, status == OrderStatus.FAILED ? "OrderPaymentFailed" : null,
+                Instant.parse("2026-02-06T12:00:00Z"));
+    }
+
+    private static ConsumerRecord<String, byte[]> record(String topic, long timestamp) {
+        byte[] value = ("{\"eventType\":\"Any\",\"orderId\":\"" + ORDER_ID + "\",\"payload\":{}}")
+                .getBytes(StandardCharsets.UTF_8);
+        return new ConsumerRecord<>(topic, 0, 0L, timestamp, TimestampType.CREATE_TIME, 0, 0, ORDER_ID, value,
+                new RecordHeaders(), Optional.empty());
+    }
+
+    /** Keeps what is sent instead of writing it to a response. */
+    private static final class RecordingEmitter extends SseEmitter {
+
+        final List<Object> sent = new ArrayList<>();
+        boolean completed;
+
+        RecordingEmitter(long timeout) {
+            super(timeout);
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            builder.build().forEach(data -> sent.add(data.getData()));
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+
+        List<String> statuses() {
+            return sent.stream()
+                    .filter(OrderStatusResponseDTO.class::isInstance)
+                    .map(data -> ((OrderStatusResponseDTO) data).getStatus())
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package orderapi.watchdog;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import events.OrderEventEnvelope;
+import events.codec.BinaryEnvelopeCodec;
+import events.codec.EnvelopeCodecs;
+import events.codec.JsonEnvelopeCodec;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SagaWatchdogTest {
+
+    private static final String ORDER_ID = "0b5f8e4e-8d4f-4a8c-9d55-3b0f6a1c2e7d";
+    private static final String OTHER_ID = "7c9e6679-7425-40de-944b-e07fc1f90ae7";
+    private static final long MINUTE = Duration.ofMinutes(1).toMillis();
+
+    @Mock
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
+
+    @Captor
+    private ArgumentCaptor<ProducerRecord<String, byte[]>> recordCaptor;
+
+    private final EnvelopeCodecs codecs = codecs();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private SagaWatchdog watchdog;
+
+    @BeforeEach
+    void setUp() {
+        watchdog = new SagaWatchdog(kafkaTemplate, codecs, registry, 1000, Duration.ofMillis(100),
+                Duration.ofMinutes(2), Duration.ofMinutes(2), Duration.ofMinutes(5), Duration.ofMinutes(2),
+                Duration.ofMinutes(1), Duration.ofSeconds(30));
+    }
+
+    @AfterEach
+    void tearDown() {
+        watchdog.close();
+    }
+
+    @Test
+    void stuckOrder_timesOutAwaitingTheNextTopic() throws Exception {
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(new CompletableFuture<>());
+        long now = System.currentTimeMillis();
+        watchdog.onEvents(List.of(record("order.created", ORDER_ID, 0, now), record("order.validated", ORDER_ID, 0, now)));
+
+        assertThat(watchdog.tick(now + 2 * MINUTE - 1000)).isZero();
+        assertThat(watchdog.tick(now + 2 * MINUTE + 1000)).isEqualTo(1);
+
+        verify(kafkaTemplate).send(recordCaptor.capture());
+        ProducerRecord<String, byte[]> sent = recordCaptor.getValue();
+        assertThat(sent.topic()).isEqualTo("order.failed");
+        assertThat(sent.key()).isEqualTo(ORDER_ID);
+        OrderEventEnvelope envelope = codecs.decode(sent.headers(), sent.value());
+        assertThat(envelope.getEventType()).isEqualTo("OrderTimedOut");
+        assertThat(envelope.getOrderId()).isEqualTo(ORDER_ID);
+        assertThat(envelope.readPayload()).isEqualTo(Map.of(
+                "awaiting", "order.inventory-reserved",
+                "failureReason", "TIMEOUT: no order.inventory-reserved within 120s"));
+        assertThat(registry.get("order_watchdog_timed_out_total").tags("awaiting", "order.inventory-reserved")
+                .counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void completedOrder_isNotReportedEvenIfAnEarlierEventArrivesLate() {
+        long now = System.currentTimeMillis();
+        watchdog.onEvents(List.of(record("order.created", ORDER_ID, 0, now), record("order.completed", ORDER_ID, 0, now),
+                record("order.payment-completed", ORDER_ID, 0, now)));
+
+        assertThat(watchdog.tick(now + 10 * MINUTE)).isZero();
+        verify(kafkaTemplate, never()).send(any(ProducerRecord.class));
+        assertThat(registry.get("order_watchdog_orders").gauge().value()).isZero();
+    }
+
+    @Test
+    void lateRecord_getsAGracePeriodForTheEventsAfterIt() {
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(new CompletableFuture<>());
+        long now = System.currentTimeMillis();
+        watchdog.onEvents(List.of(record("order.created", ORDER_ID, 0, now - 10 * MINUTE)));
+
+        assertThat(watchdog.tick(now + 20_000)).isZero();
+        assertThat(watchdog.tick(now + 31_000)).isEqualTo(1);
+    }
+
+    @Test
+    void revokedPartitions_stopBeingWatched() {
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(new CompletableFuture<>());
+        long now = System.currentTimeMillis();
+        watchdog.onEvents(List.of(record("order.created", ORDER_ID, 0, now), record("order.created", OTHER_ID, 1, now)));
+
+        watchdog.onPartitionsRevoked(List.of(new TopicPartition("order.created", 0),
+                new TopicPartition("order.completed", 0)));
+
+        assertThat(watchdog.tick(now + 10 * MINUTE)).isEqualTo(1);
+        verify(kafkaTemplate).send(recordCaptor.capture());
+        assertThat(recordCaptor.getValue().key()).isEqualTo(OTHER_ID);
+    }
+
+    private static ConsumerRecord<String, byte[]> record(String topic, String key, int partition, long timestamp) {
+        return new ConsumerRecord<>(topic, partition, 0L, timestamp, TimestampType.CREATE_TIME, 0, 0, key,
+                new byte[0], new RecordHeaders(), Optional.empty());
+    }
+
+    private static EnvelopeCodecs codecs() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        return new EnvelopeCodecs(JsonEnvelopeCodec.NAME, true,
+                new JsonEnvelopeCodec(objectMapper), new BinaryEnvelopeCodec(objectMapper));
+    }
+}
@@ -0,0 +1,128 @@
+package orderapi.watchdog;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimingWheelTest {
+
+    @Test
+    void entries_expireAtTheirDeadlineOnEveryLevel() {
+        TimingWheel wheel = new TimingWheel(1, 16, 0);
+        long[] deadlines = {1, 63, 64, 65, 4095, 4096, 4097, 262_143, 262_145, 300_000};
+        for (int i = 0; i < deadlines.length; i++) {
+            assertThat(wheel.schedule(0, i, i, deadlines[i])).isTrue();
+        }
+
+        Map<Integer, Long> expiredAt = new HashMap<>();
+        for (long now = 1; now <= 300_000; now++) {
+            long at = now;
+            wheel.advance(now, (hi, lo, tag) -> expiredAt.put(tag, at));
+        }
+
+        for (int i = 0; i < deadlines.length; i++) {
+            assertThat(expiredAt).containsEntry(i, deadlines[i]);
+        }
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void pastDeadline_expiresOnNextTick() {
+        TimingWheel wheel = new TimingWheel(100, 16, 10_000);
+        wheel.advance(20_000, (hi, lo, tag) -> { });
+
+        wheel.schedule(1, 2, 7, 5_000);
+
+        List<Integer> expired = new ArrayList<>();
+        wheel.advance(20_099, (hi, lo, tag) -> expired.add(tag));
+        assertThat(expired).isEmpty();
+        wheel.advance(20_100, (hi, lo, tag) -> expired.add(tag));
+        assertThat(expired).containsExactly(7);
+    }
+
+    @Test
+    void schedule_movesExistingEntryAndCancelRemovesIt() {
+        TimingWheel wheel = new TimingWheel(1, 16, 0);
+        wheel.schedule(1, 1, 1, 10);
+        wheel.schedule(2, 2, 2, 10);
+
+        wheel.schedule(1, 1, 3, 5_000);
+        assertThat(wheel.cancel(2, 2)).isTrue();
+        assertThat(wheel.cancel(2, 2)).isFalse();
+
+        List<Integer> expired = new ArrayList<>();
+        wheel.advance(4_999, (hi, lo, tag) -> expired.add(tag));
+        assertThat(expired).isEmpty();
+        assertThat(wheel.tag(1, 1)).isEqualTo(3);
+        assertThat(wheel.tag(2, 2)).isEqualTo(-1);
+        wheel.advance(5_000, (hi, lo, tag) -> expired.add(tag));
+        assertThat(expired).containsExactly(3);
+    }
+
+    @Test
+    void full_refusesNewKeysButMovesExistingOnes() {
+        TimingWheel wheel = new TimingWheel(1, 3, 0);
+        for (long key = 0; key < 3; key++) {
+            assertThat(wheel.schedule(key, key, 0, 100)).isTrue();
+        }
+
+        assertThat(wheel.schedule(9, 9, 0, 100)).isFalse();
+        assertThat(wheel.schedule(1, 1, 5, 200)).isTrue();
+        assertThat(wheel.size()).isEqualTo(3);
+    }
+
+    @Test
+    void cancelIf_dropsMatchingTags() {
+        TimingWheel wheel = new TimingWheel(1, 4096, 0);
+        for (int i = 0; i < 2000; i++) {
+            wheel.schedule(i, ~i, i % 4, 1000 + i);
+        }
+
+        assertThat(wheel.cancelIf(tag -> tag == 1)).isEqualTo(500);
+
+        List<Integer> expired = new ArrayList<>();
+        wheel.advance(10_000, (hi, lo, tag) -> expired.add(tag));
+        assertThat(expired).hasSize(1500).doesNotContain(1);
+    }
+
+    @Test
+    void randomOperations_matchAReferenceModel() {
+        Random random = new Random(42);
+        TimingWheel wheel = new TimingWheel(10, 100_000, 0);
+        // expected expiry tick per key: the deadline rounded up to a tick, but no earlier than the next tick
+        Map<Long, Long> dueTicks = new HashMap<>();
+        long now = 0;
+        for (int step = 0; step < 200_000; step++) {
+            long key = random.nextInt(5_000);
+            switch (random.nextInt(4)) {
+                case 0, 1 -> {
+                    long deadline = now - 1_000 + (long) (Math.pow(random.nextDouble(), 6) * 300_000_000L);
+                    wheel.schedule(key, -key, (int) key, deadline);
+                    dueTicks.put(key, Math.max(Math.floorDiv(deadline + 9, 10), now / 10 + 1));
+                }
+                case 2 -> assertThat(wheel.cancel(key, -key)).isEqualTo(dueTicks.remove(key) != null);
+                default -> {
+                    now += random.nextInt(20_000);
+                    long tick = now / 10;
+                    List<Long> expired = new ArrayList<>();
+                    wheel.advance(now, (hi, lo, tag) -> expired.add(hi));
+                    List<Long> due = new ArrayList<>();
+                    dueTicks.forEach((k, dueTick) -> {
+                        if (dueTick <= tick) {
+                            due.add(k);
+                        }
+                    });
+                    assertThat(expired).containsExactlyInAnyOrderElementsOf(due);
+                    due.forEach(dueTicks::remove);
+                }
+            }
+            assertThat(wheel.size()).isEqualTo(dueTicks.size());
+        }
+    }
+}
@@ -0,0 +1,35 @@
+apply(plugin = "io.spring.dependency-management")
+dependencyManagement {
+    imports {
+        mavenBom(org.springframework.boot.gradle.plugin.SpringBootPlugin.BOM_COORDINATES)
+    }
+}
+
+plugins {
+    id("me.champeau.jmh")
+}
+
+dependencies {
+    jmhImplementation(project(":order-events"))
+    jmhImplementation(project(":order-api"))
+    jmhImplementation(project(":order-validator"))
+    jmhImplementation(project(":inventory-service"))
+    jmhImplementation(project(":payment-service"))
+    jmhImplementation(project(":notification-service"))
+    jmhImplementation("org.springframework.boot:spring-boot-starter-web")
+    jmhImplementation("org.springframework.kafka:spring-kafka")
+    jmhImplementation("io.micrometer:micrometer-core")
+}
+
+// ./gradlew :order-benchmarks:jmh [-Pjmh.includes=EnvelopeCodec]
+jmh {
+    jmhVersion.set("1.37")
+    fork.set(1)
+    warmupIterations.set(3)
+    warmup.set("2s")
+    iterations.set(5)
+    timeOnIteration.set("2s")
+    profilers.set(listOf("gc"))
+    resultFormat.set("JSON")
+    (project.findProperty("jmh.includes") as String?)?.let { includes.set(listOf(it)) }
+}
@@ -0,0 +1,36 @@
+package benchmarks;
+
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Acknowledges every record at once without serializing or keeping it, so a benchmark measures
+ * only the code in front of the producer.
+ */
+class BlackholeKafkaTemplate extends KafkaTemplate<String, byte[]> {
+
+    BlackholeKafkaTemplate() {
+        super(() -> new MockProducer<>());
+    }
+
+    @Override
+    public CompletableFuture<SendResult<String, byte[]>> send(ProducerRecord<String, byte[]> record) {
+        return CompletableFuture.completedFuture(new SendResult<>(record, null));
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public Map<MetricName, ? extends Metric> metrics() {
+        return Map.of();
+    }
+}
@@ -0,0 +1,91 @@
+package benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import controller.OrderApiController;
+import dto.CreateOrderRequestDTO;
+import events.codec.BinaryEnvelopeCodec;
+import events.codec.EnvelopeCodecs;
+import events.codec.JsonEnvelopeCodec;
+import events.id.OrderIdGenerator;
+import events.metrics.StageMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import orderapi.OrderCreatedEvents;
+import orderapi.admission.AdmissionLimiter;
+import orderapi.bulk.BulkOrderIngestor;
+import orderapi.durable.GroupCommitSender;
+import orderapi.status.OrderStatusView;
+import orderapi.stream.OrderStatusStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code createOrder} from request body to acknowledged send: JSON binding of the body with the
+ * shared {@code ObjectMapper}, admission, id generation, encoding and the status view update. The
+ * servlet container and Spring MVC dispatch are not included. In durable mode the request also
+ * goes through the group commit and its response future.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CreateOrderBenchmark {
+
+    private static final byte[] BODY = """
+            {"customerId":"cust-1","items":["SKU-1","SKU-2","SKU-3"],"totalAmount":9999}
+            """.getBytes(StandardCharsets.UTF_8);
+
+    @Param({"false", "true"})
+    public boolean durable;
+
+    private ObjectMapper objectMapper;
+    private OrderStatusView statusView;
+    private OrderStatusStream statusStream;
+    private GroupCommitSender groupCommit;
+    private OrderApiController controller;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+        MeterRegistry registry = new SimpleMeterRegistry();
+        BlackholeKafkaTemplate kafkaTemplate = new BlackholeKafkaTemplate();
+        EnvelopeCodecs codecs = new EnvelopeCodecs(JsonEnvelopeCodec.NAME, true,
+                new JsonEnvelopeCodec(objectMapper), new BinaryEnvelopeCodec(objectMapper));
+        AdmissionLimiter admission = new AdmissionLimiter(kafkaTemplate, registry, true, 50, 8, 2000,
+                Duration.ofMillis(100), 0.9, Duration.ofSeconds(1));
+        statusView = new OrderStatusView(codecs, registry, 1 << 20, Duration.ofSeconds(1), Duration.ofSeconds(1),
+                Duration.ofSeconds(1));
+        OrderCreatedEvents orderCreated = new OrderCreatedEvents(codecs, new StageMetrics(registry), new OrderIdGenerator());
+        BulkOrderIngestor bulk = new BulkOrderIngestor(kafkaTemplate, admission, orderCreated, statusView, objectMapper,
+                registry, 500, Duration.ofSeconds(30));
+        statusStream = new OrderStatusStream(statusView, registry, 1, 1, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        groupCommit = new GroupCommitSender(kafkaTemplate, registry);
+        controller = new OrderApiController(kafkaTemplate, admission, statusView, orderCreated, bulk, statusStream,
+                groupCommit, registry, durable, Duration.ofSeconds(10));
+    }
+
+    @TearDown
+    public void tearDown() {
+        groupCommit.close();
+        statusStream.close();
+        statusView.close();
+    }
+
+    @Benchmark
+    public Object createOrder() throws IOException {
+        Object response = controller.createOrder(objectMapper.readValue(BODY, CreateOrderRequestDTO.class));
+        return response instanceof CompletableFuture<?> future ? future.join() : response;
+    }
+}
@@ -0,0 +1,65 @@
+package benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import events.OrderEventEnvelope;
+import events.codec.BinaryEnvelopeCodec;
+import events.codec.EnvelopeCodec;
+import events.codec.JsonEnvelopeCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Envelope serialization through the shared {@code ObjectMapper}, per codec: encode, full decode,
+ * and the pass-through decode the stages use.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EnvelopeCodecBenchmark {
+
+    @Param({JsonEnvelopeCodec.NAME, BinaryEnvelopeCodec.NAME})
+    public String codecName;
+
+    private EnvelopeCodec codec;
+    private OrderEventEnvelope envelope;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        codec = JsonEnvelopeCodec.NAME.equals(codecName)
+                ? new JsonEnvelopeCodec(objectMapper)
+                : new BinaryEnvelopeCodec(objectMapper);
+        envelope = Orders.envelope("InventoryReserved", Orders.ORDER_ID, Map.of(
+                "customerId", "cust-1",
+                "items", List.of("SKU-1", "SKU-2", "SKU-3"),
+                "totalAmount", 9999));
+        encoded = codec.encode(envelope);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return codec.encode(envelope);
+    }
+
+    @Benchmark
+    public OrderEventEnvelope decode() throws IOException {
+        return codec.decode(encoded);
+    }
+
+    @Benchmark
+    public OrderEventEnvelope decodePassThrough() throws IOException {
+        return codec.decodePassThrough(encoded);
+    }
+}
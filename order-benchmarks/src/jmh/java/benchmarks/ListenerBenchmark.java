@@ -0,0 +1,144 @@
+package benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import events.codec.BinaryEnvelopeCodec;
+import events.codec.EnvelopeCodecs;
+import events.codec.JsonEnvelopeCodec;
+import events.dedup.DedupCache;
+import events.metrics.StageMetrics;
+import events.parallel.KeyOrderedDispatcher;
+import events.retry.RetryTopics;
+import events.transaction.TransactionBatcher;
+import events.transport.EventTransport;
+import events.transport.KafkaEventTransport;
+import inventory.stock.StockLedger;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import listener.InventoryServiceListener;
+import listener.NotificationServiceListener;
+import listener.PaymentServiceListener;
+import notification.dispatch.NotificationDispatcher;
+import ordervalidator.controller.OrderValidatorController;
+import ordervalidator.reference.FileReferenceData;
+import ordervalidator.reference.ReferenceLookups;
+import ordervalidator.rules.OrderRules;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.core.io.ClassPathResource;
+import payment.gateway.Authorization;
+import payment.gateway.PaymentClient;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Decode-transform-encode of one record in each stage's record-mode listener, with a
+ * {@link BlackholeKafkaTemplate} instead of a producer.
+ * <p>
+ * Records cycle through a pool of distinct orders. Duplicate suppression is disabled, because every
+ * pass after the first would otherwise be skipped as a redelivery; the inventory benchmark releases
+ * each reservation again right after it. The payment gateway approves synchronously, so only the
+ * client's bookkeeping is measured. The validator runs the default rule set against the reference
+ * data stand-in without a file, so every catalogue lookup is a cache hit after the first pass.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ListenerBenchmark {
+
+    private static final int ORDERS = 1024;
+
+    @Param({"order-validator", "inventory-service", "payment-service", "notification-service"})
+    public String stage;
+
+    @Param({JsonEnvelopeCodec.NAME, BinaryEnvelopeCodec.NAME})
+    public String codecName;
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private ConsumerRecord<String, byte[]>[] records;
+    private Consumer<ConsumerRecord<String, byte[]>> step;
+    private KeyOrderedDispatcher dispatcher;
+    private AutoCloseable resource;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        EnvelopeCodecs codecs = new EnvelopeCodecs(codecName, true,
+                new JsonEnvelopeCodec(objectMapper), new BinaryEnvelopeCodec(objectMapper));
+        EventTransport transport = new KafkaEventTransport(new BlackholeKafkaTemplate(), null);
+        dispatcher = new KeyOrderedDispatcher(16, Duration.ofSeconds(1), registry);
+        DedupCache dedup = new DedupCache(0, Duration.ofHours(1), registry);
+        StageMetrics stageMetrics = new StageMetrics(registry);
+        RetryTopics retries = new RetryTopics(List.of(Duration.ofSeconds(1)), true, Duration.ofSeconds(1), registry);
+        TransactionBatcher transactions = new TransactionBatcher(MockProducer::new, 500, Duration.ofMillis(100), registry);
+        switch (stage) {
+            case "order-validator" -> {
+                records = Orders.records(codecs, "order.created", "OrderCreated", ORDERS);
+                ReferenceLookups lookups = new ReferenceLookups(new FileReferenceData(objectMapper, ""), registry,
+                        100_000, Duration.ofMinutes(1), Duration.ofMinutes(10));
+                resource = lookups;
+                OrderRules rules = new OrderRules(objectMapper, lookups, registry,
+                        new ClassPathResource("validation-rules.json"));
+                step = new OrderValidatorController(transport, codecs, dispatcher, retries, transactions, dedup,
+                        stageMetrics, rules, registry)::onOrderCreated;
+            }
+            case "inventory-service" -> {
+                records = Orders.records(codecs, "order.validated", "OrderValidated", ORDERS);
+                // the records repeat, so released orders are not remembered as finished
+                StockLedger ledger = new StockLedger(List.of("SKU-1", "SKU-2", "SKU-3"), Long.MAX_VALUE / 4, 8, 0,
+                        Duration.ofHours(1), registry);
+                InventoryServiceListener listener = new InventoryServiceListener(transport, codecs, dispatcher,
+                        retries, transactions, dedup, stageMetrics, ledger, registry);
+                step = record -> {
+                    listener.onOrderValidated(record);
+                    ledger.release(record.key());
+                };
+            }
+            case "payment-service" -> {
+                records = Orders.records(codecs, "order.inventory-reserved", "InventoryReserved", ORDERS);
+                PaymentClient client = new PaymentClient(
+                        request -> CompletableFuture.completedFuture(Authorization.approved(request.orderId(), "auth-1")),
+                        registry, 512, 4, 32, Duration.ofMillis(5), Duration.ofSeconds(10));
+                resource = client;
+                step = new PaymentServiceListener(transport, codecs, dispatcher, retries, transactions, dedup,
+                        stageMetrics, client, registry)::onOrderPaid;
+            }
+            case "notification-service" -> {
+                records = Orders.records(codecs, "order.payment-completed", "PaymentCompleted", ORDERS);
+                NotificationDispatcher notifications = new NotificationDispatcher(digest -> { }, registry,
+                        Duration.ofMillis(100), 50, 16);
+                resource = notifications;
+                step = new NotificationServiceListener(transport, codecs, dispatcher, retries, transactions,
+                        dedup, stageMetrics, notifications, registry)::onOrderCompleted;
+            }
+            default -> throw new IllegalArgumentException("Unknown stage: " + stage);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        dispatcher.close();
+        if (resource != null) {
+            resource.close();
+        }
+    }
+
+    @Benchmark
+    public void handleRecord() {
+        step.accept(records[next++ & (ORDERS - 1)]);
+    }
+}
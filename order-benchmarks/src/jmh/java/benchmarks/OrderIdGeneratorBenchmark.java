@@ -0,0 +1,48 @@
+package benchmarks;
+
+import events.id.OrderIdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Id creation of {@link OrderIdGenerator} against {@link UUID#randomUUID()}, formatted as strings
+ * as {@code createOrder} does twice per request. The {@code Contended} variants run on every core;
+ * {@code randomUUID} shares one {@code SecureRandom} across all threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OrderIdGeneratorBenchmark {
+
+    private final OrderIdGenerator generator = new OrderIdGenerator();
+
+    @Benchmark
+    public String randomUuid() {
+        return UUID.randomUUID().toString();
+    }
+
+    @Benchmark
+    public String orderIdGenerator() {
+        return generator.nextString();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String randomUuidContended() {
+        return UUID.randomUUID().toString();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String orderIdGeneratorContended() {
+        return generator.nextString();
+    }
+}
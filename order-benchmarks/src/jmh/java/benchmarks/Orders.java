@@ -0,0 +1,57 @@
+package benchmarks;
+
+import events.OrderEventEnvelope;
+import events.codec.EnvelopeCodecs;
+import events.id.OrderIdGenerator;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/** Test orders shared by the benchmarks. */
+final class Orders {
+
+    static final String ORDER_ID = "0192f1a4-7b3c-7d2e-8f10-3a4b5c6d7e8f";
+
+    private Orders() {
+    }
+
+    static OrderEventEnvelope envelope(String eventType, String orderId, Object payload) {
+        OrderEventEnvelope envelope = new OrderEventEnvelope();
+        envelope.setEventType(eventType);
+        envelope.setOrderId(orderId);
+        envelope.setCorrelationId("0192f1a4-7b3c-7d2f-9a10-3a4b5c6d7e90");
+        envelope.setTimestamp(Instant.parse("2026-02-06T12:00:00Z").toString());
+        envelope.setPayload(payload);
+        return envelope;
+    }
+
+    /**
+     * {@code count} consumed records of distinct orders, encoded with the producer codec; customers
+     * repeat every 16 orders.
+     */
+    static ConsumerRecord<String, byte[]>[] records(EnvelopeCodecs codecs, String topic, String eventType, int count)
+            throws IOException {
+        OrderIdGenerator ids = new OrderIdGenerator();
+        @SuppressWarnings("unchecked")
+        ConsumerRecord<String, byte[]>[] records = new ConsumerRecord[count];
+        for (int i = 0; i < count; i++) {
+            String orderId = ids.nextString();
+            OrderEventEnvelope envelope = envelope(eventType, orderId, Map.of(
+                    "customerId", "cust-" + (i % 16),
+                    "items", List.of("SKU-1", "SKU-2", "SKU-3"),
+                    "totalAmount", 9999));
+            ProducerRecord<String, byte[]> out = codecs.record(topic, orderId, envelope);
+            records[i] = new ConsumerRecord<>(topic, 0, i, System.currentTimeMillis(), TimestampType.CREATE_TIME,
+                    orderId.length(), out.value().length, orderId, out.value(), new RecordHeaders(out.headers().toArray()),
+                    Optional.empty());
+        }
+        return records;
+    }
+}
@@ -0,0 +1,62 @@
+package benchmarks;
+
+import inventory.stock.StockLedger;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reserve/release of one unit of a single hot SKU on every core, the worst case for a promotion
+ * SKU, per number of stock stripes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(Threads.MAX)
+public class StockLedgerContentionBenchmark {
+
+    private static final List<StockLedger.Line> LINES = List.of(new StockLedger.Line("HOT", 1));
+
+    @Param({"1", "2", "4", "8", "16"})
+    public int stripes;
+
+    private StockLedger ledger;
+
+    @Setup
+    public void setUp() {
+        ledger = new StockLedger(List.of("HOT"), 1_000_000, stripes, 0, Duration.ofHours(1), new SimpleMeterRegistry());
+    }
+
+    /** Order ids unique across threads, so every reservation really takes stock. */
+    @State(Scope.Thread)
+    public static class OrderIds {
+
+        private static final AtomicInteger THREADS = new AtomicInteger();
+
+        private final String prefix = "t" + THREADS.getAndIncrement() + "-";
+        private long next;
+
+        String next() {
+            return prefix + next++;
+        }
+    }
+
+    @Benchmark
+    public void reserveAndRelease(OrderIds orderIds) {
+        String orderId = orderIds.next();
+        ledger.reserve(orderId, LINES);
+        ledger.release(orderId);
+    }
+}
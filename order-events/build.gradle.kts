@@ -7,4 +7,19 @@ dependencyManagement {
 
 dependencies {
     implementation("com.fasterxml.jackson.core:jackson-databind")
+    implementation("org.springframework.kafka:spring-kafka")
+    implementation("io.micrometer:micrometer-core")
+    // the version kafka-clients was built against
+    implementation("com.github.luben:zstd-jni:1.5.5-1")
+    testImplementation("org.springframework.boot:spring-boot-starter-test")
+}
+
+// ./gradlew :order-events:trainDictionary -Pargs="--input=dump.jsonl --output=orders-1.dict [--codec=binary]"
+tasks.register<JavaExec>("trainDictionary") {
+    group = "application"
+    description = "Trains a zstd dictionary for envelope compression from a topic dump."
+    mainClass.set("events.codec.DictionaryTrainer")
+    classpath = sourceSets["main"].runtimeClasspath
+    workingDir = rootDir
+    (project.findProperty("args") as String?)?.let { args(it.split(" ").filter(String::isNotBlank)) }
 }
@@ -0,0 +1,45 @@
+package events;
+
+import events.transport.EventTransport;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.kafka.KafkaException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Publishes the outputs of one consumed batch together.
+ * <p>
+ * All records are handed to the transport first, then the transport is flushed once and every
+ * acknowledgement is awaited. A batch listener that calls this before returning only lets the
+ * container commit its offsets once the whole batch is on the broker; if any send fails the
+ * exception propagates and the batch is redelivered.
+ */
+public final class BatchPublisher {
+
+    private BatchPublisher() {
+    }
+
+    public static void sendAll(EventTransport transport, List<ProducerRecord<String, byte[]>> records, Duration timeout) {
+        if (records.isEmpty()) {
+            return;
+        }
+        CompletableFuture<?>[] acks = new CompletableFuture<?>[records.size()];
+        for (int i = 0; i < acks.length; i++) {
+            acks[i] = transport.send(records.get(i));
+        }
+        transport.flush();
+        try {
+            CompletableFuture.allOf(acks).get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KafkaException("Interrupted while publishing batch of " + acks.length, e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new KafkaException("Failed to publish batch of " + acks.length, e);
+        }
+    }
+}
@@ -2,6 +2,8 @@ package events;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
+import java.io.IOException;
+
 /**
  * Common envelope for all order events.
  */
@@ -24,4 +26,11 @@ public class OrderEventEnvelope {
     public void setTimestamp(String timestamp) { this.timestamp = timestamp; }
     public Object getPayload() { return payload; }
     public void setPayload(Object payload) { this.payload = payload; }
+
+    /**
+     * Payload for stages that inspect its content; a {@link RawPayload} is decoded on first call.
+     */
+    public Object readPayload() throws IOException {
+        return payload instanceof RawPayload raw ? raw.value() : payload;
+    }
 }
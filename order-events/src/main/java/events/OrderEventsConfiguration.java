@@ -0,0 +1,47 @@
+package events;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import events.codec.BinaryEnvelopeCodec;
+import events.codec.DictionaryCompression;
+import events.codec.EnvelopeCodecs;
+import events.codec.JsonEnvelopeCodec;
+import events.id.OrderIdGenerator;
+import events.metrics.StageMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+
+/**
+ * Shared beans for services that publish or consume order events. Imported by each application.
+ */
+@Configuration
+public class OrderEventsConfiguration {
+
+    @Bean
+    public EnvelopeCodecs envelopeCodecs(ObjectMapper objectMapper,
+                                         @Value("${order.codec.producer:json}") String producerCodec,
+                                         @Value("${order.codec.pass-through:true}") boolean passThrough,
+                                         @Value("${order.codec.compression.dictionary:}") String dictionary,
+                                         @Value("${order.codec.compression.dictionaries:}") String dictionaries,
+                                         @Value("${order.codec.compression.level:3}") int level,
+                                         @Value("${order.codec.compression.min-size:32}") int minSize) throws IOException {
+        DictionaryCompression compression = dictionary.isBlank() && dictionaries.isBlank()
+                ? null
+                : DictionaryCompression.load(dictionaries, dictionary, level, minSize);
+        return new EnvelopeCodecs(producerCodec, passThrough, compression,
+                new JsonEnvelopeCodec(objectMapper), new BinaryEnvelopeCodec(objectMapper));
+    }
+
+    @Bean
+    public StageMetrics stageMetrics(MeterRegistry registry) {
+        return new StageMetrics(registry);
+    }
+
+    @Bean
+    public OrderIdGenerator orderIdGenerator() {
+        return new OrderIdGenerator();
+    }
+}
@@ -0,0 +1,177 @@
+package events;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Envelope payload kept as the UTF-8 JSON bytes it arrived with.
+ * <p>
+ * Codecs in pass-through mode hand this out instead of a decoded {@code Map} tree. A stage that
+ * only relabels an event copies the bytes verbatim into the outbound record; a stage that needs the
+ * content calls {@link #value()}, which decodes once on first use. The bytes are a slice of the
+ * consumed record value and are never modified.
+ */
+@JsonSerialize(using = RawPayload.Serializer.class)
+public final class RawPayload {
+
+    private final byte[] bytes;
+    private final int offset;
+    private final int length;
+    private final ObjectReader reader;
+    private Object value;
+    private boolean decoded;
+
+    public RawPayload(byte[] bytes, int offset, int length, ObjectReader reader) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+        this.reader = reader;
+    }
+
+    /** Decoded payload ({@code Map}, {@code List} or scalar); decoded on first call only. */
+    public Object value() throws IOException {
+        if (!decoded) {
+            value = reader.readValue(bytes, offset, length);
+            decoded = true;
+        }
+        return value;
+    }
+
+    /** Streaming parser over the payload bytes, for callers that scan the payload without binding it. */
+    public JsonParser parser() throws IOException {
+        return reader.createParser(bytes, offset, length);
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public void writeTo(ByteBuffer buf) {
+        buf.put(bytes, offset, length);
+    }
+
+    @Override
+    public String toString() {
+        return new String(bytes, offset, length, StandardCharsets.UTF_8);
+    }
+
+    static final class Serializer extends StdSerializer<RawPayload> {
+
+        Serializer() {
+            super(RawPayload.class);
+        }
+
+        @Override
+        public void serialize(RawPayload payload, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeRawValue(new RawJson(payload));
+        }
+    }
+
+    /**
+     * Lets byte-based generators append the payload bytes without decoding them; char-based
+     * generators fall back to the decoded string.
+     */
+    private static final class RawJson implements SerializableString {
+
+        private final RawPayload payload;
+        private SerializedString text;
+
+        RawJson(RawPayload payload) {
+            this.payload = payload;
+        }
+
+        private SerializedString text() {
+            if (text == null) {
+                text = new SerializedString(payload.toString());
+            }
+            return text;
+        }
+
+        @Override
+        public String getValue() {
+            return text().getValue();
+        }
+
+        @Override
+        public int charLength() {
+            return text().charLength();
+        }
+
+        @Override
+        public char[] asQuotedChars() {
+            return text().asQuotedChars();
+        }
+
+        @Override
+        public byte[] asUnquotedUTF8() {
+            byte[] out = new byte[payload.length];
+            System.arraycopy(payload.bytes, payload.offset, out, 0, payload.length);
+            return out;
+        }
+
+        @Override
+        public byte[] asQuotedUTF8() {
+            return text().asQuotedUTF8();
+        }
+
+        @Override
+        public int appendQuotedUTF8(byte[] buffer, int offset) {
+            return text().appendQuotedUTF8(buffer, offset);
+        }
+
+        @Override
+        public int appendQuoted(char[] buffer, int offset) {
+            return text().appendQuoted(buffer, offset);
+        }
+
+        @Override
+        public int appendUnquotedUTF8(byte[] buffer, int offset) {
+            if (payload.length > buffer.length - offset) {
+                return -1;
+            }
+            System.arraycopy(payload.bytes, payload.offset, buffer, offset, payload.length);
+            return payload.length;
+        }
+
+        @Override
+        public int appendUnquoted(char[] buffer, int offset) {
+            return text().appendUnquoted(buffer, offset);
+        }
+
+        @Override
+        public int writeQuotedUTF8(OutputStream out) throws IOException {
+            return text().writeQuotedUTF8(out);
+        }
+
+        @Override
+        public int writeUnquotedUTF8(OutputStream out) throws IOException {
+            out.write(payload.bytes, payload.offset, payload.length);
+            return payload.length;
+        }
+
+        @Override
+        public int putQuotedUTF8(ByteBuffer buffer) {
+            return text().putQuotedUTF8(buffer);
+        }
+
+        @Override
+        public int putUnquotedUTF8(ByteBuffer buffer) {
+            if (payload.length > buffer.remaining()) {
+                return -1;
+            }
+            payload.writeTo(buffer);
+            return payload.length;
+        }
+    }
+}
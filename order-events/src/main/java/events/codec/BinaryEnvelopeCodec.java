@@ -0,0 +1,282 @@
+package events.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import events.OrderEventEnvelope;
+import events.RawPayload;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Compact binary envelope format.
+ * <p>
+ * Layout (version 1, big-endian):
+ * <pre>
+ * u8      version
+ * u8      eventType code (index into {@link #EVENT_TYPES}, or {@code 0xFF} followed by a string)
+ * id      orderId
+ * id      correlationId
+ * u8 tag  timestamp: 0 = null, 1 = i64 epoch nanos, 2 = string
+ * i32     payload length (-1 = null) followed by the payload as UTF-8 JSON
+ * </pre>
+ * An {@code id} is a tag byte: 0 = null, 1 = UUID as two i64, 2 = string. Strings are a u16 length
+ * followed by UTF-8 bytes. Ids and timestamps that cannot be packed fall back to the string form,
+ * so any envelope the JSON codec accepts round-trips.
+ */
+public class BinaryEnvelopeCodec implements EnvelopeCodec {
+
+    public static final String NAME = "binary";
+
+    private static final byte VERSION = 1;
+    private static final String[] EVENT_TYPES = {
+            "OrderCreated",
+            "OrderValidated",
+            "InventoryReserved",
+            "PaymentCompleted",
+            "OrderCompleted",
+            "OrderValidationFailed",
+            "OrderInventoryFailed",
+            "OrderPaymentFailed",
+            "OrderNotificationFailed"
+    };
+    private static final int EVENT_TYPE_NULL = 0xFE;
+    private static final int EVENT_TYPE_STRING = 0xFF;
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_PACKED = 1;
+    private static final byte TAG_STRING = 2;
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final ObjectMapper objectMapper;
+    private final ObjectReader payloadReader;
+
+    public BinaryEnvelopeCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.payloadReader = objectMapper.readerFor(Object.class);
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(OrderEventEnvelope envelope) throws IOException {
+        Object payload = envelope.getPayload();
+        RawPayload raw = payload instanceof RawPayload r ? r : null;
+        byte[] json = payload != null && raw == null ? objectMapper.writeValueAsBytes(payload) : null;
+        int payloadLength = raw != null ? raw.length() : json != null ? json.length : -1;
+        ByteBuffer buf = ByteBuffer.allocate(maxSize(envelope, payloadLength));
+        buf.put(VERSION);
+        putEventType(buf, envelope.getEventType());
+        putId(buf, envelope.getOrderId());
+        putId(buf, envelope.getCorrelationId());
+        putTimestamp(buf, envelope.getTimestamp());
+        buf.putInt(payloadLength);
+        if (raw != null) {
+            raw.writeTo(buf);
+        } else if (json != null) {
+            buf.put(json);
+        }
+        byte[] out = new byte[buf.position()];
+        buf.flip();
+        buf.get(out);
+        return out;
+    }
+
+    @Override
+    public OrderEventEnvelope decode(byte[] data) throws IOException {
+        return decode(data, false);
+    }
+
+    /**
+     * The payload is already a length-prefixed JSON slice, so pass-through only wraps it.
+     */
+    @Override
+    public OrderEventEnvelope decodePassThrough(byte[] data) throws IOException {
+        return decode(data, true);
+    }
+
+    private OrderEventEnvelope decode(byte[] data, boolean passThrough) throws IOException {
+        try {
+            ByteBuffer buf = ByteBuffer.wrap(data);
+            byte version = buf.get();
+            if (version != VERSION) {
+                throw new IOException("Unsupported binary envelope version: " + version);
+            }
+            OrderEventEnvelope envelope = new OrderEventEnvelope();
+            envelope.setEventType(getEventType(buf));
+            envelope.setOrderId(getId(buf));
+            envelope.setCorrelationId(getId(buf));
+            envelope.setTimestamp(getTimestamp(buf));
+            int length = buf.getInt();
+            if (length > buf.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            if (length >= 0) {
+                envelope.setPayload(passThrough
+                        ? new RawPayload(data, buf.position(), length, payloadReader)
+                        : payloadReader.readValue(data, buf.position(), length));
+                buf.position(buf.position() + length);
+            }
+            return envelope;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Malformed binary envelope", e);
+        }
+    }
+
+    private static int maxSize(OrderEventEnvelope envelope, int payloadLength) {
+        return 1
+                + 3 + utf8MaxLength(envelope.getEventType())
+                + 3 + Math.max(16, utf8MaxLength(envelope.getOrderId()))
+                + 3 + Math.max(16, utf8MaxLength(envelope.getCorrelationId()))
+                + 3 + Math.max(8, utf8MaxLength(envelope.getTimestamp()))
+                + 4 + Math.max(0, payloadLength);
+    }
+
+    private static int utf8MaxLength(String s) {
+        return s != null ? s.length() * 3 : 0;
+    }
+
+    private static void putEventType(ByteBuffer buf, String eventType) {
+        if (eventType == null) {
+            buf.put((byte) EVENT_TYPE_NULL);
+            return;
+        }
+        for (int i = 0; i < EVENT_TYPES.length; i++) {
+            if (EVENT_TYPES[i].equals(eventType)) {
+                buf.put((byte) i);
+                return;
+            }
+        }
+        buf.put((byte) EVENT_TYPE_STRING);
+        putString(buf, eventType);
+    }
+
+    private static String getEventType(ByteBuffer buf) {
+        int code = buf.get() & 0xFF;
+        if (code == EVENT_TYPE_NULL) {
+            return null;
+        }
+        if (code == EVENT_TYPE_STRING) {
+            return getString(buf);
+        }
+        if (code >= EVENT_TYPES.length) {
+            throw new IllegalArgumentException("Unknown event type code: " + code);
+        }
+        return EVENT_TYPES[code];
+    }
+
+    private static void putId(ByteBuffer buf, String id) {
+        if (id == null) {
+            buf.put(TAG_NULL);
+            return;
+        }
+        UUID uuid = parseCanonicalUuid(id);
+        if (uuid != null) {
+            buf.put(TAG_PACKED);
+            buf.putLong(uuid.getMostSignificantBits());
+            buf.putLong(uuid.getLeastSignificantBits());
+        } else {
+            buf.put(TAG_STRING);
+            putString(buf, id);
+        }
+    }
+
+    private static String getId(ByteBuffer buf) {
+        byte tag = buf.get();
+        return switch (tag) {
+            case TAG_NULL -> null;
+            case TAG_PACKED -> new UUID(buf.getLong(), buf.getLong()).toString();
+            case TAG_STRING -> getString(buf);
+            default -> throw new IllegalArgumentException("Unknown id tag: " + tag);
+        };
+    }
+
+    /**
+     * Only lower-case canonical UUIDs are packed, because those are the only ones that
+     * {@link UUID#toString()} reproduces byte for byte.
+     */
+    private static UUID parseCanonicalUuid(String id) {
+        if (id.length() != 36) {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(id);
+            return uuid.toString().equals(id) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void putTimestamp(ByteBuffer buf, String timestamp) {
+        if (timestamp == null) {
+            buf.put(TAG_NULL);
+            return;
+        }
+        Instant instant = parseCanonicalInstant(timestamp);
+        if (instant != null) {
+            buf.put(TAG_PACKED);
+            buf.putLong(instant.getEpochSecond() * NANOS_PER_SECOND + instant.getNano());
+        } else {
+            buf.put(TAG_STRING);
+            putString(buf, timestamp);
+        }
+    }
+
+    private static String getTimestamp(ByteBuffer buf) {
+        byte tag = buf.get();
+        return switch (tag) {
+            case TAG_NULL -> null;
+            case TAG_PACKED -> {
+                long nanos = buf.getLong();
+                yield Instant.ofEpochSecond(Math.floorDiv(nanos, NANOS_PER_SECOND), Math.floorMod(nanos, NANOS_PER_SECOND)).toString();
+            }
+            case TAG_STRING -> getString(buf);
+            default -> throw new IllegalArgumentException("Unknown timestamp tag: " + tag);
+        };
+    }
+
+    /**
+     * Timestamps are packed only when {@link Instant#toString()} gives the same text back and the
+     * instant fits in a signed 64-bit nanosecond count.
+     */
+    private static Instant parseCanonicalInstant(String timestamp) {
+        try {
+            Instant instant = Instant.parse(timestamp);
+            if (!instant.toString().equals(timestamp)) {
+                return null;
+            }
+            Math.addExact(Math.multiplyExact(instant.getEpochSecond(), NANOS_PER_SECOND), instant.getNano());
+            return instant;
+        } catch (DateTimeException | ArithmeticException e) {
+            return null;
+        }
+    }
+
+    private static void putString(ByteBuffer buf, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("Envelope field too long: " + bytes.length + " bytes");
+        }
+        buf.putShort((short) bytes.length);
+        buf.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buf) {
+        int length = buf.getShort() & 0xFFFF;
+        if (length > buf.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String s = new String(buf.array(), buf.arrayOffset() + buf.position(), length, StandardCharsets.UTF_8);
+        buf.position(buf.position() + length);
+        return s;
+    }
+}
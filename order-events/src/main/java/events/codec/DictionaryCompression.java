@@ -0,0 +1,203 @@
+package events.codec;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDecompressCtx;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdException;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.stream.Stream;
+
+/**
+ * Per-record zstd compression of encoded envelopes with a pre-trained dictionary.
+ * <p>
+ * An envelope is a few hundred bytes of field names, event types and ids that repeat from record
+ * to record but rarely within one, so batch compression gains little on small batches. A
+ * dictionary trained on sampled traffic ({@link DictionaryTrainer}) holds those common strings, and
+ * each record is compressed against it on its own. A compressed record carries the
+ * {@value #HEADER} header with the dictionary's id (the id zstd stores in the dictionary, as a
+ * 4-byte big-endian int); records without it are stored as encoded. Values that would not get
+ * smaller are left uncompressed. Frames leave out the dictionary id and checksum, which would add
+ * up to 8 bytes to a value of 60 or so; Kafka checksums each batch already.
+ * <p>
+ * Consumers keep every dictionary they may meet, so a new dictionary is rolled out by adding it to
+ * every consumer first and switching producers to it afterwards, and an old one is removed only
+ * once its records have expired from every topic.
+ */
+public class DictionaryCompression {
+
+    public static final String HEADER = "order-dict";
+
+    /** Largest value decompressed; zstd frames state their size, so a corrupt size fails early. */
+    private static final int MAX_DECOMPRESSED_SIZE = 16 * 1024 * 1024;
+
+    private final Map<Integer, ZstdDictDecompress> decompressors = new HashMap<>();
+    private final ZstdDictCompress compressor;
+    private final byte[] compressorHeader;
+    private final int level;
+    private final int minSize;
+    /**
+     * Contexts are borrowed from a pool for each call: creating one costs more than compressing an
+     * envelope, and a thread-local context would be created for every record when each record runs
+     * on a new virtual thread. Contexts beyond the pool's capacity are closed when returned.
+     */
+    private final BlockingQueue<ZstdCompressCtx> compressContexts;
+    private final BlockingQueue<ZstdDecompressCtx> decompressContexts;
+
+    /**
+     * @param dictionaries every dictionary records may have been compressed with
+     * @param producerDictionary dictionary to compress with, or {@code null} to only decompress
+     * @param level zstd compression level
+     * @param minSize smallest value worth compressing
+     */
+    public DictionaryCompression(List<byte[]> dictionaries, byte[] producerDictionary, int level, int minSize) {
+        for (byte[] dictionary : dictionaries) {
+            addDictionary(dictionary);
+        }
+        if (producerDictionary != null) {
+            int id = addDictionary(producerDictionary);
+            this.compressor = new ZstdDictCompress(producerDictionary, level);
+            this.compressorHeader = ByteBuffer.allocate(Integer.BYTES).putInt(id).array();
+        } else {
+            this.compressor = null;
+            this.compressorHeader = null;
+        }
+        int pooled = 2 * Runtime.getRuntime().availableProcessors();
+        this.compressContexts = new ArrayBlockingQueue<>(pooled);
+        this.decompressContexts = new ArrayBlockingQueue<>(pooled);
+        this.level = level;
+        this.minSize = minSize;
+    }
+
+    /**
+     * Reads the producer dictionary {@code producerFile} and every {@code *.dict} file of
+     * {@code directory}; blank paths are skipped.
+     */
+    public static DictionaryCompression load(String directory, String producerFile, int level, int minSize)
+            throws IOException {
+        List<byte[]> dictionaries = List.of();
+        if (!directory.isBlank()) {
+            try (Stream<Path> files = Files.list(Path.of(directory))) {
+                dictionaries = files.filter(file -> file.getFileName().toString().endsWith(".dict")).sorted()
+                        .map(DictionaryCompression::read)
+                        .toList();
+            }
+        }
+        byte[] producerDictionary = producerFile.isBlank() ? null : Files.readAllBytes(Path.of(producerFile));
+        return new DictionaryCompression(dictionaries, producerDictionary, level, minSize);
+    }
+
+    /** Whether records are compressed on the way out. */
+    public boolean compressing() {
+        return compressor != null;
+    }
+
+    /**
+     * Compresses an encoded value with the producer dictionary and adds the {@value #HEADER} header
+     * to {@code headers}, unless compression is off or does not make it smaller.
+     */
+    public byte[] compress(byte[] value, Headers headers) {
+        if (compressor == null || value.length < minSize) {
+            return value;
+        }
+        ZstdCompressCtx context = compressContexts.poll();
+        if (context == null) {
+            context = new ZstdCompressCtx()
+                    .setLevel(level)
+                    .setDictID(false)
+                    .setChecksum(false)
+                    .setContentSize(true)
+                    .loadDict(compressor);
+        }
+        byte[] compressed;
+        try {
+            compressed = context.compress(value);
+        } finally {
+            if (!compressContexts.offer(context)) {
+                context.close();
+            }
+        }
+        if (compressed.length >= value.length) {
+            return value;
+        }
+        headers.add(HEADER, compressorHeader);
+        return compressed;
+    }
+
+    /**
+     * Undoes {@link #compress} for a record carrying the {@value #HEADER} header.
+     *
+     * @throws UnknownDictionaryException if the record's dictionary is not loaded
+     */
+    public byte[] decompress(Headers headers, byte[] value) throws IOException {
+        Header header = headers != null ? headers.lastHeader(HEADER) : null;
+        if (header == null) {
+            return value;
+        }
+        if (header.value().length != Integer.BYTES) {
+            throw new IOException("Malformed " + HEADER + " header");
+        }
+        int id = ByteBuffer.wrap(header.value()).getInt();
+        ZstdDictDecompress decompressor = decompressors.get(id);
+        if (decompressor == null) {
+            throw new UnknownDictionaryException("Unknown compression dictionary: " + Integer.toUnsignedString(id));
+        }
+        try {
+            long size = Zstd.decompressedSize(value);
+            if (size <= 0 || size > MAX_DECOMPRESSED_SIZE) {
+                throw new IOException("Bad decompressed size " + size + " for dictionary " + Integer.toUnsignedString(id));
+            }
+            ZstdDecompressCtx context = decompressContexts.poll();
+            if (context == null) {
+                context = new ZstdDecompressCtx();
+            }
+            try {
+                context.loadDict(decompressor);
+                return context.decompress(value, (int) size);
+            } finally {
+                if (!decompressContexts.offer(context)) {
+                    context.close();
+                }
+            }
+        } catch (ZstdException e) {
+            throw new IOException("Corrupt compressed value: " + e.getMessage(), e);
+        }
+    }
+
+    private int addDictionary(byte[] dictionary) {
+        int id = dictionaryId(dictionary);
+        if (!decompressors.containsKey(id)) {
+            decompressors.put(id, new ZstdDictDecompress(dictionary));
+        }
+        return id;
+    }
+
+    /** Id zstd stored in the dictionary; 0 for a raw-content dictionary, which is rejected. */
+    static int dictionaryId(byte[] dictionary) {
+        long id = Zstd.getDictIdFromDict(dictionary);
+        if (id == 0) {
+            throw new IllegalArgumentException("Not a trained zstd dictionary (no dictionary id)");
+        }
+        return (int) id;
+    }
+
+    private static byte[] read(Path file) {
+        try {
+            return Files.readAllBytes(file);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read compression dictionary " + file, e);
+        }
+    }
+}
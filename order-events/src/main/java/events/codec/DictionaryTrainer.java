@@ -0,0 +1,128 @@
+package events.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.luben.zstd.ZstdDictTrainer;
+import events.OrderEventEnvelope;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Trains a {@link DictionaryCompression} dictionary from a topic dump: a file of JSON envelopes,
+ * one per line, as written by
+ * {@code kafka-console-consumer.sh --topic order.created --from-beginning --max-messages 100000}.
+ * Dumps of several topics can be concatenated, and should be, since one dictionary serves all of
+ * them. Each envelope is encoded with the codec the producers will use, every tenth one is held
+ * back, and the compression ratio on those is printed next to the dictionary id.
+ * <p>
+ * {@code ./gradlew :order-events:trainDictionary -Pargs="--input=dump.jsonl --output=orders-1.dict"}
+ * <p>
+ * Options, as {@code --name=value}: {@code input}, {@code output}, {@code codec} ({@code json}),
+ * {@code size} of the dictionary in bytes (16384), {@code level} (3) and {@code max-samples}
+ * (100000).
+ */
+public final class DictionaryTrainer {
+
+    private static final int HOLD_OUT_EVERY = 10;
+
+    private DictionaryTrainer() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path input = null;
+        Path output = null;
+        String codecName = JsonEnvelopeCodec.NAME;
+        int size = 16 * 1024;
+        int level = 3;
+        int maxSamples = 100_000;
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Expected --name=value: " + arg);
+            }
+            String value = arg.substring(eq + 1);
+            switch (arg.substring(2, eq)) {
+                case "input" -> input = Path.of(value);
+                case "output" -> output = Path.of(value);
+                case "codec" -> codecName = value;
+                case "size" -> size = Integer.parseInt(value);
+                case "level" -> level = Integer.parseInt(value);
+                case "max-samples" -> maxSamples = Integer.parseInt(value);
+                default -> throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        if (input == null || output == null) {
+            throw new IllegalArgumentException("--input and --output are required");
+        }
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        JsonEnvelopeCodec json = new JsonEnvelopeCodec(objectMapper);
+        EnvelopeCodec codec = codecName.equals(BinaryEnvelopeCodec.NAME) ? new BinaryEnvelopeCodec(objectMapper) : json;
+        if (!codec.name().equals(codecName)) {
+            throw new IllegalArgumentException("Unknown envelope codec: " + codecName);
+        }
+
+        List<byte[]> samples = new ArrayList<>();
+        List<byte[]> heldOut = new ArrayList<>();
+        long sampleBytes = 0;
+        int skipped = 0;
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null && samples.size() < maxSamples) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                byte[] encoded;
+                try {
+                    OrderEventEnvelope envelope = json.decode(line.getBytes(StandardCharsets.UTF_8));
+                    encoded = codec.encode(envelope);
+                } catch (IOException e) {
+                    skipped++;
+                    continue;
+                }
+                if ((samples.size() + heldOut.size()) % HOLD_OUT_EVERY == HOLD_OUT_EVERY - 1) {
+                    heldOut.add(encoded);
+                } else {
+                    samples.add(encoded);
+                    sampleBytes += encoded.length;
+                }
+            }
+        }
+        if (samples.isEmpty()) {
+            throw new IllegalArgumentException("No envelopes in " + input + " (" + skipped + " lines skipped)");
+        }
+
+        byte[] dictionary = train(samples, sampleBytes, size);
+        Files.write(output, dictionary);
+
+        long raw = 0;
+        long compressed = 0;
+        DictionaryCompression compression = new DictionaryCompression(List.of(), dictionary, level, 0);
+        for (byte[] value : heldOut) {
+            raw += value.length;
+            compressed += compression.compress(value, new RecordHeaders()).length;
+        }
+        System.out.printf("Wrote %s: id %s, %d bytes, trained on %d %s envelopes (%d lines skipped)%n", output,
+                Integer.toUnsignedString(DictionaryCompression.dictionaryId(dictionary)), dictionary.length,
+                samples.size(), codec.name(), skipped);
+        if (raw > 0) {
+            System.out.printf("Held-out envelopes: %d, %.1f bytes each, %.1f compressed (ratio %.2f)%n",
+                    heldOut.size(), (double) raw / heldOut.size(), (double) compressed / heldOut.size(),
+                    (double) raw / compressed);
+        }
+    }
+
+    static byte[] train(List<byte[]> samples, long sampleBytes, int size) {
+        ZstdDictTrainer trainer = new ZstdDictTrainer((int) Math.min(Integer.MAX_VALUE - 8, sampleBytes), size);
+        for (byte[] sample : samples) {
+            trainer.addSample(sample);
+        }
+        return trainer.trainSamples();
+    }
+}
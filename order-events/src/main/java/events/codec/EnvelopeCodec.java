@@ -0,0 +1,27 @@
+package events.codec;
+
+import events.OrderEventEnvelope;
+
+import java.io.IOException;
+
+/**
+ * Wire format for {@link OrderEventEnvelope}.
+ * <p>
+ * The codec used for a record is named in the {@link EnvelopeCodecs#HEADER} Kafka header, so
+ * producers and consumers on different codecs can run side by side.
+ */
+public interface EnvelopeCodec {
+
+    /** Name written to the codec header, e.g. {@code json} or {@code binary}. */
+    String name();
+
+    byte[] encode(OrderEventEnvelope envelope) throws IOException;
+
+    OrderEventEnvelope decode(byte[] data) throws IOException;
+
+    /**
+     * Decodes only the envelope fields. A non-null payload is returned as a {@link events.RawPayload}
+     * over {@code data}, which is copied verbatim when the envelope is encoded again.
+     */
+    OrderEventEnvelope decodePassThrough(byte[] data) throws IOException;
+}
@@ -0,0 +1,93 @@
+package events.codec;
+
+import events.OrderEventEnvelope;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Registry of the envelope codecs a service understands.
+ * <p>
+ * Consumers pick the codec from the {@link #HEADER} header of each record (records without the
+ * header are JSON). Producers encode with one configured codec and stamp its name on the record,
+ * so a topic can carry a mix of formats while services are switched over one by one.
+ * <p>
+ * In pass-through mode envelopes are decoded with {@link EnvelopeCodec#decodePassThrough}: the
+ * payload stays a {@link events.RawPayload} and is re-encoded without a JSON round trip.
+ * <p>
+ * With a {@link DictionaryCompression}, encoded values are compressed on the way out and records
+ * carrying its header are decompressed before decoding. Without one, such records fail with
+ * {@link UnknownDictionaryException}, which stages retry, rather than as unparseable.
+ */
+public class EnvelopeCodecs {
+
+    public static final String HEADER = "order-codec";
+
+    private final Map<String, EnvelopeCodec> codecs = new HashMap<>();
+    private final EnvelopeCodec producerCodec;
+    private final byte[] producerCodecHeader;
+    private final boolean passThrough;
+    private final DictionaryCompression compression;
+
+    public EnvelopeCodecs(String producerCodec, boolean passThrough, EnvelopeCodec... codecs) {
+        this(producerCodec, passThrough, null, codecs);
+    }
+
+    public EnvelopeCodecs(String producerCodec, boolean passThrough, DictionaryCompression compression,
+                          EnvelopeCodec... codecs) {
+        for (EnvelopeCodec codec : codecs) {
+            this.codecs.put(codec.name(), codec);
+        }
+        this.producerCodec = this.codecs.get(producerCodec);
+        if (this.producerCodec == null) {
+            throw new IllegalArgumentException("Unknown envelope codec: " + producerCodec + ", known: " + this.codecs.keySet());
+        }
+        this.producerCodecHeader = producerCodec.getBytes(StandardCharsets.UTF_8);
+        this.passThrough = passThrough;
+        this.compression = compression;
+    }
+
+    public EnvelopeCodec producerCodec() {
+        return producerCodec;
+    }
+
+    public OrderEventEnvelope decode(Headers headers, byte[] value) throws IOException {
+        EnvelopeCodec codec = codecFor(headers);
+        if (compression != null) {
+            value = compression.decompress(headers, value);
+        } else if (headers != null && headers.lastHeader(DictionaryCompression.HEADER) != null) {
+            throw new UnknownDictionaryException("Record is compressed but no compression dictionary is configured");
+        }
+        return passThrough ? codec.decodePassThrough(value) : codec.decode(value);
+    }
+
+    /**
+     * Encodes the envelope with the producer codec into a record carrying the codec header, and the
+     * compression header if the value was compressed.
+     */
+    public ProducerRecord<String, byte[]> record(String topic, String key, OrderEventEnvelope envelope) throws IOException {
+        RecordHeaders headers = new RecordHeaders();
+        headers.add(HEADER, producerCodecHeader);
+        byte[] value = producerCodec.encode(envelope);
+        if (compression != null) {
+            value = compression.compress(value, headers);
+        }
+        return new ProducerRecord<>(topic, null, key, value, headers);
+    }
+
+    private EnvelopeCodec codecFor(Headers headers) throws IOException {
+        Header header = headers != null ? headers.lastHeader(HEADER) : null;
+        String name = header != null ? new String(header.value(), StandardCharsets.UTF_8) : JsonEnvelopeCodec.NAME;
+        EnvelopeCodec codec = codecs.get(name);
+        if (codec == null) {
+            throw new IOException("Unknown envelope codec: " + name);
+        }
+        return codec;
+    }
+}
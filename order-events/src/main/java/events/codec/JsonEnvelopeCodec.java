@@ -0,0 +1,98 @@
+package events.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import events.OrderEventEnvelope;
+import events.RawPayload;
+
+import java.io.IOException;
+
+/**
+ * The original JSON envelope format. Records without a codec header are decoded with this codec.
+ */
+public class JsonEnvelopeCodec implements EnvelopeCodec {
+
+    public static final String NAME = "json";
+
+    private final JsonFactory factory;
+    private final ObjectReader reader;
+    private final ObjectReader payloadReader;
+    private final ObjectWriter writer;
+
+    public JsonEnvelopeCodec(ObjectMapper objectMapper) {
+        this.factory = objectMapper.getFactory();
+        this.reader = objectMapper.readerFor(OrderEventEnvelope.class);
+        this.payloadReader = objectMapper.readerFor(Object.class);
+        this.writer = objectMapper.writerFor(OrderEventEnvelope.class);
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(OrderEventEnvelope envelope) throws IOException {
+        return writer.writeValueAsBytes(envelope);
+    }
+
+    @Override
+    public OrderEventEnvelope decode(byte[] data) throws IOException {
+        return reader.readValue(data);
+    }
+
+    /**
+     * Streams over the top-level fields; the payload value is skipped and only its byte range is kept.
+     */
+    @Override
+    public OrderEventEnvelope decodePassThrough(byte[] data) throws IOException {
+        try (JsonParser parser = factory.createParser(data)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected envelope object");
+            }
+            OrderEventEnvelope envelope = new OrderEventEnvelope();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken token = parser.nextToken();
+                switch (field) {
+                    case "eventType" -> envelope.setEventType(text(parser, token));
+                    case "orderId" -> envelope.setOrderId(text(parser, token));
+                    case "correlationId" -> envelope.setCorrelationId(text(parser, token));
+                    case "timestamp" -> envelope.setTimestamp(text(parser, token));
+                    case "payload" -> envelope.setPayload(token == JsonToken.VALUE_NULL ? null : rawValue(parser, data));
+                    default -> parser.skipChildren();
+                }
+            }
+            if (parser.currentToken() != JsonToken.END_OBJECT) {
+                throw new JsonParseException(parser, "Unexpected end of envelope");
+            }
+            return envelope;
+        }
+    }
+
+    private RawPayload rawValue(JsonParser parser, byte[] data) throws IOException {
+        int start = (int) parser.currentTokenLocation().getByteOffset();
+        if (parser.currentToken().isStructStart()) {
+            parser.skipChildren();
+        } else {
+            parser.finishToken();
+        }
+        int end = (int) parser.currentLocation().getByteOffset();
+        return new RawPayload(data, start, end - start, payloadReader);
+    }
+
+    private static String text(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (!token.isScalarValue()) {
+            throw new JsonParseException(parser, "Expected a scalar value for " + parser.currentName());
+        }
+        return parser.getValueAsString();
+    }
+}
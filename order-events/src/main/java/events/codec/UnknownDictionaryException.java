@@ -0,0 +1,13 @@
+package events.codec;
+
+/**
+ * Thrown for a record compressed with a dictionary this consumer does not have. This is transient
+ * while a dictionary is being rolled out, so it is unchecked: stages retry it like other runtime
+ * failures instead of failing the order as unparseable.
+ */
+public class UnknownDictionaryException extends RuntimeException {
+
+    public UnknownDictionaryException(String message) {
+        super(message);
+    }
+}
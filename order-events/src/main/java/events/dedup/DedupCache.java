@@ -0,0 +1,238 @@
+package events.dedup;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers which events a stage has already published, so redelivered records can be skipped.
+ * <p>
+ * Entries are keyed by (stage, orderId, eventType), hashed to a 128-bit fingerprint and stored as
+ * two {@code long}s in open-addressing tables (at most 3/4 full), with no per-entry objects.
+ * Each of the {@value #SEGMENTS} lock-striped segments keeps {@value #GENERATIONS} generations:
+ * new entries go to the newest one, and the oldest is cleared and reused once the newest is full or
+ * older than {@code ttl / (GENERATIONS - 1)}. Memory is therefore fixed at construction, and an
+ * entry is kept for at least {@code ttl} unless more than {@code maxEntries} keys arrive within
+ * that time. Every generation has a blocked Bloom filter, so a lookup for a new key - the common
+ * case - usually touches one cache line per generation and never probes the tables.
+ * <p>
+ * Callers check {@link #contains} before doing a stage's work and {@link #add} only after its
+ * output has been acknowledged, so a failed publish is retried on redelivery instead of being
+ * mistaken for a duplicate.
+ */
+public class DedupCache {
+
+    private static final int SEGMENTS = 16;
+    private static final int GENERATIONS = 4;
+
+    private final Segment[] segments;
+    private final LongSupplier clock;
+    private final Counter duplicatesTotal;
+
+    /**
+     * @param maxEntries keys kept across all generations; {@code 0} disables the cache
+     */
+    public DedupCache(int maxEntries, Duration ttl, MeterRegistry registry) {
+        this(maxEntries, ttl, registry, System::nanoTime);
+    }
+
+    DedupCache(int maxEntries, Duration ttl, MeterRegistry registry, LongSupplier clock) {
+        this.clock = clock;
+        if (maxEntries > 0) {
+            int perGeneration = Math.max(16, maxEntries / (SEGMENTS * GENERATIONS));
+            long span = ttl.toNanos() / (GENERATIONS - 1);
+            long now = clock.getAsLong();
+            this.segments = new Segment[SEGMENTS];
+            for (int i = 0; i < SEGMENTS; i++) {
+                segments[i] = new Segment(perGeneration, span, ttl.toNanos(), now);
+            }
+        } else {
+            this.segments = null;
+        }
+        this.duplicatesTotal = registry.counter("order_dedup_duplicates_total");
+        Gauge.builder("order_dedup_entries", this, DedupCache::size).register(registry);
+    }
+
+    /** Fingerprint of an event; {@code null} when the cache is disabled or there is no orderId. */
+    public record Key(long hi, long lo) {
+    }
+
+    public Key key(String stage, String orderId, String eventType) {
+        if (segments == null || orderId == null) {
+            return null;
+        }
+        byte[] bytes = (stage + '\0' + eventType + '\0' + orderId).getBytes(StandardCharsets.UTF_8);
+        long[] hash = Murmur3.hash128(bytes);
+        // 0,0 marks an empty table slot
+        return new Key(hash[0], hash[0] == 0 && hash[1] == 0 ? 1 : hash[1]);
+    }
+
+    /** Whether the event was already published by this stage; counts the duplicate if so. */
+    public boolean contains(Key key) {
+        if (key == null) {
+            return false;
+        }
+        boolean seen = segment(key).contains(key.hi(), key.lo(), clock.getAsLong());
+        if (seen) {
+            duplicatesTotal.increment();
+        }
+        return seen;
+    }
+
+    /** Records that the event has been published. */
+    public void add(Key key) {
+        if (key != null) {
+            segment(key).add(key.hi(), key.lo(), clock.getAsLong());
+        }
+    }
+
+    long size() {
+        if (segments == null) {
+            return 0;
+        }
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    private Segment segment(Key key) {
+        return segments[(int) (key.hi() >>> 60) & (SEGMENTS - 1)];
+    }
+
+    private static final class Segment {
+
+        private final Generation[] generations = new Generation[GENERATIONS];
+        private final long spanNanos;
+        private final long ttlNanos;
+        private int current;
+
+        Segment(int capacity, long spanNanos, long ttlNanos, long now) {
+            for (int i = 0; i < GENERATIONS; i++) {
+                generations[i] = new Generation(capacity);
+            }
+            generations[0].reset(now);
+            this.spanNanos = spanNanos;
+            this.ttlNanos = ttlNanos;
+        }
+
+        synchronized boolean contains(long hi, long lo, long now) {
+            for (int i = 0; i < GENERATIONS; i++) {
+                Generation generation = generations[(current - i + GENERATIONS) % GENERATIONS];
+                if (generation.size == 0 || now - generation.lastAddedAt > ttlNanos) {
+                    continue;
+                }
+                if (generation.mightContain(hi, lo) && generation.contains(hi, lo)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        synchronized void add(long hi, long lo, long now) {
+            Generation generation = generations[current];
+            if (generation.size >= generation.capacity || now - generation.createdAt >= spanNanos) {
+                current = (current + 1) % GENERATIONS;
+                generation = generations[current];
+                generation.reset(now);
+            }
+            generation.add(hi, lo);
+            generation.lastAddedAt = now;
+        }
+
+        synchronized long size() {
+            long size = 0;
+            for (Generation generation : generations) {
+                size += generation.size;
+            }
+            return size;
+        }
+    }
+
+    /**
+     * One generation: a linear-probing table of 128-bit fingerprints ({@code 0,0} marks an empty
+     * slot) and a Bloom filter whose bits for a key all sit in one 512-bit block.
+     */
+    private static final class Generation {
+
+        private static final int BLOOM_BITS_PER_ENTRY = 10;
+        private static final int BLOOM_HASHES = 6;
+        private static final int BLOCK_WORDS = 8;
+
+        final int capacity;
+        private final long[] table;
+        private final int mask;
+        private final long[] bloom;
+        private final int blockMask;
+        int size;
+        long createdAt;
+        long lastAddedAt;
+
+        Generation(int capacity) {
+            this.capacity = capacity;
+            int slots = Integer.highestOneBit(capacity * 4 / 3 - 1) << 1;
+            this.table = new long[slots * 2];
+            this.mask = slots - 1;
+            int blocks = Math.max(1, Integer.highestOneBit(capacity * BLOOM_BITS_PER_ENTRY / (BLOCK_WORDS * 64)));
+            this.bloom = new long[blocks * BLOCK_WORDS];
+            this.blockMask = blocks - 1;
+        }
+
+        void reset(long now) {
+            if (size > 0) {
+                Arrays.fill(table, 0);
+                Arrays.fill(bloom, 0);
+                size = 0;
+            }
+            createdAt = now;
+        }
+
+        boolean mightContain(long hi, long lo) {
+            int base = ((int) (hi >>> 32) & blockMask) * BLOCK_WORDS;
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                int bit = (int) (lo >>> (i * 9)) & 511;
+                if ((bloom[base + (bit >>> 6)] & (1L << (bit & 63))) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean contains(long hi, long lo) {
+            for (int slot = (int) hi & mask; ; slot = (slot + 1) & mask) {
+                long h = table[slot * 2];
+                long l = table[slot * 2 + 1];
+                if (h == hi && l == lo) {
+                    return true;
+                }
+                if (h == 0 && l == 0) {
+                    return false;
+                }
+            }
+        }
+
+        void add(long hi, long lo) {
+            int slot = (int) hi & mask;
+            while (table[slot * 2] != 0 || table[slot * 2 + 1] != 0) {
+                if (table[slot * 2] == hi && table[slot * 2 + 1] == lo) {
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            table[slot * 2] = hi;
+            table[slot * 2 + 1] = lo;
+            size++;
+            int base = ((int) (hi >>> 32) & blockMask) * BLOCK_WORDS;
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                int bit = (int) (lo >>> (i * 9)) & 511;
+                bloom[base + (bit >>> 6)] |= 1L << (bit & 63);
+            }
+        }
+    }
+}
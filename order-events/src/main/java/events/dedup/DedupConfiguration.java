@@ -0,0 +1,24 @@
+package events.dedup;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * {@link DedupCache} for the pipeline stages. Its memory is allocated up front from
+ * {@code order.dedup.max-entries}.
+ */
+@Configuration
+public class DedupConfiguration {
+
+    @Bean
+    public DedupCache dedupCache(MeterRegistry registry,
+                                 @Value("${order.dedup.enabled:true}") boolean enabled,
+                                 @Value("${order.dedup.max-entries:1000000}") int maxEntries,
+                                 @Value("${order.dedup.ttl:1h}") Duration ttl) {
+        return new DedupCache(enabled ? maxEntries : 0, ttl, registry);
+    }
+}
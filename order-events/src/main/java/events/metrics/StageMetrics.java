@@ -0,0 +1,107 @@
+package events.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.record.RecordBatch;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the pipeline, recorded in {@link Timer}s with percentile histograms.
+ * <p>
+ * Per stage: {@code order_stage_queue_time} from the producer timestamp of a record to its
+ * consumption and {@code order_stage_processing_time} from consumption to the outcome. The order's
+ * history travels with it in headers: {@value #HEADER_CREATED_AT} holds the creation time (epoch
+ * millis, 8 bytes) and every stage appends one {@value #HEADER_STAGE} header {@code stage=millis}
+ * when it publishes. The last stage records {@code order_end_to_end_time} from the creation time.
+ * Timers are registered on first use, so services only expose the stages they run.
+ */
+public class StageMetrics {
+
+    public static final String HEADER_CREATED_AT = "order-created-at";
+    public static final String HEADER_STAGE = "order-stage";
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> queueTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> processingTimers = new ConcurrentHashMap<>();
+    private volatile Timer endToEndTimer;
+
+    public StageMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Records the queue time of a consumed record.
+     *
+     * @return the start of processing, to be passed to {@link #processed}
+     */
+    public long consumed(String stage, ConsumerRecord<?, ?> record) {
+        long startNanos = System.nanoTime();
+        if (record.timestamp() != RecordBatch.NO_TIMESTAMP) {
+            long queued = Math.max(0, System.currentTimeMillis() - record.timestamp());
+            timer(queueTimers, "order_stage_queue_time", stage).record(queued, TimeUnit.MILLISECONDS);
+        }
+        return startNanos;
+    }
+
+    public void processed(String stage, long startNanos) {
+        timer(processingTimers, "order_stage_processing_time", stage).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Starts the history of a new order on its first record. */
+    public void created(String stage, ProducerRecord<?, ?> out) {
+        long now = System.currentTimeMillis();
+        out.headers().add(HEADER_CREATED_AT, ByteBuffer.allocate(Long.BYTES).putLong(now).array());
+        out.headers().add(HEADER_STAGE, entry(stage, now));
+    }
+
+    /** Copies the history of the consumed record to the outgoing one and appends this stage. */
+    public void propagate(String stage, Headers consumed, ProducerRecord<?, ?> out) {
+        for (Header header : consumed) {
+            if (HEADER_CREATED_AT.equals(header.key()) || HEADER_STAGE.equals(header.key())) {
+                out.headers().add(header);
+            }
+        }
+        out.headers().add(HEADER_STAGE, entry(stage, System.currentTimeMillis()));
+    }
+
+    /** Records the time since the order was created, if the consumed record carries it. */
+    public void completed(Headers consumed) {
+        Header header = consumed.lastHeader(HEADER_CREATED_AT);
+        if (header == null || header.value().length != Long.BYTES) {
+            return;
+        }
+        long elapsed = Math.max(0, System.currentTimeMillis() - ByteBuffer.wrap(header.value()).getLong());
+        Timer timer = endToEndTimer;
+        if (timer == null) {
+            timer = Timer.builder("order_end_to_end_time")
+                    .description("Time from OrderCreated to OrderCompleted")
+                    .publishPercentileHistogram()
+                    .maximumExpectedValue(Duration.ofMinutes(5))
+                    .register(registry);
+            endToEndTimer = timer;
+        }
+        timer.record(elapsed, TimeUnit.MILLISECONDS);
+    }
+
+    private Timer timer(Map<String, Timer> timers, String name, String stage) {
+        return timers.computeIfAbsent(stage, s -> Timer.builder(name)
+                .tag("stage", s)
+                .publishPercentileHistogram()
+                .maximumExpectedValue(Duration.ofMinutes(5))
+                .register(registry));
+    }
+
+    private static byte[] entry(String stage, long millis) {
+        return (stage + "=" + millis).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,46 @@
+package events.parallel;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
+
+import java.time.Duration;
+
+/**
+ * Container factory for listeners running in {@code parallel} mode.
+ * <p>
+ * Listeners using {@link #CONTAINER_FACTORY} receive whole polls, hand them to the
+ * {@link KeyOrderedDispatcher} and never acknowledge themselves: the dispatcher commits offsets as
+ * records complete and rewinds partitions with a failed record, on every poll and on idle events.
+ */
+@Configuration
+public class KeyOrderedConsumerConfiguration {
+
+    public static final String CONTAINER_FACTORY = "keyOrderedListenerContainerFactory";
+
+    @Bean(destroyMethod = "close")
+    public KeyOrderedDispatcher keyOrderedDispatcher(MeterRegistry registry,
+                                                     @Value("${order.listener.parallel.max-in-flight:1024}") int maxInFlight,
+                                                     @Value("${order.listener.parallel.drain-timeout:10s}") Duration drainTimeout) {
+        return new KeyOrderedDispatcher(maxInFlight, drainTimeout, registry);
+    }
+
+    @Bean(CONTAINER_FACTORY)
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> keyOrderedListenerContainerFactory(
+            ConsumerFactory<Object, Object> consumerFactory,
+            KeyOrderedDispatcher dispatcher,
+            @Value("${order.listener.parallel.commit-interval:1s}") Duration commitInterval) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        factory.setBatchListener(true);
+        ContainerProperties properties = factory.getContainerProperties();
+        properties.setAckMode(ContainerProperties.AckMode.MANUAL);
+        properties.setIdleEventInterval(commitInterval.toMillis());
+        properties.setConsumerRebalanceListener(dispatcher);
+        return factory;
+    }
+}
@@ -0,0 +1,240 @@
+package events.parallel;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.event.ListenerContainerIdleEvent;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fans consumed records out to virtual-thread workers while keeping per-key order.
+ * <p>
+ * Records with the same key (the {@code orderId}) run one after another; different keys run
+ * concurrently, so a stage is no longer limited to one record per partition at a time. Offsets are
+ * committed per partition only up to the lowest record that has not completed yet. If a handler
+ * fails, the records queued behind it for the same key are skipped rather than handled, and the
+ * partition is rewound to the failed record on the next poll, so the records of a key are handled
+ * again in order and every record is handled at least once.
+ * <p>
+ * All {@link Consumer} calls happen on the container's consumer thread: from {@link #dispatch},
+ * from idle events and from the rebalance callbacks. Used with the container factory from
+ * {@link KeyOrderedConsumerConfiguration}.
+ */
+public class KeyOrderedDispatcher implements ConsumerAwareRebalanceListener, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(KeyOrderedDispatcher.class);
+
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<Object, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+    private final Map<TopicPartition, PartitionTracker> trackers = new ConcurrentHashMap<>();
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final Duration drainTimeout;
+
+    public KeyOrderedDispatcher(int maxInFlight, Duration drainTimeout, MeterRegistry registry) {
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.drainTimeout = drainTimeout;
+        Gauge.builder("order_listener_parallel_in_flight", this, d -> d.maxInFlight - d.inFlight.availablePermits())
+                .register(registry);
+        Gauge.builder("order_listener_parallel_keys", tails, Map::size).register(registry);
+    }
+
+    @FunctionalInterface
+    public interface RecordHandler<K, V> {
+        void handle(ConsumerRecord<K, V> record) throws Exception;
+    }
+
+    /**
+     * Schedules every record of the poll and commits whatever has completed so far. Blocks only
+     * while the number of in-flight records is at the configured maximum.
+     */
+    public <K, V> void dispatch(List<ConsumerRecord<K, V>> records, Consumer<?, ?> consumer, RecordHandler<K, V> handler) {
+        Set<TopicPartition> rewound = rewindFailed(consumer);
+        for (ConsumerRecord<K, V> record : records) {
+            TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+            if (rewound.contains(partition)) {
+                continue;
+            }
+            acquire(consumer);
+            PartitionTracker tracker = trackers.computeIfAbsent(partition, p -> new PartitionTracker());
+            tracker.started(record.offset());
+            submit(record, tracker, handler);
+        }
+        commit(consumer);
+    }
+
+    /**
+     * Rewinds failed partitions and commits completed offsets for the consumer that went idle. A
+     * batch listener is not called for an empty poll, so without this a failed record on a quiet
+     * partition would wait for new traffic to be retried.
+     */
+    @EventListener
+    public void onIdle(ListenerContainerIdleEvent event) {
+        Consumer<?, ?> consumer = event.getConsumer();
+        if (consumer != null) {
+            rewindFailed(consumer);
+            commit(consumer);
+        }
+    }
+
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        long deadline = System.nanoTime() + drainTimeout.toNanos();
+        for (TopicPartition partition : partitions) {
+            PartitionTracker tracker = trackers.remove(partition);
+            if (tracker == null) {
+                continue;
+            }
+            tracker.awaitDrained(deadline);
+            long offset = tracker.committable();
+            if (offset > tracker.lastCommitted) {
+                offsets.put(partition, new OffsetAndMetadata(offset));
+            }
+        }
+        if (!offsets.isEmpty()) {
+            consumer.commitSync(offsets);
+        }
+    }
+
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        partitions.forEach(trackers::remove);
+    }
+
+    public void commit(Consumer<?, ?> consumer) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        for (TopicPartition partition : consumer.assignment()) {
+            PartitionTracker tracker = trackers.get(partition);
+            if (tracker == null) {
+                continue;
+            }
+            long offset = tracker.committable();
+            if (offset > tracker.lastCommitted) {
+                offsets.put(partition, new OffsetAndMetadata(offset));
+                tracker.lastCommitted = offset;
+            }
+        }
+        if (!offsets.isEmpty()) {
+            consumer.commitAsync(offsets, (committed, e) -> {
+                if (e != null) {
+                    log.warn("Failed to commit offsets {}: {}", committed, e.getMessage());
+                }
+            });
+        }
+    }
+
+    @Override
+    public void close() {
+        workers.close();
+    }
+
+    private <K, V> void submit(ConsumerRecord<K, V> record, PartitionTracker tracker, RecordHandler<K, V> handler) {
+        Object key = record.key() != null ? record.key() : new TopicPartition(record.topic(), record.partition());
+        CompletableFuture<Void> next = tails.compute(key, (k, previous) -> previous == null
+                ? CompletableFuture.runAsync(() -> run(record, tracker, handler, null), workers)
+                : previous.<Void>handleAsync((ignored, earlier) -> {
+                    run(record, tracker, handler, earlier);
+                    return null;
+                }, workers));
+        next.whenComplete((ignored, e) -> {
+            if (e == null) {
+                tails.remove(key, next);
+            }
+        });
+    }
+
+    /**
+     * Handles the record, or skips it if an earlier record of its key failed ({@code earlier} is
+     * set) and its partition has not been rewound since. A failed or skipped record stays pending
+     * in its tracker and leaves its future as the key's failed tail, so later records of the key
+     * are skipped as well until the rewind.
+     */
+    private <K, V> void run(ConsumerRecord<K, V> record, PartitionTracker tracker, RecordHandler<K, V> handler,
+            Throwable earlier) {
+        Throwable failure = earlier != null && tracker.hasFailed() ? earlier : null;
+        try {
+            if (failure == null) {
+                try {
+                    handler.handle(record);
+                    tracker.completed(record.offset());
+                    return;
+                } catch (Exception e) {
+                    log.error("Failed to handle {}-{}@{}: {}", record.topic(), record.partition(), record.offset(),
+                            e.getMessage());
+                    failure = e;
+                }
+            } else {
+                log.debug("Skipped {}-{}@{} after an earlier record of its key failed", record.topic(),
+                        record.partition(), record.offset());
+            }
+            tracker.failed(record.offset());
+        } finally {
+            inFlight.release();
+        }
+        throw failure instanceof CompletionException completion ? completion : new CompletionException(failure);
+    }
+
+    private void acquire(Consumer<?, ?> consumer) {
+        try {
+            while (!inFlight.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+                commit(consumer);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a worker", e);
+        }
+    }
+
+    /**
+     * For every partition with a failed record: waits for its other records, commits up to the
+     * failed offset and seeks back to it so the record is fetched again.
+     */
+    private Set<TopicPartition> rewindFailed(Consumer<?, ?> consumer) {
+        Set<TopicPartition> rewound = new HashSet<>();
+        List<TopicPartition> failed = new ArrayList<>();
+        trackers.forEach((partition, tracker) -> {
+            if (tracker.hasFailed() && consumer.assignment().contains(partition)) {
+                failed.add(partition);
+            }
+        });
+        for (TopicPartition partition : failed) {
+            PartitionTracker tracker = trackers.remove(partition);
+            tracker.awaitDrained(System.nanoTime() + drainTimeout.toNanos());
+            long offset = tracker.committable();
+            if (offset > tracker.lastCommitted) {
+                consumer.commitSync(Map.of(partition, new OffsetAndMetadata(offset)));
+            }
+            consumer.seek(partition, offset);
+            rewound.add(partition);
+            log.warn("Rewound {} to offset {} after a failed record", partition, offset);
+        }
+        if (!rewound.isEmpty()) {
+            tails.values().removeIf(CompletableFuture::isCompletedExceptionally);
+        }
+        return rewound;
+    }
+}
@@ -0,0 +1,56 @@
+package events.parallel;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-flight offsets of one partition. {@link #started} and {@link #committable} are called on the
+ * consumer thread, {@link #completed} and {@link #failed} on worker threads.
+ */
+final class PartitionTracker {
+
+    private final ConcurrentSkipListSet<Long> pending = new ConcurrentSkipListSet<>();
+    private final AtomicInteger running = new AtomicInteger();
+    private volatile boolean failed;
+    private long highest = -1;
+    long lastCommitted = -1;
+
+    void started(long offset) {
+        pending.add(offset);
+        running.incrementAndGet();
+        highest = Math.max(highest, offset);
+    }
+
+    void completed(long offset) {
+        pending.remove(offset);
+        running.decrementAndGet();
+    }
+
+    /** A failed offset stays pending, which holds back commits for the partition until it is rewound. */
+    void failed(long offset) {
+        failed = true;
+        running.decrementAndGet();
+    }
+
+    boolean hasFailed() {
+        return failed;
+    }
+
+    /** Next offset to commit: the lowest offset not completed yet, or one past the highest seen. */
+    long committable() {
+        try {
+            return pending.first();
+        } catch (NoSuchElementException e) {
+            return highest + 1;
+        }
+    }
+
+    void awaitDrained(long deadlineNanos) {
+        while (running.get() > 0 && System.nanoTime() < deadlineNanos) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package events.producer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.PartitionInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.support.SendResult;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * {@link KafkaTemplate} that retunes {@code linger.ms} and {@code batch.size} while running.
+ * <p>
+ * Every interval the observed send rate, record size and ack latency go through
+ * {@link BatchingPolicy}. A Kafka producer cannot change those settings once created, so a new
+ * setting means a new producer: it is created from the application's producer factory with the two
+ * values overridden, and sends switch over to it. The switch holds back sends only while the old
+ * producer is flushed, so records for one partition are never reordered across producers.
+ * <p>
+ * Only the {@code send(topic, ...)} and {@code send(ProducerRecord)} methods are routed to the
+ * tuned producer; {@code sendDefault}, {@code send(Message)}, {@code execute} and transactions keep
+ * using the application's producer factory.
+ */
+public class AdaptiveKafkaTemplate<K, V> extends KafkaTemplate<K, V> {
+
+    private static final Logger log = LoggerFactory.getLogger(AdaptiveKafkaTemplate.class);
+
+    private static final Duration SWITCH_TIMEOUT = Duration.ofMillis(50);
+
+    private final ProducerFactory<K, V> producerFactory;
+    private final BatchingPolicy policy;
+    private final ReadWriteLock switchLock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService tuner;
+    private final Counter reconfigurations;
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder acked = new LongAdder();
+    private final LongAdder ackedBytes = new LongAdder();
+    private final LongAdder ackNanos = new LongAdder();
+    private long lastTune = System.nanoTime();
+
+    private volatile Generation<K, V> current;
+    private BatchingPolicy.Settings pending;
+    private volatile double sendRate;
+    private volatile double ackMillis;
+
+    AdaptiveKafkaTemplate(ProducerFactory<K, V> producerFactory, BatchingPolicy policy, Duration interval,
+            MeterRegistry registry) {
+        super(producerFactory);
+        this.producerFactory = producerFactory;
+        this.policy = policy;
+        this.current = new Generation<>(new KafkaTemplate<>(producerFactory), null, policy.initial());
+        this.reconfigurations = registry.counter("order_producer_reconfigurations_total");
+        Gauge.builder("order_producer_linger_ms", this, t -> t.current.settings().lingerMs()).register(registry);
+        Gauge.builder("order_producer_batch_size_bytes", this, t -> t.current.settings().batchSize()).register(registry);
+        Gauge.builder("order_producer_send_rate", this, t -> t.sendRate).register(registry);
+        Gauge.builder("order_producer_ack_latency_ms", this, t -> t.ackMillis).register(registry);
+        this.tuner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "adaptive-producer-tuner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        tuner.scheduleWithFixedDelay(this::tune, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public CompletableFuture<SendResult<K, V>> send(String topic, V data) {
+        return send(new ProducerRecord<>(topic, data));
+    }
+
+    @Override
+    public CompletableFuture<SendResult<K, V>> send(String topic, K key, V data) {
+        return send(new ProducerRecord<>(topic, key, data));
+    }
+
+    @Override
+    public CompletableFuture<SendResult<K, V>> send(String topic, Integer partition, K key, V data) {
+        return send(new ProducerRecord<>(topic, partition, key, data));
+    }
+
+    @Override
+    public CompletableFuture<SendResult<K, V>> send(String topic, Integer partition, Long timestamp, K key, V data) {
+        return send(new ProducerRecord<>(topic, partition, timestamp, key, data));
+    }
+
+    @Override
+    public CompletableFuture<SendResult<K, V>> send(ProducerRecord<K, V> record) {
+        long start = System.nanoTime();
+        CompletableFuture<SendResult<K, V>> future;
+        switchLock.readLock().lock();
+        try {
+            future = current.template().send(record);
+        } finally {
+            switchLock.readLock().unlock();
+        }
+        sent.increment();
+        future.whenComplete((result, e) -> {
+            if (e == null) {
+                ackNanos.add(System.nanoTime() - start);
+                acked.increment();
+                ackedBytes.add(size(result.getRecordMetadata()));
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public void flush() {
+        current.template().flush();
+    }
+
+    @Override
+    public Map<MetricName, ? extends Metric> metrics() {
+        return current.template().metrics();
+    }
+
+    @Override
+    public List<PartitionInfo> partitionsFor(String topic) {
+        return current.template().partitionsFor(topic);
+    }
+
+    /** Settings of the producer currently used for sends. */
+    BatchingPolicy.Settings settings() {
+        return current.settings();
+    }
+
+    @Override
+    public void destroy() {
+        tuner.shutdownNow();
+        Generation<K, V> last = current;
+        if (last.factory() != null) {
+            last.factory().reset();
+        }
+        super.destroy();
+    }
+
+    /**
+     * Closes the sampling interval and switches producers when the policy has asked for the same
+     * new settings twice in a row.
+     */
+    void tune() {
+        try {
+            long now = System.nanoTime();
+            double seconds = (now - lastTune) / 1e9;
+            lastTune = now;
+            long records = sent.sumThenReset();
+            long acks = acked.sumThenReset();
+            long bytes = ackedBytes.sumThenReset();
+            long nanos = ackNanos.sumThenReset();
+            sendRate = records / seconds;
+            ackMillis = acks > 0 ? nanos / 1e6 / acks : 0;
+            BatchingPolicy.Settings next = policy.next(sendRate, acks > 0 ? (double) bytes / acks : 0, ackMillis);
+            if (next.equals(current.settings())) {
+                pending = null;
+            } else if (next.equals(pending)) {
+                pending = null;
+                reconfigure(next);
+            } else {
+                pending = next;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Producer tuning failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Moves sends to a producer with the given settings and closes the previous one, unless sends
+     * could not be held back within {@link #SWITCH_TIMEOUT}.
+     */
+    boolean reconfigure(BatchingPolicy.Settings settings) {
+        ProducerFactory<K, V> factory = producerFactory.copyWithConfigurationOverride(Map.of(
+                ProducerConfig.LINGER_MS_CONFIG, settings.lingerMs(),
+                ProducerConfig.BATCH_SIZE_CONFIG, settings.batchSize()));
+        Generation<K, V> next = new Generation<>(new KafkaTemplate<>(factory), factory, settings);
+        Generation<K, V> previous;
+        try {
+            if (!switchLock.writeLock().tryLock(SWITCH_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                factory.reset();
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            factory.reset();
+            return false;
+        }
+        try {
+            previous = current;
+            previous.template().flush();
+            current = next;
+        } finally {
+            switchLock.writeLock().unlock();
+        }
+        if (previous.factory() != null) {
+            previous.factory().reset();
+        }
+        reconfigurations.increment();
+        log.info("Producer reconfigured: linger.ms {} -> {}, batch.size {} -> {}",
+                previous.settings().lingerMs(), settings.lingerMs(), previous.settings().batchSize(), settings.batchSize());
+        return true;
+    }
+
+    private static long size(RecordMetadata metadata) {
+        return Math.max(0, metadata.serializedKeySize()) + Math.max(0, metadata.serializedValueSize());
+    }
+
+    /**
+     * One producer configuration. {@code factory} is null for the application's own factory, which
+     * is never closed here.
+     */
+    private record Generation<K, V>(KafkaTemplate<K, V> template, ProducerFactory<K, V> factory,
+                                    BatchingPolicy.Settings settings) {
+    }
+}
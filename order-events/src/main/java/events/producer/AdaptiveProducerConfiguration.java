@@ -0,0 +1,35 @@
+package events.producer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Replaces the auto-configured {@link KafkaTemplate} with an {@link AdaptiveKafkaTemplate} built on
+ * the same producer factory, so every service gets adaptive batching without code changes.
+ * With {@code order.producer.adaptive.enabled=false} the plain template is used.
+ */
+@Configuration
+public class AdaptiveProducerConfiguration {
+
+    @Bean
+    public KafkaTemplate<?, ?> kafkaTemplate(ProducerFactory<Object, Object> producerFactory, MeterRegistry registry,
+                                             @Value("${order.producer.adaptive.enabled:true}") boolean enabled,
+                                             @Value("${order.producer.adaptive.interval:5s}") Duration interval,
+                                             @Value("${order.producer.adaptive.max-linger:32ms}") Duration maxLinger,
+                                             @Value("${order.producer.adaptive.min-batch-size:16KB}") DataSize minBatchSize,
+                                             @Value("${order.producer.adaptive.max-batch-size:1MB}") DataSize maxBatchSize) {
+        if (!enabled) {
+            return new KafkaTemplate<>(producerFactory);
+        }
+        BatchingPolicy policy = new BatchingPolicy((int) maxLinger.toMillis(),
+                (int) minBatchSize.toBytes(), (int) maxBatchSize.toBytes());
+        return new AdaptiveKafkaTemplate<>(producerFactory, policy, interval, registry);
+    }
+}
@@ -0,0 +1,58 @@
+package events.producer;
+
+/**
+ * Picks producer {@code linger.ms} and {@code batch.size} from the traffic of the last interval.
+ * <p>
+ * Lingering only pays off when several records arrive within the linger window; otherwise it is
+ * pure added latency, so light traffic gets {@code linger.ms=0}. Under load the producer lingers for
+ * about half an ack round trip: slow acks mean a busy broker, where fewer and larger requests help
+ * most, and the extra wait stays small next to the ack itself. The batch size is chosen to hold what
+ * arrives within one linger window. Both values are rounded to powers of two so small fluctuations
+ * do not cause a reconfiguration.
+ */
+final class BatchingPolicy {
+
+    /** Fewer records than this per linger window and lingering is not worth it. */
+    private static final double MIN_RECORDS_PER_WINDOW = 4;
+
+    private final int maxLingerMs;
+    private final int minBatchSize;
+    private final int maxBatchSize;
+
+    BatchingPolicy(int maxLingerMs, int minBatchSize, int maxBatchSize) {
+        this.maxLingerMs = maxLingerMs;
+        this.minBatchSize = minBatchSize;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    record Settings(int lingerMs, int batchSize) {
+    }
+
+    Settings initial() {
+        return new Settings(0, minBatchSize);
+    }
+
+    /**
+     * @param recordsPerSecond send rate over the last interval
+     * @param bytesPerRecord   average serialized key and value size
+     * @param ackMillis        average time from {@code send} to ack
+     */
+    Settings next(double recordsPerSecond, double bytesPerRecord, double ackMillis) {
+        int lingerMs = floorPowerOfTwo(Math.min(maxLingerMs, ackMillis / 2));
+        if (lingerMs == 0 || recordsPerSecond * lingerMs / 1000 < MIN_RECORDS_PER_WINDOW) {
+            return initial();
+        }
+        double bytesPerWindow = recordsPerSecond * bytesPerRecord * lingerMs / 1000;
+        int batchSize = ceilPowerOfTwo(Math.min(bytesPerWindow, maxBatchSize));
+        return new Settings(lingerMs, Math.max(minBatchSize, Math.min(maxBatchSize, batchSize)));
+    }
+
+    private static int floorPowerOfTwo(double value) {
+        return value < 1 ? 0 : Integer.highestOneBit((int) value);
+    }
+
+    private static int ceilPowerOfTwo(double value) {
+        int floor = floorPowerOfTwo(value);
+        return floor < value ? floor << 1 : floor;
+    }
+}
@@ -0,0 +1,53 @@
+package events.retry;
+
+import events.transport.RingBufferEventTransport;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Retry topics for the pipeline stages.
+ * <p>
+ * Listeners using {@link #CONTAINER_FACTORY} receive whole polls of retry tier topics, hand them to
+ * {@link RetryTopics#dispatch} and never acknowledge themselves. Polls time out and idle events
+ * fire every {@code order.retry.poll-interval}, which bounds how late a paused partition resumes.
+ * Retries are off with {@code order.retry.enabled=false} and in {@code in-jvm} listener mode, where
+ * failed records are failed right away as before.
+ */
+@Configuration
+public class RetryConfiguration {
+
+    public static final String CONTAINER_FACTORY = "retryListenerContainerFactory";
+
+    @Bean
+    public RetryTopics retryTopics(MeterRegistry registry,
+                                   @Value("${order.retry.enabled:true}") boolean enabled,
+                                   @Value("${order.listener.mode:record}") String mode,
+                                   @Value("${order.retry.delays:1s,10s,60s}") List<Duration> delays,
+                                   @Value("${order.retry.error-backoff:1s}") Duration errorBackoff) {
+        return new RetryTopics(delays, enabled && !RingBufferEventTransport.NAME.equals(mode), errorBackoff, registry);
+    }
+
+    @Bean(CONTAINER_FACTORY)
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> retryListenerContainerFactory(
+            ConsumerFactory<Object, Object> consumerFactory,
+            RetryTopics retryTopics,
+            @Value("${order.retry.poll-interval:200ms}") Duration pollInterval) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        factory.setBatchListener(true);
+        ContainerProperties properties = factory.getContainerProperties();
+        properties.setAckMode(ContainerProperties.AckMode.MANUAL);
+        properties.setPollTimeout(pollInterval.toMillis());
+        properties.setIdleEventInterval(pollInterval.toMillis());
+        properties.setConsumerRebalanceListener(retryTopics);
+        return factory;
+    }
+}
@@ -0,0 +1,276 @@
+package events.retry;
+
+import events.metrics.StageMetrics;
+import events.parallel.KeyOrderedDispatcher;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.event.ListenerContainerIdleEvent;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Non-blocking retries through delay topics.
+ * <p>
+ * A record whose processing failed for a transient reason is not failed right away: the stage
+ * publishes it with {@link #retry} to the first retry tier of its topic, e.g.
+ * {@code order.inventory-reserved.retry-1s}, and moves on, so the main partition is never held up
+ * by it. Each tier waits for its own delay ({@code order.retry.delays}); a record that fails again
+ * goes to the next tier, and after the last one it is copied with {@link #deadLetter} to
+ * {@code <topic>.dlq} while the stage publishes its failure event as before. The attempt, due time,
+ * source topic and last error travel in {@code order-retry-*} headers; everything else, including
+ * the codec and trace headers, is kept.
+ * <p>
+ * Retry tiers are consumed with {@link #dispatch} on containers from {@link RetryConfiguration}. A
+ * record that is not due yet pauses its partition and rewinds to it; the partition is resumed on
+ * the consumer thread once the record is due, from the next poll or idle event, so nothing spins
+ * while waiting. Offsets are committed up to the last handled record.
+ */
+public class RetryTopics implements ConsumerAwareRebalanceListener {
+
+    public static final String HEADER_ATTEMPT = "order-retry-attempt";
+    public static final String HEADER_DUE = "order-retry-due";
+    public static final String HEADER_SOURCE = "order-retry-source";
+    public static final String HEADER_REASON = "order-retry-reason";
+
+    private static final int MAX_REASON_LENGTH = 512;
+    private static final Logger log = LoggerFactory.getLogger(RetryTopics.class);
+
+    private final List<Duration> delays;
+    private final List<String> tiers;
+    private final boolean enabled;
+    private final long errorBackoffMillis;
+    private final MeterRegistry registry;
+    private final LongSupplier clock;
+    private final Map<TopicPartition, Long> pausedUntil = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * @param delays  one per tier, in order
+     * @param enabled whether failed records are retried; the tier topics are named either way
+     */
+    public RetryTopics(List<Duration> delays, boolean enabled, Duration errorBackoff, MeterRegistry registry) {
+        this(delays, enabled, errorBackoff, registry, System::currentTimeMillis);
+    }
+
+    RetryTopics(List<Duration> delays, boolean enabled, Duration errorBackoff, MeterRegistry registry,
+            LongSupplier clock) {
+        this.delays = List.copyOf(delays);
+        this.tiers = this.delays.stream().map(RetryTopics::tier).toList();
+        this.enabled = enabled && !this.delays.isEmpty();
+        this.errorBackoffMillis = errorBackoff.toMillis();
+        this.registry = registry;
+        this.clock = clock;
+        Gauge.builder("order_retry_paused_partitions", pausedUntil, Map::size).register(registry);
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /** The retry tier topics of {@code topic}, in order, for the stage's retry listener. */
+    public String[] topics(String topic) {
+        return tiers.stream().map(tier -> topic + "." + tier).toArray(String[]::new);
+    }
+
+    public static String deadLetterTopic(String topic) {
+        return topic + ".dlq";
+    }
+
+    /**
+     * The record to publish for the next attempt of {@code record}, or {@code null} if retries are
+     * disabled or the record has been through every tier; the stage then publishes its failure
+     * event, together with the {@link #deadLetter} copy. A stage that deduplicates must not mark
+     * the record as handled when it publishes a retry, or the retried record would be skipped.
+     */
+    public ProducerRecord<String, byte[]> retry(ConsumerRecord<String, byte[]> record, String reason) {
+        int attempt = attempt(record);
+        if (!enabled || attempt >= delays.size()) {
+            return null;
+        }
+        String source = source(record);
+        String tier = tiers.get(attempt);
+        Headers headers = copyHeaders(record);
+        headers.add(HEADER_ATTEMPT, ByteBuffer.allocate(Integer.BYTES).putInt(attempt + 1).array());
+        headers.add(HEADER_DUE, ByteBuffer.allocate(Long.BYTES)
+                .putLong(clock.getAsLong() + delays.get(attempt).toMillis()).array());
+        headers.add(HEADER_SOURCE, source.getBytes(StandardCharsets.UTF_8));
+        headers.add(HEADER_REASON, reason(reason));
+        counter("order_retry_scheduled_total", source, tier).increment();
+        return new ProducerRecord<>(source + "." + tier, null, record.key(), record.value(), headers);
+    }
+
+    /**
+     * A copy of {@code record} for the dead letter topic once its last retry has failed, or
+     * {@code null} if it was never retried.
+     */
+    public ProducerRecord<String, byte[]> deadLetter(ConsumerRecord<String, byte[]> record, String reason) {
+        int attempt = attempt(record);
+        if (attempt == 0) {
+            return null;
+        }
+        String source = source(record);
+        Headers headers = copyHeaders(record);
+        headers.add(HEADER_ATTEMPT, ByteBuffer.allocate(Integer.BYTES).putInt(attempt).array());
+        headers.add(HEADER_SOURCE, source.getBytes(StandardCharsets.UTF_8));
+        headers.add(HEADER_REASON, reason(reason));
+        counter("order_retry_dead_lettered_total", source, null).increment();
+        return new ProducerRecord<>(deadLetterTopic(source), null, record.key(), record.value(), headers);
+    }
+
+    /**
+     * Handles the records of a retry poll that are due, in order per partition. At the first record
+     * of a partition that is not due yet, the partition is paused and rewound to it. A handler
+     * failure (e.g. the next tier could not be published) does the same for
+     * {@code order.retry.error-backoff}, so the record is tried again rather than lost. Offsets are
+     * committed after the handlers return, so a handler that waits for its sends has published its
+     * outputs before the record's offset is committed.
+     */
+    public <K, V> void dispatch(List<ConsumerRecord<K, V>> records, Consumer<?, ?> consumer,
+            KeyOrderedDispatcher.RecordHandler<K, V> handler) {
+        resumeDue(consumer);
+        Map<TopicPartition, OffsetAndMetadata> handled = new HashMap<>();
+        for (ConsumerRecord<K, V> record : records) {
+            TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+            if (pausedUntil.containsKey(partition)) {
+                continue;
+            }
+            long due = due(record.headers());
+            if (due > clock.getAsLong()) {
+                pause(consumer, partition, record.offset(), due);
+                continue;
+            }
+            try {
+                handler.handle(record);
+                counter("order_retry_attempts_total", source(record), tierOf(record.topic())).increment();
+                handled.put(partition, new OffsetAndMetadata(record.offset() + 1));
+            } catch (Exception e) {
+                log.warn("Retry of {}-{}@{} failed, trying again in {} ms: {}", record.topic(), record.partition(),
+                        record.offset(), errorBackoffMillis, e.getMessage());
+                pause(consumer, partition, record.offset(), clock.getAsLong() + errorBackoffMillis);
+            }
+        }
+        if (!handled.isEmpty()) {
+            consumer.commitAsync(handled, (committed, e) -> {
+                if (e != null) {
+                    log.warn("Failed to commit retry offsets {}: {}", committed, e.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * Resumes partitions of the idle consumer whose next record is due.
+     */
+    @EventListener
+    public void onIdle(ListenerContainerIdleEvent event) {
+        Consumer<?, ?> consumer = event.getConsumer();
+        if (consumer != null) {
+            resumeDue(consumer);
+        }
+    }
+
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        partitions.forEach(pausedUntil::remove);
+    }
+
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        partitions.forEach(pausedUntil::remove);
+    }
+
+    /** Due time (epoch millis) of a retry record; {@code 0} if it has none. */
+    static long due(Headers headers) {
+        Header header = headers.lastHeader(HEADER_DUE);
+        return header != null && header.value().length == Long.BYTES ? ByteBuffer.wrap(header.value()).getLong() : 0;
+    }
+
+    private void pause(Consumer<?, ?> consumer, TopicPartition partition, long offset, long until) {
+        consumer.seek(partition, offset);
+        consumer.pause(List.of(partition));
+        pausedUntil.put(partition, until);
+    }
+
+    private void resumeDue(Consumer<?, ?> consumer) {
+        if (pausedUntil.isEmpty()) {
+            return;
+        }
+        long now = clock.getAsLong();
+        List<TopicPartition> due = new ArrayList<>();
+        for (TopicPartition partition : consumer.assignment()) {
+            Long until = pausedUntil.get(partition);
+            if (until != null && until <= now) {
+                due.add(partition);
+            }
+        }
+        if (!due.isEmpty()) {
+            consumer.resume(due);
+            due.forEach(pausedUntil::remove);
+        }
+    }
+
+    private static int attempt(ConsumerRecord<?, ?> record) {
+        Header header = record.headers().lastHeader(HEADER_ATTEMPT);
+        return header != null && header.value().length == Integer.BYTES ? ByteBuffer.wrap(header.value()).getInt() : 0;
+    }
+
+    private static String source(ConsumerRecord<?, ?> record) {
+        Header header = record.headers().lastHeader(HEADER_SOURCE);
+        return header != null ? new String(header.value(), StandardCharsets.UTF_8) : record.topic();
+    }
+
+    /** Everything but the retry headers and the trace headers, which the stage propagates itself. */
+    private static Headers copyHeaders(ConsumerRecord<?, ?> record) {
+        RecordHeaders headers = new RecordHeaders();
+        for (Header header : record.headers()) {
+            String key = header.key();
+            if (!key.startsWith("order-retry-")
+                    && !StageMetrics.HEADER_CREATED_AT.equals(key) && !StageMetrics.HEADER_STAGE.equals(key)) {
+                headers.add(header);
+            }
+        }
+        return headers;
+    }
+
+    private static byte[] reason(String reason) {
+        String text = reason == null ? "" : reason.length() > MAX_REASON_LENGTH ? reason.substring(0, MAX_REASON_LENGTH) : reason;
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private String tierOf(String topic) {
+        return topic.substring(topic.lastIndexOf('.') + 1);
+    }
+
+    private Counter counter(String name, String topic, String tier) {
+        return counters.computeIfAbsent(name + '|' + topic + '|' + tier, k -> tier == null
+                ? registry.counter(name, "topic", topic)
+                : registry.counter(name, "topic", topic, "tier", tier));
+    }
+
+    private static String tier(Duration delay) {
+        long millis = delay.toMillis();
+        return millis % 1000 == 0 ? "retry-" + millis / 1000 + "s" : "retry-" + millis + "ms";
+    }
+}
@@ -0,0 +1,43 @@
+package events.scaling;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaAdmin;
+
+import java.time.Duration;
+import java.util.regex.Pattern;
+
+/**
+ * Lag-driven concurrency for every listener container of the service; see
+ * {@link ConcurrencyAutoscaler}. Partition counts come from the auto-configured {@link KafkaAdmin}.
+ * With {@code order.listener.autoscale.enabled=false} containers keep the concurrency they were
+ * created with.
+ */
+@Configuration
+public class AutoscalingConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public ConcurrencyAutoscaler concurrencyAutoscaler(KafkaListenerEndpointRegistry endpoints, KafkaAdmin admin,
+            MeterRegistry registry,
+            @Value("${order.listener.autoscale.enabled:true}") boolean enabled,
+            @Value("${order.listener.autoscale.interval:10s}") Duration interval,
+            @Value("${order.listener.autoscale.min-concurrency:1}") int minConcurrency,
+            @Value("${order.listener.autoscale.max-concurrency:16}") int maxConcurrency,
+            @Value("${order.listener.autoscale.target-utilisation:0.7}") double targetUtilisation,
+            @Value("${order.listener.autoscale.drain-time:30s}") Duration drainTime,
+            @Value("${order.listener.autoscale.min-lag:1000}") long minLag,
+            @Value("${order.listener.autoscale.scale-up-samples:2}") int upSamples,
+            @Value("${order.listener.autoscale.scale-down-samples:6}") int downSamples,
+            @Value("${order.listener.autoscale.exclude-groups:.*-retry}") String excludeGroups) {
+        ScalingPolicy policy = new ScalingPolicy(minConcurrency, maxConcurrency,
+                targetUtilisation, drainTime.toMillis() / 1000.0, minLag);
+        return new ConcurrencyAutoscaler(endpoints,
+                topics -> admin.describeTopics(topics).values().stream()
+                        .mapToInt(topic -> topic.partitions().size()).sum(),
+                policy, Pattern.compile(excludeGroups), upSamples, downSamples, enabled, interval, registry,
+                System::nanoTime);
+    }
+}
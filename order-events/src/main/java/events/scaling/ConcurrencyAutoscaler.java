@@ -0,0 +1,213 @@
+package events.scaling;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListenerContainer;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.ToIntFunction;
+import java.util.regex.Pattern;
+
+/**
+ * Grows and shrinks the consumer count of every running {@code @KafkaListener} container with its
+ * lag.
+ * <p>
+ * Every interval the consumers' own fetch metrics are read: {@code records-lag} of each assigned
+ * partition, {@code records-consumed-total} and {@code poll-idle-ratio-avg}. The consumed rate plus
+ * the change in lag is the arrival rate; the share of time the consumers spent outside
+ * {@code poll}, divided by the records they consumed, is the processing time per record. Both go
+ * through {@link ScalingPolicy}. A new consumer count is applied only once the policy has asked for
+ * a scale-up {@code upSamples} times in a row, or for a scale-down {@code downSamples} times in a
+ * row, and never above the partition count of the container's topics, since extra consumers would
+ * sit idle.
+ * <p>
+ * A container's concurrency can only change while it is stopped, so it is stopped (committing
+ * what it has processed), resized and started again. That costs one rebalance of the group, which
+ * adding a consumer costs anyway. Groups matching {@code excludedGroups} are left alone.
+ */
+public class ConcurrencyAutoscaler implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ConcurrencyAutoscaler.class);
+
+    private static final String FETCH_METRICS = "consumer-fetch-manager-metrics";
+    private static final String CONSUMER_METRICS = "consumer-metrics";
+
+    private final KafkaListenerEndpointRegistry endpoints;
+    private final ToIntFunction<String[]> partitionCount;
+    private final ScalingPolicy policy;
+    private final Pattern excludedGroups;
+    private final int upSamples;
+    private final int downSamples;
+    private final MeterRegistry registry;
+    private final LongSupplier nanoClock;
+    private final Map<String, Listener> listeners = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sampler;
+
+    /**
+     * @param partitionCount total partition count of the given topics
+     * @param enabled        whether containers are sampled at all
+     */
+    ConcurrencyAutoscaler(KafkaListenerEndpointRegistry endpoints, ToIntFunction<String[]> partitionCount,
+            ScalingPolicy policy, Pattern excludedGroups, int upSamples, int downSamples, boolean enabled,
+            Duration interval, MeterRegistry registry, LongSupplier nanoClock) {
+        this.endpoints = endpoints;
+        this.partitionCount = partitionCount;
+        this.policy = policy;
+        this.excludedGroups = excludedGroups;
+        this.upSamples = upSamples;
+        this.downSamples = downSamples;
+        this.registry = registry;
+        this.nanoClock = nanoClock;
+        this.sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "listener-autoscaler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (enabled) {
+            sampler.scheduleWithFixedDelay(this::sample, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void close() {
+        sampler.shutdownNow();
+    }
+
+    /** Samples every running container and resizes those whose policy decision has held long enough. */
+    void sample() {
+        for (MessageListenerContainer candidate : endpoints.getListenerContainers()) {
+            if (!(candidate instanceof ConcurrentMessageListenerContainer<?, ?> container)
+                    || !container.isRunning() || container.isContainerPaused()
+                    || container.getGroupId() == null || excludedGroups.matcher(container.getGroupId()).matches()) {
+                continue;
+            }
+            try {
+                listeners.computeIfAbsent(container.getListenerId(), id -> new Listener(container)).sample();
+            } catch (RuntimeException e) {
+                log.warn("Autoscaling of {} failed: {}", container.getListenerId(), e.getMessage());
+            }
+        }
+    }
+
+    private int partitions(ConcurrentMessageListenerContainer<?, ?> container) {
+        String[] topics = container.getContainerProperties().getTopics();
+        if (topics != null) {
+            try {
+                return partitionCount.applyAsInt(topics);
+            } catch (RuntimeException e) {
+                log.warn("Could not describe {}: {}", String.join(",", topics), e.getMessage());
+            }
+        }
+        return container.getAssignedPartitions().size();
+    }
+
+    /** Sampling and hysteresis state of one container. */
+    private final class Listener {
+
+        final ConcurrentMessageListenerContainer<?, ?> container;
+        final Counter rescales;
+        volatile double lag;
+        volatile double recordMillis;
+        boolean baseline;
+        double lastConsumed;
+        long lastNanos;
+        int upStreak;
+        int downStreak;
+
+        Listener(ConcurrentMessageListenerContainer<?, ?> container) {
+            this.container = container;
+            Tags tags = Tags.of("group", container.getGroupId(), "listener", container.getListenerId());
+            this.rescales = registry.counter("order_listener_rescales_total", tags);
+            Gauge.builder("order_listener_lag", this, l -> l.lag).tags(tags).register(registry);
+            Gauge.builder("order_listener_concurrency", container, c -> c.getConcurrency()).tags(tags).register(registry);
+            Gauge.builder("order_listener_record_time_ms", this, l -> l.recordMillis).tags(tags).register(registry);
+        }
+
+        void sample() {
+            double lagSum = 0;
+            double consumed = 0;
+            double idleSum = 0;
+            int idleClients = 0;
+            for (Map<MetricName, ? extends Metric> client : container.metrics().values()) {
+                for (Metric metric : client.values()) {
+                    MetricName name = metric.metricName();
+                    double value = value(metric);
+                    if (Double.isNaN(value)) {
+                        continue;
+                    }
+                    if (FETCH_METRICS.equals(name.group())) {
+                        if ("records-lag".equals(name.name()) && name.tags().containsKey("partition")) {
+                            lagSum += value;
+                        } else if ("records-consumed-total".equals(name.name()) && !name.tags().containsKey("topic")) {
+                            consumed += value;
+                        }
+                    } else if (CONSUMER_METRICS.equals(name.group()) && "poll-idle-ratio-avg".equals(name.name())) {
+                        idleSum += value;
+                        idleClients++;
+                    }
+                }
+            }
+            long now = nanoClock.getAsLong();
+            double previousLag = lag;
+            lag = lagSum;
+            if (!baseline || consumed < lastConsumed) {
+                // first sample, or the consumers were replaced and their counters restarted
+                baseline = true;
+                lastConsumed = consumed;
+                lastNanos = now;
+                return;
+            }
+            double seconds = (now - lastNanos) / 1e9;
+            double consumedPerSecond = (consumed - lastConsumed) / seconds;
+            lastConsumed = consumed;
+            lastNanos = now;
+            int current = container.getConcurrency();
+            double busy = idleClients > 0 ? 1 - idleSum / idleClients : 0;
+            double recordSeconds = consumedPerSecond > 0 ? busy * current / consumedPerSecond : Double.NaN;
+            recordMillis = Double.isNaN(recordSeconds) ? 0 : recordSeconds * 1000;
+            double arrivalPerSecond = Math.max(0, consumedPerSecond + (lagSum - previousLag) / seconds);
+
+            int next = policy.next(current, lagSum, arrivalPerSecond, recordSeconds);
+            upStreak = next > current ? upStreak + 1 : 0;
+            downStreak = next < current ? downStreak + 1 : 0;
+            if (upStreak >= upSamples) {
+                next = Math.min(next, partitions(container));
+            } else if (downStreak < downSamples) {
+                return;
+            }
+            if (next != current && next > 0) {
+                resize(current, next);
+            }
+        }
+
+        private void resize(int current, int next) {
+            log.info("Rescaling {} ({}): concurrency {} -> {}, lag {}", container.getListenerId(),
+                    container.getGroupId(), current, next, (long) lag);
+            container.stop();
+            container.setConcurrency(next);
+            container.start();
+            rescales.increment();
+            upStreak = 0;
+            downStreak = 0;
+            baseline = false;
+        }
+
+        private static double value(Metric metric) {
+            return metric.metricValue() instanceof Number number ? number.doubleValue() : Double.NaN;
+        }
+    }
+}
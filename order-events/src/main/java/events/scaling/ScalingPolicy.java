@@ -0,0 +1,58 @@
+package events.scaling;
+
+/**
+ * Picks the consumer count of a listener container from its lag and its per-record processing time.
+ * <p>
+ * The consumers have to keep up with the arrival rate and, while the lag is above
+ * {@code minLag}, also work the backlog off within {@code drainSeconds}. Multiplying that demand
+ * by the busy time per record gives the number of fully busy consumers needed; dividing by
+ * {@code targetUtilisation} leaves headroom for bursts. The policy scales up to that number at once
+ * but down only one consumer at a time, and only once the demand would still fit with half a
+ * consumer to spare, so a demand hovering around a whole number does not flap between two sizes.
+ */
+final class ScalingPolicy {
+
+    /** Spare capacity, in consumers, required before dropping one. */
+    private static final double DEAD_BAND = 0.5;
+
+    private final int minConcurrency;
+    private final int maxConcurrency;
+    private final double targetUtilisation;
+    private final double drainSeconds;
+    private final long minLag;
+
+    ScalingPolicy(int minConcurrency, int maxConcurrency, double targetUtilisation, double drainSeconds, long minLag) {
+        this.minConcurrency = minConcurrency;
+        this.maxConcurrency = maxConcurrency;
+        this.targetUtilisation = targetUtilisation;
+        this.drainSeconds = drainSeconds;
+        this.minLag = minLag;
+    }
+
+    /**
+     * @param current          consumers running now
+     * @param lag              records behind the log end, summed over the container's partitions
+     * @param arrivalPerSecond records appended to those partitions per second
+     * @param recordSeconds    consumer time spent per record outside {@code poll}; {@code NaN} when
+     *                         nothing was consumed in the interval
+     */
+    int next(int current, double lag, double arrivalPerSecond, double recordSeconds) {
+        double needed;
+        if (Double.isNaN(recordSeconds)) {
+            if (lag > minLag) {
+                return current;
+            }
+            needed = 0;
+        } else {
+            double backlog = lag > minLag ? lag / drainSeconds : 0;
+            needed = (arrivalPerSecond + backlog) * recordSeconds / targetUtilisation;
+        }
+        if (needed > current) {
+            return Math.min(maxConcurrency, (int) Math.ceil(needed));
+        }
+        if (needed <= current - 1 - DEAD_BAND) {
+            return Math.max(minConcurrency, current - 1);
+        }
+        return Math.max(minConcurrency, Math.min(maxConcurrency, current));
+    }
+}
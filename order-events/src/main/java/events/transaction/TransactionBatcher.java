@@ -0,0 +1,332 @@
+package events.transaction;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.event.ConsumerStoppingEvent;
+import org.springframework.kafka.event.ListenerContainerIdleEvent;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Exactly-once consume-transform-produce with one Kafka transaction per batch of records.
+ * <p>
+ * Every consumer gets its own transactional producer. The outputs of consumed records are sent
+ * inside an open transaction together with the consumed offsets
+ * ({@code sendOffsetsToTransaction}), so either both become visible to {@code read_committed}
+ * consumers or neither does. A transaction spans polls and is committed once it holds
+ * {@code maxRecords} records or has been open for {@code maxInterval}, whichever comes first, so
+ * the cost of a commit is shared by the whole batch.
+ * <p>
+ * If a handler, a send or the commit fails, the transaction is aborted and every partition is
+ * rewound to its first record of the transaction, so the records are processed again. A producer
+ * that cannot abort (e.g. because it was fenced) is closed and replaced. When a consumer stops
+ * (container stop, resize, restart), its open transaction is committed and its producer is handed
+ * back: a caching producer factory keeps it for the next consumer, so replaced consumers do
+ * not add producers, and the cached producers are closed when the batcher is closed.
+ * <p>
+ * All {@link Consumer} and producer calls happen on the container's consumer thread: from
+ * {@link #process}, from idle and stopping events and from the rebalance callbacks. Used with the
+ * container factory from {@link TransactionConfiguration}.
+ */
+public class TransactionBatcher implements ConsumerAwareRebalanceListener, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionBatcher.class);
+
+    private final Supplier<Producer<String, byte[]>> producers;
+    private final Runnable closeProducers;
+    private final int maxRecords;
+    private final long maxIntervalNanos;
+    private final LongSupplier nanoClock;
+    private final Map<Consumer<?, ?>, Batch> batches = new ConcurrentHashMap<>();
+    private final Counter commitsTotal;
+    private final Counter abortsTotal;
+    private final DistributionSummary transactionRecords;
+    private final Timer commitTime;
+
+    /**
+     * @param producers creates a producer with a unique {@code transactional.id} on which
+     *                  {@code initTransactions} has already been called
+     */
+    public TransactionBatcher(Supplier<Producer<String, byte[]>> producers, int maxRecords, Duration maxInterval,
+            MeterRegistry registry) {
+        this(producers, () -> { }, maxRecords, maxInterval, registry, System::nanoTime);
+    }
+
+    /**
+     * @param closeProducers run by {@link #close} after the open transactions are aborted, e.g.
+     *                       {@code ProducerFactory.reset()} to close the producers a factory caches
+     */
+    public TransactionBatcher(Supplier<Producer<String, byte[]>> producers, Runnable closeProducers, int maxRecords,
+            Duration maxInterval, MeterRegistry registry) {
+        this(producers, closeProducers, maxRecords, maxInterval, registry, System::nanoTime);
+    }
+
+    TransactionBatcher(Supplier<Producer<String, byte[]>> producers, Runnable closeProducers, int maxRecords,
+            Duration maxInterval, MeterRegistry registry, LongSupplier nanoClock) {
+        this.producers = producers;
+        this.closeProducers = closeProducers;
+        this.maxRecords = maxRecords;
+        this.maxIntervalNanos = maxInterval.toNanos();
+        this.nanoClock = nanoClock;
+        this.commitsTotal = registry.counter("order_transaction_commits_total");
+        this.abortsTotal = registry.counter("order_transaction_aborts_total");
+        this.transactionRecords = DistributionSummary.builder("order_transaction_records").register(registry);
+        this.commitTime = Timer.builder("order_transaction_commit_time").register(registry);
+    }
+
+    /** Outputs of the records handled in the current transaction. */
+    public interface Transaction {
+
+        /** Sends a record as part of the transaction; it is visible only once the transaction commits. */
+        void send(ProducerRecord<String, byte[]> record);
+
+        /** Runs {@code action} once the transaction has committed; dropped if it aborts. */
+        void afterCommit(Runnable action);
+    }
+
+    @FunctionalInterface
+    public interface RecordHandler<K, V> {
+        void handle(ConsumerRecord<K, V> record, Transaction transaction) throws Exception;
+    }
+
+    /**
+     * Handles the records of a poll inside the consumer's open transaction, committing whenever the
+     * transaction reaches its size or age bound. Records after a failure are not handled; they are
+     * fetched again after the rewind.
+     */
+    public <K, V> void process(List<ConsumerRecord<K, V>> records, Consumer<?, ?> consumer, RecordHandler<K, V> handler) {
+        Batch batch = batches.computeIfAbsent(consumer, c -> new Batch());
+        for (int i = 0; i < records.size(); i++) {
+            ConsumerRecord<K, V> record = records.get(i);
+            TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+            try {
+                batch.begin();
+                batch.firstOffsets.putIfAbsent(partition, record.offset());
+                handler.handle(record, batch);
+                batch.offsets.put(partition, new OffsetAndMetadata(record.offset() + 1));
+                batch.records++;
+                if (batch.records >= maxRecords) {
+                    commit(consumer, batch);
+                }
+            } catch (Exception e) {
+                log.error("Transaction failed at {}-{}@{}: {}", record.topic(), record.partition(), record.offset(),
+                        e.getMessage());
+                abort(consumer, batch, records.subList(i, records.size()), Set.of());
+                return;
+            }
+        }
+        commitIfDue(consumer, batch, false);
+    }
+
+    /**
+     * Commits the open transaction of the consumer that went idle, so a slow trickle of records is
+     * not held back until the next poll.
+     */
+    @EventListener
+    public void onIdle(ListenerContainerIdleEvent event) {
+        Consumer<?, ?> consumer = event.getConsumer();
+        Batch batch = consumer != null ? batches.get(consumer) : null;
+        if (batch != null) {
+            commitIfDue(consumer, batch, true);
+        }
+    }
+
+    /**
+     * Commits the open transaction of a consumer that is about to close and hands its producer
+     * back; a restarted container brings new consumers, which take producers from the factory.
+     */
+    @EventListener
+    public void onStopping(ConsumerStoppingEvent event) {
+        Consumer<?, ?> consumer = event.getConsumer();
+        Batch batch = consumer != null ? batches.remove(consumer) : null;
+        if (batch == null) {
+            return;
+        }
+        if (batch.inTransaction) {
+            try {
+                commit(consumer, batch);
+            } catch (RuntimeException e) {
+                log.error("Failed to commit transaction before stopping: {}", e.getMessage());
+                abort(consumer, batch, List.of(), consumer.assignment());
+            }
+        }
+        batch.close();
+    }
+
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        Batch batch = batches.get(consumer);
+        if (batch == null || !batch.inTransaction) {
+            return;
+        }
+        try {
+            commit(consumer, batch);
+        } catch (RuntimeException e) {
+            log.error("Failed to commit transaction before rebalance: {}", e.getMessage());
+            abort(consumer, batch, List.of(), partitions);
+        }
+    }
+
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        Batch batch = batches.get(consumer);
+        if (batch != null && batch.inTransaction) {
+            abort(consumer, batch, List.of(), partitions);
+        }
+    }
+
+    @Override
+    public void close() {
+        batches.values().forEach(Batch::close);
+        batches.clear();
+        closeProducers.run();
+    }
+
+    private void commitIfDue(Consumer<?, ?> consumer, Batch batch, boolean idle) {
+        if (!batch.inTransaction || !idle && nanoClock.getAsLong() - batch.startedNanos < maxIntervalNanos) {
+            return;
+        }
+        try {
+            commit(consumer, batch);
+        } catch (RuntimeException e) {
+            log.error("Failed to commit transaction: {}", e.getMessage());
+            abort(consumer, batch, List.of(), Set.of());
+        }
+    }
+
+    private void commit(Consumer<?, ?> consumer, Batch batch) {
+        long start = System.nanoTime();
+        if (!batch.offsets.isEmpty()) {
+            batch.producer.sendOffsetsToTransaction(batch.offsets, consumer.groupMetadata());
+        }
+        batch.producer.commitTransaction();
+        commitTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        commitsTotal.increment();
+        transactionRecords.record(batch.records);
+        List<Runnable> actions = batch.afterCommit;
+        batch.reset();
+        for (Runnable action : actions) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                log.warn("After-commit action failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Aborts the open transaction and rewinds every partition it touched, and every partition of
+     * {@code unhandled}, to its first unprocessed offset. Partitions in {@code gone} are no longer
+     * owned and are not rewound.
+     */
+    private void abort(Consumer<?, ?> consumer, Batch batch, List<? extends ConsumerRecord<?, ?>> unhandled,
+            Collection<TopicPartition> gone) {
+        Map<TopicPartition, Long> rewind = new HashMap<>(batch.firstOffsets);
+        for (ConsumerRecord<?, ?> record : unhandled) {
+            rewind.putIfAbsent(new TopicPartition(record.topic(), record.partition()), record.offset());
+        }
+        if (batch.inTransaction) {
+            try {
+                batch.producer.abortTransaction();
+            } catch (RuntimeException e) {
+                log.warn("Failed to abort transaction, replacing producer: {}", e.getMessage());
+                batch.discardProducer();
+            }
+            abortsTotal.increment();
+        }
+        batch.reset();
+        Set<TopicPartition> assigned = consumer.assignment();
+        rewind.forEach((partition, offset) -> {
+            if (assigned.contains(partition) && !gone.contains(partition)) {
+                consumer.seek(partition, offset);
+            }
+        });
+    }
+
+    /** Open transaction of one consumer. */
+    private final class Batch implements Transaction {
+
+        final Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        final Map<TopicPartition, Long> firstOffsets = new HashMap<>();
+        List<Runnable> afterCommit = new ArrayList<>();
+        Producer<String, byte[]> producer;
+        boolean inTransaction;
+        long startedNanos;
+        int records;
+
+        void begin() {
+            if (inTransaction) {
+                return;
+            }
+            if (producer == null) {
+                producer = producers.get();
+            }
+            producer.beginTransaction();
+            inTransaction = true;
+            startedNanos = nanoClock.getAsLong();
+        }
+
+        @Override
+        public void send(ProducerRecord<String, byte[]> record) {
+            producer.send(record);
+        }
+
+        @Override
+        public void afterCommit(Runnable action) {
+            afterCommit.add(action);
+        }
+
+        void reset() {
+            offsets.clear();
+            firstOffsets.clear();
+            afterCommit = new ArrayList<>();
+            inTransaction = false;
+            records = 0;
+        }
+
+        void discardProducer() {
+            try {
+                producer.close(Duration.ZERO);
+            } catch (RuntimeException e) {
+                log.debug("Failed to close producer: {}", e.getMessage());
+            }
+            producer = null;
+        }
+
+        void close() {
+            if (producer == null) {
+                return;
+            }
+            if (inTransaction) {
+                try {
+                    producer.abortTransaction();
+                } catch (RuntimeException e) {
+                    log.debug("Failed to abort transaction on close: {}", e.getMessage());
+                }
+            }
+            discardProducer();
+        }
+    }
+}
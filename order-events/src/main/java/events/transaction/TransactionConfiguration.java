@@ -0,0 +1,62 @@
+package events.transaction;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Container factory and transactional producers for listeners running in {@code exactly-once} mode.
+ * <p>
+ * Listeners using {@link #CONTAINER_FACTORY} receive whole polls, read only committed records and
+ * never acknowledge themselves: the {@link TransactionBatcher} commits offsets inside its
+ * transactions. Transactions are committed every {@code order.listener.exactly-once.max-records}
+ * records or {@code max-interval}, whichever comes first. The producers are built from the
+ * application's producer settings with a {@code transactional.id} prefix that is unique per process,
+ * so the shared {@code KafkaTemplate} stays non-transactional. Their factory is not a bean, which
+ * would replace the application's default producer factory; the batcher closes its producers when
+ * it is destroyed.
+ */
+@Configuration
+public class TransactionConfiguration {
+
+    public static final String CONTAINER_FACTORY = "transactionalListenerContainerFactory";
+
+    @Bean(destroyMethod = "close")
+    public TransactionBatcher transactionBatcher(ProducerFactory<Object, Object> producerFactory, MeterRegistry registry,
+                                                 @Value("${order.listener.exactly-once.transaction-id-prefix:order-tx-}") String prefix,
+                                                 @Value("${order.listener.exactly-once.max-records:500}") int maxRecords,
+                                                 @Value("${order.listener.exactly-once.max-interval:100ms}") Duration maxInterval) {
+        DefaultKafkaProducerFactory<String, byte[]> transactional =
+                new DefaultKafkaProducerFactory<>(producerFactory.getConfigurationProperties());
+        transactional.setTransactionIdPrefix(prefix + UUID.randomUUID() + "-");
+        return new TransactionBatcher(transactional::createProducer, transactional::reset, maxRecords, maxInterval,
+                registry);
+    }
+
+    @Bean(CONTAINER_FACTORY)
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> transactionalListenerContainerFactory(
+            ConsumerFactory<Object, Object> consumerFactory,
+            TransactionBatcher batcher,
+            @Value("${order.listener.exactly-once.max-interval:100ms}") Duration maxInterval) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        factory.setBatchListener(true);
+        ContainerProperties properties = factory.getContainerProperties();
+        properties.setAckMode(ContainerProperties.AckMode.MANUAL);
+        properties.setPollTimeout(maxInterval.toMillis());
+        properties.setIdleEventInterval(maxInterval.toMillis());
+        properties.setConsumerRebalanceListener(batcher);
+        properties.getKafkaConsumerProperties().setProperty(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+        return factory;
+    }
+}
@@ -0,0 +1,47 @@
+package events.transport;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Publishes records to topics and delivers them to subscribers. Stages publish through this
+ * instead of a {@code KafkaTemplate}, so the same listener code runs over Kafka
+ * ({@link KafkaEventTransport}) or inside one JVM ({@link RingBufferEventTransport}).
+ * <p>
+ * Records keep the Kafka client types: a {@link ProducerRecord} goes in, and subscribers get a
+ * {@link ConsumerRecord} with the same key, value and headers.
+ */
+public interface EventTransport extends AutoCloseable {
+
+    /**
+     * Publishes a record. The future completes once the transport has stored it (the broker ack
+     * for Kafka), or exceptionally if it could not be stored.
+     */
+    CompletableFuture<Void> send(ProducerRecord<String, byte[]> record);
+
+    /** Pushes out records the transport is still buffering. */
+    void flush();
+
+    /**
+     * Delivers records published to {@code topic} to {@code handler} until the subscription is
+     * closed. Each group gets every record once; within a group the handler is called one record
+     * at a time.
+     */
+    Subscription subscribe(String topic, String group, Handler handler);
+
+    @Override
+    void close();
+
+    @FunctionalInterface
+    interface Handler {
+        void handle(ConsumerRecord<String, byte[]> record) throws Exception;
+    }
+
+    interface Subscription extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+}
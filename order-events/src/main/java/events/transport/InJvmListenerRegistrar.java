@@ -0,0 +1,112 @@
+package events.transport;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.MethodIntrospector;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StringUtils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In {@code in-jvm} listener mode, subscribes every record listener of the application to the
+ * {@link RingBufferEventTransport} instead of Kafka.
+ * <p>
+ * A record listener is a {@link KafkaListener} method with a single {@link ConsumerRecord}
+ * parameter that is not a batch listener. It is subscribed to each of its {@code topics} with its
+ * {@code groupId} as the group; batch and parallel listeners are left alone. Their Kafka
+ * containers do not start in this mode (see {@code autoStartup} on the listeners).
+ * <p>
+ * The rings only connect stages that share this application context, so the context has to host
+ * the whole pipeline: once the listeners are subscribed, every one of {@code topics} must have a
+ * subscriber, or startup fails. A service started on its own in {@code in-jvm} mode is rejected
+ * here instead of publishing into rings nobody reads.
+ */
+public class InJvmListenerRegistrar implements SmartInitializingSingleton, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(InJvmListenerRegistrar.class);
+
+    private final EventTransport transport;
+    private final ConfigurableApplicationContext context;
+    private final List<String> topics;
+    private final List<EventTransport.Subscription> subscriptions = new ArrayList<>();
+    private final Set<String> subscribedTopics = new HashSet<>();
+
+    public InJvmListenerRegistrar(EventTransport transport, ConfigurableApplicationContext context,
+            List<String> topics) {
+        this.transport = transport;
+        this.context = context;
+        this.topics = List.copyOf(topics);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!(transport instanceof RingBufferEventTransport)) {
+            return;
+        }
+        for (String beanName : context.getBeanDefinitionNames()) {
+            Class<?> type = context.getType(beanName);
+            if (type == null) {
+                continue;
+            }
+            Map<Method, KafkaListener> listeners = MethodIntrospector.selectMethods(ClassUtils.getUserClass(type),
+                    (MethodIntrospector.MetadataLookup<KafkaListener>) method ->
+                            AnnotatedElementUtils.findMergedAnnotation(method, KafkaListener.class));
+            listeners.forEach((method, listener) -> {
+                if (isRecordListener(method, listener)) {
+                    subscribe(context.getBean(beanName), method, listener);
+                }
+            });
+        }
+        List<String> unsubscribed = topics.stream().filter(topic -> !subscribedTopics.contains(topic)).toList();
+        if (!unsubscribed.isEmpty()) {
+            close();
+            throw new IllegalStateException("in-jvm listener mode needs every stage of the pipeline in one "
+                    + "application context, but nothing here subscribes to " + unsubscribed);
+        }
+    }
+
+    @Override
+    public void close() {
+        subscriptions.forEach(EventTransport.Subscription::close);
+        subscriptions.clear();
+    }
+
+    private static boolean isRecordListener(Method method, KafkaListener listener) {
+        return method.getParameterCount() == 1
+                && method.getParameterTypes()[0] == ConsumerRecord.class
+                && !"true".equals(listener.batch());
+    }
+
+    private void subscribe(Object bean, Method method, KafkaListener listener) {
+        String group = context.getEnvironment().resolvePlaceholders(listener.groupId());
+        if (!StringUtils.hasText(group)) {
+            group = method.getDeclaringClass().getSimpleName() + "." + method.getName();
+        }
+        ReflectionUtils.makeAccessible(method);
+        for (String topic : listener.topics()) {
+            String resolved = context.getEnvironment().resolvePlaceholders(topic);
+            subscribedTopics.add(resolved);
+            subscriptions.add(transport.subscribe(resolved, group, record -> {
+                try {
+                    method.invoke(bean, record);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause() instanceof Exception cause ? cause : e;
+                }
+            }));
+            log.info("Subscribed {}.{} to {} as {}", bean.getClass().getSimpleName(), method.getName(), resolved, group);
+        }
+    }
+}
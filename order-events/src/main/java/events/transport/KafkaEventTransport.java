@@ -0,0 +1,65 @@
+package events.transport;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.MessageListener;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link EventTransport} over Kafka. Sends go through the shared {@link KafkaTemplate};
+ * {@link #subscribe} starts a record listener container for the topic.
+ * <p>
+ * The stages' own {@code @KafkaListener} methods do not use {@link #subscribe}: they keep the
+ * record, batch and parallel container setups of {@code order.listener.mode}.
+ */
+public class KafkaEventTransport implements EventTransport {
+
+    public static final String NAME = "kafka";
+
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final ConsumerFactory<Object, Object> consumerFactory;
+
+    public KafkaEventTransport(KafkaTemplate<String, byte[]> kafkaTemplate, ConsumerFactory<Object, Object> consumerFactory) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.consumerFactory = consumerFactory;
+    }
+
+    @Override
+    public CompletableFuture<Void> send(ProducerRecord<String, byte[]> record) {
+        return kafkaTemplate.send(record).thenApply(result -> null);
+    }
+
+    @Override
+    public void flush() {
+        kafkaTemplate.flush();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Subscription subscribe(String topic, String group, Handler handler) {
+        ContainerProperties properties = new ContainerProperties(topic);
+        properties.setGroupId(group);
+        properties.setMessageListener((MessageListener<Object, Object>) record -> {
+            try {
+                handler.handle((ConsumerRecord<String, byte[]>) (ConsumerRecord<?, ?>) record);
+            } catch (Exception e) {
+                throw new KafkaException("Failed to handle " + record.topic() + "@" + record.offset(), e);
+            }
+        });
+        ConcurrentMessageListenerContainer<Object, Object> container =
+                new ConcurrentMessageListenerContainer<>(consumerFactory, properties);
+        container.setBeanName(group + "-" + topic);
+        container.start();
+        return container::stop;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,149 @@
+package events.transport;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongFunction;
+
+/**
+ * Bounded multi-producer ring with one reader sequence per consumer, after the LMAX Disruptor.
+ * <p>
+ * A producer claims the next sequence with a CAS on the cursor, stores its element in the slot
+ * and then marks the slot available by writing the sequence number into it. Consumers read the
+ * sequences in order, each as soon as its slot is marked, so a slow producer never lets a later
+ * one's element be read first. Before claiming, a producer waits while the claim would overwrite
+ * a slot the slowest consumer has not passed yet; the slowest consumer is looked up only when the
+ * cached value says the ring may be full. Nothing is allocated per element beyond the element.
+ * <p>
+ * A ring without consumers refuses elements: nothing would hold the producers back, so they would
+ * be overwritten unread.
+ */
+final class RingBuffer<E> {
+
+    private static final VarHandle AVAILABLE = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final String name;
+    private final Object[] slots;
+    private final long[] available;
+    private final int mask;
+    private final Sequence cursor = new Sequence(-1);
+    private final Sequence slowestCache = new Sequence(-1);
+    private final List<Sequence> consumers = new CopyOnWriteArrayList<>();
+
+    RingBuffer(String name, int size) {
+        if (size < 2 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("Ring size must be a power of two: " + size);
+        }
+        this.name = name;
+        this.slots = new Object[size];
+        this.available = new long[size];
+        this.mask = size - 1;
+        Arrays.fill(available, -1);
+    }
+
+    /**
+     * Claims the next sequence, stores {@code factory.apply(sequence)} in its slot and publishes
+     * it. Waits while the ring is full.
+     *
+     * @throws IllegalStateException if the ring has no consumer
+     */
+    long publish(LongFunction<E> factory) {
+        for (int idle = 0; ; ) {
+            if (consumers.isEmpty()) {
+                throw new IllegalStateException("Nothing consumes " + name + "; the element would be lost");
+            }
+            long current = cursor.get();
+            long next = current + 1;
+            long wrapPoint = next - slots.length;
+            if (wrapPoint > slowestCache.get()) {
+                long slowest = slowest(current);
+                slowestCache.set(slowest);
+                if (wrapPoint > slowest) {
+                    idle(idle++);
+                    continue;
+                }
+            }
+            if (cursor.compareAndSet(current, next)) {
+                int index = (int) next & mask;
+                slots[index] = factory.apply(next);
+                AVAILABLE.setRelease(available, index, next);
+                return next;
+            }
+        }
+    }
+
+    /** Element at {@code sequence}, or {@code null} if it has not been published yet. */
+    @SuppressWarnings("unchecked")
+    E get(long sequence) {
+        int index = (int) sequence & mask;
+        return (long) AVAILABLE.getAcquire(available, index) == sequence ? (E) slots[index] : null;
+    }
+
+    /**
+     * Adds a consumer that starts after the last claimed sequence. Elements published before this
+     * call are not delivered to it.
+     */
+    Sequence addConsumer() {
+        Sequence sequence = new Sequence(cursor.get());
+        consumers.add(sequence);
+        return sequence;
+    }
+
+    void removeConsumer(Sequence sequence) {
+        consumers.remove(sequence);
+    }
+
+    /** Claimed sequences the slowest consumer has not passed yet. */
+    long backlog() {
+        long current = cursor.get();
+        return current - slowest(current);
+    }
+
+    private long slowest(long current) {
+        long min = current;
+        for (Sequence consumer : consumers) {
+            min = Math.min(min, consumer.get());
+        }
+        return min;
+    }
+
+    /** Spins first, then yields, then parks, so a waiting thread only burns a core briefly. */
+    static void idle(int attempt) {
+        if (attempt < 100) {
+            Thread.onSpinWait();
+        } else if (attempt < 200) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(50_000);
+        }
+    }
+
+    /** A sequence number alone on its cache line, written by one thread and read by others. */
+    static final class Sequence {
+
+        /** Longs per 64-byte cache line. */
+        private static final int PAD = 8;
+
+        private final AtomicLongArray cell = new AtomicLongArray(2 * PAD);
+
+        Sequence(long initial) {
+            cell.set(PAD, initial);
+        }
+
+        long get() {
+            return cell.get(PAD);
+        }
+
+        void set(long value) {
+            cell.setRelease(PAD, value);
+        }
+
+        boolean compareAndSet(long expected, long value) {
+            return cell.compareAndSet(PAD, expected, value);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package events.transport;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link EventTransport} inside one JVM: one {@link RingBuffer} per topic, and one platform thread
+ * per subscribed group that reads it in order.
+ * <p>
+ * {@link #send} stores the record in the topic's ring and completes at once; it blocks while the
+ * ring is full, so a slow stage holds back the stages that feed it. The offset of a delivered
+ * record is its sequence in the ring and the partition is always 0. Nothing is persisted:
+ * records in the rings are lost when the process stops, and a record whose handler throws is
+ * logged and skipped, not redelivered. Records published to a topic before a group subscribes are
+ * not delivered to it, so subscribe every stage before the first send. {@link #send} throws
+ * {@link IllegalStateException} for a topic no group is subscribed to, rather than dropping the
+ * record: all stages and a consumer of the final topics have to run in this JVM (see
+ * {@link InJvmListenerRegistrar}).
+ */
+public class RingBufferEventTransport implements EventTransport {
+
+    public static final String NAME = "in-jvm";
+
+    private static final Logger log = LoggerFactory.getLogger(RingBufferEventTransport.class);
+
+    private final int bufferSize;
+    private final MeterRegistry registry;
+    private final Counter handlerErrorsTotal;
+    private final Map<String, RingBuffer<ConsumerRecord<String, byte[]>>> rings = new ConcurrentHashMap<>();
+    private final Map<String, Reader> readers = new ConcurrentHashMap<>();
+
+    public RingBufferEventTransport(int bufferSize, MeterRegistry registry) {
+        this.bufferSize = bufferSize;
+        this.registry = registry;
+        this.handlerErrorsTotal = registry.counter("order_transport_handler_errors_total");
+    }
+
+    @Override
+    public CompletableFuture<Void> send(ProducerRecord<String, byte[]> record) {
+        long timestamp = record.timestamp() != null ? record.timestamp() : System.currentTimeMillis();
+        RecordHeaders headers = new RecordHeaders(record.headers().toArray());
+        ring(record.topic()).publish(sequence -> new ConsumerRecord<>(record.topic(), 0, sequence, timestamp,
+                TimestampType.CREATE_TIME, ConsumerRecord.NULL_SIZE, ConsumerRecord.NULL_SIZE,
+                record.key(), record.value(), headers, Optional.empty()));
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public Subscription subscribe(String topic, String group, Handler handler) {
+        String name = group + "-" + topic;
+        Reader reader = readers.compute(name, (n, existing) -> {
+            if (existing != null) {
+                throw new IllegalStateException("Group " + group + " is already subscribed to " + topic);
+            }
+            return new Reader(n, ring(topic), handler);
+        });
+        reader.start();
+        return () -> {
+            readers.remove(name, reader);
+            reader.stop();
+        };
+    }
+
+    /** Stops every reader; records not read yet are dropped. */
+    @Override
+    public void close() {
+        readers.values().forEach(Reader::stop);
+        readers.clear();
+    }
+
+    private RingBuffer<ConsumerRecord<String, byte[]>> ring(String topic) {
+        return rings.computeIfAbsent(topic, t -> {
+            RingBuffer<ConsumerRecord<String, byte[]>> ring = new RingBuffer<>(t, bufferSize);
+            Gauge.builder("order_transport_ring_backlog", ring, RingBuffer::backlog).tag("topic", t).register(registry);
+            return ring;
+        });
+    }
+
+    /** Reads one ring for one group on a dedicated thread. */
+    private final class Reader implements Runnable {
+
+        private final RingBuffer<ConsumerRecord<String, byte[]>> ring;
+        private final Handler handler;
+        private final RingBuffer.Sequence sequence;
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        Reader(String name, RingBuffer<ConsumerRecord<String, byte[]>> ring, Handler handler) {
+            this.ring = ring;
+            this.handler = handler;
+            this.sequence = ring.addConsumer();
+            this.thread = Thread.ofPlatform().name("ring-" + name).daemon().unstarted(this);
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        void stop() {
+            running = false;
+            ring.removeConsumer(sequence);
+            if (Thread.currentThread() != thread) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            long next = sequence.get() + 1;
+            int idle = 0;
+            while (running) {
+                ConsumerRecord<String, byte[]> record = ring.get(next);
+                if (record == null) {
+                    RingBuffer.idle(idle++);
+                    continue;
+                }
+                idle = 0;
+                try {
+                    handler.handle(record);
+                } catch (Exception e) {
+                    handlerErrorsTotal.increment();
+                    log.error("Failed to handle {}@{}: {}", record.topic(), record.offset(), e.getMessage());
+                }
+                sequence.set(next++);
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package events.transport;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.util.List;
+
+/**
+ * {@link EventTransport} for the pipeline stages. Kafka by default; with
+ * {@code order.listener.mode=in-jvm} records travel through in-process rings of
+ * {@code order.transport.ring.buffer-size} slots per topic, and the stages' record listeners are
+ * subscribed to them by {@link InJvmListenerRegistrar}, which requires a subscriber for each of
+ * {@code order.transport.in-jvm.topics}.
+ */
+@Configuration
+public class TransportConfiguration {
+
+    /** Every topic of the pipeline, from {@code order.created} to the final ones. */
+    private static final String PIPELINE_TOPICS = "order.created,order.validated,order.inventory-reserved,"
+            + "order.payment-completed,order.completed,order.failed";
+
+    @Bean(destroyMethod = "close")
+    public EventTransport eventTransport(KafkaTemplate<String, byte[]> kafkaTemplate,
+                                         ConsumerFactory<Object, Object> consumerFactory,
+                                         MeterRegistry registry,
+                                         @Value("${order.listener.mode:record}") String mode,
+                                         @Value("${order.transport.ring.buffer-size:65536}") int bufferSize) {
+        return RingBufferEventTransport.NAME.equals(mode)
+                ? new RingBufferEventTransport(bufferSize, registry)
+                : new KafkaEventTransport(kafkaTemplate, consumerFactory);
+    }
+
+    @Bean(destroyMethod = "close")
+    public InJvmListenerRegistrar inJvmListenerRegistrar(EventTransport eventTransport,
+                                                         ConfigurableApplicationContext context,
+                                                         @Value("${order.transport.in-jvm.topics:" + PIPELINE_TOPICS + "}")
+                                                         List<String> topics) {
+        return new InJvmListenerRegistrar(eventTransport, context, topics);
+    }
+}
@@ -0,0 +1,66 @@
+package events.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import events.OrderEventEnvelope;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BinaryEnvelopeCodecTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final BinaryEnvelopeCodec binary = new BinaryEnvelopeCodec(objectMapper);
+    private final JsonEnvelopeCodec json = new JsonEnvelopeCodec(objectMapper);
+
+    @Test
+    void roundTrip_packsUuidsAndTimestamp() throws IOException {
+        OrderEventEnvelope envelope = envelope("OrderCreated",
+                "3f2b8c1e-6a4d-4e0b-9c7a-2d5e8f1a0b3c", "9a8b7c6d-5e4f-4a3b-8c2d-1e0f9a8b7c6d", "2026-02-06T12:00:00.123456789Z");
+
+        byte[] encoded = binary.encode(envelope);
+        OrderEventEnvelope decoded = binary.decode(encoded);
+
+        assertThat(decoded).usingRecursiveComparison().isEqualTo(envelope);
+        assertThat(encoded.length).isLessThan(json.encode(envelope).length);
+    }
+
+    @Test
+    void roundTrip_fallsBackToStringsForNonCanonicalValues() throws IOException {
+        OrderEventEnvelope envelope = envelope("SomethingNew", "ord-123", "3F2B8C1E-6A4D-4E0B-9C7A-2D5E8F1A0B3C", "2026-02-06T12:00:00.000Z");
+
+        OrderEventEnvelope decoded = binary.decode(binary.encode(envelope));
+
+        assertThat(decoded).usingRecursiveComparison().isEqualTo(envelope);
+    }
+
+    @Test
+    void roundTrip_nullFields() throws IOException {
+        OrderEventEnvelope decoded = binary.decode(binary.encode(new OrderEventEnvelope()));
+
+        assertThat(decoded).usingRecursiveComparison().isEqualTo(new OrderEventEnvelope());
+    }
+
+    @Test
+    void decode_truncatedInput_throwsIOException() throws IOException {
+        byte[] encoded = binary.encode(envelope("OrderCreated", "ord-1", "corr-1", "2026-02-06T12:00:00Z"));
+        byte[] truncated = Arrays.copyOf(encoded, encoded.length - 3);
+
+        assertThatThrownBy(() -> binary.decode(truncated)).isInstanceOf(IOException.class);
+    }
+
+    private static OrderEventEnvelope envelope(String eventType, String orderId, String correlationId, String timestamp) {
+        OrderEventEnvelope envelope = new OrderEventEnvelope();
+        envelope.setEventType(eventType);
+        envelope.setOrderId(orderId);
+        envelope.setCorrelationId(correlationId);
+        envelope.setTimestamp(timestamp);
+        envelope.setPayload(Map.of("customerId", "cust-1", "items", List.of("ITEM-A", "ITEM-B"), "totalAmount", 9999));
+        return envelope;
+    }
+}
@@ -0,0 +1,150 @@
+package events.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import events.OrderEventEnvelope;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DictionaryCompressionTest {
+
+    private static final String[] EVENT_TYPES = {"OrderCreated", "OrderValidated", "InventoryReserved", "PaymentCompleted"};
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final JsonEnvelopeCodec json = new JsonEnvelopeCodec(objectMapper);
+    private final Random random = new Random(7);
+
+    @Test
+    void record_isCompressedWithTheDictionaryAndDecodedBack() throws IOException {
+        byte[] dictionary = dictionary();
+        EnvelopeCodecs codecs = codecs(new DictionaryCompression(List.of(), dictionary, 3, 32));
+        OrderEventEnvelope envelope = envelope();
+
+        ProducerRecord<String, byte[]> record = codecs.record("order.created", envelope.getOrderId(), envelope);
+
+        assertThat(record.headers().lastHeader(DictionaryCompression.HEADER)).isNotNull();
+        assertThat(record.value().length).isLessThan(json.encode(envelope).length * 2 / 3);
+        assertThat(codecs.decode(record.headers(), record.value())).usingRecursiveComparison().isEqualTo(envelope);
+    }
+
+    @Test
+    void decompressOnly_readsCompressedAndPlainRecords() throws IOException {
+        byte[] dictionary = dictionary();
+        EnvelopeCodecs producer = codecs(new DictionaryCompression(List.of(), dictionary, 3, 32));
+        EnvelopeCodecs consumer = codecs(new DictionaryCompression(List.of(dictionary), null, 3, 32));
+        OrderEventEnvelope envelope = envelope();
+
+        ProducerRecord<String, byte[]> compressed = producer.record("order.created", envelope.getOrderId(), envelope);
+        ProducerRecord<String, byte[]> plain = consumer.record("order.created", envelope.getOrderId(), envelope);
+
+        assertThat(plain.headers().lastHeader(DictionaryCompression.HEADER)).isNull();
+        assertThat(consumer.decode(compressed.headers(), compressed.value())).usingRecursiveComparison().isEqualTo(envelope);
+        assertThat(consumer.decode(plain.headers(), plain.value())).usingRecursiveComparison().isEqualTo(envelope);
+    }
+
+    @Test
+    void smallValues_areLeftUncompressed() {
+        DictionaryCompression compression = new DictionaryCompression(List.of(), dictionary(), 3, 32);
+        RecordHeaders headers = new RecordHeaders();
+
+        byte[] value = "{}".getBytes();
+
+        assertThat(compression.compress(value, headers)).isSameAs(value);
+        assertThat(headers.lastHeader(DictionaryCompression.HEADER)).isNull();
+    }
+
+    @Test
+    void recordsOnManyVirtualThreads_shareThePooledContexts() throws Exception {
+        byte[] dictionary = dictionary();
+        EnvelopeCodecs producer = codecs(new DictionaryCompression(List.of(), dictionary, 3, 32));
+        EnvelopeCodecs consumer = codecs(new DictionaryCompression(List.of(dictionary), null, 3, 32));
+        List<OrderEventEnvelope> envelopes = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            envelopes.add(envelope());
+        }
+
+        List<Future<OrderEventEnvelope>> decoded = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (OrderEventEnvelope envelope : envelopes) {
+                decoded.add(executor.submit(() -> {
+                    ProducerRecord<String, byte[]> record = producer.record("order.created", envelope.getOrderId(), envelope);
+                    return consumer.decode(record.headers(), record.value());
+                }));
+            }
+        }
+
+        for (int i = 0; i < envelopes.size(); i++) {
+            assertThat(decoded.get(i).get()).usingRecursiveComparison().isEqualTo(envelopes.get(i));
+        }
+    }
+
+    @Test
+    void unknownDictionary_throwsRetryableException() throws IOException {
+        EnvelopeCodecs producer = codecs(new DictionaryCompression(List.of(), dictionary(), 3, 32));
+        EnvelopeCodecs consumer = codecs(new DictionaryCompression(List.of(), null, 3, 32));
+        OrderEventEnvelope envelope = envelope();
+
+        ProducerRecord<String, byte[]> record = producer.record("order.created", envelope.getOrderId(), envelope);
+
+        assertThatThrownBy(() -> consumer.decode(record.headers(), record.value()))
+                .isInstanceOf(UnknownDictionaryException.class)
+                .hasMessageStartingWith("Unknown compression dictionary");
+    }
+
+    @Test
+    void compressedRecord_withoutAnyDictionaryConfigured_throwsRetryableException() throws IOException {
+        EnvelopeCodecs producer = codecs(new DictionaryCompression(List.of(), dictionary(), 3, 32));
+        EnvelopeCodecs consumer = codecs(null);
+        OrderEventEnvelope envelope = envelope();
+
+        ProducerRecord<String, byte[]> record = producer.record("order.created", envelope.getOrderId(), envelope);
+
+        assertThatThrownBy(() -> consumer.decode(record.headers(), record.value()))
+                .isInstanceOf(UnknownDictionaryException.class);
+    }
+
+    private EnvelopeCodecs codecs(DictionaryCompression compression) {
+        return new EnvelopeCodecs(JsonEnvelopeCodec.NAME, false, compression, json, new BinaryEnvelopeCodec(objectMapper));
+    }
+
+    private byte[] dictionary() {
+        List<byte[]> samples = new ArrayList<>();
+        long bytes = 0;
+        try {
+            for (int i = 0; i < 2000; i++) {
+                byte[] sample = json.encode(envelope());
+                samples.add(sample);
+                bytes += sample.length;
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return DictionaryTrainer.train(samples, bytes, 4096);
+    }
+
+    private OrderEventEnvelope envelope() {
+        OrderEventEnvelope envelope = new OrderEventEnvelope();
+        envelope.setEventType(EVENT_TYPES[random.nextInt(EVENT_TYPES.length)]);
+        envelope.setOrderId(UUID.randomUUID().toString());
+        envelope.setCorrelationId(UUID.randomUUID().toString());
+        envelope.setTimestamp("2026-02-06T12:%02d:%02d.%03dZ".formatted(random.nextInt(60), random.nextInt(60), random.nextInt(1000)));
+        envelope.setPayload(Map.of(
+                "customerId", "cust-" + random.nextInt(1000),
+                "items", List.of("SKU-" + random.nextInt(500), "SKU-" + random.nextInt(500)),
+                "totalAmount", random.nextInt(100_000)));
+        return envelope;
+    }
+}
@@ -0,0 +1,75 @@
+package events.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import events.OrderEventEnvelope;
+import events.RawPayload;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JsonEnvelopeCodecTest {
+
+    private static final String PAYLOAD = "{\"customerId\":\"cust-1\",\"items\":[{\"sku\":\"ITEM-A\",\"quantity\":2}],\"totalAmount\":99.98}";
+    private static final String ORDER_CREATED = "{\"eventType\":\"OrderCreated\",\"orderId\":\"ord-123\",\"extra\":{\"ignored\":[1,2]},"
+            + "\"correlationId\":\"corr-456\",\"timestamp\":\"2026-02-06T12:00:00Z\",\"payload\":" + PAYLOAD + "}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final JsonEnvelopeCodec json = new JsonEnvelopeCodec(objectMapper);
+    private final BinaryEnvelopeCodec binary = new BinaryEnvelopeCodec(objectMapper);
+
+    @Test
+    void passThrough_decodesHeaderFieldsAndKeepsPayloadBytes() throws IOException {
+        OrderEventEnvelope envelope = json.decodePassThrough(bytes(ORDER_CREATED));
+
+        assertThat(envelope.getEventType()).isEqualTo("OrderCreated");
+        assertThat(envelope.getOrderId()).isEqualTo("ord-123");
+        assertThat(envelope.getCorrelationId()).isEqualTo("corr-456");
+        assertThat(envelope.getTimestamp()).isEqualTo("2026-02-06T12:00:00Z");
+        assertThat(envelope.getPayload()).isInstanceOf(RawPayload.class);
+        assertThat(envelope.getPayload()).hasToString(PAYLOAD);
+        assertThat(envelope.readPayload()).isEqualTo(objectMapper.readValue(PAYLOAD, Map.class));
+    }
+
+    @Test
+    void passThrough_reencodesPayloadVerbatim() throws IOException {
+        OrderEventEnvelope envelope = json.decodePassThrough(bytes(ORDER_CREATED));
+        envelope.setEventType("OrderValidated");
+
+        String encoded = new String(json.encode(envelope), StandardCharsets.UTF_8);
+
+        assertThat(encoded).contains("\"eventType\":\"OrderValidated\"");
+        assertThat(encoded).endsWith("\"payload\":" + PAYLOAD + "}");
+    }
+
+    @Test
+    void passThrough_survivesBinaryHop() throws IOException {
+        OrderEventEnvelope envelope = json.decodePassThrough(bytes(ORDER_CREATED));
+
+        OrderEventEnvelope hopped = binary.decodePassThrough(binary.encode(envelope));
+
+        assertThat(hopped.getPayload()).hasToString(PAYLOAD);
+        assertThat(new String(json.encode(hopped), StandardCharsets.UTF_8)).endsWith("\"payload\":" + PAYLOAD + "}");
+    }
+
+    @Test
+    void passThrough_nullPayload() throws IOException {
+        OrderEventEnvelope envelope = json.decodePassThrough(bytes("{\"eventType\":\"OrderCreated\",\"payload\":null}"));
+
+        assertThat(envelope.getPayload()).isNull();
+    }
+
+    @Test
+    void passThrough_malformedInput_throwsIOException() {
+        assertThatThrownBy(() -> json.decodePassThrough(bytes("not json"))).isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> json.decodePassThrough(bytes("{\"payload\":{\"a\":"))).isInstanceOf(IOException.class);
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
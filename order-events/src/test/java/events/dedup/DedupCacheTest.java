@@ -0,0 +1,71 @@
+package events.dedup;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DedupCacheTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void addedKey_isReportedAsDuplicate() {
+        DedupCache cache = new DedupCache(10_000, Duration.ofHours(1), registry, now::get);
+        DedupCache.Key key = cache.key("inventory-service", "ord-1", "OrderValidated");
+
+        assertThat(cache.contains(key)).isFalse();
+        cache.add(key);
+
+        assertThat(cache.contains(cache.key("inventory-service", "ord-1", "OrderValidated"))).isTrue();
+        assertThat(cache.contains(cache.key("payment-service", "ord-1", "OrderValidated"))).isFalse();
+        assertThat(cache.contains(cache.key("inventory-service", "ord-1", "OrderCreated"))).isFalse();
+        assertThat(registry.get("order_dedup_duplicates_total").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void keyWithoutOrderId_isNeverDeduplicated() {
+        DedupCache cache = new DedupCache(10_000, Duration.ofHours(1), registry, now::get);
+
+        assertThat(cache.key("order-validator", null, "OrderCreated")).isNull();
+        assertThat(cache.contains(null)).isFalse();
+    }
+
+    @Test
+    void entries_expireAfterTtl() {
+        DedupCache cache = new DedupCache(10_000, Duration.ofMinutes(30), registry, now::get);
+        DedupCache.Key key = cache.key("notification-service", "ord-1", "OrderPaymentCompleted");
+        cache.add(key);
+
+        now.addAndGet(TimeUnit.MINUTES.toNanos(29));
+        assertThat(cache.contains(key)).isTrue();
+
+        now.addAndGet(TimeUnit.MINUTES.toNanos(2));
+        assertThat(cache.contains(key)).isFalse();
+    }
+
+    @Test
+    void size_staysBoundedAndRecentKeysSurvive() {
+        DedupCache cache = new DedupCache(64 * 1024, Duration.ofHours(1), registry, now::get);
+        for (int i = 0; i < 1_000_000; i++) {
+            cache.add(cache.key("order-validator", "ord-" + i, "OrderCreated"));
+        }
+
+        assertThat(cache.size()).isLessThanOrEqualTo(64 * 1024);
+        assertThat(cache.contains(cache.key("order-validator", "ord-999999", "OrderCreated"))).isTrue();
+        assertThat(cache.contains(cache.key("order-validator", "ord-0", "OrderCreated"))).isFalse();
+    }
+
+    @Test
+    void disabledCache_remembersNothing() {
+        DedupCache cache = new DedupCache(0, Duration.ofHours(1), registry, now::get);
+
+        assertThat(cache.key("order-validator", "ord-1", "OrderCreated")).isNull();
+        assertThat(cache.size()).isZero();
+    }
+}
@@ -0,0 +1,82 @@
+package events.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrderIdGeneratorTest {
+
+    @Test
+    void ids_areVersion7AndCarryTheirTimestamp() {
+        OrderIdGenerator generator = new OrderIdGenerator(() -> 1_770_379_200_123L);
+
+        UUID id = generator.next();
+
+        assertThat(id.version()).isEqualTo(7);
+        assertThat(id.variant()).isEqualTo(2);
+        assertThat(OrderIdGenerator.timestamp(id)).isEqualTo(1_770_379_200_123L);
+    }
+
+    @Test
+    void idsOfOneThread_sortInCreationOrder_evenWithinOneMillisecond() {
+        OrderIdGenerator generator = new OrderIdGenerator(() -> 1_000);
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            ids.add(generator.next());
+        }
+
+        for (int i = 1; i < ids.size(); i++) {
+            assertThat(Long.compareUnsigned(ids.get(i - 1).getMostSignificantBits(), ids.get(i).getMostSignificantBits()))
+                    .isNegative();
+        }
+    }
+
+    @Test
+    void clockGoingBackwards_doesNotBreakOrder() {
+        AtomicLong clock = new AtomicLong(5_000);
+        OrderIdGenerator generator = new OrderIdGenerator(clock::get);
+
+        UUID first = generator.next();
+        clock.set(4_000);
+        UUID second = generator.next();
+
+        assertThat(Long.compareUnsigned(first.getMostSignificantBits(), second.getMostSignificantBits())).isNegative();
+    }
+
+    @Test
+    void concurrentThreads_produceUniqueIds() throws InterruptedException {
+        OrderIdGenerator generator = new OrderIdGenerator();
+        Set<UUID> ids = ConcurrentHashMap.newKeySet();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 50_000; i++) {
+                    ids.add(generator.next());
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(ids).hasSize(8 * 50_000);
+    }
+
+    @Test
+    void binaryForm_roundTrips() {
+        UUID id = new OrderIdGenerator().next();
+
+        byte[] bytes = OrderIdGenerator.toBytes(id);
+
+        assertThat(bytes).hasSize(16);
+        assertThat(OrderIdGenerator.fromBytes(bytes)).isEqualTo(id);
+        assertThat(UUID.fromString(id.toString())).isEqualTo(id);
+    }
+}
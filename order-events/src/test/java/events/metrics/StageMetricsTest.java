@@ -0,0 +1,74 @@
+package events.metrics;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.StreamSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StageMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final StageMetrics metrics = new StageMetrics(registry);
+
+    @Test
+    void historyIsCarriedAcrossStages() {
+        ProducerRecord<String, byte[]> created = new ProducerRecord<>("order.created", "ord-1", new byte[0]);
+        metrics.created("order-api", created);
+
+        ProducerRecord<String, byte[]> validated = new ProducerRecord<>("order.validated", "ord-1", new byte[0]);
+        metrics.propagate("order-validator", created.headers(), validated);
+
+        assertThat(validated.headers().lastHeader(StageMetrics.HEADER_CREATED_AT).value())
+                .isEqualTo(created.headers().lastHeader(StageMetrics.HEADER_CREATED_AT).value());
+        assertThat(stages(validated)).hasSize(2);
+        assertThat(stages(validated).get(0)).startsWith("order-api=");
+        assertThat(stages(validated).get(1)).startsWith("order-validator=");
+    }
+
+    @Test
+    void consumedAndProcessed_recordStageTimers() {
+        long started = metrics.consumed("order-validator", consumed(System.currentTimeMillis() - 250, new RecordHeaders()));
+        metrics.processed("order-validator", started);
+
+        Timer queue = registry.get("order_stage_queue_time").tag("stage", "order-validator").timer();
+        Timer processing = registry.get("order_stage_processing_time").tag("stage", "order-validator").timer();
+        assertThat(queue.count()).isEqualTo(1);
+        assertThat(queue.totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(250);
+        assertThat(processing.count()).isEqualTo(1);
+    }
+
+    @Test
+    void completed_recordsEndToEndOnlyWhenCreationTimeIsKnown() {
+        ProducerRecord<String, byte[]> created = new ProducerRecord<>("order.created", "ord-1", new byte[0]);
+        metrics.created("order-api", created);
+
+        metrics.completed(new RecordHeaders());
+        metrics.completed(created.headers());
+
+        assertThat(registry.get("order_end_to_end_time").timer().count()).isEqualTo(1);
+    }
+
+    private static List<String> stages(ProducerRecord<String, byte[]> record) {
+        return StreamSupport.stream(record.headers().headers(StageMetrics.HEADER_STAGE).spliterator(), false)
+                .map(Header::value)
+                .map(value -> new String(value, StandardCharsets.UTF_8))
+                .toList();
+    }
+
+    private static ConsumerRecord<String, byte[]> consumed(long timestamp, RecordHeaders headers) {
+        return new ConsumerRecord<>("order.created", 0, 0L, timestamp, TimestampType.CREATE_TIME, 0, 0, "ord-1",
+                new byte[0], headers, Optional.empty());
+    }
+}
@@ -0,0 +1,160 @@
+package events.parallel;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.event.ListenerContainerIdleEvent;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KeyOrderedDispatcherTest {
+
+    private static final TopicPartition PARTITION = new TopicPartition("order.inventory-reserved", 0);
+
+    private MockConsumer<String, byte[]> consumer;
+    private KeyOrderedDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        consumer.assign(List.of(PARTITION));
+        consumer.updateBeginningOffsets(Map.of(PARTITION, 0L));
+        dispatcher = new KeyOrderedDispatcher(16, Duration.ofSeconds(5), new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.close();
+    }
+
+    @Test
+    void recordsWithSameKey_runInOffsetOrder() throws Exception {
+        Map<String, List<Long>> seen = new ConcurrentHashMap<>();
+        List<ConsumerRecord<String, byte[]>> records = new ArrayList<>();
+        for (long offset = 0; offset < 40; offset++) {
+            records.add(record(offset, "ord-" + (offset % 4)));
+        }
+        CountDownLatch done = new CountDownLatch(records.size());
+
+        dispatcher.dispatch(records, consumer, record -> {
+            Thread.sleep(record.offset() % 3);
+            seen.computeIfAbsent(record.key(), k -> new CopyOnWriteArrayList<>()).add(record.offset());
+            done.countDown();
+        });
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        seen.values().forEach(offsets -> assertThat(offsets).isSorted());
+        awaitCommitted(40);
+    }
+
+    @Test
+    void commitsOnlyUpToLowestIncompleteRecord() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch laterDone = new CountDownLatch(2);
+
+        dispatcher.dispatch(List.of(record(0, "slow"), record(1, "a"), record(2, "b")), consumer, record -> {
+            if (record.offset() == 0) {
+                release.await();
+            } else {
+                laterDone.countDown();
+            }
+        });
+
+        assertThat(laterDone.await(5, TimeUnit.SECONDS)).isTrue();
+        dispatcher.commit(consumer);
+        assertThat(committed()).isLessThanOrEqualTo(0);
+
+        release.countDown();
+        awaitCommitted(3);
+    }
+
+    @Test
+    void failedRecord_rewindsPartitionToIt() throws Exception {
+        CountDownLatch done = new CountDownLatch(3);
+
+        dispatcher.dispatch(List.of(record(0, "a"), record(1, "b"), record(2, "c")), consumer, record -> {
+            done.countDown();
+            if (record.offset() == 1) {
+                throw new IllegalStateException("boom");
+            }
+        });
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+
+        waitUntil(() -> {
+            dispatcher.onIdle(idle());
+            return consumer.position(PARTITION) == 1;
+        });
+        assertThat(committed()).isEqualTo(1);
+    }
+
+    @Test
+    void failedRecord_skipsLaterRecordsOfItsKeyUntilRewound() throws Exception {
+        List<Long> handled = new CopyOnWriteArrayList<>();
+
+        dispatcher.dispatch(List.of(record(0, "b"), record(1, "a"), record(2, "a"), record(3, "c")), consumer, record -> {
+            if (record.offset() == 1) {
+                throw new IllegalStateException("boom");
+            }
+            handled.add(record.offset());
+        });
+        waitUntil(() -> {
+            dispatcher.onIdle(idle());
+            return consumer.position(PARTITION) == 1;
+        });
+        assertThat(handled).containsExactlyInAnyOrder(0L, 3L);
+
+        List<Long> redelivered = new CopyOnWriteArrayList<>();
+        dispatcher.dispatch(List.of(record(1, "a"), record(2, "a"), record(3, "c")), consumer, record -> {
+            if (!"c".equals(record.key())) {
+                redelivered.add(record.offset());
+            }
+        });
+        awaitCommitted(4);
+        assertThat(redelivered).containsExactly(1L, 2L);
+    }
+
+    private void awaitCommitted(long offset) throws InterruptedException {
+        waitUntil(() -> {
+            dispatcher.commit(consumer);
+            return committed() == offset;
+        });
+    }
+
+    private long committed() {
+        OffsetAndMetadata committed = consumer.committed(Set.of(PARTITION)).get(PARTITION);
+        return committed != null ? committed.offset() : -1;
+    }
+
+    private ListenerContainerIdleEvent idle() {
+        return new ListenerContainerIdleEvent(this, this, 100, "inventory-reserved-0", List.of(PARTITION), consumer, false);
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition not met in time").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static ConsumerRecord<String, byte[]> record(long offset, String key) {
+        return new ConsumerRecord<>(PARTITION.topic(), PARTITION.partition(), offset, key, new byte[0]);
+    }
+}
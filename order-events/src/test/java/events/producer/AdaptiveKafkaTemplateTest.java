@@ -0,0 +1,87 @@
+package events.producer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.ProducerFactory;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AdaptiveKafkaTemplateTest {
+
+    @Mock
+    private ProducerFactory<String, String> producerFactory;
+
+    @Mock
+    private ProducerFactory<String, String> tunedFactory;
+
+    private final MockProducer<String, String> producer = producer();
+    private final MockProducer<String, String> tunedProducer = producer();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final BatchingPolicy policy = new BatchingPolicy(32, 16 * 1024, 1024 * 1024);
+    private AdaptiveKafkaTemplate<String, String> template;
+
+    @BeforeEach
+    void setUp() {
+        template = new AdaptiveKafkaTemplate<>(producerFactory, policy, Duration.ofHours(1), registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        template.destroy();
+    }
+
+    @Test
+    void lightTraffic_doesNotLinger() {
+        assertThat(policy.next(50, 300, 20)).isEqualTo(new BatchingPolicy.Settings(0, 16 * 1024));
+    }
+
+    @Test
+    void heavyTraffic_lingersAboutHalfAnAckAndSizesBatchesForIt() {
+        assertThat(policy.next(20_000, 300, 20)).isEqualTo(new BatchingPolicy.Settings(8, 64 * 1024));
+        assertThat(policy.next(200_000, 300, 200)).isEqualTo(new BatchingPolicy.Settings(32, 1024 * 1024));
+    }
+
+    @Test
+    void reconfigure_movesSendsToNewProducer() {
+        when(producerFactory.createProducer()).thenReturn(producer);
+        when(producerFactory.copyWithConfigurationOverride(Map.of(
+                ProducerConfig.LINGER_MS_CONFIG, 8,
+                ProducerConfig.BATCH_SIZE_CONFIG, 64 * 1024))).thenReturn(tunedFactory);
+        when(tunedFactory.createProducer()).thenReturn(tunedProducer);
+
+        template.send(new ProducerRecord<>("order.created", "ord-1", "a"));
+        assertThat(template.reconfigure(new BatchingPolicy.Settings(8, 64 * 1024))).isTrue();
+        template.send("order.created", "ord-1", "b");
+
+        assertThat(producer.history()).extracting(ProducerRecord::value).containsExactly("a");
+        assertThat(tunedProducer.history()).extracting(ProducerRecord::value).containsExactly("b");
+        assertThat(registry.get("order_producer_linger_ms").gauge().value()).isEqualTo(8);
+        assertThat(registry.get("order_producer_batch_size_bytes").gauge().value()).isEqualTo(64 * 1024);
+        verify(producerFactory, never()).reset();
+    }
+
+    private static MockProducer<String, String> producer() {
+        return new MockProducer<>(true, new StringSerializer(), new StringSerializer()) {
+            @Override
+            public void close(Duration timeout) {
+                // KafkaTemplate closes after every send; keep the mock open like a shared producer.
+            }
+        };
+    }
+}
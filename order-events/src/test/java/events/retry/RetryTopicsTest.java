@@ -0,0 +1,185 @@
+package events.retry;
+
+import events.codec.EnvelopeCodecs;
+import events.metrics.StageMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RetryTopicsTest {
+
+    private static final TopicPartition RETRY_PARTITION = new TopicPartition("order.validated.retry-1s", 0);
+    private static final List<Duration> DELAYS = List.of(Duration.ofSeconds(1), Duration.ofSeconds(10), Duration.ofMillis(60_500));
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private SimpleMeterRegistry registry;
+    private RetryTopics retries;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        retries = new RetryTopics(DELAYS, true, Duration.ofMillis(500), registry, now::get);
+    }
+
+    @Test
+    void topics_areNamedAfterTheirDelay() {
+        assertThat(retries.topics("order.created"))
+                .containsExactly("order.created.retry-1s", "order.created.retry-10s", "order.created.retry-60500ms");
+        assertThat(RetryTopics.deadLetterTopic("order.created")).isEqualTo("order.created.dlq");
+    }
+
+    @Test
+    void retry_movesThroughEveryTierThenStops() {
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<>("order.validated", 3, 42L, "ord-1", bytes("{}"));
+        record.headers().add(EnvelopeCodecs.HEADER, bytes("json"));
+        record.headers().add(StageMetrics.HEADER_CREATED_AT, new byte[Long.BYTES]);
+
+        ProducerRecord<String, byte[]> first = retries.retry(record, "PROCESSING_ERROR: boom");
+
+        assertThat(first.topic()).isEqualTo("order.validated.retry-1s");
+        assertThat(first.key()).isEqualTo("ord-1");
+        assertThat(first.value()).isEqualTo(record.value());
+        assertThat(intHeader(first.headers().lastHeader(RetryTopics.HEADER_ATTEMPT))).isEqualTo(1);
+        assertThat(RetryTopics.due(first.headers())).isEqualTo(now.get() + 1000);
+        assertThat(text(first.headers().lastHeader(RetryTopics.HEADER_SOURCE))).isEqualTo("order.validated");
+        assertThat(text(first.headers().lastHeader(RetryTopics.HEADER_REASON))).isEqualTo("PROCESSING_ERROR: boom");
+        assertThat(text(first.headers().lastHeader(EnvelopeCodecs.HEADER))).isEqualTo("json");
+        assertThat(first.headers().lastHeader(StageMetrics.HEADER_CREATED_AT)).isNull();
+
+        ProducerRecord<String, byte[]> second = retries.retry(consumed(first), "PROCESSING_ERROR: boom");
+        ProducerRecord<String, byte[]> third = retries.retry(consumed(second), "PROCESSING_ERROR: boom");
+
+        assertThat(second.topic()).isEqualTo("order.validated.retry-10s");
+        assertThat(third.topic()).isEqualTo("order.validated.retry-60500ms");
+        assertThat(second.headers().headers(RetryTopics.HEADER_ATTEMPT)).hasSize(1);
+        assertThat(retries.retry(consumed(third), "PROCESSING_ERROR: boom")).isNull();
+        assertThat(registry.get("order_retry_scheduled_total")
+                .tags("topic", "order.validated", "tier", "retry-10s").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void deadLetter_onlyForRetriedRecords() {
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<>("order.validated", 0, 0L, "ord-1", bytes("{}"));
+
+        assertThat(retries.deadLetter(record, "PROCESSING_ERROR: boom")).isNull();
+
+        ProducerRecord<String, byte[]> deadLetter = retries.deadLetter(
+                consumed(retries.retry(record, "PROCESSING_ERROR: boom")), "PROCESSING_ERROR: again");
+
+        assertThat(deadLetter.topic()).isEqualTo("order.validated.dlq");
+        assertThat(deadLetter.value()).isEqualTo(record.value());
+        assertThat(text(deadLetter.headers().lastHeader(RetryTopics.HEADER_REASON))).isEqualTo("PROCESSING_ERROR: again");
+        assertThat(registry.get("order_retry_dead_lettered_total").tags("topic", "order.validated").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void disabled_retriesNothingButStillNamesTopics() {
+        RetryTopics disabled = new RetryTopics(DELAYS, false, Duration.ofMillis(500), registry, now::get);
+
+        assertThat(disabled.enabled()).isFalse();
+        assertThat(disabled.topics("order.created")).hasSize(3);
+        assertThat(disabled.retry(new ConsumerRecord<>("order.created", 0, 0L, "ord-1", bytes("{}")), "x")).isNull();
+    }
+
+    @Test
+    void dispatch_pausesPartitionUntilRecordIsDue() {
+        MockConsumer<String, byte[]> consumer = consumer();
+        List<Long> handled = new ArrayList<>();
+        List<ConsumerRecord<String, byte[]>> records = List.of(
+                retryRecord(5, now.get() - 1), retryRecord(6, now.get() + 1000), retryRecord(7, now.get() + 1000));
+
+        retries.dispatch(records, consumer, record -> handled.add(record.offset()));
+
+        assertThat(handled).containsExactly(5L);
+        assertThat(consumer.paused()).containsExactly(RETRY_PARTITION);
+        assertThat(consumer.position(RETRY_PARTITION)).isEqualTo(6);
+        assertThat(committed(consumer)).isEqualTo(6);
+
+        now.addAndGet(999);
+        retries.dispatch(List.of(), consumer, record -> handled.add(record.offset()));
+        assertThat(consumer.paused()).isNotEmpty();
+
+        now.addAndGet(1);
+        retries.dispatch(records.subList(1, 3), consumer, record -> handled.add(record.offset()));
+        assertThat(consumer.paused()).isEmpty();
+        assertThat(handled).containsExactly(5L, 6L, 7L);
+        assertThat(committed(consumer)).isEqualTo(8);
+    }
+
+    @Test
+    void dispatch_failedHandler_rewindsAndBacksOff() {
+        MockConsumer<String, byte[]> consumer = consumer();
+        List<ConsumerRecord<String, byte[]>> records = List.of(retryRecord(5, 0), retryRecord(6, 0));
+
+        retries.dispatch(records, consumer, record -> {
+            throw new IllegalStateException("broker unavailable");
+        });
+
+        assertThat(consumer.paused()).containsExactly(RETRY_PARTITION);
+        assertThat(consumer.position(RETRY_PARTITION)).isEqualTo(5);
+        assertThat(committed(consumer)).isEqualTo(-1);
+
+        now.addAndGet(500);
+        List<Long> handled = new ArrayList<>();
+        retries.dispatch(records, consumer, record -> handled.add(record.offset()));
+        assertThat(handled).containsExactly(5L, 6L);
+    }
+
+    private static MockConsumer<String, byte[]> consumer() {
+        MockConsumer<String, byte[]> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        consumer.assign(List.of(RETRY_PARTITION));
+        consumer.updateBeginningOffsets(Map.of(RETRY_PARTITION, 0L));
+        return consumer;
+    }
+
+    private static long committed(MockConsumer<String, byte[]> consumer) {
+        OffsetAndMetadata committed = consumer.committed(Set.of(RETRY_PARTITION)).get(RETRY_PARTITION);
+        return committed != null ? committed.offset() : -1;
+    }
+
+    private static ConsumerRecord<String, byte[]> retryRecord(long offset, long due) {
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<>(RETRY_PARTITION.topic(), RETRY_PARTITION.partition(),
+                offset, "ord-" + offset, bytes("{}"));
+        record.headers().add(RetryTopics.HEADER_ATTEMPT, ByteBuffer.allocate(Integer.BYTES).putInt(1).array());
+        record.headers().add(RetryTopics.HEADER_DUE, ByteBuffer.allocate(Long.BYTES).putLong(due).array());
+        record.headers().add(RetryTopics.HEADER_SOURCE, bytes("order.validated"));
+        return record;
+    }
+
+    private static ConsumerRecord<String, byte[]> consumed(ProducerRecord<String, byte[]> sent) {
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<>(sent.topic(), 0, 0L, sent.key(), sent.value());
+        sent.headers().forEach(record.headers()::add);
+        return record;
+    }
+
+    private static int intHeader(Header header) {
+        return ByteBuffer.wrap(header.value()).getInt();
+    }
+
+    private static String text(Header header) {
+        return new String(header.value(), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,151 @@
+package events.scaling;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.ContainerProperties;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ConcurrencyAutoscalerTest {
+
+    @Mock
+    private KafkaListenerEndpointRegistry endpoints;
+
+    @Mock
+    private ConcurrentMessageListenerContainer<String, byte[]> container;
+
+    private final AtomicLong now = new AtomicLong();
+    private final AtomicInteger concurrency = new AtomicInteger(1);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ScalingPolicy policy = new ScalingPolicy(1, 16, 0.7, 30, 1000);
+    private ConcurrencyAutoscaler autoscaler;
+
+    @BeforeEach
+    void setUp() {
+        autoscaler = new ConcurrencyAutoscaler(endpoints, topics -> 6, policy, Pattern.compile(".*-retry"), 2, 6,
+                true, Duration.ofHours(1), registry, now::get);
+    }
+
+    @AfterEach
+    void tearDown() {
+        autoscaler.close();
+    }
+
+    @Test
+    void backlog_scalesUpToTheDemandAtOnce() {
+        // 1000 records/s at 1 ms each, arriving at 6000 records/s, with 50000 records to drain in 30 s
+        assertThat(policy.next(1, 50_000, 6000, 0.001)).isEqualTo(11);
+        assertThat(policy.next(1, 1_000_000, 100_000, 0.01)).isEqualTo(16);
+    }
+
+    @Test
+    void spareCapacity_scalesDownOneConsumerAtATimeOutsideTheDeadBand() {
+        assertThat(policy.next(4, 0, 1000, 0.001)).isEqualTo(3);
+        assertThat(policy.next(2, 0, 1000, 0.001)).isEqualTo(2);
+        assertThat(policy.next(1, 0, 1000, 0.001)).isEqualTo(2);
+        assertThat(policy.next(3, 0, 0, Double.NaN)).isEqualTo(2);
+    }
+
+    @Test
+    void lagWithoutProgress_keepsConcurrency() {
+        assertThat(policy.next(3, 50_000, 0, Double.NaN)).isEqualTo(3);
+    }
+
+    @Test
+    void sustainedLag_resizesContainerUpToPartitionCount() {
+        stubRunningContainer("order-validator");
+        when(container.getContainerProperties()).thenReturn(new ContainerProperties("order.created"));
+        doAnswer(invocation -> {
+            concurrency.set(invocation.getArgument(0));
+            return null;
+        }).when(container).setConcurrency(anyInt());
+
+        sample(0, 0);
+        sample(10_000, 50_000);
+        verify(container, never()).stop();
+
+        sample(20_000, 100_000);
+
+        InOrder order = inOrder(container);
+        order.verify(container).stop();
+        order.verify(container).setConcurrency(6);
+        order.verify(container).start();
+        assertThat(gauge("order_listener_concurrency")).isEqualTo(6);
+        assertThat(gauge("order_listener_lag")).isEqualTo(100_000);
+        assertThat(gauge("order_listener_record_time_ms")).isEqualTo(1.0);
+        assertThat(registry.get("order_listener_rescales_total").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void retryGroups_areLeftAlone() {
+        when(endpoints.getListenerContainers()).thenReturn(List.of(container));
+        when(container.isRunning()).thenReturn(true);
+        when(container.getGroupId()).thenReturn("order-validator-retry");
+
+        autoscaler.sample();
+
+        verify(container, never()).metrics();
+        assertThat(registry.find("order_listener_lag").gauge()).isNull();
+    }
+
+    private void stubRunningContainer(String group) {
+        when(endpoints.getListenerContainers()).thenReturn(List.of(container));
+        when(container.isRunning()).thenReturn(true);
+        when(container.getGroupId()).thenReturn(group);
+        when(container.getListenerId()).thenReturn("validator-0");
+        when(container.getConcurrency()).thenAnswer(invocation -> concurrency.get());
+    }
+
+    /** One sampling interval of ten seconds with fully busy consumers. */
+    private void sample(long consumed, long lag) {
+        doReturn(Map.of("consumer-order-validator-1", metrics(
+                metric("records-lag", "consumer-fetch-manager-metrics", Map.of("topic", "order.created", "partition", "0"), lag),
+                metric("records-consumed-total", "consumer-fetch-manager-metrics", Map.of(), consumed),
+                metric("poll-idle-ratio-avg", "consumer-metrics", Map.of(), 0.0))))
+                .when(container).metrics();
+        autoscaler.sample();
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+    }
+
+    private double gauge(String name) {
+        return registry.get(name).tags("group", "order-validator", "listener", "validator-0").gauge().value();
+    }
+
+    private static Metric metric(String name, String group, Map<String, String> tags, double value) {
+        return new FakeMetric(new MetricName(name, group, "", tags), value);
+    }
+
+    private static Map<MetricName, Metric> metrics(Metric... metrics) {
+        return Arrays.stream(metrics).collect(Collectors.toMap(Metric::metricName, metric -> metric));
+    }
+
+    private record FakeMetric(MetricName metricName, Object metricValue) implements Metric {
+    }
+}
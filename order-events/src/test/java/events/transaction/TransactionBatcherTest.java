@@ -0,0 +1,157 @@
+package events.transaction;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.event.ConsumerStoppingEvent;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransactionBatcherTest {
+
+    private static final TopicPartition PARTITION = new TopicPartition("order.validated", 0);
+
+    private final AtomicLong now = new AtomicLong();
+    private SimpleMeterRegistry registry;
+    private MockProducer<String, byte[]> producer;
+    private MockConsumer<String, byte[]> consumer;
+    private TransactionBatcher batcher;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        producer = new MockProducer<>(true, new StringSerializer(), new ByteArraySerializer());
+        producer.initTransactions();
+        consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        consumer.assign(List.of(PARTITION));
+        consumer.updateBeginningOffsets(Map.of(PARTITION, 0L));
+        batcher = new TransactionBatcher(() -> producer, () -> { }, 3, Duration.ofMillis(100), registry, now::get);
+    }
+
+    @Test
+    void commitsEveryMaxRecords() {
+        batcher.process(records(0, 7), consumer, this::forward);
+
+        assertThat(commits()).isEqualTo(2);
+        assertThat(producer.history()).hasSize(6);
+        assertThat(producer.transactionInFlight()).isTrue();
+        assertThat(committedOffsets()).containsExactly(3L, 6L);
+    }
+
+    @Test
+    void openTransaction_spansPollsUntilMaxInterval() {
+        batcher.process(records(0, 1), consumer, this::forward);
+        now.addAndGet(Duration.ofMillis(60).toNanos());
+        batcher.process(records(1, 1), consumer, this::forward);
+        assertThat(commits()).isZero();
+
+        now.addAndGet(Duration.ofMillis(40).toNanos());
+        batcher.process(List.of(), consumer, this::forward);
+
+        assertThat(commits()).isEqualTo(1);
+        assertThat(producer.history()).hasSize(2);
+        assertThat(committedOffsets()).containsExactly(2L);
+    }
+
+    @Test
+    void failedRecord_abortsAndRewindsToFirstRecordOfTransaction() {
+        List<String> committed = new ArrayList<>();
+        batcher.process(records(0, 2), consumer, (record, transaction) -> {
+            forward(record, transaction);
+            transaction.afterCommit(() -> committed.add(record.key()));
+        });
+
+        batcher.process(records(2, 2), consumer, (record, transaction) -> {
+            throw new IllegalStateException("boom");
+        });
+
+        assertThat(producer.transactionAborted()).isTrue();
+        assertThat(producer.history()).isEmpty();
+        assertThat(committed).isEmpty();
+        assertThat(consumer.position(PARTITION)).isZero();
+        assertThat(registry.get("order_transaction_aborts_total").counter().count()).isEqualTo(1);
+
+        batcher.process(records(0, 3), consumer, (record, transaction) -> {
+            forward(record, transaction);
+            transaction.afterCommit(() -> committed.add(record.key()));
+        });
+        assertThat(committed).containsExactly("ord-0", "ord-1", "ord-2");
+    }
+
+    @Test
+    void revokedPartitions_commitOpenTransactionFirst() {
+        batcher.process(records(0, 2), consumer, this::forward);
+
+        batcher.onPartitionsRevokedBeforeCommit(consumer, List.of(PARTITION));
+
+        assertThat(commits()).isEqualTo(1);
+        assertThat(committedOffsets()).containsExactly(2L);
+    }
+
+    @Test
+    void stoppedConsumer_commitsAndHandsBackItsProducer() {
+        List<MockProducer<String, byte[]>> created = new ArrayList<>();
+        AtomicLong factoryResets = new AtomicLong();
+        TransactionBatcher restarting = new TransactionBatcher(() -> {
+            MockProducer<String, byte[]> next = new MockProducer<>(true, new StringSerializer(), new ByteArraySerializer());
+            next.initTransactions();
+            created.add(next);
+            return next;
+        }, factoryResets::incrementAndGet, 3, Duration.ofMillis(100), registry, now::get);
+        restarting.process(records(0, 2), consumer, this::forward);
+
+        restarting.onStopping(new ConsumerStoppingEvent(this, this, consumer, List.of(PARTITION)));
+        MockConsumer<String, byte[]> restarted = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        restarted.assign(List.of(PARTITION));
+        restarted.updateBeginningOffsets(Map.of(PARTITION, 0L));
+        restarting.process(records(2, 1), restarted, this::forward);
+
+        assertThat(created).hasSize(2);
+        assertThat(created.get(0).transactionCommitted()).isTrue();
+        assertThat(created.get(0).closed()).isTrue();
+        assertThat(created.get(1).closed()).isFalse();
+        assertThat(factoryResets).hasValue(0);
+        restarting.close();
+        assertThat(created.get(1).closed()).isTrue();
+        assertThat(factoryResets).hasValue(1);
+    }
+
+    private void forward(ConsumerRecord<String, byte[]> record, TransactionBatcher.Transaction transaction) {
+        transaction.send(new ProducerRecord<>("order.inventory-reserved", record.key(), record.value()));
+    }
+
+    private double commits() {
+        return registry.get("order_transaction_commits_total").counter().count();
+    }
+
+    private List<Long> committedOffsets() {
+        List<Long> offsets = new ArrayList<>();
+        for (Map<String, Map<TopicPartition, OffsetAndMetadata>> commit : producer.consumerGroupOffsetsHistory()) {
+            commit.values().forEach(byPartition -> offsets.add(byPartition.get(PARTITION).offset()));
+        }
+        return offsets;
+    }
+
+    private static List<ConsumerRecord<String, byte[]>> records(long from, int count) {
+        List<ConsumerRecord<String, byte[]>> records = new ArrayList<>();
+        for (long offset = from; offset < from + count; offset++) {
+            records.add(new ConsumerRecord<>(PARTITION.topic(), PARTITION.partition(), offset, "ord-" + offset, new byte[0]));
+        }
+        return records;
+    }
+}
@@ -0,0 +1,175 @@
+package events.transport;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RingBufferEventTransportTest {
+
+    private static final String TOPIC = "order.validated";
+
+    private RingBufferEventTransport transport;
+
+    @BeforeEach
+    void setUp() {
+        transport = new RingBufferEventTransport(8, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        transport.close();
+    }
+
+    @Test
+    void everyGroupGetsEveryRecord_inPublishOrderPerProducer() throws Exception {
+        int producers = 4;
+        int perProducer = 5_000;
+        Map<String, List<String>> inventory = new ConcurrentHashMap<>();
+        Map<String, List<String>> status = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(2 * producers * perProducer);
+        transport.subscribe(TOPIC, "inventory", record -> {
+            inventory.computeIfAbsent(record.key(), k -> new ArrayList<>()).add(value(record));
+            done.countDown();
+        });
+        transport.subscribe(TOPIC, "status", record -> {
+            status.computeIfAbsent(record.key(), k -> new ArrayList<>()).add(value(record));
+            done.countDown();
+        });
+
+        List<CompletableFuture<Void>> sending = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            String key = "producer-" + p;
+            sending.add(CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    transport.send(new ProducerRecord<>(TOPIC, key, Integer.toString(i).getBytes(StandardCharsets.UTF_8)));
+                }
+            }));
+        }
+        CompletableFuture.allOf(sending.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        for (Map<String, List<String>> group : List.of(inventory, status)) {
+            assertThat(group).hasSize(producers);
+            group.values().forEach(values -> assertThat(values)
+                    .hasSize(perProducer)
+                    .isSortedAccordingTo((a, b) -> Integer.compare(Integer.parseInt(a), Integer.parseInt(b))));
+        }
+    }
+
+    @Test
+    void fullRing_blocksPublisherUntilSlowestGroupCatchesUp() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> handled = new CopyOnWriteArrayList<>();
+        transport.subscribe(TOPIC, "slow", record -> {
+            release.await();
+            handled.add(value(record));
+        });
+        for (int i = 0; i < 8; i++) {
+            transport.send(record("ord-" + i));
+        }
+
+        CompletableFuture<Void> ninth = CompletableFuture.runAsync(() -> transport.send(record("ord-8")));
+        Thread.sleep(100);
+        assertThat(ninth).isNotDone();
+
+        release.countDown();
+        ninth.get(5, TimeUnit.SECONDS);
+        waitUntil(() -> handled.size() == 9);
+        assertThat(handled).startsWith("ord-0", "ord-1").endsWith("ord-8");
+    }
+
+    @Test
+    void failingHandler_skipsRecordAndKeepsReading() throws Exception {
+        List<ConsumerRecord<String, byte[]>> handled = new CopyOnWriteArrayList<>();
+        transport.subscribe(TOPIC, "inventory", record -> {
+            if ("bad".equals(value(record))) {
+                throw new IllegalStateException("boom");
+            }
+            handled.add(record);
+        });
+        ProducerRecord<String, byte[]> withHeader = record("ord-2");
+        withHeader.headers().add("order-stage", "order-validator=1".getBytes(StandardCharsets.UTF_8));
+
+        transport.send(record("ord-1"));
+        transport.send(record("bad"));
+        transport.send(withHeader);
+
+        waitUntil(() -> handled.size() == 2);
+        assertThat(handled.get(0).offset()).isEqualTo(0);
+        assertThat(handled.get(1).offset()).isEqualTo(2);
+        assertThat(handled.get(1).headers().lastHeader("order-stage").value())
+                .isEqualTo("order-validator=1".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void closedSubscription_stopsDelivery() throws Exception {
+        List<String> handled = new CopyOnWriteArrayList<>();
+        List<String> status = new CopyOnWriteArrayList<>();
+        EventTransport.Subscription subscription = transport.subscribe(TOPIC, "inventory", record -> handled.add(value(record)));
+        transport.subscribe(TOPIC, "status", record -> status.add(value(record)));
+        transport.send(record("ord-1"));
+        waitUntil(() -> handled.size() == 1);
+
+        subscription.close();
+        for (int i = 0; i < 20; i++) {
+            transport.send(record("ord-after-close"));
+        }
+
+        waitUntil(() -> status.size() == 21);
+        assertThat(handled).containsExactly("ord-1");
+    }
+
+    @Test
+    void sendToTopicWithoutSubscriber_fails() throws Exception {
+        assertThatThrownBy(() -> transport.send(record("ord-1")))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining(TOPIC);
+
+        List<String> handled = new CopyOnWriteArrayList<>();
+        transport.subscribe(TOPIC, "inventory", record -> handled.add(value(record))).close();
+
+        assertThatThrownBy(() -> transport.send(record("ord-2"))).isInstanceOf(IllegalStateException.class);
+        assertThat(handled).isEmpty();
+    }
+
+    @Test
+    void sameGroupTwice_isRejected() {
+        transport.subscribe(TOPIC, "inventory", record -> { });
+
+        assertThatThrownBy(() -> transport.subscribe(TOPIC, "inventory", record -> { }))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    private static ProducerRecord<String, byte[]> record(String value) {
+        return new ProducerRecord<>(TOPIC, value, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String value(ConsumerRecord<String, byte[]> record) {
+        return new String(record.value(), StandardCharsets.UTF_8);
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition not met in time").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+apply(plugin = "io.spring.dependency-management")
+dependencyManagement {
+    imports {
+        mavenBom(org.springframework.boot.gradle.plugin.SpringBootPlugin.BOM_COORDINATES)
+    }
+}
+
+val services = listOf("order-api", "order-validator", "inventory-service", "payment-service", "notification-service")
+
+// Every service runs in its own class loader, so each needs its own runtime classpath.
+val serviceClasspaths = services.associateWith { service ->
+    configurations.create("${service}Runtime") {
+        isCanBeConsumed = false
+    }.also { dependencies.add(it.name, project(":$service")) }
+}
+
+dependencies {
+    implementation("org.springframework.kafka:spring-kafka-test")
+    implementation("com.fasterxml.jackson.core:jackson-databind")
+    implementation("org.hdrhistogram:HdrHistogram:2.1.12")
+    implementation("ch.qos.logback:logback-classic")
+    // InJvmPipelineTest hosts every stage in one application context, on one classpath
+    testImplementation(project(":order-events"))
+    services.filter { it != "order-api" }.forEach { testImplementation(project(":$it")) }
+    testImplementation("org.springframework.boot:spring-boot-starter-test")
+}
+
+// ./gradlew :order-loadtest:loadTest [-Pargs="--rate=2000 --duration=60s --baseline=loadtest-baseline.json"]
+tasks.register<JavaExec>("loadTest") {
+    group = "verification"
+    description = "Runs all services against an embedded broker and drives POST /orders at a fixed rate."
+    mainClass.set("loadtest.LoadTest")
+    classpath = sourceSets["main"].runtimeClasspath
+    serviceClasspaths.values.forEach { inputs.files(it) }
+    jvmArgs("-Xmx4g")
+    (project.findProperty("args") as String?)?.let { args(it.split(" ").filter(String::isNotBlank)) }
+    doFirst {
+        serviceClasspaths.forEach { (service, classpath) ->
+            systemProperty("loadtest.classpath.$service", classpath.asPath)
+        }
+    }
+}
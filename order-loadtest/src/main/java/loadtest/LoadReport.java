@@ -0,0 +1,77 @@
+package loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Result of one load test run, written as JSON and read back as the baseline of later runs.
+ *
+ * @param throughput orders per second that reached {@code order.completed} during the measured
+ *                   window, whenever they were sent
+ * @param lost       measured orders that were accepted but neither completed nor failed in time
+ */
+record LoadReport(
+        double offeredRate,
+        double durationSeconds,
+        long sent,
+        long completed,
+        long failed,
+        long rejected,
+        long errors,
+        long lost,
+        double throughput,
+        Latency latency) {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    /** Created-to-completed latency in milliseconds, measured from each request's scheduled send time. */
+    record Latency(double p50, double p90, double p99, double p999, double max, double mean) {
+
+        static Latency of(Histogram micros) {
+            return new Latency(
+                    millis(micros.getValueAtPercentile(50)),
+                    millis(micros.getValueAtPercentile(90)),
+                    millis(micros.getValueAtPercentile(99)),
+                    millis(micros.getValueAtPercentile(99.9)),
+                    millis(micros.getMaxValue()),
+                    micros.getTotalCount() > 0 ? micros.getMean() / 1000 : 0);
+        }
+
+        private static double millis(long micros) {
+            return micros / 1000.0;
+        }
+    }
+
+    void write(Path path) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        MAPPER.writeValue(path.toFile(), this);
+    }
+
+    static LoadReport read(Path path) throws IOException {
+        return MAPPER.readValue(path.toFile(), LoadReport.class);
+    }
+
+    /**
+     * Differences to {@code baseline} larger than {@code tolerance} (a fraction): lower throughput
+     * or higher p99 latency. Empty if the run is at least as good as the baseline within tolerance.
+     */
+    List<String> regressions(LoadReport baseline, double tolerance) {
+        List<String> regressions = new ArrayList<>();
+        if (throughput < baseline.throughput() * (1 - tolerance)) {
+            regressions.add("throughput %.1f/s is below baseline %.1f/s".formatted(throughput, baseline.throughput()));
+        }
+        if (latency.p99() > baseline.latency().p99() * (1 + tolerance)) {
+            regressions.add("p99 latency %.1f ms is above baseline %.1f ms".formatted(latency.p99(), baseline.latency().p99()));
+        }
+        return regressions;
+    }
+}
@@ -0,0 +1,101 @@
+package loadtest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * End-to-end load test: an embedded Kafka broker and all five services in one JVM, driven by
+ * {@link OpenLoopDriver}. Writes a {@link LoadReport} and, with {@code --baseline}, exits with
+ * status 1 if throughput or p99 latency regressed past {@code --tolerance}.
+ * <p>
+ * Run through {@code ./gradlew :order-loadtest:loadTest}, which passes the services' classpaths.
+ */
+public final class LoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadTest.class);
+
+    private static final String[] TOPICS = {
+            "order.created", "order.validated", "order.inventory-reserved", "order.payment-completed",
+            OpenLoopDriver.TOPIC_COMPLETED, OpenLoopDriver.TOPIC_FAILED};
+
+    /** Started downstream first, so order-api only takes orders once every stage is consuming. */
+    private static final Map<String, String> SERVICES = new LinkedHashMap<>();
+
+    static {
+        SERVICES.put("notification-service", "notification.NotificationServiceApplication");
+        SERVICES.put("payment-service", "payment.PaymentServiceApplication");
+        SERVICES.put("inventory-service", "inventory.InventoryServiceApplication");
+        SERVICES.put("order-validator", "ordervalidator.OrderValidatorApplication");
+        SERVICES.put("order-api", "orderapi.OrderApiApplication");
+    }
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        LoadReport report;
+        EmbeddedKafkaKraftBroker broker = new EmbeddedKafkaKraftBroker(1, options.partitions(), TOPICS);
+        broker.afterPropertiesSet();
+        try (ServiceLauncher services = new ServiceLauncher()) {
+            int apiPort = freePort();
+            for (Map.Entry<String, String> service : SERVICES.entrySet()) {
+                services.start(service.getKey(), service.getValue(),
+                        serviceArgs(service.getKey(), broker.getBrokersAsString(), apiPort, options));
+            }
+            URI orders = URI.create("http://localhost:" + apiPort + "/api/v1/orderApi/orders");
+            try (OpenLoopDriver driver = new OpenLoopDriver(orders, broker.getBrokersAsString())) {
+                report = driver.run(options);
+            }
+        } finally {
+            broker.destroy();
+        }
+
+        report.write(options.report());
+        log.info("{} orders/s completed (offered {}/s), latency p50 {} ms, p99 {} ms, p99.9 {} ms, max {} ms",
+                "%.1f".formatted(report.throughput()), report.offeredRate(), report.latency().p50(),
+                report.latency().p99(), report.latency().p999(), report.latency().max());
+        log.info("completed {}, failed {}, rejected {}, errors {}, lost {}; report written to {}",
+                report.completed(), report.failed(), report.rejected(), report.errors(), report.lost(),
+                options.report().toAbsolutePath());
+
+        if (options.baseline() != null) {
+            List<String> regressions = report.regressions(LoadReport.read(options.baseline()), options.tolerance());
+            regressions.forEach(regression -> log.error("Regression: {}", regression));
+            System.exit(regressions.isEmpty() ? 0 : 1);
+        }
+        System.exit(0);
+    }
+
+    private static List<String> serviceArgs(String service, String bootstrapServers, int apiPort, LoadTestOptions options) {
+        List<String> args = new ArrayList<>();
+        args.add("--spring.application.name=" + service);
+        args.add("--server.port=" + ("order-api".equals(service) ? apiPort : 0));
+        args.add("--spring.kafka.bootstrap-servers=" + bootstrapServers);
+        // Consumer groups may still be joining when the first orders arrive.
+        args.add("--spring.kafka.consumer.auto-offset-reset=earliest");
+        args.add("--order.inventory.skus=" + IntStream.range(0, OpenLoopDriver.SKUS)
+                .mapToObj(i -> "SKU-" + i).collect(Collectors.joining(",")));
+        args.add("--order.inventory.default-stock=" + Long.MAX_VALUE / 4);
+        args.add("--logging.level.root=WARN");
+        args.addAll(options.serviceArgs());
+        return args;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command-line options of {@link LoadTest}, as {@code --name=value}. Options starting with
+ * {@code --order.}, {@code --spring.} or {@code --logging.} are passed on to every service.
+ */
+record LoadTestOptions(
+        double rate,
+        Duration warmup,
+        Duration duration,
+        Duration drainTimeout,
+        int partitions,
+        Path report,
+        Path baseline,
+        double tolerance,
+        List<String> serviceArgs) {
+
+    static LoadTestOptions parse(String[] args) {
+        double rate = 500;
+        Duration warmup = Duration.ofSeconds(15);
+        Duration duration = Duration.ofSeconds(60);
+        Duration drainTimeout = Duration.ofSeconds(30);
+        int partitions = 6;
+        Path report = Path.of("build/loadtest/report.json");
+        Path baseline = null;
+        double tolerance = 0.1;
+        List<String> serviceArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--order.") || arg.startsWith("--spring.") || arg.startsWith("--logging.")) {
+                serviceArgs.add(arg);
+                continue;
+            }
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Expected --name=value: " + arg);
+            }
+            String value = arg.substring(eq + 1);
+            switch (arg.substring(2, eq)) {
+                case "rate" -> rate = Double.parseDouble(value);
+                case "warmup" -> warmup = duration(value);
+                case "duration" -> duration = duration(value);
+                case "drain-timeout" -> drainTimeout = duration(value);
+                case "partitions" -> partitions = Integer.parseInt(value);
+                case "report" -> report = Path.of(value);
+                case "baseline" -> baseline = Path.of(value);
+                case "tolerance" -> tolerance = Double.parseDouble(value);
+                default -> throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        if (rate <= 0 || duration.isZero() || duration.isNegative()) {
+            throw new IllegalArgumentException("--rate and --duration must be positive");
+        }
+        return new LoadTestOptions(rate, warmup, duration, drainTimeout, partitions, report, baseline, tolerance,
+                List.copyOf(serviceArgs));
+    }
+
+    /** {@code 250ms}, {@code 30s}, {@code 5m}. */
+    private static Duration duration(String value) {
+        if (value.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        }
+        long amount = Long.parseLong(value.substring(0, value.length() - 1));
+        return switch (value.charAt(value.length() - 1)) {
+            case 's' -> Duration.ofSeconds(amount);
+            case 'm' -> Duration.ofMinutes(amount);
+            default -> throw new IllegalArgumentException("Expected a duration like 500ms, 30s or 5m: " + value);
+        };
+    }
+}
@@ -0,0 +1,234 @@
+package loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends {@code POST /orders} at a fixed rate and waits for each order on {@code order.completed}
+ * or {@code order.failed}.
+ * <p>
+ * The load is open-loop: request {@code i} is due at {@code start + i / rate} whether or not
+ * earlier requests have been answered, and its latency is taken from that scheduled time rather
+ * than from when it was actually sent. A stall in the pipeline (or in this driver) therefore shows
+ * up in the latency of every order that should have been sent during it, not just in the one
+ * request that hit it (coordinated omission).
+ * <p>
+ * Orders scheduled during the warmup are sent but not measured. Orders still open when the drain
+ * timeout ends are counted as lost and recorded with the time waited so far.
+ */
+final class OpenLoopDriver implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(OpenLoopDriver.class);
+
+    static final String TOPIC_COMPLETED = "order.completed";
+    static final String TOPIC_FAILED = "order.failed";
+    /** Number of SKUs the orders pick their items from: SKU-0, SKU-1, ... */
+    static final int SKUS = 100;
+    private static final long HIGHEST_LATENCY_MICROS = TimeUnit.HOURS.toMicros(1);
+
+    private final URI ordersUri;
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final KafkaConsumer<String, byte[]> consumer;
+    private final Thread poller;
+    private volatile boolean running = true;
+    private volatile Window window;
+
+    /** Scheduled order, or its outcome if that was consumed before the HTTP response arrived. */
+    private final Map<String, Object> open = new ConcurrentHashMap<>();
+    private final AtomicInteger openRequests = new AtomicInteger();
+    private final Histogram latencyMicros = new ConcurrentHistogram(HIGHEST_LATENCY_MICROS, 3);
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder completedInWindow = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    private record Scheduled(long dueNanos, boolean measured) {
+    }
+
+    private record Outcome(long atNanos, boolean completed) {
+    }
+
+    private record Window(long from, long to) {
+
+        boolean contains(long nanos) {
+            return nanos - from >= 0 && nanos - to < 0;
+        }
+    }
+
+    OpenLoopDriver(URI ordersUri, String bootstrapServers) {
+        this.ordersUri = ordersUri;
+        this.consumer = new KafkaConsumer<>(Map.of(
+                ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers,
+                ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false),
+                new StringDeserializer(), new ByteArrayDeserializer());
+        List<TopicPartition> partitions = new ArrayList<>();
+        for (String topic : List.of(TOPIC_COMPLETED, TOPIC_FAILED)) {
+            consumer.partitionsFor(topic).forEach(p -> partitions.add(new TopicPartition(topic, p.partition())));
+        }
+        consumer.assign(partitions);
+        consumer.seekToEnd(partitions);
+        partitions.forEach(consumer::position);
+        this.poller = Thread.ofPlatform().name("loadtest-outcomes").daemon().start(this::pollOutcomes);
+    }
+
+    LoadReport run(LoadTestOptions options) throws InterruptedException {
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / options.rate());
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        long measureFrom = start + options.warmup().toNanos();
+        long end = measureFrom + options.duration().toNanos();
+        window = new Window(measureFrom, end);
+        log.info("Sending {} orders/s: {} warmup, {} measured", options.rate(), options.warmup(), options.duration());
+
+        for (long i = 0; ; i++) {
+            long due = start + i * interval;
+            if (due - end >= 0) {
+                break;
+            }
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            send(new Scheduled(due, due - measureFrom >= 0));
+        }
+
+        long drainDeadline = System.nanoTime() + options.drainTimeout().toNanos();
+        while ((openRequests.get() > 0 || hasOpenMeasured()) && System.nanoTime() - drainDeadline < 0) {
+            Thread.sleep(50);
+        }
+        long lost = recordLost(System.nanoTime());
+        double seconds = options.duration().toNanos() / 1e9;
+        return new LoadReport(options.rate(), seconds, sent.sum(), completed.sum(), failed.sum(), rejected.sum(),
+                errors.sum(), lost, completedInWindow.sum() / seconds, LoadReport.Latency.of(latencyMicros));
+    }
+
+    private void send(Scheduled scheduled) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String body = """
+                {"customerId":"cust-%d","items":["SKU-%d","SKU-%d"],"totalAmount":%d}"""
+                .formatted(random.nextInt(10_000), random.nextInt(SKUS), random.nextInt(SKUS), 100 + random.nextInt(10_000));
+        HttpRequest request = HttpRequest.newBuilder(ordersUri)
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(30))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        openRequests.incrementAndGet();
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, e) -> {
+            openRequests.decrementAndGet();
+            String location = response != null ? response.headers().firstValue("Location").orElse(null) : null;
+            if (response != null && response.statusCode() / 100 == 2 && location != null) {
+                if (scheduled.measured()) {
+                    sent.increment();
+                }
+                match(location.substring(location.lastIndexOf('/') + 1), scheduled);
+            } else if (scheduled.measured()) {
+                if (response != null && response.statusCode() == 503) {
+                    rejected.increment();
+                } else {
+                    errors.increment();
+                }
+            }
+        });
+    }
+
+    private void pollOutcomes() {
+        while (running) {
+            for (ConsumerRecord<String, byte[]> record : consumer.poll(Duration.ofMillis(20))) {
+                if (record.key() == null) {
+                    continue;
+                }
+                long now = System.nanoTime();
+                boolean completed = TOPIC_COMPLETED.equals(record.topic());
+                Window current = window;
+                if (completed && current != null && current.contains(now)) {
+                    completedInWindow.increment();
+                }
+                match(record.key(), new Outcome(now, completed));
+            }
+        }
+    }
+
+    /** Pairs the scheduled order with its outcome, whichever of the two arrives second. */
+    private void match(String orderId, Object arrived) {
+        Object[] other = new Object[1];
+        open.compute(orderId, (id, waiting) -> {
+            if (waiting == null) {
+                return arrived;
+            }
+            other[0] = waiting;
+            return null;
+        });
+        if (other[0] == null) {
+            return;
+        }
+        Scheduled scheduled = arrived instanceof Scheduled s ? s : (Scheduled) other[0];
+        Outcome outcome = arrived instanceof Outcome o ? o : (Outcome) other[0];
+        if (!scheduled.measured()) {
+            return;
+        }
+        if (outcome.completed()) {
+            completed.increment();
+            record(outcome.atNanos() - scheduled.dueNanos());
+        } else {
+            failed.increment();
+        }
+    }
+
+    private boolean hasOpenMeasured() {
+        return open.values().stream().anyMatch(v -> v instanceof Scheduled s && s.measured());
+    }
+
+    private long recordLost(long now) {
+        long lost = 0;
+        for (Object waiting : open.values()) {
+            if (waiting instanceof Scheduled s && s.measured()) {
+                record(now - s.dueNanos());
+                lost++;
+            }
+        }
+        return lost;
+    }
+
+    private void record(long nanos) {
+        latencyMicros.recordValue(Math.min(HIGHEST_LATENCY_MICROS, Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos))));
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            poller.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        consumer.close();
+        client.close();
+    }
+}
@@ -0,0 +1,76 @@
+package loadtest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Starts Spring Boot services side by side in this JVM.
+ * <p>
+ * The services cannot share a classpath: each has its own {@code application.yml}, and several
+ * scan the same {@code listener} package. Every service therefore gets a class loader of its own
+ * over the runtime classpath passed in {@code -Dloadtest.classpath.<service>}, with the platform
+ * class loader as parent, so nothing but the JDK is shared.
+ */
+final class ServiceLauncher implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ServiceLauncher.class);
+
+    private final Deque<Service> started = new ArrayDeque<>();
+
+    private record Service(String name, Closeable context, URLClassLoader loader) {
+    }
+
+    void start(String name, String mainClass, List<String> args) throws Exception {
+        String classpath = System.getProperty("loadtest.classpath." + name);
+        if (classpath == null) {
+            throw new IllegalStateException("loadtest.classpath." + name + " is not set; run ./gradlew :order-loadtest:loadTest");
+        }
+        String[] entries = classpath.split(File.pathSeparator);
+        URL[] urls = new URL[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            urls[i] = Path.of(entries[i]).toUri().toURL();
+        }
+        URLClassLoader loader = new URLClassLoader(name, urls, ClassLoader.getPlatformClassLoader());
+        Thread thread = Thread.currentThread();
+        ClassLoader previous = thread.getContextClassLoader();
+        // Threads the service starts (listener containers, Tomcat) inherit the context class loader.
+        thread.setContextClassLoader(loader);
+        try {
+            Class<?> application = loader.loadClass(mainClass);
+            Object context = loader.loadClass("org.springframework.boot.SpringApplication")
+                    .getMethod("run", Class.class, String[].class)
+                    .invoke(null, application, args.toArray(String[]::new));
+            started.push(new Service(name, (Closeable) context, loader));
+            log.info("Started {}", name);
+        } catch (Exception e) {
+            loader.close();
+            throw e;
+        } finally {
+            thread.setContextClassLoader(previous);
+        }
+    }
+
+    /** Stops the services in reverse start order. */
+    @Override
+    public void close() {
+        while (!started.isEmpty()) {
+            Service service = started.pop();
+            try {
+                service.context().close();
+                service.loader().close();
+            } catch (IOException | RuntimeException e) {
+                log.warn("Failed to stop {}: {}", service.name(), e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package loadtest;
+
+import events.OrderEventEnvelope;
+import events.codec.EnvelopeCodecs;
+import events.transport.EventTransport;
+import inventory.InventoryServiceApplication;
+import notification.NotificationServiceApplication;
+import ordervalidator.OrderValidatorApplication;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.kafka.annotation.KafkaListener;
+import payment.PaymentServiceApplication;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs the stages in {@code in-jvm} listener mode: all of them in one application context, with
+ * this test in the place of order-api, publishing {@code order.created} and reading the final
+ * topics.
+ */
+class InJvmPipelineTest {
+
+    private static final String[] ARGS = {
+            // the services' application.yml files all sit on this classpath; read none of them
+            "--spring.config.name=in-jvm-pipeline-test",
+            "--spring.main.web-application-type=none",
+            "--order.listener.mode=in-jvm",
+            "--order.listener.autoscale.enabled=false",
+            "--order.producer.adaptive.enabled=false",
+            "--order.payment.stub.latency=1ms",
+            "--order.inventory.skus=SKU-1,SKU-2"
+    };
+
+    @Test
+    void order_travelsFromCreatedToCompletedThroughTheRings() throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(OrderValidatorApplication.class,
+                InventoryServiceApplication.class, PaymentServiceApplication.class,
+                NotificationServiceApplication.class, FinalTopics.class).run(ARGS)) {
+            EventTransport transport = context.getBean(EventTransport.class);
+            EnvelopeCodecs codecs = context.getBean(EnvelopeCodecs.class);
+            FinalTopics finalTopics = context.getBean(FinalTopics.class);
+            String orderId = UUID.randomUUID().toString();
+
+            OrderEventEnvelope created = new OrderEventEnvelope();
+            created.setEventType("OrderCreated");
+            created.setOrderId(orderId);
+            created.setCorrelationId(UUID.randomUUID().toString());
+            created.setTimestamp(Instant.now().toString());
+            created.setPayload(Map.of("customerId", "cust-1", "items", List.of("SKU-1", "SKU-2"), "totalAmount", 1999));
+            transport.send(codecs.record("order.created", orderId, created));
+
+            ConsumerRecord<String, byte[]> done = finalTopics.records.poll(10, TimeUnit.SECONDS);
+            assertThat(done).as("no final event within 10 s").isNotNull();
+            assertThat(done.topic()).isEqualTo("order.completed");
+            assertThat(done.key()).isEqualTo(orderId);
+            assertThat(codecs.decode(done.headers(), done.value()).getEventType()).isEqualTo("OrderCompleted");
+        }
+    }
+
+    @Test
+    void stageStartedOnItsOwn_isRejected() {
+        assertThatThrownBy(() -> new SpringApplicationBuilder(OrderValidatorApplication.class).run(ARGS).close())
+                .hasStackTraceContaining("nothing here subscribes to [order.validated");
+    }
+
+    /** Stands in for order-api's status view. */
+    static class FinalTopics {
+
+        final BlockingQueue<ConsumerRecord<String, byte[]>> records = new LinkedBlockingQueue<>();
+
+        @KafkaListener(topics = {"order.completed", "order.failed"}, groupId = "in-jvm-pipeline-test",
+                autoStartup = "false")
+        public void onFinal(ConsumerRecord<String, byte[]> record) {
+            records.add(record);
+        }
+    }
+}
@@ -1,18 +1,36 @@
 package ordervalidator.controller;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import events.BatchPublisher;
 import events.OrderEventEnvelope;
+import events.codec.EnvelopeCodecs;
+import events.dedup.DedupCache;
+import events.metrics.StageMetrics;
+import events.parallel.KeyOrderedConsumerConfiguration;
+import events.parallel.KeyOrderedDispatcher;
+import events.retry.RetryConfiguration;
+import events.retry.RetryTopics;
+import events.transaction.TransactionBatcher;
+import events.transaction.TransactionConfiguration;
+import events.transport.EventTransport;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
+import ordervalidator.rules.OrderRules;
+import ordervalidator.rules.Violation;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class OrderValidatorController {
@@ -20,30 +38,149 @@ public class OrderValidatorController {
     private static final String TOPIC_ORDER_VALIDATED = "order.validated";
     private static final String TOPIC_ORDER_FAILED = "order.failed";
     private static final String EVENT_TYPE_FAILED = "OrderValidationFailed";
+    private static final String STAGE = "order-validator";
+    private static final Duration SEND_TIMEOUT = Duration.ofSeconds(30);
 
     private static final Logger log = LoggerFactory.getLogger(OrderValidatorController.class);
 
-    private final KafkaTemplate<String, String> kafkaTemplate;
-    private final ObjectMapper objectMapper;
+    private final EventTransport transport;
+    private final EnvelopeCodecs codecs;
+    private final KeyOrderedDispatcher dispatcher;
+    private final RetryTopics retries;
+    private final TransactionBatcher transactions;
+    private final DedupCache dedup;
+    private final StageMetrics stageMetrics;
+    private final OrderRules rules;
     private final Counter ordersValidatedTotal;
     private final Counter ordersValidationFailedTotal;
 
-    public OrderValidatorController(KafkaTemplate<String, String> kafkaTemplate, ObjectMapper objectMapper, MeterRegistry registry) {
-        this.kafkaTemplate = kafkaTemplate;
-        this.objectMapper = objectMapper;
+    public OrderValidatorController(EventTransport transport, EnvelopeCodecs codecs,
+            KeyOrderedDispatcher dispatcher, RetryTopics retries, TransactionBatcher transactions, DedupCache dedup,
+            StageMetrics stageMetrics, OrderRules rules, MeterRegistry registry) {
+        this.transport = transport;
+        this.codecs = codecs;
+        this.dispatcher = dispatcher;
+        this.retries = retries;
+        this.transactions = transactions;
+        this.dedup = dedup;
+        this.stageMetrics = stageMetrics;
+        this.rules = rules;
         this.ordersValidatedTotal = registry.counter("orders_validated_total");
         this.ordersValidationFailedTotal = registry.counter("orders_validation_failed_total");
     }
 
-    @KafkaListener(topics = "order.created", groupId = "order-validator")
-    public void onOrderCreated(String payload) {
+    @KafkaListener(topics = "order.created", groupId = "order-validator",
+            autoStartup = "#{'${order.listener.mode:record}' == 'record'}")
+    public void onOrderCreated(ConsumerRecord<String, byte[]> record) {
+        Outcome outcome = validate(record);
+        if (outcome != null) {
+            transport.send(outcome.record()).thenRun(() -> dedup.add(outcome.dedupKey()));
+        }
+    }
+
+    /** Batch mode, see {@link BatchPublisher}. */
+    @KafkaListener(topics = "order.created", groupId = "order-validator", batch = "true",
+            autoStartup = "#{'${order.listener.mode:record}' == 'batch'}")
+    public void onOrderCreatedBatch(List<ConsumerRecord<String, byte[]>> records) {
+        List<ProducerRecord<String, byte[]>> out = new ArrayList<>(records.size());
+        List<DedupCache.Key> published = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, byte[]> record : records) {
+            Outcome outcome = validate(record);
+            if (outcome != null) {
+                out.add(outcome.record());
+                published.add(outcome.dedupKey());
+            }
+        }
+        BatchPublisher.sendAll(transport, out, SEND_TIMEOUT);
+        published.forEach(dedup::add);
+    }
+
+    /** Parallel mode, see {@link KeyOrderedDispatcher}. */
+    @KafkaListener(topics = "order.created", groupId = "order-validator",
+            containerFactory = KeyOrderedConsumerConfiguration.CONTAINER_FACTORY,
+            autoStartup = "#{'${order.listener.mode:record}' == 'parallel'}")
+    public void onOrderCreatedParallel(List<ConsumerRecord<String, byte[]>> records, Consumer<?, ?> consumer) {
+        dispatcher.dispatch(records, consumer, record -> {
+            Outcome outcome = validate(record);
+            if (outcome != null) {
+                transport.send(outcome.record()).get(SEND_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+                dedup.add(outcome.dedupKey());
+            }
+        });
+    }
+
+    /** Exactly-once mode, see {@link TransactionBatcher}. */
+    @KafkaListener(topics = "order.created", groupId = "order-validator",
+            containerFactory = TransactionConfiguration.CONTAINER_FACTORY,
+            autoStartup = "#{'${order.listener.mode:record}' == 'exactly-once'}")
+    public void onOrderCreatedTransactional(List<ConsumerRecord<String, byte[]>> records, Consumer<?, ?> consumer) {
+        transactions.process(records, consumer, (record, transaction) -> {
+            Outcome outcome = validate(record);
+            if (outcome != null) {
+                transaction.send(outcome.record());
+                transaction.afterCommit(() -> dedup.add(outcome.dedupKey()));
+            }
+        });
+    }
+
+    /** Records back from the retry topics, see {@link RetryTopics}. */
+    @KafkaListener(topics = "#{@retryTopics.topics('order.created')}", groupId = "order-validator-retry",
+            containerFactory = RetryConfiguration.CONTAINER_FACTORY,
+            autoStartup = "#{@retryTopics.enabled()}")
+    public void onOrderCreatedRetry(List<ConsumerRecord<String, byte[]>> records, Consumer<?, ?> consumer) {
+        retries.dispatch(records, consumer, record -> {
+            Outcome outcome = validate(record);
+            if (outcome != null) {
+                if (outcome.deadLetter() != null) {
+                    transport.send(outcome.deadLetter()).get(SEND_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+                }
+                transport.send(outcome.record()).get(SEND_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+                dedup.add(outcome.dedupKey());
+            }
+        });
+    }
+
+    /** Output for one consumed record. */
+    private record Outcome(ProducerRecord<String, byte[]> record, DedupCache.Key dedupKey,
+            ProducerRecord<String, byte[]> deadLetter) {
+
+        Outcome(ProducerRecord<String, byte[]> record, DedupCache.Key dedupKey) {
+            this(record, dedupKey, null);
+        }
+
+        static Outcome of(ProducerRecord<String, byte[]> record, DedupCache.Key dedupKey) {
+            return record != null ? new Outcome(record, dedupKey) : null;
+        }
+    }
+
+    private Outcome validate(ConsumerRecord<String, byte[]> record) {
+        long started = stageMetrics.consumed(STAGE, record);
+        Outcome outcome = validateRecord(record);
+        if (outcome != null) {
+            stageMetrics.propagate(STAGE, record.headers(), outcome.record());
+        }
+        stageMetrics.processed(STAGE, started);
+        return outcome;
+    }
+
+    private Outcome validateRecord(ConsumerRecord<String, byte[]> record) {
         OrderEventEnvelope envelope = null;
+        DedupCache.Key dedupKey = null;
         try {
-            envelope = objectMapper.readValue(payload, OrderEventEnvelope.class);
+            envelope = codecs.decode(record.headers(), record.value());
+            dedupKey = dedup.key(STAGE, envelope.getOrderId(), envelope.getEventType());
+            if (dedup.contains(dedupKey)) {
+                log.debug("Skipping duplicate {} for order {}", envelope.getEventType(), envelope.getOrderId());
+                return null;
+            }
             if (!isValid(envelope)) {
                 ordersValidationFailedTotal.increment();
-                publishFailed(envelope, "VALIDATION_FAILED: orderId or payload missing");
-                return;
+                return Outcome.of(failed(envelope, "VALIDATION_FAILED: orderId or payload missing"), dedupKey);
+            }
+            Violation violation = rules.check(envelope);
+            if (violation != null) {
+                ordersValidationFailedTotal.increment();
+                return Outcome.of(failed(envelope, "VALIDATION_FAILED: " + violation.message()), dedupKey);
             }
             OrderEventEnvelope validated = new OrderEventEnvelope();
             validated.setEventType("OrderValidated");
@@ -52,41 +189,53 @@ public class OrderValidatorController {
             validated.setTimestamp(Instant.now().toString());
             validated.setPayload(envelope.getPayload());
 
-            String json = objectMapper.writeValueAsString(validated);
-            kafkaTemplate.send(TOPIC_ORDER_VALIDATED, envelope.getOrderId(), json);
+            ProducerRecord<String, byte[]> out = codecs.record(TOPIC_ORDER_VALIDATED, envelope.getOrderId(), validated);
             ordersValidatedTotal.increment();
-        } catch (JsonProcessingException e) {
+            return new Outcome(out, dedupKey);
+        } catch (IOException e) {
             log.warn("Failed to parse order.created message: {}", e.getMessage());
             ordersValidationFailedTotal.increment();
-            publishFailed(envelope, "PARSE_ERROR: " + e.getMessage());
+            return Outcome.of(failed(envelope, "PARSE_ERROR: " + e.getMessage()), dedupKey);
+        } catch (RuntimeException e) {
+            log.warn("Failed to process order.created message: {}", e.getMessage());
+            return failedOrRetried(record, envelope, "PROCESSING_ERROR: " + e.getMessage(), dedupKey);
         }
     }
 
-    private void publishFailed(OrderEventEnvelope envelope, String failureReason) {
+    /** Outcome of a transient failure, see {@link RetryTopics#retry}. */
+    private Outcome failedOrRetried(ConsumerRecord<String, byte[]> record, OrderEventEnvelope envelope,
+            String failureReason, DedupCache.Key dedupKey) {
+        ProducerRecord<String, byte[]> retry = retries.retry(record, failureReason);
+        if (retry != null) {
+            return new Outcome(retry, null);
+        }
+        ordersValidationFailedTotal.increment();
+        ProducerRecord<String, byte[]> failed = failed(envelope, failureReason);
+        return failed != null ? new Outcome(failed, dedupKey, retries.deadLetter(record, failureReason)) : null;
+    }
+
+    private ProducerRecord<String, byte[]> failed(OrderEventEnvelope envelope, String failureReason) {
         try {
             OrderEventEnvelope failed = new OrderEventEnvelope();
             failed.setEventType(EVENT_TYPE_FAILED);
-            String orderId = envelope != null ? envelope.getOrderId() : "unknown";
-            String correlationId = envelope != null ? envelope.getCorrelationId() : "unknown";
+            String orderId = envelope != null && envelope.getOrderId() != null ? envelope.getOrderId() : "unknown";
+            String correlationId = envelope != null && envelope.getCorrelationId() != null ? envelope.getCorrelationId() : "unknown";
+            Object originalPayload = envelope != null && envelope.getPayload() != null ? envelope.getPayload() : "n/a";
             failed.setOrderId(orderId);
             failed.setCorrelationId(correlationId);
             failed.setTimestamp(Instant.now().toString());
             failed.setPayload(Map.of(
-                    "originalPayload", envelope != null ? envelope.getPayload() : "n/a",
+                    "originalPayload", originalPayload,
                     "failureReason", failureReason
             ));
-            String json = objectMapper.writeValueAsString(failed);
-            kafkaTemplate.send(TOPIC_ORDER_FAILED, orderId, json);
-        } catch (JsonProcessingException e) {
+            return codecs.record(TOPIC_ORDER_FAILED, orderId, failed);
+        } catch (IOException | RuntimeException e) {
             log.error("Failed to publish failure event: {}", e.getMessage());
+            return null;
         }
     }
 
     private boolean isValid(OrderEventEnvelope envelope) {
-        if (envelope.getOrderId() == null || envelope.getPayload() == null) {
-            return false;
-        }
-        // extend: check payload.customerId, items, totalAmount
-        return true;
+        return envelope.getOrderId() != null && envelope.getPayload() != null;
     }
 }
@@ -0,0 +1,91 @@
+package ordervalidator.reference;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Local stand-in for the customer and product catalogues, read from the JSON file
+ * {@code order.validation.reference.file}:
+ * <pre>
+ * {"customers": ["cust-1", "cust-2"], "skus": {"SKU-1": 1999, "SKU-2": null}}
+ * </pre>
+ * SKU values are unit prices; {@code null} means the SKU exists without a price. The file is read
+ * again when its modification time changes. Without a file every customer and SKU exists and no SKU
+ * has a price, so only the structural rules reject orders.
+ */
+@Component
+public class FileReferenceData implements ReferenceData {
+
+    private static final Logger log = LoggerFactory.getLogger(FileReferenceData.class);
+
+    private final ObjectMapper objectMapper;
+    private final Path file;
+    private volatile Snapshot snapshot;
+
+    public FileReferenceData(ObjectMapper objectMapper, @Value("${order.validation.reference.file:}") String file)
+            throws IOException {
+        this.objectMapper = objectMapper;
+        this.file = file.isBlank() ? null : Path.of(file);
+        if (this.file != null) {
+            snapshot = read(Files.getLastModifiedTime(this.file));
+        }
+    }
+
+    private record Catalogue(Set<String> customers, Map<String, Long> skus) {
+    }
+
+    private record Snapshot(FileTime modified, Set<String> customers, Map<String, Long> skus) {
+    }
+
+    @Override
+    public boolean customerExists(String customerId) throws IOException {
+        return file == null || current().customers().contains(customerId);
+    }
+
+    @Override
+    public long unitPrice(String sku) throws IOException {
+        if (file == null) {
+            return UNPRICED;
+        }
+        Map<String, Long> skus = current().skus();
+        if (!skus.containsKey(sku)) {
+            return UNKNOWN_SKU;
+        }
+        Long price = skus.get(sku);
+        return price != null ? price : UNPRICED;
+    }
+
+    private Snapshot current() throws IOException {
+        FileTime modified = Files.getLastModifiedTime(file);
+        Snapshot current = snapshot;
+        if (!modified.equals(current.modified())) {
+            synchronized (this) {
+                current = snapshot;
+                if (!modified.equals(current.modified())) {
+                    current = read(modified);
+                    snapshot = current;
+                    log.info("Reloaded reference data from {}: {} customers, {} SKUs", file,
+                            current.customers().size(), current.skus().size());
+                }
+            }
+        }
+        return current;
+    }
+
+    private Snapshot read(FileTime modified) throws IOException {
+        Catalogue catalogue = objectMapper.readValue(file.toFile(), Catalogue.class);
+        return new Snapshot(modified,
+                catalogue.customers() != null ? Set.copyOf(catalogue.customers()) : Set.of(),
+                catalogue.skus() != null ? catalogue.skus() : Map.of());
+    }
+}
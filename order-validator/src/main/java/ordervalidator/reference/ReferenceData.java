@@ -0,0 +1,22 @@
+package ordervalidator.reference;
+
+/**
+ * Source of the reference data that validation rules check orders against (customer and product
+ * catalogues). Only called on cache misses and background refreshes through
+ * {@link ReferenceLookups}, so implementations may block on I/O.
+ */
+public interface ReferenceData {
+
+    /** {@link #unitPrice} of a SKU that does not exist. */
+    long UNKNOWN_SKU = -1;
+
+    /** {@link #unitPrice} of a SKU that exists but has no price on record. */
+    long UNPRICED = -2;
+
+    boolean customerExists(String customerId) throws Exception;
+
+    /**
+     * Unit price of the SKU in the smallest currency unit, {@link #UNKNOWN_SKU} or {@link #UNPRICED}.
+     */
+    long unitPrice(String sku) throws Exception;
+}
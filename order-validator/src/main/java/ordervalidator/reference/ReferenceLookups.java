@@ -0,0 +1,48 @@
+package ordervalidator.reference;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Cached view of {@link ReferenceData} used by the validation rules. Customers and SKUs each have a
+ * {@link RefreshAheadCache} of up to {@code order.validation.reference.max-entries} entries,
+ * refreshed in the background after {@code refresh-after} and reloaded synchronously after
+ * {@code expire-after}. Unknown customers and SKUs are cached as well. Refreshes run on virtual
+ * threads.
+ */
+@Component
+public class ReferenceLookups implements AutoCloseable {
+
+    private final ExecutorService refresher = Executors.newVirtualThreadPerTaskExecutor();
+    private final RefreshAheadCache<Boolean> customers;
+    private final RefreshAheadCache<Long> prices;
+
+    public ReferenceLookups(ReferenceData data, MeterRegistry registry,
+            @Value("${order.validation.reference.max-entries:100000}") int maxEntries,
+            @Value("${order.validation.reference.refresh-after:1m}") Duration refreshAfter,
+            @Value("${order.validation.reference.expire-after:10m}") Duration expireAfter) {
+        this.customers = new RefreshAheadCache<>("customers", data::customerExists, maxEntries, refreshAfter,
+                expireAfter, refresher, registry, System::nanoTime);
+        this.prices = new RefreshAheadCache<>("skus", data::unitPrice, maxEntries, refreshAfter,
+                expireAfter, refresher, registry, System::nanoTime);
+    }
+
+    public boolean customerExists(String customerId) {
+        return customers.get(customerId);
+    }
+
+    /** See {@link ReferenceData#unitPrice}. */
+    public long unitPrice(String sku) {
+        return prices.get(sku);
+    }
+
+    @Override
+    public void close() {
+        refresher.close();
+    }
+}
@@ -0,0 +1,167 @@
+package ordervalidator.reference;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.LongSupplier;
+
+/**
+ * Size-bounded local cache that reloads entries before they expire.
+ * <p>
+ * An entry older than {@code refreshAfter} is still returned, and one background reload is started
+ * for it; only an entry older than {@code expireAfter}, or a missing one, is loaded on the caller's
+ * thread. Keys that keep being asked for are therefore never loaded synchronously again. Each of
+ * the {@value #SEGMENTS} segments is an access-ordered {@link LinkedHashMap} behind its own lock
+ * that drops its least recently used entry beyond {@code maxEntries / SEGMENTS}. Concurrent misses
+ * of the same key may load it twice; the last result wins. A failed background reload keeps the
+ * old value until it expires.
+ */
+public class RefreshAheadCache<V> {
+
+    private static final Logger log = LoggerFactory.getLogger(RefreshAheadCache.class);
+    private static final int SEGMENTS = 16;
+
+    @FunctionalInterface
+    public interface Loader<V> {
+        V load(String key) throws Exception;
+    }
+
+    private final String name;
+    private final Loader<V> loader;
+    private final Executor refresher;
+    private final LongSupplier clock;
+    private final long refreshAfterNanos;
+    private final long expireAfterNanos;
+    private final Segment<V>[] segments;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter refreshes;
+
+    RefreshAheadCache(String name, Loader<V> loader, int maxEntries, Duration refreshAfter, Duration expireAfter,
+            Executor refresher, MeterRegistry registry, LongSupplier clock) {
+        this.name = name;
+        this.loader = loader;
+        this.refresher = refresher;
+        this.clock = clock;
+        this.refreshAfterNanos = refreshAfter.toNanos();
+        this.expireAfterNanos = expireAfter.toNanos();
+        @SuppressWarnings("unchecked")
+        Segment<V>[] segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment<>(Math.max(1, maxEntries / SEGMENTS));
+        }
+        this.segments = segments;
+        Tags tags = Tags.of("cache", name);
+        this.hits = registry.counter("order_reference_cache_hits_total", tags);
+        this.misses = registry.counter("order_reference_cache_misses_total", tags);
+        this.refreshes = registry.counter("order_reference_cache_refreshes_total", tags);
+        Gauge.builder("order_reference_cache_entries", this, RefreshAheadCache::size).tags(tags).register(registry);
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long loadedAt;
+        boolean refreshing;
+
+        Entry(V value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private static final class Segment<V> extends LinkedHashMap<String, Entry<V>> {
+
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    /**
+     * The cached value of {@code key}, loading it on the caller's thread if it is missing or expired.
+     *
+     * @throws IllegalStateException if the synchronous load fails
+     */
+    public V get(String key) {
+        Segment<V> segment = segment(key);
+        long now = clock.getAsLong();
+        Entry<V> entry;
+        boolean refresh = false;
+        synchronized (segment) {
+            entry = segment.get(key);
+            if (entry != null && now - entry.loadedAt < expireAfterNanos) {
+                if (now - entry.loadedAt >= refreshAfterNanos && !entry.refreshing) {
+                    entry.refreshing = true;
+                    refresh = true;
+                }
+            } else {
+                entry = null;
+            }
+        }
+        if (entry != null) {
+            hits.increment();
+            if (refresh) {
+                refresh(segment, key, entry);
+            }
+            return entry.value;
+        }
+        misses.increment();
+        V value;
+        try {
+            value = loader.load(key);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to load " + name + " " + key + ": " + e.getMessage(), e);
+        }
+        synchronized (segment) {
+            segment.put(key, new Entry<>(value, clock.getAsLong()));
+        }
+        return value;
+    }
+
+    long size() {
+        long size = 0;
+        for (Segment<V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    private void refresh(Segment<V> segment, String key, Entry<V> stale) {
+        refreshes.increment();
+        refresher.execute(() -> {
+            try {
+                V value = loader.load(key);
+                synchronized (segment) {
+                    segment.put(key, new Entry<>(value, clock.getAsLong()));
+                }
+            } catch (Exception e) {
+                log.warn("Failed to refresh {} {}: {}", name, key, e.getMessage());
+                synchronized (segment) {
+                    stale.refreshing = false;
+                }
+            }
+        });
+    }
+
+    private Segment<V> segment(String key) {
+        int h = key.hashCode();
+        return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+    }
+}
@@ -0,0 +1,133 @@
+package ordervalidator.rules;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * The rules of one payload field, merged into plain thresholds and flags by {@link OrderRules}. A
+ * field has one kind, fixed by its rules: an integer, a string or an array of order items.
+ */
+final class FieldRules {
+
+    enum Kind { ANY, INTEGER, STRING, ITEMS }
+
+    final String name;
+    final long bit;
+    Kind kind = Kind.ANY;
+
+    Violation required;
+    Violation wrongType;
+
+    long min = Long.MIN_VALUE;
+    Violation belowMin;
+    long max = Long.MAX_VALUE;
+    Violation aboveMax;
+
+    int maxLength = Integer.MAX_VALUE;
+    Violation tooLong;
+    boolean customerExists;
+    Violation unknownCustomer;
+
+    int minItems;
+    Violation tooFewItems;
+    int maxItems = Integer.MAX_VALUE;
+    Violation tooManyItems;
+    boolean skuExists;
+    Violation unknownSku;
+    Violation invalidItem;
+
+    /** Set on the total field of a {@code price-matches} rule: the items it must add up to. */
+    FieldRules pricedItems;
+    Violation priceMismatch;
+
+    private final MeterRegistry registry;
+
+    FieldRules(String name, int index, MeterRegistry registry) {
+        this.name = name;
+        this.bit = 1L << index;
+        this.registry = registry;
+    }
+
+    /** Whether the items of this field need their SKUs read. */
+    boolean readsSkus(FieldRules priceTotal) {
+        return skuExists || priceTotal != null && priceTotal.pricedItems == this;
+    }
+
+    void add(RuleSpec spec, FieldRules itemsOfPrice) {
+        switch (spec.rule()) {
+            case "required" -> required = violation(spec, "required");
+            case "min" -> {
+                kind(Kind.INTEGER);
+                min = longValue(spec);
+                belowMin = violation(spec, "below " + min);
+            }
+            case "max" -> {
+                kind(Kind.INTEGER);
+                max = longValue(spec);
+                aboveMax = violation(spec, "above " + max);
+            }
+            case "max-length" -> {
+                kind(Kind.STRING);
+                maxLength = Math.toIntExact(longValue(spec));
+                tooLong = violation(spec, "longer than " + maxLength + " characters");
+            }
+            case "customer-exists" -> {
+                kind(Kind.STRING);
+                customerExists = true;
+                unknownCustomer = violation(spec, "unknown customer");
+            }
+            case "min-items" -> {
+                kind(Kind.ITEMS);
+                minItems = Math.toIntExact(longValue(spec));
+                tooFewItems = violation(spec, "fewer than " + minItems + " items");
+            }
+            case "max-items" -> {
+                kind(Kind.ITEMS);
+                maxItems = Math.toIntExact(longValue(spec));
+                tooManyItems = violation(spec, "more than " + maxItems + " items");
+            }
+            case "sku-exists" -> {
+                kind(Kind.ITEMS);
+                skuExists = true;
+                unknownSku = violation(spec, "unknown SKU");
+            }
+            case "price-matches" -> {
+                kind(Kind.INTEGER);
+                itemsOfPrice.kind(Kind.ITEMS);
+                pricedItems = itemsOfPrice;
+                priceMismatch = violation(spec, "does not match the prices of " + itemsOfPrice.name);
+            }
+            default -> throw new IllegalArgumentException("Unknown rule '" + spec.rule() + "' for field " + name);
+        }
+    }
+
+    private void kind(Kind kind) {
+        if (this.kind != Kind.ANY && this.kind != kind) {
+            throw new IllegalArgumentException("Field " + name + " has rules for both " + this.kind + " and " + kind);
+        }
+        if (this.kind == Kind.ANY) {
+            this.kind = kind;
+            wrongType = new Violation(name, "type", name + ": expected " + switch (kind) {
+                case INTEGER -> "an integer";
+                case STRING -> "a string";
+                case ITEMS -> "an array of items";
+                case ANY -> "a value";
+            }, registry.counter("orders_validation_rejected_total", "field", name, "rule", "type"));
+            if (kind == Kind.ITEMS) {
+                invalidItem = new Violation(name, "item", name + ": items must be SKUs or {\"sku\", \"quantity\"} objects",
+                        registry.counter("orders_validation_rejected_total", "field", name, "rule", "item"));
+            }
+        }
+    }
+
+    private Violation violation(RuleSpec spec, String reason) {
+        return new Violation(name, spec.rule(), name + ": " + reason,
+                registry.counter("orders_validation_rejected_total", "field", name, "rule", spec.rule()));
+    }
+
+    private static long longValue(RuleSpec spec) {
+        if (!(spec.value() instanceof Number number)) {
+            throw new IllegalArgumentException("Rule " + spec.rule() + " of field " + spec.field() + " needs a numeric value");
+        }
+        return number.longValue();
+    }
+}
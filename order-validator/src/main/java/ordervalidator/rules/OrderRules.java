@@ -0,0 +1,240 @@
+package ordervalidator.rules;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import events.OrderEventEnvelope;
+import events.RawPayload;
+import io.micrometer.core.instrument.MeterRegistry;
+import ordervalidator.reference.ReferenceData;
+import ordervalidator.reference.ReferenceLookups;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Validates order payloads against the declarative rules of {@code order.validation.rules}, a JSON
+ * array of {@link RuleSpec}s:
+ * <ul>
+ *   <li>{@code required} - the field is present, not {@code null} and not an empty string;</li>
+ *   <li>{@code min}, {@code max} - bounds of an integer field;</li>
+ *   <li>{@code max-length}, {@code customer-exists} - a string field, the latter looked up in the
+ *       customer catalogue;</li>
+ *   <li>{@code min-items}, {@code max-items}, {@code sku-exists} - an array of order items (SKU
+ *       strings or {@code {"sku", "quantity"}} objects), the latter looked up in the product
+ *       catalogue;</li>
+ *   <li>{@code price-matches} - an integer field equal to the sum of unit price times quantity of
+ *       the items field named by {@code value} (default {@code items}); skipped when an item has no
+ *       price on record. At most one per rule set.</li>
+ * </ul>
+ * The rules are compiled once at startup into one {@link FieldRules} per field, holding plain
+ * thresholds and the prebuilt {@link Violation}s. An order is checked in a single streaming pass
+ * over its top-level fields, straight over the payload bytes when the codec passed them through;
+ * apart from the keys of reference lookups, a check allocates nothing. Catalogue lookups go through
+ * the caches of {@link ReferenceLookups}.
+ */
+@Component
+public class OrderRules {
+
+    private final ObjectMapper objectMapper;
+    private final ReferenceLookups lookups;
+    private final Map<String, FieldRules> fields;
+    private final FieldRules[] requiredFields;
+    private final long requiredBits;
+    private final FieldRules priceTotal;
+    private final Violation notAnObject;
+
+    public OrderRules(ObjectMapper objectMapper, ReferenceLookups lookups, MeterRegistry registry,
+            @Value("${order.validation.rules:classpath:validation-rules.json}") Resource rules) throws IOException {
+        this(objectMapper, lookups, registry, read(objectMapper, rules));
+    }
+
+    OrderRules(ObjectMapper objectMapper, ReferenceLookups lookups, MeterRegistry registry, List<RuleSpec> specs) {
+        this.objectMapper = objectMapper;
+        this.lookups = lookups;
+        Map<String, FieldRules> fields = new LinkedHashMap<>();
+        FieldRules priceTotal = null;
+        for (RuleSpec spec : specs) {
+            FieldRules field = field(fields, spec.field(), registry);
+            FieldRules items = null;
+            if ("price-matches".equals(spec.rule())) {
+                if (priceTotal != null) {
+                    throw new IllegalArgumentException("Only one price-matches rule is supported");
+                }
+                items = field(fields, spec.value() instanceof String name ? name : "items", registry);
+                priceTotal = field;
+            }
+            field.add(spec, items);
+        }
+        this.fields = new HashMap<>(fields);
+        this.requiredFields = fields.values().stream().filter(f -> f.required != null).toArray(FieldRules[]::new);
+        long requiredBits = 0;
+        for (FieldRules field : requiredFields) {
+            requiredBits |= field.bit;
+        }
+        this.requiredBits = requiredBits;
+        this.priceTotal = priceTotal;
+        this.notAnObject = new Violation("payload", "type", "payload: expected an object",
+                registry.counter("orders_validation_rejected_total", "field", "payload", "rule", "type"));
+    }
+
+    /** The first rule the order's payload breaks, or {@code null} if it passes all of them. */
+    public Violation check(OrderEventEnvelope envelope) throws IOException {
+        Object payload = envelope.getPayload();
+        try (JsonParser parser = payload instanceof RawPayload raw
+                ? raw.parser()
+                : objectMapper.treeAsTokens(objectMapper.valueToTree(payload))) {
+            Violation violation = check(parser);
+            if (violation != null) {
+                violation.rejected.increment();
+            }
+            return violation;
+        }
+    }
+
+    private Violation check(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return notAnObject;
+        }
+        long seen = 0;
+        long total = 0;
+        long itemsPrice = 0;
+        boolean unpriced = false;
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            FieldRules field = fields.get(parser.currentName());
+            token = parser.nextToken();
+            if (field == null || token == JsonToken.VALUE_NULL) {
+                parser.skipChildren();
+                continue;
+            }
+            switch (field.kind) {
+                case INTEGER -> {
+                    if (token != JsonToken.VALUE_NUMBER_INT) {
+                        return field.wrongType;
+                    }
+                    long value = parser.getLongValue();
+                    if (value < field.min) {
+                        return field.belowMin;
+                    }
+                    if (value > field.max) {
+                        return field.aboveMax;
+                    }
+                    if (field == priceTotal) {
+                        total = value;
+                    }
+                }
+                case STRING -> {
+                    if (token != JsonToken.VALUE_STRING) {
+                        return field.wrongType;
+                    }
+                    int length = parser.getTextLength();
+                    if (length == 0) {
+                        continue;
+                    }
+                    if (length > field.maxLength) {
+                        return field.tooLong;
+                    }
+                    if (field.customerExists && !lookups.customerExists(parser.getText())) {
+                        return field.unknownCustomer;
+                    }
+                }
+                case ITEMS -> {
+                    if (token != JsonToken.START_ARRAY) {
+                        return field.wrongType;
+                    }
+                    boolean readSkus = field.readsSkus(priceTotal);
+                    int count = 0;
+                    while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                        if (++count > field.maxItems) {
+                            return field.tooManyItems;
+                        }
+                        if (!readSkus) {
+                            parser.skipChildren();
+                            continue;
+                        }
+                        String sku = null;
+                        long quantity = 1;
+                        if (token == JsonToken.VALUE_STRING) {
+                            sku = parser.getText();
+                        } else if (token == JsonToken.START_OBJECT) {
+                            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                                String name = parser.currentName();
+                                JsonToken value = parser.nextToken();
+                                if ("sku".equals(name) && value == JsonToken.VALUE_STRING) {
+                                    sku = parser.getText();
+                                } else if ("quantity".equals(name) && value == JsonToken.VALUE_NUMBER_INT) {
+                                    quantity = parser.getLongValue();
+                                } else {
+                                    parser.skipChildren();
+                                }
+                            }
+                        }
+                        if (sku == null || quantity <= 0) {
+                            return field.invalidItem;
+                        }
+                        long price = lookups.unitPrice(sku);
+                        if (price == ReferenceData.UNKNOWN_SKU && field.skuExists) {
+                            return field.unknownSku;
+                        }
+                        if (priceTotal != null && priceTotal.pricedItems == field) {
+                            if (price >= 0) {
+                                itemsPrice += price * quantity;
+                            } else {
+                                unpriced = true;
+                            }
+                        }
+                    }
+                    if (count < field.minItems) {
+                        return field.tooFewItems;
+                    }
+                }
+                case ANY -> {
+                    if (token == JsonToken.VALUE_STRING && parser.getTextLength() == 0) {
+                        continue;
+                    }
+                    parser.skipChildren();
+                }
+            }
+            seen |= field.bit;
+        }
+        if ((seen & requiredBits) != requiredBits) {
+            for (FieldRules field : requiredFields) {
+                if ((seen & field.bit) == 0) {
+                    return field.required;
+                }
+            }
+        }
+        if (priceTotal != null && !unpriced && (seen & priceTotal.bit) != 0 && (seen & priceTotal.pricedItems.bit) != 0
+                && total != itemsPrice) {
+            return priceTotal.priceMismatch;
+        }
+        return null;
+    }
+
+    private static FieldRules field(Map<String, FieldRules> fields, String name, MeterRegistry registry) {
+        FieldRules field = fields.get(name);
+        if (field == null) {
+            if (fields.size() == Long.SIZE) {
+                throw new IllegalArgumentException("Rules may cover at most " + Long.SIZE + " fields");
+            }
+            field = new FieldRules(name, fields.size(), registry);
+            fields.put(name, field);
+        }
+        return field;
+    }
+
+    private static List<RuleSpec> read(ObjectMapper objectMapper, Resource rules) throws IOException {
+        try (InputStream in = rules.getInputStream()) {
+            return objectMapper.readValue(in, new TypeReference<>() { });
+        }
+    }
+}
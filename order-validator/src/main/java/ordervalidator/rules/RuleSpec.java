@@ -0,0 +1,8 @@
+package ordervalidator.rules;
+
+/**
+ * One entry of the rule file, e.g. {@code {"field": "totalAmount", "rule": "min", "value": 1}}.
+ * See {@link OrderRules} for the supported rules.
+ */
+public record RuleSpec(String field, String rule, Object value) {
+}
@@ -0,0 +1,40 @@
+package ordervalidator.rules;
+
+import io.micrometer.core.instrument.Counter;
+
+/**
+ * A rule an order broke. Created once per rule when the rules are compiled, so rejecting an order
+ * allocates nothing.
+ */
+public final class Violation {
+
+    private final String field;
+    private final String rule;
+    private final String message;
+    final Counter rejected;
+
+    Violation(String field, String rule, String message, Counter rejected) {
+        this.field = field;
+        this.rule = rule;
+        this.message = message;
+        this.rejected = rejected;
+    }
+
+    public String field() {
+        return field;
+    }
+
+    public String rule() {
+        return rule;
+    }
+
+    /** {@code "<field>: <reason>"}, used as the failure reason of the rejected order. */
+    public String message() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return message;
+    }
+}
@@ -1,18 +1,51 @@
 package ordervalidator.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import events.OrderEventEnvelope;
+import events.codec.BinaryEnvelopeCodec;
+import events.codec.EnvelopeCodecs;
+import events.codec.JsonEnvelopeCodec;
+import events.dedup.DedupCache;
+import events.metrics.StageMetrics;
+import events.parallel.KeyOrderedDispatcher;
+import events.retry.RetryTopics;
+import events.transaction.TransactionBatcher;
+import events.transport.EventTransport;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ordervalidator.reference.FileReferenceData;
+import ordervalidator.reference.ReferenceLookups;
+import ordervalidator.rules.OrderRules;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.core.io.ClassPathResource;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -20,58 +53,183 @@ import static org.mockito.Mockito.when;
 class OrderValidatorControllerTest {
 
     private static final String VALID_ORDER_CREATED = """
-            {"eventType":"OrderCreated","orderId":"ord-123","correlationId":"corr-456","timestamp":"2026-02-06T12:00:00Z","payload":{"customerId":"cust-1","items":[],"totalAmount":9999}}
+            {"eventType":"OrderCreated","orderId":"ord-123","correlationId":"corr-456","timestamp":"2026-02-06T12:00:00Z","payload":{"customerId":"cust-1","items":["SKU-1"],"totalAmount":9999}}
             """;
 
     @Mock
-    private KafkaTemplate<String, String> kafkaTemplate;
+    private EventTransport transport;
+
+    @Mock
+    private KeyOrderedDispatcher dispatcher;
 
     @Mock
     private io.micrometer.core.instrument.MeterRegistry meterRegistry;
 
+    @Captor
+    private ArgumentCaptor<ProducerRecord<String, byte[]>> recordCaptor;
+
     private ObjectMapper objectMapper;
+    private MockProducer<String, byte[]> producer;
     private OrderValidatorController controller;
 
     @BeforeEach
-    void setUp() {
+    void setUp() throws Exception {
         objectMapper = new ObjectMapper();
         when(meterRegistry.counter(anyString())).thenReturn(mock(io.micrometer.core.instrument.Counter.class));
-        controller = new OrderValidatorController(kafkaTemplate, objectMapper, meterRegistry);
+        lenient().when(transport.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+        producer = new MockProducer<>(true, new StringSerializer(), new ByteArraySerializer());
+        producer.initTransactions();
+        controller = new OrderValidatorController(transport, new EnvelopeCodecs(JsonEnvelopeCodec.NAME, true,
+                new JsonEnvelopeCodec(objectMapper), new BinaryEnvelopeCodec(objectMapper)), dispatcher,
+                new RetryTopics(List.of(Duration.ofSeconds(1)), true, Duration.ofSeconds(1), new SimpleMeterRegistry()),
+                new TransactionBatcher(() -> producer, 2, Duration.ofMinutes(1), new SimpleMeterRegistry()),
+                new DedupCache(1024, Duration.ofHours(1), new SimpleMeterRegistry()),
+                new StageMetrics(new SimpleMeterRegistry()), rules(objectMapper), meterRegistry);
     }
 
     @Test
     void validOrder_publishesToOrderValidated() {
-        controller.onOrderCreated(VALID_ORDER_CREATED);
+        controller.onOrderCreated(record(VALID_ORDER_CREATED));
 
-        ArgumentCaptor<String> valueCaptor = ArgumentCaptor.forClass(String.class);
-        verify(kafkaTemplate).send(eq("order.validated"), eq("ord-123"), valueCaptor.capture());
+        verify(transport).send(recordCaptor.capture());
+        ProducerRecord<String, byte[]> sent = recordCaptor.getValue();
+        String value = new String(sent.value(), StandardCharsets.UTF_8);
 
-        assertThat(valueCaptor.getValue()).contains("\"eventType\":\"OrderValidated\"");
-        assertThat(valueCaptor.getValue()).contains("\"orderId\":\"ord-123\"");
+        assertThat(sent.topic()).isEqualTo("order.validated");
+        assertThat(sent.key()).isEqualTo("ord-123");
+        assertThat(value).contains("\"eventType\":\"OrderValidated\"");
+        assertThat(value).contains("\"orderId\":\"ord-123\"");
     }
 
     @Test
     void invalidEnvelope_missingOrderId_publishesToOrderFailed() {
         String json = "{\"eventType\":\"OrderCreated\",\"payload\":{\"customerId\":\"c1\"}}";
 
-        controller.onOrderCreated(json);
+        controller.onOrderCreated(record(json));
+
+        verify(transport).send(recordCaptor.capture());
+        ProducerRecord<String, byte[]> sent = recordCaptor.getValue();
+        String value = new String(sent.value(), StandardCharsets.UTF_8);
+
+        assertThat(sent.topic()).isEqualTo("order.failed");
+        assertThat(sent.key()).isEqualTo("unknown");
+        assertThat(value).contains("\"eventType\":\"OrderValidationFailed\"");
+        assertThat(value).contains("failureReason");
+        assertThat(value).contains("VALIDATION_FAILED");
+    }
+
+    @Test
+    void payloadBreakingRule_publishesToOrderFailedWithRule() {
+        String json = VALID_ORDER_CREATED.replace("\"totalAmount\":9999", "\"totalAmount\":0");
 
-        ArgumentCaptor<String> valueCaptor = ArgumentCaptor.forClass(String.class);
-        verify(kafkaTemplate).send(eq("order.failed"), eq("unknown"), valueCaptor.capture());
+        controller.onOrderCreated(record(json));
 
-        assertThat(valueCaptor.getValue()).contains("\"eventType\":\"OrderValidationFailed\"");
-        assertThat(valueCaptor.getValue()).contains("failureReason");
-        assertThat(valueCaptor.getValue()).contains("VALIDATION_FAILED");
+        verify(transport).send(recordCaptor.capture());
+        ProducerRecord<String, byte[]> sent = recordCaptor.getValue();
+        assertThat(sent.topic()).isEqualTo("order.failed");
+        assertThat(sent.key()).isEqualTo("ord-123");
+        assertThat(new String(sent.value(), StandardCharsets.UTF_8)).contains("VALIDATION_FAILED: totalAmount: below 1");
     }
 
     @Test
     void parseError_publishesToOrderFailed() {
-        controller.onOrderCreated("not valid json");
+        controller.onOrderCreated(record("not valid json"));
+
+        verify(transport).send(recordCaptor.capture());
+        ProducerRecord<String, byte[]> sent = recordCaptor.getValue();
+        String value = new String(sent.value(), StandardCharsets.UTF_8);
+
+        assertThat(sent.topic()).isEqualTo("order.failed");
+        assertThat(sent.key()).isEqualTo("unknown");
+        assertThat(value).contains("\"eventType\":\"OrderValidationFailed\"");
+        assertThat(value).contains("PARSE_ERROR");
+    }
+
+    @Test
+    void batch_publishesEachOutcomeAndFlushesOnce() {
+        when(transport.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+
+        controller.onOrderCreatedBatch(List.of(record(VALID_ORDER_CREATED), record("not json")));
+
+        verify(transport, times(2)).send(recordCaptor.capture());
+        verify(transport).flush();
 
-        ArgumentCaptor<String> valueCaptor = ArgumentCaptor.forClass(String.class);
-        verify(kafkaTemplate).send(eq("order.failed"), eq("unknown"), valueCaptor.capture());
+        List<ProducerRecord<String, byte[]>> sent = recordCaptor.getAllValues();
+        assertThat(sent.get(0).topic()).isEqualTo("order.validated");
+        assertThat(sent.get(0).key()).isEqualTo("ord-123");
+        assertThat(new String(sent.get(0).value(), StandardCharsets.UTF_8)).contains("\"eventType\":\"OrderValidated\"");
+        assertThat(sent.get(1).topic()).isEqualTo("order.failed");
+        assertThat(new String(sent.get(1).value(), StandardCharsets.UTF_8)).contains("\"eventType\":\"OrderValidationFailed\"");
+    }
+
+    @Test
+    void binaryInput_isDecodedFromCodecHeader() throws Exception {
+        OrderEventEnvelope created = objectMapper.readValue(VALID_ORDER_CREATED, OrderEventEnvelope.class);
+        ConsumerRecord<String, byte[]> binary = new ConsumerRecord<>("order.created", 0, 0L, "ord-123",
+                new BinaryEnvelopeCodec(objectMapper).encode(created));
+        binary.headers().add(EnvelopeCodecs.HEADER, BinaryEnvelopeCodec.NAME.getBytes(StandardCharsets.UTF_8));
+
+        controller.onOrderCreated(binary);
+
+        verify(transport).send(recordCaptor.capture());
+        ProducerRecord<String, byte[]> sent = recordCaptor.getValue();
+        assertThat(sent.topic()).isEqualTo("order.validated");
+        assertThat(sent.headers().lastHeader(EnvelopeCodecs.HEADER).value())
+                .isEqualTo(JsonEnvelopeCodec.NAME.getBytes(StandardCharsets.UTF_8));
+        assertThat(new String(sent.value(), StandardCharsets.UTF_8)).contains("\"customerId\":\"cust-1\"");
+    }
+
+    @Test
+    void redeliveredRecord_isPublishedOnlyOnce() {
+        controller.onOrderCreated(record(VALID_ORDER_CREATED));
+        controller.onOrderCreated(record(VALID_ORDER_CREATED));
+
+        verify(transport, times(1)).send(recordCaptor.capture());
+        assertThat(recordCaptor.getValue().topic()).isEqualTo("order.validated");
+    }
+
+    @Test
+    void outcome_carriesStageHistoryOfConsumedRecord() {
+        ConsumerRecord<String, byte[]> consumed = record(VALID_ORDER_CREATED);
+        consumed.headers().add(StageMetrics.HEADER_CREATED_AT, new byte[Long.BYTES]);
+        consumed.headers().add(StageMetrics.HEADER_STAGE, "order-api=1".getBytes(StandardCharsets.UTF_8));
+
+        controller.onOrderCreated(consumed);
+
+        verify(transport).send(recordCaptor.capture());
+        ProducerRecord<String, byte[]> sent = recordCaptor.getValue();
+        assertThat(sent.headers().lastHeader(StageMetrics.HEADER_CREATED_AT)).isNotNull();
+        assertThat(sent.headers().headers(StageMetrics.HEADER_STAGE)).hasSize(2);
+        assertThat(new String(sent.headers().lastHeader(StageMetrics.HEADER_STAGE).value(), StandardCharsets.UTF_8))
+                .startsWith("order-validator=");
+    }
+
+    @Test
+    void exactlyOnce_publishesOutputsWithOffsetsInOneTransaction() {
+        TopicPartition partition = new TopicPartition("order.created", 0);
+        MockConsumer<String, byte[]> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        consumer.assign(List.of(partition));
+
+        controller.onOrderCreatedTransactional(List.of(
+                new ConsumerRecord<>("order.created", 0, 7L, null, VALID_ORDER_CREATED.getBytes(StandardCharsets.UTF_8)),
+                new ConsumerRecord<>("order.created", 0, 8L, null, "not json".getBytes(StandardCharsets.UTF_8))), consumer);
+
+        verify(transport, never()).send(any(ProducerRecord.class));
+        assertThat(producer.transactionCommitted()).isTrue();
+        assertThat(producer.history()).extracting(ProducerRecord::topic).containsExactly("order.validated", "order.failed");
+        List<Map<String, Map<TopicPartition, OffsetAndMetadata>>> offsets = producer.consumerGroupOffsetsHistory();
+        assertThat(offsets).hasSize(1);
+        assertThat(offsets.get(0).values().iterator().next().get(partition).offset()).isEqualTo(9L);
+    }
+
+    private static OrderRules rules(ObjectMapper objectMapper) throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ReferenceLookups lookups = new ReferenceLookups(new FileReferenceData(objectMapper, ""), registry, 1024,
+                Duration.ofMinutes(1), Duration.ofMinutes(10));
+        return new OrderRules(objectMapper, lookups, registry, new ClassPathResource("validation-rules.json"));
+    }
 
-        assertThat(valueCaptor.getValue()).contains("\"eventType\":\"OrderValidationFailed\"");
-        assertThat(valueCaptor.getValue()).contains("PARSE_ERROR");
+    private static ConsumerRecord<String, byte[]> record(String value) {
+        return new ConsumerRecord<>("order.created", 0, 0L, null, value.getBytes(StandardCharsets.UTF_8));
     }
 }
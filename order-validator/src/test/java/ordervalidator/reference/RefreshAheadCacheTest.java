@@ -0,0 +1,103 @@
+package ordervalidator.reference;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RefreshAheadCacheTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final List<Runnable> refreshes = new ArrayList<>();
+
+    private RefreshAheadCache<String> cache(int maxEntries, RefreshAheadCache.Loader<String> loader) {
+        return new RefreshAheadCache<>("test", loader, maxEntries, Duration.ofNanos(100), Duration.ofNanos(1000),
+                refreshes::add, new SimpleMeterRegistry(), clock::get);
+    }
+
+    private RefreshAheadCache<String> cache(int maxEntries) {
+        return cache(maxEntries, key -> key + "-" + loads.incrementAndGet());
+    }
+
+    @Test
+    void freshEntry_isServedFromCache() {
+        RefreshAheadCache<String> cache = cache(64);
+
+        assertThat(cache.get("a")).isEqualTo("a-1");
+        clock.set(50);
+        assertThat(cache.get("a")).isEqualTo("a-1");
+        assertThat(loads).hasValue(1);
+        assertThat(refreshes).isEmpty();
+    }
+
+    @Test
+    void agingEntry_isServedWhileOneRefreshRuns() {
+        RefreshAheadCache<String> cache = cache(64);
+        cache.get("a");
+
+        clock.set(150);
+        assertThat(cache.get("a")).isEqualTo("a-1");
+        assertThat(cache.get("a")).isEqualTo("a-1");
+        assertThat(refreshes).hasSize(1);
+
+        refreshes.get(0).run();
+        assertThat(cache.get("a")).isEqualTo("a-2");
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void expiredEntry_isLoadedSynchronously() {
+        RefreshAheadCache<String> cache = cache(64);
+        cache.get("a");
+
+        clock.set(2000);
+        assertThat(cache.get("a")).isEqualTo("a-2");
+        assertThat(refreshes).isEmpty();
+    }
+
+    @Test
+    void failedRefresh_keepsOldValueAndRetries() {
+        AtomicInteger calls = new AtomicInteger();
+        RefreshAheadCache<String> cache = cache(64, key -> {
+            if (calls.incrementAndGet() > 1) {
+                throw new IllegalStateException("catalogue down");
+            }
+            return "v";
+        });
+        cache.get("a");
+
+        clock.set(150);
+        cache.get("a");
+        refreshes.get(0).run();
+
+        assertThat(cache.get("a")).isEqualTo("v");
+        assertThat(refreshes).hasSize(2);
+    }
+
+    @Test
+    void failedLoad_isThrown() {
+        RefreshAheadCache<String> cache = cache(64, key -> {
+            throw new IllegalStateException("catalogue down");
+        });
+
+        assertThatThrownBy(() -> cache.get("a")).isInstanceOf(IllegalStateException.class).hasMessageContaining("catalogue down");
+    }
+
+    @Test
+    void size_isBounded() {
+        RefreshAheadCache<String> cache = cache(64);
+        for (int i = 0; i < 10_000; i++) {
+            cache.get("key-" + i);
+        }
+
+        assertThat(cache.size()).isLessThanOrEqualTo(64);
+    }
+}
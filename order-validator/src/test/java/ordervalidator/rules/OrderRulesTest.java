@@ -0,0 +1,136 @@
+package ordervalidator.rules;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import events.OrderEventEnvelope;
+import events.codec.JsonEnvelopeCodec;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ordervalidator.reference.FileReferenceData;
+import ordervalidator.reference.ReferenceLookups;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OrderRulesTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @TempDir
+    Path dir;
+
+    private ReferenceLookups lookups;
+    private OrderRules rules;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Path reference = dir.resolve("reference-data.json");
+        Files.writeString(reference, """
+                {"customers": ["cust-1"], "skus": {"SKU-1": 1000, "SKU-2": 250, "SKU-FREE": null}}
+                """);
+        lookups = new ReferenceLookups(new FileReferenceData(objectMapper, reference.toString()), registry, 1024,
+                Duration.ofMinutes(1), Duration.ofMinutes(10));
+        rules = new OrderRules(objectMapper, lookups, registry, new ClassPathResource("validation-rules.json"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        lookups.close();
+    }
+
+    @Test
+    void validOrder_passes() throws Exception {
+        assertThat(check("""
+                {"customerId":"cust-1","items":["SKU-1",{"sku":"SKU-2","quantity":2}],"totalAmount":1500}
+                """)).isNull();
+    }
+
+    @Test
+    void missingField_breaksRequired() throws Exception {
+        Violation violation = check("""
+                {"customerId":"cust-1","items":["SKU-1"]}
+                """);
+
+        assertThat(violation.message()).isEqualTo("totalAmount: required");
+        assertThat(registry.counter("orders_validation_rejected_total", "field", "totalAmount", "rule", "required")
+                .count()).isEqualTo(1);
+    }
+
+    @Test
+    void emptyString_countsAsMissing() throws Exception {
+        assertThat(check("""
+                {"customerId":"","items":["SKU-1"],"totalAmount":1000}
+                """).message()).isEqualTo("customerId: required");
+    }
+
+    @Test
+    void thresholdsAndTypes_areChecked() throws Exception {
+        assertThat(check("""
+                {"customerId":"cust-1","items":["SKU-1"],"totalAmount":0}
+                """).rule()).isEqualTo("min");
+        assertThat(check("""
+                {"customerId":"cust-1","items":[],"totalAmount":1000}
+                """).rule()).isEqualTo("min-items");
+        assertThat(check("""
+                {"customerId":"cust-1","items":["SKU-1"],"totalAmount":"1000"}
+                """).message()).isEqualTo("totalAmount: expected an integer");
+        assertThat(check("""
+                {"customerId":"cust-1","items":[42],"totalAmount":1000}
+                """).rule()).isEqualTo("item");
+    }
+
+    @Test
+    void referenceData_isConsulted() throws Exception {
+        assertThat(check("""
+                {"customerId":"cust-2","items":["SKU-1"],"totalAmount":1000}
+                """).message()).isEqualTo("customerId: unknown customer");
+        assertThat(check("""
+                {"customerId":"cust-1","items":["SKU-9"],"totalAmount":1000}
+                """).message()).isEqualTo("items: unknown SKU");
+        assertThat(check("""
+                {"customerId":"cust-1","items":["SKU-1"],"totalAmount":999}
+                """).rule()).isEqualTo("price-matches");
+    }
+
+    @Test
+    void unpricedItem_skipsPriceCheck() throws Exception {
+        assertThat(check("""
+                {"customerId":"cust-1","items":["SKU-1","SKU-FREE"],"totalAmount":5}
+                """)).isNull();
+    }
+
+    @Test
+    void decodedPayload_isCheckedToo() throws Exception {
+        OrderEventEnvelope envelope = new OrderEventEnvelope();
+        envelope.setPayload(Map.of("customerId", "cust-1", "items", List.of("SKU-1"), "totalAmount", 7));
+
+        assertThat(rules.check(envelope).rule()).isEqualTo("price-matches");
+    }
+
+    @Test
+    void conflictingRules_areRejectedAtStartup() {
+        assertThatThrownBy(() -> new OrderRules(objectMapper, lookups, registry, List.of(
+                new RuleSpec("totalAmount", "min", 1), new RuleSpec("totalAmount", "max-length", 10))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new OrderRules(objectMapper, lookups, registry, List.of(
+                new RuleSpec("totalAmount", "positive", null))))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private Violation check(String payload) throws Exception {
+        byte[] envelope = ("{\"eventType\":\"OrderCreated\",\"orderId\":\"ord-1\",\"payload\":" + payload.strip() + "}")
+                .getBytes(StandardCharsets.UTF_8);
+        return rules.check(new JsonEnvelopeCodec(objectMapper).decodePassThrough(envelope));
+    }
+}
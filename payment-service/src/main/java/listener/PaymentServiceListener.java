@@ -1,18 +1,40 @@
 package listener;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import events.BatchPublisher;
 import events.OrderEventEnvelope;
+import events.codec.EnvelopeCodecs;
+import events.dedup.DedupCache;
+import events.metrics.StageMetrics;
+import events.parallel.KeyOrderedConsumerConfiguration;
+import events.parallel.KeyOrderedDispatcher;
+import events.retry.RetryConfiguration;
+import events.retry.RetryTopics;
+import events.transaction.TransactionBatcher;
+import events.transaction.TransactionConfiguration;
+import events.transport.EventTransport;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.kafka.KafkaException;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
+import payment.gateway.Authorization;
+import payment.gateway.AuthorizationRequest;
+import payment.gateway.PaymentClient;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class PaymentServiceListener {
@@ -20,31 +42,202 @@ public class PaymentServiceListener {
     private static final String TOPIC_PAYMENT_COMPLETED = "order.payment-completed";
     private static final String TOPIC_ORDER_FAILED = "order.failed";
     private static final String EVENT_TYPE_FAILED = "OrderPaymentFailed";
+    private static final String STAGE = "payment-service";
+    private static final Duration SEND_TIMEOUT = Duration.ofSeconds(30);
 
     private static final Logger log = LoggerFactory.getLogger(PaymentServiceListener.class);
 
-    private final KafkaTemplate<String, String> kafkaTemplate;
-    private final ObjectMapper objectMapper;
+    private final EventTransport transport;
+    private final EnvelopeCodecs codecs;
+    private final KeyOrderedDispatcher dispatcher;
+    private final RetryTopics retries;
+    private final TransactionBatcher transactions;
+    private final DedupCache dedup;
+    private final StageMetrics stageMetrics;
+    private final PaymentClient paymentClient;
     private final Counter ordersPaidTotal;
     private final Counter ordersPaymentFailedTotal;
 
-    public PaymentServiceListener(KafkaTemplate<String, String> kafkaTemplate, ObjectMapper objectMapper, MeterRegistry registry) {
-        this.kafkaTemplate = kafkaTemplate;
-        this.objectMapper = objectMapper;
+    public PaymentServiceListener(EventTransport transport, EnvelopeCodecs codecs,
+            KeyOrderedDispatcher dispatcher, RetryTopics retries, TransactionBatcher transactions, DedupCache dedup,
+            StageMetrics stageMetrics, PaymentClient paymentClient, MeterRegistry registry) {
+        this.transport = transport;
+        this.codecs = codecs;
+        this.dispatcher = dispatcher;
+        this.retries = retries;
+        this.transactions = transactions;
+        this.dedup = dedup;
+        this.stageMetrics = stageMetrics;
+        this.paymentClient = paymentClient;
         this.ordersPaidTotal = registry.counter("orders_paid_total");
         this.ordersPaymentFailedTotal = registry.counter("orders_payment_failed_total");
     }
 
-    @KafkaListener(topics = "order.inventory-reserved", groupId = "payment-completed")
-    public void onOrderPaid(String payload) {
+    /**
+     * Record mode: the outcome is published whenever the gateway answers, so the consumer thread
+     * moves on without waiting. The offset can be committed before the outcome is published; use
+     * {@code parallel} mode where every payment must survive a crash.
+     */
+    @KafkaListener(topics = "order.inventory-reserved", groupId = "payment-completed",
+            autoStartup = "#{'${order.listener.mode:record}' == 'record'}")
+    public void onOrderPaid(ConsumerRecord<String, byte[]> record) {
+        pay(record).thenCompose(outcome -> outcome == null
+                        ? CompletableFuture.<Void>completedFuture(null)
+                        : transport.send(outcome.record()).thenRun(() -> dedup.add(outcome.dedupKey())))
+                .exceptionally(e -> {
+                    log.error("Failed to publish payment outcome: {}", e.getMessage());
+                    return null;
+                });
+    }
+
+    /** Batch mode, see {@link BatchPublisher}; all authorizations of the poll are in flight together. */
+    @KafkaListener(topics = "order.inventory-reserved", groupId = "payment-completed", batch = "true",
+            autoStartup = "#{'${order.listener.mode:record}' == 'batch'}")
+    public void onOrderPaidBatch(List<ConsumerRecord<String, byte[]>> records) {
+        List<CompletableFuture<Outcome>> outcomes = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, byte[]> record : records) {
+            outcomes.add(pay(record));
+        }
+        List<ProducerRecord<String, byte[]>> out = new ArrayList<>(records.size());
+        List<DedupCache.Key> published = new ArrayList<>(records.size());
+        for (CompletableFuture<Outcome> future : outcomes) {
+            Outcome outcome = future.join();
+            if (outcome != null) {
+                out.add(outcome.record());
+                published.add(outcome.dedupKey());
+            }
+        }
+        BatchPublisher.sendAll(transport, out, SEND_TIMEOUT);
+        published.forEach(dedup::add);
+    }
+
+    /** Parallel mode, see {@link KeyOrderedDispatcher}. */
+    @KafkaListener(topics = "order.inventory-reserved", groupId = "payment-completed",
+            containerFactory = KeyOrderedConsumerConfiguration.CONTAINER_FACTORY,
+            autoStartup = "#{'${order.listener.mode:record}' == 'parallel'}")
+    public void onOrderPaidParallel(List<ConsumerRecord<String, byte[]>> records, Consumer<?, ?> consumer) {
+        dispatcher.dispatch(records, consumer, record -> {
+            Outcome outcome = pay(record).join();
+            if (outcome != null) {
+                transport.send(outcome.record()).get(SEND_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+                dedup.add(outcome.dedupKey());
+            }
+        });
+    }
+
+    /** Exactly-once mode, see {@link TransactionBatcher}. */
+    @KafkaListener(topics = "order.inventory-reserved", groupId = "payment-completed",
+            containerFactory = TransactionConfiguration.CONTAINER_FACTORY,
+            autoStartup = "#{'${order.listener.mode:record}' == 'exactly-once'}")
+    public void onOrderPaidTransactional(List<ConsumerRecord<String, byte[]>> records, Consumer<?, ?> consumer) {
+        List<CompletableFuture<Outcome>> outcomes = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, byte[]> record : records) {
+            outcomes.add(pay(record));
+        }
+        Iterator<CompletableFuture<Outcome>> next = outcomes.iterator();
+        transactions.process(records, consumer, (record, transaction) -> {
+            Outcome outcome = next.next().join();
+            if (outcome != null) {
+                transaction.send(outcome.record());
+                transaction.afterCommit(() -> dedup.add(outcome.dedupKey()));
+            }
+        });
+    }
+
+    /** Records back from the retry topics, see {@link RetryTopics}. */
+    @KafkaListener(topics = "#{@retryTopics.topics('order.inventory-reserved')}", groupId = "payment-completed-retry",
+            containerFactory = RetryConfiguration.CONTAINER_FACTORY,
+            autoStartup = "#{@retryTopics.enabled()}")
+    public void onOrderPaidRetry(List<ConsumerRecord<String, byte[]>> records, Consumer<?, ?> consumer) {
+        retries.dispatch(records, consumer, record -> {
+            Outcome outcome = pay(record).join();
+            if (outcome != null) {
+                if (outcome.deadLetter() != null) {
+                    transport.send(outcome.deadLetter()).get(SEND_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+                }
+                transport.send(outcome.record()).get(SEND_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+                dedup.add(outcome.dedupKey());
+            }
+        });
+    }
+
+    /** Output for one consumed record. */
+    private record Outcome(ProducerRecord<String, byte[]> record, DedupCache.Key dedupKey,
+            ProducerRecord<String, byte[]> deadLetter) {
+
+        Outcome(ProducerRecord<String, byte[]> record, DedupCache.Key dedupKey) {
+            this(record, dedupKey, null);
+        }
+
+        static Outcome of(ProducerRecord<String, byte[]> record, DedupCache.Key dedupKey) {
+            return record != null ? new Outcome(record, dedupKey) : null;
+        }
+    }
+
+    /**
+     * Starts the authorization for one record and records its stage timings. The future never
+     * completes exceptionally: errors become failure outcomes. It completes with {@code null} for
+     * duplicates.
+     */
+    private CompletableFuture<Outcome> pay(ConsumerRecord<String, byte[]> record) {
+        long started = stageMetrics.consumed(STAGE, record);
+        return startPayment(record).thenApply(outcome -> {
+            if (outcome != null) {
+                stageMetrics.propagate(STAGE, record.headers(), outcome.record());
+            }
+            stageMetrics.processed(STAGE, started);
+            return outcome;
+        });
+    }
+
+    private CompletableFuture<Outcome> startPayment(ConsumerRecord<String, byte[]> record) {
         OrderEventEnvelope envelope = null;
+        DedupCache.Key dedupKey = null;
         try {
-            envelope = objectMapper.readValue(payload, OrderEventEnvelope.class);
+            envelope = codecs.decode(record.headers(), record.value());
+            dedupKey = dedup.key(STAGE, envelope.getOrderId(), envelope.getEventType());
+            if (dedup.contains(dedupKey)) {
+                log.debug("Skipping duplicate {} for order {}", envelope.getEventType(), envelope.getOrderId());
+                return CompletableFuture.completedFuture(null);
+            }
             if (!isValid(envelope)) {
                 ordersPaymentFailedTotal.increment();
-                publishFailed(envelope, "PAYMENT_FAILED: orderId or payload missing");
-                return;
+                return CompletableFuture.completedFuture(
+                        Outcome.of(failed(envelope, "PAYMENT_FAILED: orderId or payload missing"), dedupKey));
             }
+            OrderEventEnvelope order = envelope;
+            DedupCache.Key key = dedupKey;
+            return paymentClient.authorize(request(envelope))
+                    .handle((authorization, e) -> paid(record, order, key, authorization, e));
+        } catch (IOException e) {
+            log.warn("Failed to parse order.inventory-reserved message: {}", e.getMessage());
+            ordersPaymentFailedTotal.increment();
+            return CompletableFuture.completedFuture(Outcome.of(failed(envelope, "PARSE_ERROR: " + e.getMessage()), dedupKey));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KafkaException("Interrupted while waiting for a payment slot", e);
+        } catch (RuntimeException e) {
+            log.warn("Failed to process order.inventory-reserved message: {}", e.getMessage());
+            return CompletableFuture.completedFuture(
+                    failedOrRetried(record, envelope, "PROCESSING_ERROR: " + e.getMessage(), dedupKey));
+        }
+    }
+
+    /**
+     * Outcome of an authorization. Gateway errors and timeouts are retried (the request carries the
+     * orderId, so the gateway sees the same authorization again); declines are final.
+     */
+    private Outcome paid(ConsumerRecord<String, byte[]> record, OrderEventEnvelope envelope, DedupCache.Key dedupKey,
+            Authorization authorization, Throwable error) {
+        if (error != null) {
+            log.warn("Payment authorization for order {} failed: {}", envelope.getOrderId(), error.getMessage());
+            return failedOrRetried(record, envelope, "PAYMENT_FAILED: " + error.getMessage(), dedupKey);
+        }
+        if (!authorization.approved()) {
+            ordersPaymentFailedTotal.increment();
+            return Outcome.of(failed(envelope, "PAYMENT_DECLINED: " + authorization.declineReason()), dedupKey);
+        }
+        try {
             OrderEventEnvelope paid = new OrderEventEnvelope();
             paid.setEventType("PaymentCompleted");
             paid.setOrderId(envelope.getOrderId());
@@ -52,33 +245,53 @@ public class PaymentServiceListener {
             paid.setTimestamp(Instant.now().toString());
             paid.setPayload(envelope.getPayload());
 
-            String json = objectMapper.writeValueAsString(paid);
-            kafkaTemplate.send(TOPIC_PAYMENT_COMPLETED, paid.getOrderId(), json);
+            ProducerRecord<String, byte[]> out = codecs.record(TOPIC_PAYMENT_COMPLETED, envelope.getOrderId(), paid);
             ordersPaidTotal.increment();
-        } catch (JsonProcessingException e) {
-            log.warn("Failed to parse order.inventory-reserved message: {}", e.getMessage());
+            return new Outcome(out, dedupKey);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to publish payment of order {}: {}", envelope.getOrderId(), e.getMessage());
             ordersPaymentFailedTotal.increment();
-            publishFailed(envelope, "PARSE_ERROR: " + e.getMessage());
+            return Outcome.of(failed(envelope, "PROCESSING_ERROR: " + e.getMessage()), dedupKey);
         }
     }
 
-    private void publishFailed(OrderEventEnvelope envelope, String failureReason) {
+    /** Outcome of a transient failure, see {@link RetryTopics#retry}. */
+    private Outcome failedOrRetried(ConsumerRecord<String, byte[]> record, OrderEventEnvelope envelope,
+            String failureReason, DedupCache.Key dedupKey) {
+        ProducerRecord<String, byte[]> retry = retries.retry(record, failureReason);
+        if (retry != null) {
+            return new Outcome(retry, null);
+        }
+        ordersPaymentFailedTotal.increment();
+        ProducerRecord<String, byte[]> failed = failed(envelope, failureReason);
+        return failed != null ? new Outcome(failed, dedupKey, retries.deadLetter(record, failureReason)) : null;
+    }
+
+    private static AuthorizationRequest request(OrderEventEnvelope envelope) throws IOException {
+        Map<?, ?> payload = envelope.readPayload() instanceof Map<?, ?> map ? map : Map.of();
+        Object customerId = payload.get("customerId");
+        long amount = payload.get("totalAmount") instanceof Number n ? n.longValue() : 0;
+        return new AuthorizationRequest(envelope.getOrderId(), customerId != null ? customerId.toString() : null, amount);
+    }
+
+    private ProducerRecord<String, byte[]> failed(OrderEventEnvelope envelope, String failureReason) {
         try {
             OrderEventEnvelope failed = new OrderEventEnvelope();
             failed.setEventType(EVENT_TYPE_FAILED);
-            String orderId = envelope != null ? envelope.getOrderId() : "unknown";
-            String correlationId = envelope != null ? envelope.getCorrelationId() : "unknown";
+            String orderId = envelope != null && envelope.getOrderId() != null ? envelope.getOrderId() : "unknown";
+            String correlationId = envelope != null && envelope.getCorrelationId() != null ? envelope.getCorrelationId() : "unknown";
+            Object originalPayload = envelope != null && envelope.getPayload() != null ? envelope.getPayload() : "n/a";
             failed.setOrderId(orderId);
             failed.setCorrelationId(correlationId);
             failed.setTimestamp(Instant.now().toString());
             failed.setPayload(Map.of(
-                    "originalPayload", envelope != null ? envelope.getPayload() : "n/a",
+                    "originalPayload", originalPayload,
                     "failureReason", failureReason
             ));
-            String json = objectMapper.writeValueAsString(failed);
-            kafkaTemplate.send(TOPIC_ORDER_FAILED, orderId, json);
-        } catch (JsonProcessingException e) {
+            return codecs.record(TOPIC_ORDER_FAILED, orderId, failed);
+        } catch (IOException | RuntimeException e) {
             log.error("Failed to publish failure event: {}", e.getMessage());
+            return null;
         }
     }
 
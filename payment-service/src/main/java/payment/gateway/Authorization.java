@@ -0,0 +1,15 @@
+package payment.gateway;
+
+/**
+ * Provider answer: {@code authorizationId} when approved, {@code declineReason} otherwise.
+ */
+public record Authorization(String orderId, boolean approved, String authorizationId, String declineReason) {
+
+    public static Authorization approved(String orderId, String authorizationId) {
+        return new Authorization(orderId, true, authorizationId, null);
+    }
+
+    public static Authorization declined(String orderId, String reason) {
+        return new Authorization(orderId, false, null, reason);
+    }
+}
@@ -0,0 +1,7 @@
+package payment.gateway;
+
+/**
+ * @param amount order total in minor units (cents)
+ */
+public record AuthorizationRequest(String orderId, String customerId, long amount) {
+}
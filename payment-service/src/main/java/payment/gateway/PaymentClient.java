@@ -0,0 +1,185 @@
+package payment.gateway;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps many authorizations in flight against a {@link PaymentGateway}.
+ * <p>
+ * At most {@code order.payment.max-in-flight} authorizations are accepted at a time, including
+ * queued ones; {@link #authorize} blocks the caller only once that is reached. Each customer has
+ * at most {@code order.payment.max-per-customer} of them at the gateway, the rest wait in a
+ * per-customer queue. If the gateway supports batches, requests are collected for up to
+ * {@code order.payment.batch-linger} or {@code order.payment.batch-size} requests and sent in one
+ * call. A gateway that does not answer within {@code order.payment.timeout} fails the future, as
+ * does a batch answer that is missing the authorization.
+ */
+@Component
+public class PaymentClient implements AutoCloseable {
+
+    private final PaymentGateway gateway;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final int maxPerCustomer;
+    private final int batchSize;
+    private final long batchLingerNanos;
+    private final Duration timeout;
+    private final Map<String, CustomerSlots> customers = new ConcurrentHashMap<>();
+    private final DistributionSummary batchSizes;
+    private final ScheduledExecutorService batchTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "payment-batcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private List<Pending> batch = new ArrayList<>();
+    private boolean flushScheduled;
+
+    public PaymentClient(PaymentGateway gateway, MeterRegistry registry,
+            @Value("${order.payment.max-in-flight:512}") int maxInFlight,
+            @Value("${order.payment.max-per-customer:4}") int maxPerCustomer,
+            @Value("${order.payment.batch-size:32}") int batchSize,
+            @Value("${order.payment.batch-linger:5ms}") Duration batchLinger,
+            @Value("${order.payment.timeout:10s}") Duration timeout) {
+        this.gateway = gateway;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.maxInFlight = maxInFlight;
+        this.maxPerCustomer = maxPerCustomer;
+        this.batchSize = batchSize;
+        this.batchLingerNanos = batchLinger.toNanos();
+        this.timeout = timeout;
+        this.batchSizes = DistributionSummary.builder("payment_gateway_batch_size").register(registry);
+        Gauge.builder("payment_authorizations_in_flight", this, c -> c.maxInFlight - c.inFlight.availablePermits())
+                .register(registry);
+    }
+
+    private record Pending(AuthorizationRequest request, CompletableFuture<Authorization> result) {
+    }
+
+    /** Authorizations of one customer at the gateway, and the ones waiting for a free slot. */
+    private static final class CustomerSlots {
+        int active;
+        final ArrayDeque<Pending> waiting = new ArrayDeque<>();
+    }
+
+    public CompletableFuture<Authorization> authorize(AuthorizationRequest request) throws InterruptedException {
+        inFlight.acquire();
+        Pending pending = new Pending(request, new CompletableFuture<>());
+        boolean[] start = new boolean[1];
+        customers.compute(customerKey(request), (id, slots) -> {
+            if (slots == null) {
+                slots = new CustomerSlots();
+            }
+            if (slots.active < maxPerCustomer) {
+                slots.active++;
+                start[0] = true;
+            } else {
+                slots.waiting.add(pending);
+            }
+            return slots;
+        });
+        if (start[0]) {
+            submit(pending);
+        }
+        return pending.result();
+    }
+
+    @Override
+    public void close() {
+        batchTimer.shutdownNow();
+    }
+
+    /** Requests without a customer are not capped together. */
+    private static String customerKey(AuthorizationRequest request) {
+        return request.customerId() != null ? request.customerId() : "order:" + request.orderId();
+    }
+
+    private void submit(Pending pending) {
+        if (!gateway.supportsBatch()) {
+            gateway.authorize(pending.request())
+                    .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                    .whenComplete((authorization, e) -> complete(pending, authorization, e));
+            return;
+        }
+        List<Pending> full = null;
+        synchronized (this) {
+            batch.add(pending);
+            if (batch.size() >= batchSize) {
+                full = batch;
+                batch = new ArrayList<>();
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                batchTimer.schedule(this::flushLingering, batchLingerNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        if (full != null) {
+            send(full);
+        }
+    }
+
+    private void flushLingering() {
+        List<Pending> lingering;
+        synchronized (this) {
+            flushScheduled = false;
+            lingering = batch;
+            batch = new ArrayList<>();
+        }
+        if (!lingering.isEmpty()) {
+            send(lingering);
+        }
+    }
+
+    private void send(List<Pending> requests) {
+        batchSizes.record(requests.size());
+        gateway.authorizeAll(requests.stream().map(Pending::request).toList())
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((authorizations, e) -> {
+                    int answered = e == null && authorizations != null ? authorizations.size() : 0;
+                    // a short answer must not leave the rest pending: their slots would never be returned
+                    Throwable unanswered = e != null ? e : new IllegalStateException(
+                            "Gateway answered " + answered + " of " + requests.size() + " authorizations");
+                    for (int i = 0; i < requests.size(); i++) {
+                        if (i < answered) {
+                            complete(requests.get(i), authorizations.get(i), null);
+                        } else {
+                            complete(requests.get(i), null, unanswered);
+                        }
+                    }
+                });
+    }
+
+    private void complete(Pending pending, Authorization authorization, Throwable error) {
+        Pending[] next = new Pending[1];
+        customers.compute(customerKey(pending.request()), (id, slots) -> {
+            next[0] = slots.waiting.poll();
+            if (next[0] == null && --slots.active == 0) {
+                return null;
+            }
+            return slots;
+        });
+        inFlight.release();
+        if (error != null) {
+            pending.result().completeExceptionally(error);
+        } else {
+            pending.result().complete(authorization);
+        }
+        if (next[0] != null) {
+            submit(next[0]);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package payment.gateway;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking client of a payment provider. Implementations return at once and complete the
+ * future when the provider answers; a declined payment is a normal result, not an exception.
+ */
+@FunctionalInterface
+public interface PaymentGateway {
+
+    CompletableFuture<Authorization> authorize(AuthorizationRequest request);
+
+    /** Whether {@link #authorizeAll} sends a batch in a single provider call. */
+    default boolean supportsBatch() {
+        return false;
+    }
+
+    /**
+     * Authorizes several payments; the results are in request order.
+     */
+    default CompletableFuture<List<Authorization>> authorizeAll(List<AuthorizationRequest> requests) {
+        List<CompletableFuture<Authorization>> futures = new ArrayList<>(requests.size());
+        requests.forEach(request -> futures.add(authorize(request)));
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> futures.stream().map(CompletableFuture::join).toList());
+    }
+}
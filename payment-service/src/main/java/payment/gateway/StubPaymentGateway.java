@@ -0,0 +1,74 @@
+package payment.gateway;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local stand-in for a payment provider. Answers after {@code order.payment.stub.latency} (plus up
+ * to 50% jitter) without holding a thread while waiting; a batch costs one round trip. Approves
+ * every positive amount up to {@code order.payment.stub.decline-above}.
+ */
+@Component
+public class StubPaymentGateway implements PaymentGateway, AutoCloseable {
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "stub-payment-gateway");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final long latencyNanos;
+    private final long declineAbove;
+
+    public StubPaymentGateway(@Value("${order.payment.stub.latency:50ms}") Duration latency,
+            @Value("${order.payment.stub.decline-above:1000000}") long declineAbove) {
+        this.latencyNanos = latency.toNanos();
+        this.declineAbove = declineAbove;
+    }
+
+    @Override
+    public CompletableFuture<Authorization> authorize(AuthorizationRequest request) {
+        CompletableFuture<Authorization> result = new CompletableFuture<>();
+        timer.schedule(() -> result.complete(decide(request)), delay(), TimeUnit.NANOSECONDS);
+        return result;
+    }
+
+    @Override
+    public boolean supportsBatch() {
+        return true;
+    }
+
+    @Override
+    public CompletableFuture<List<Authorization>> authorizeAll(List<AuthorizationRequest> requests) {
+        CompletableFuture<List<Authorization>> result = new CompletableFuture<>();
+        timer.schedule(() -> result.complete(requests.stream().map(this::decide).toList()), delay(), TimeUnit.NANOSECONDS);
+        return result;
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+
+    private Authorization decide(AuthorizationRequest request) {
+        if (request.amount() <= 0) {
+            return Authorization.declined(request.orderId(), "INVALID_AMOUNT");
+        }
+        if (request.amount() > declineAbove) {
+            return Authorization.declined(request.orderId(), "LIMIT_EXCEEDED");
+        }
+        return Authorization.approved(request.orderId(), "auth-" + UUID.randomUUID());
+    }
+
+    private long delay() {
+        return latencyNanos + ThreadLocalRandom.current().nextLong(latencyNanos / 2 + 1);
+    }
+}
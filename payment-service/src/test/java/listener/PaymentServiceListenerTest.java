@@ -1,18 +1,45 @@
 package listener;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import events.codec.BinaryEnvelopeCodec;
+import events.codec.EnvelopeCodecs;
+import events.codec.JsonEnvelopeCodec;
+import events.dedup.DedupCache;
+import events.metrics.StageMetrics;
+import events.parallel.KeyOrderedDispatcher;
+import events.retry.RetryTopics;
+import events.transaction.TransactionBatcher;
+import events.transport.EventTransport;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.kafka.core.KafkaTemplate;
+import payment.gateway.Authorization;
+import payment.gateway.PaymentClient;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -22,53 +49,174 @@ class PaymentServiceListenerTest {
     private static final String VALID_ORDER_INVENTORY_RESERVED = """
             {"eventType":"InventoryReserved","orderId":"ord-123","correlationId":"corr-456","timestamp":"2026-02-06T12:00:00Z","payload":{"customerId":"cust-1","items":[],"totalAmount":9999}}
             """;
+    private static final String OVER_LIMIT_ORDER_INVENTORY_RESERVED = """
+            {"eventType":"InventoryReserved","orderId":"ord-124","correlationId":"corr-457","timestamp":"2026-02-06T12:00:00Z","payload":{"customerId":"cust-1","items":[],"totalAmount":500000}}
+            """;
+    private static final String GATEWAY_ERROR_ORDER_INVENTORY_RESERVED = """
+            {"eventType":"InventoryReserved","orderId":"ord-125","correlationId":"corr-458","timestamp":"2026-02-06T12:00:00Z","payload":{"customerId":"cust-1","items":[],"totalAmount":4242}}
+            """;
+
+    @Mock
+    private EventTransport transport;
 
     @Mock
-    private KafkaTemplate<String, String> kafkaTemplate;
+    private KeyOrderedDispatcher dispatcher;
+
+    @Mock
+    private TransactionBatcher transactions;
 
     @Mock
     private io.micrometer.core.instrument.MeterRegistry meterRegistry;
 
+    @Captor
+    private ArgumentCaptor<ProducerRecord<String, byte[]>> recordCaptor;
+
     private ObjectMapper objectMapper;
+    private PaymentClient paymentClient;
     private PaymentServiceListener listener;
 
     @BeforeEach
     void setUp() {
         objectMapper = new ObjectMapper();
         when(meterRegistry.counter(anyString())).thenReturn(mock(io.micrometer.core.instrument.Counter.class));
-        listener = new PaymentServiceListener(kafkaTemplate, objectMapper, meterRegistry);
+        lenient().when(transport.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+        paymentClient = new PaymentClient(request -> request.amount() == 4242
+                ? CompletableFuture.<Authorization>failedFuture(new IllegalStateException("gateway unavailable"))
+                : CompletableFuture.completedFuture(request.amount() > 100_000
+                        ? Authorization.declined(request.orderId(), "LIMIT_EXCEEDED")
+                        : Authorization.approved(request.orderId(), "auth-1")),
+                new SimpleMeterRegistry(), 16, 4, 8, Duration.ofMillis(1), Duration.ofSeconds(5));
+        listener = new PaymentServiceListener(transport, new EnvelopeCodecs(JsonEnvelopeCodec.NAME, true,
+                new JsonEnvelopeCodec(objectMapper), new BinaryEnvelopeCodec(objectMapper)), dispatcher,
+                new RetryTopics(List.of(Duration.ofSeconds(1)), true, Duration.ofSeconds(1), new SimpleMeterRegistry()),
+                transactions,
+                new DedupCache(1024, Duration.ofHours(1), new SimpleMeterRegistry()),
+                new StageMetrics(new SimpleMeterRegistry()), paymentClient, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        paymentClient.close();
     }
 
     @Test
     void validOrder_publishesToOrderPaymentCompleted() {
-        listener.onOrderPaid(VALID_ORDER_INVENTORY_RESERVED);
+        listener.onOrderPaid(record(VALID_ORDER_INVENTORY_RESERVED));
 
-        ArgumentCaptor<String> valueCaptor = ArgumentCaptor.forClass(String.class);
-        verify(kafkaTemplate).send(eq("order.payment-completed"), eq("ord-123"), valueCaptor.capture());
+        verify(transport).send(recordCaptor.capture());
+        ProducerRecord<String, byte[]> sent = recordCaptor.getValue();
+        String value = new String(sent.value(), StandardCharsets.UTF_8);
 
-        assertThat(valueCaptor.getValue()).contains("\"eventType\":\"PaymentCompleted\"");
-        assertThat(valueCaptor.getValue()).contains("\"orderId\":\"ord-123\"");
+        assertThat(sent.topic()).isEqualTo("order.payment-completed");
+        assertThat(sent.key()).isEqualTo("ord-123");
+        assertThat(value).contains("\"eventType\":\"PaymentCompleted\"");
+        assertThat(value).contains("\"orderId\":\"ord-123\"");
+    }
+
+    @Test
+    void declinedPayment_publishesToOrderFailed() {
+        listener.onOrderPaid(record(OVER_LIMIT_ORDER_INVENTORY_RESERVED));
+
+        verify(transport).send(recordCaptor.capture());
+        ProducerRecord<String, byte[]> sent = recordCaptor.getValue();
+        String value = new String(sent.value(), StandardCharsets.UTF_8);
+
+        assertThat(sent.topic()).isEqualTo("order.failed");
+        assertThat(sent.key()).isEqualTo("ord-124");
+        assertThat(value).contains("PAYMENT_DECLINED: LIMIT_EXCEEDED");
     }
 
     @Test
     void invalidEnvelope_publishesToOrderFailed() {
-        listener.onOrderPaid("{\"eventType\":\"InventoryReserved\",\"orderId\":null,\"payload\":{}}");
+        listener.onOrderPaid(record("{\"eventType\":\"InventoryReserved\",\"orderId\":null,\"payload\":{}}"));
 
-        ArgumentCaptor<String> valueCaptor = ArgumentCaptor.forClass(String.class);
-        verify(kafkaTemplate).send(eq("order.failed"), eq("unknown"), valueCaptor.capture());
+        verify(transport).send(recordCaptor.capture());
+        ProducerRecord<String, byte[]> sent = recordCaptor.getValue();
+        String value = new String(sent.value(), StandardCharsets.UTF_8);
 
-        assertThat(valueCaptor.getValue()).contains("\"eventType\":\"OrderPaymentFailed\"");
-        assertThat(valueCaptor.getValue()).contains("PAYMENT_FAILED");
+        assertThat(sent.topic()).isEqualTo("order.failed");
+        assertThat(sent.key()).isEqualTo("unknown");
+        assertThat(value).contains("\"eventType\":\"OrderPaymentFailed\"");
+        assertThat(value).contains("PAYMENT_FAILED");
     }
 
     @Test
     void parseError_publishesToOrderFailed() {
-        listener.onOrderPaid("not json");
+        listener.onOrderPaid(record("not json"));
+
+        verify(transport).send(recordCaptor.capture());
+        ProducerRecord<String, byte[]> sent = recordCaptor.getValue();
+        String value = new String(sent.value(), StandardCharsets.UTF_8);
+
+        assertThat(sent.topic()).isEqualTo("order.failed");
+        assertThat(sent.key()).isEqualTo("unknown");
+        assertThat(value).contains("\"eventType\":\"OrderPaymentFailed\"");
+        assertThat(value).contains("PARSE_ERROR");
+    }
 
-        ArgumentCaptor<String> valueCaptor = ArgumentCaptor.forClass(String.class);
-        verify(kafkaTemplate).send(eq("order.failed"), eq("unknown"), valueCaptor.capture());
+    @Test
+    void batch_publishesEachOutcomeAndFlushesOnce() {
+        when(transport.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+
+        listener.onOrderPaidBatch(List.of(record(VALID_ORDER_INVENTORY_RESERVED), record("not json")));
+
+        verify(transport, times(2)).send(recordCaptor.capture());
+        verify(transport).flush();
+
+        List<ProducerRecord<String, byte[]>> sent = recordCaptor.getAllValues();
+        assertThat(sent.get(0).topic()).isEqualTo("order.payment-completed");
+        assertThat(sent.get(0).key()).isEqualTo("ord-123");
+        assertThat(new String(sent.get(0).value(), StandardCharsets.UTF_8)).contains("\"eventType\":\"PaymentCompleted\"");
+        assertThat(sent.get(1).topic()).isEqualTo("order.failed");
+        assertThat(new String(sent.get(1).value(), StandardCharsets.UTF_8)).contains("\"eventType\":\"OrderPaymentFailed\"");
+    }
+
+    @Test
+    void redeliveredRecord_isPublishedOnlyOnce() {
+        listener.onOrderPaid(record(VALID_ORDER_INVENTORY_RESERVED));
+        listener.onOrderPaid(record(VALID_ORDER_INVENTORY_RESERVED));
+
+        verify(transport, times(1)).send(recordCaptor.capture());
+        assertThat(recordCaptor.getValue().topic()).isEqualTo("order.payment-completed");
+    }
+
+    @Test
+    void gatewayError_isRetriedInsteadOfFailed() {
+        listener.onOrderPaid(record(GATEWAY_ERROR_ORDER_INVENTORY_RESERVED));
+
+        verify(transport).send(recordCaptor.capture());
+        ProducerRecord<String, byte[]> sent = recordCaptor.getValue();
+
+        assertThat(sent.topic()).isEqualTo("order.inventory-reserved.retry-1s");
+        assertThat(sent.key()).isEqualTo("ord-125");
+        assertThat(new String(sent.value(), StandardCharsets.UTF_8)).isEqualTo(GATEWAY_ERROR_ORDER_INVENTORY_RESERVED);
+        assertThat(ByteBuffer.wrap(sent.headers().lastHeader(RetryTopics.HEADER_ATTEMPT).value()).getInt()).isEqualTo(1);
+    }
+
+    @Test
+    void lastRetryFailing_publishesDeadLetterAndOrderFailed() {
+        TopicPartition partition = new TopicPartition("order.inventory-reserved.retry-1s", 0);
+        MockConsumer<String, byte[]> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        consumer.assign(List.of(partition));
+        ConsumerRecord<String, byte[]> retried = new ConsumerRecord<>(partition.topic(), 0, 7L, "ord-125",
+                GATEWAY_ERROR_ORDER_INVENTORY_RESERVED.getBytes(StandardCharsets.UTF_8));
+        retried.headers().add(RetryTopics.HEADER_ATTEMPT, ByteBuffer.allocate(Integer.BYTES).putInt(1).array());
+        retried.headers().add(RetryTopics.HEADER_SOURCE, "order.inventory-reserved".getBytes(StandardCharsets.UTF_8));
+
+        listener.onOrderPaidRetry(List.of(retried), consumer);
+
+        verify(transport, times(2)).send(recordCaptor.capture());
+        List<ProducerRecord<String, byte[]>> sent = recordCaptor.getAllValues();
+        assertThat(sent.get(0).topic()).isEqualTo("order.inventory-reserved.dlq");
+        assertThat(sent.get(0).value()).isEqualTo(retried.value());
+        assertThat(sent.get(1).topic()).isEqualTo("order.failed");
+        assertThat(new String(sent.get(1).value(), StandardCharsets.UTF_8)).contains("PAYMENT_FAILED")
+                .contains("gateway unavailable");
+        assertThat(consumer.committed(Set.of(partition))).containsKey(partition);
+        assertThat(consumer.committed(Set.of(partition)).get(partition).offset()).isEqualTo(8L);
+    }
 
-        assertThat(valueCaptor.getValue()).contains("\"eventType\":\"OrderPaymentFailed\"");
-        assertThat(valueCaptor.getValue()).contains("PARSE_ERROR");
+    private static ConsumerRecord<String, byte[]> record(String value) {
+        return new ConsumerRecord<>("order.inventory-reserved", 0, 0L, null, value.getBytes(StandardCharsets.UTF_8));
     }
 }
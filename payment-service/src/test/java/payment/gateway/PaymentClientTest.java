@@ -0,0 +1,167 @@
+package payment.gateway;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PaymentClientTest {
+
+    @Test
+    void perCustomerCap_queuesFurtherRequestsOfThatCustomer() throws Exception {
+        ManualGateway gateway = new ManualGateway(false);
+        try (PaymentClient client = client(gateway, Duration.ofSeconds(5))) {
+            CompletableFuture<Authorization> first = client.authorize(request("ord-1", "cust-1"));
+            CompletableFuture<Authorization> second = client.authorize(request("ord-2", "cust-1"));
+            CompletableFuture<Authorization> third = client.authorize(request("ord-3", "cust-1"));
+            CompletableFuture<Authorization> other = client.authorize(request("ord-4", "cust-2"));
+
+            assertThat(gateway.orderIds()).containsExactly("ord-1", "ord-2", "ord-4");
+
+            gateway.approve(0);
+            assertThat(first.get(1, TimeUnit.SECONDS).approved()).isTrue();
+            assertThat(gateway.orderIds()).containsExactly("ord-1", "ord-2", "ord-4", "ord-3");
+            assertThat(second).isNotDone();
+            assertThat(third).isNotDone();
+            assertThat(other).isNotDone();
+        }
+    }
+
+    @Test
+    void batchingGateway_receivesLingeringRequestsInOneCall() throws Exception {
+        ManualGateway gateway = new ManualGateway(true);
+        try (PaymentClient client = client(gateway, Duration.ofSeconds(5))) {
+            List<CompletableFuture<Authorization>> results = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                results.add(client.authorize(request("ord-" + i, "cust-" + i)));
+            }
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (gateway.batches.isEmpty()) {
+                assertThat(System.nanoTime()).as("batch not sent in time").isLessThan(deadline);
+                Thread.sleep(5);
+            }
+            assertThat(gateway.batches).hasSize(1);
+            assertThat(gateway.batches.get(0)).hasSize(3);
+
+            gateway.approveBatch(0);
+            for (CompletableFuture<Authorization> result : results) {
+                assertThat(result.get(1, TimeUnit.SECONDS).approved()).isTrue();
+            }
+        }
+    }
+
+    @Test
+    void shortBatchAnswer_failsTheUnansweredRequestsAndFreesTheirSlots() throws Exception {
+        ManualGateway gateway = new ManualGateway(true);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        try (PaymentClient client = client(gateway, Duration.ofSeconds(5), registry)) {
+            List<CompletableFuture<Authorization>> results = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                results.add(client.authorize(request("ord-" + i, "cust-" + i)));
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (gateway.batches.isEmpty()) {
+                assertThat(System.nanoTime()).as("batch not sent in time").isLessThan(deadline);
+                Thread.sleep(5);
+            }
+
+            gateway.batchAnswers.get(0).complete(List.of(
+                    Authorization.approved("ord-0", "auth-0"), Authorization.approved("ord-1", "auth-1")));
+
+            assertThat(results.get(0).get(1, TimeUnit.SECONDS).approved()).isTrue();
+            assertThat(results.get(1).get(1, TimeUnit.SECONDS).approved()).isTrue();
+            assertThatThrownBy(() -> results.get(2).get(1, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(IllegalStateException.class);
+            assertThat(registry.get("payment_authorizations_in_flight").gauge().value()).isZero();
+        }
+    }
+
+    @Test
+    void unansweredAuthorization_timesOutAndFreesTheSlot() throws Exception {
+        ManualGateway gateway = new ManualGateway(false);
+        try (PaymentClient client = client(gateway, Duration.ofMillis(50))) {
+            CompletableFuture<Authorization> result = client.authorize(request("ord-1", "cust-1"));
+
+            assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(TimeoutException.class);
+
+            client.authorize(request("ord-2", "cust-1"));
+            client.authorize(request("ord-3", "cust-1"));
+            assertThat(gateway.orderIds()).containsExactly("ord-1", "ord-2", "ord-3");
+        }
+    }
+
+    private static PaymentClient client(PaymentGateway gateway, Duration timeout) {
+        return client(gateway, timeout, new SimpleMeterRegistry());
+    }
+
+    private static PaymentClient client(PaymentGateway gateway, Duration timeout, SimpleMeterRegistry registry) {
+        return new PaymentClient(gateway, registry, 16, 2, 8, Duration.ofMillis(20), timeout);
+    }
+
+    private static AuthorizationRequest request(String orderId, String customerId) {
+        return new AuthorizationRequest(orderId, customerId, 1000);
+    }
+
+    /** Gateway whose answers are given by the test. */
+    private static final class ManualGateway implements PaymentGateway {
+
+        final List<AuthorizationRequest> requests = new CopyOnWriteArrayList<>();
+        final List<CompletableFuture<Authorization>> answers = new CopyOnWriteArrayList<>();
+        final List<List<AuthorizationRequest>> batches = new CopyOnWriteArrayList<>();
+        final List<CompletableFuture<List<Authorization>>> batchAnswers = new CopyOnWriteArrayList<>();
+        private final boolean batching;
+
+        ManualGateway(boolean batching) {
+            this.batching = batching;
+        }
+
+        @Override
+        public CompletableFuture<Authorization> authorize(AuthorizationRequest request) {
+            CompletableFuture<Authorization> answer = new CompletableFuture<>();
+            requests.add(request);
+            answers.add(answer);
+            return answer;
+        }
+
+        @Override
+        public boolean supportsBatch() {
+            return batching;
+        }
+
+        @Override
+        public CompletableFuture<List<Authorization>> authorizeAll(List<AuthorizationRequest> batch) {
+            CompletableFuture<List<Authorization>> answer = new CompletableFuture<>();
+            batches.add(batch);
+            batchAnswers.add(answer);
+            return answer;
+        }
+
+        List<String> orderIds() {
+            return requests.stream().map(AuthorizationRequest::orderId).toList();
+        }
+
+        void approve(int index) {
+            answers.get(index).complete(Authorization.approved(requests.get(index).orderId(), "auth-" + index));
+        }
+
+        void approveBatch(int index) {
+            batchAnswers.get(index).complete(batches.get(index).stream()
+                    .map(request -> Authorization.approved(request.orderId(), "auth-" + request.orderId()))
+                    .toList());
+        }
+    }
+}
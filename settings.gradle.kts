@@ -6,5 +6,7 @@ include(
     "order-validator",
     "inventory-service",
     "payment-service",
-    "notification-service"
+    "notification-service",
+    "order-benchmarks",
+    "order-loadtest"
 )